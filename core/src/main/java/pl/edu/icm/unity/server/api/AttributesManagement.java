@@ -6,6 +6,7 @@ package pl.edu.icm.unity.server.api;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 
 import pl.edu.icm.unity.exceptions.EngineException;
 import pl.edu.icm.unity.types.basic.Attribute;
@@ -159,4 +160,33 @@ public interface AttributesManagement
 	 */
 	public Collection<AttributeExt<?>> getAllAttributes(EntityParam entity, boolean effective, 
 			String groupPath, String attributeTypeId, boolean allowDegrade) throws EngineException;
+
+	/**
+	 * Bulk version of {@link #getAllAttributes(EntityParam, boolean, String, String, boolean)}. Useful to 
+	 * present attributes of many entities at once: the attributes are loaded with a constant number
+	 * of database queries and authorization checks.
+	 * @param entities ids of entities
+	 * @param effective
+	 * @param groupPath
+	 * @param attributeTypeId
+	 * @param allowDegrade
+	 * @return attributes indexed with entity ids. Entities which don't exist, are not members of the group,
+	 * or whose attributes can not be read by the caller are not included.
+	 * @throws EngineException
+	 */
+	public Map<Long, Collection<AttributeExt<?>>> getAllAttributes(Collection<Long> entities, boolean effective, 
+			String groupPath, String attributeTypeId, boolean allowDegrade) throws EngineException;
+
+	/**
+	 * Exact match search for entities by a value of their attribute. Only the directly assigned attributes
+	 * are searched, i.e. the attributes added by groups' attribute statements are not. 
+	 * The search uses an index of attribute values, so it is efficient also for large numbers of entities.
+	 * @param attributeTypeId
+	 * @param groupPath group of the attribute. If null then attributes in all groups are searched.
+	 * @param value string value which must be among the values of the attribute
+	 * @return ids of the entities with the value
+	 * @throws EngineException
+	 */
+	public Set<Long> getEntitiesWithAttributeValue(String attributeTypeId, String groupPath, String value) 
+			throws EngineException;
 }
@@ -13,6 +13,8 @@ import pl.edu.icm.unity.types.basic.AttributesClass;
 import pl.edu.icm.unity.types.basic.EntityParam;
 import pl.edu.icm.unity.types.basic.Group;
 import pl.edu.icm.unity.types.basic.GroupContents;
+import pl.edu.icm.unity.types.basic.GroupMembership;
+import pl.edu.icm.unity.types.basic.IdentityTaV;
 
 
 /**
@@ -113,6 +115,32 @@ public interface GroupsManagement
 	 * @throws EngineException
 	 */
 	GroupContents getContents(String path, int filter) throws EngineException;
+
+	/**
+	 * Allows to retrieve group's members page by page, what should be used instead of 
+	 * {@link #getContents(String, int)} for groups with many members. Requires the same authorization 
+	 * as getting the members with {@link #getContents(String, int)}.
+	 * @param path group to be queried.
+	 * @param offset number of members to be skipped, must not be negative
+	 * @param limit maximum number of members to be returned, must not be negative. Limits larger than 
+	 * the configured maximum page size are reduced to it.
+	 * @param orderByCreation if true then members are ordered by the time of joining the group, 
+	 * otherwise by entity ids.
+	 * @param identity if not null then only the member having this identity is returned (if there is
+	 * such member). The identity must be given exactly, as identities are compared with their 
+	 * comparable values.
+	 * @return
+	 * @throws EngineException
+	 */
+	List<GroupMembership> getMembers(String path, int offset, int limit, boolean orderByCreation,
+			IdentityTaV identity) throws EngineException;
+
+	/**
+	 * @param path
+	 * @return number of members of the group
+	 * @throws EngineException
+	 */
+	int getMembersCount(String path) throws EngineException;
 	
 	/**
 	 * @param root
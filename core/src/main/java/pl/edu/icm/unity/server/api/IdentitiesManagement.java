@@ -185,6 +185,22 @@ public interface IdentitiesManagement
 	 */
 	Entity getEntityNoContext(EntityParam entity, String group) throws EngineException;
 
+	/**
+	 * Bulk version of {@link #getEntity(EntityParam, String, boolean, String)} (without target and without
+	 * creation of dynamic identities) and of {@link #getEntityNoContext(EntityParam, String)}. 
+	 * Useful to present many entities at once: the entities are resolved with a constant number
+	 * of database queries and authorization checks.
+	 * @param entities ids of entities to be resolved
+	 * @param group group wrt which authorization should be performed.
+	 * @param noContext if true then for entities which the caller can read with hidden information, 
+	 * all identities are returned as with {@link #getEntityNoContext(EntityParam, String)}.
+	 * @return resolved entities indexed with their ids. Entities which don't exist or can not be read
+	 * by the caller are not included.
+	 * @throws EngineException
+	 */
+	Map<Long, Entity> getEntities(Collection<Long> entities, String group, boolean noContext) 
+			throws EngineException;
+
 	
 	/**
 	 * Changes {@link CredentialRequirements} of an entity. 
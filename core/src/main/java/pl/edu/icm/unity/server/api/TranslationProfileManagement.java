@@ -31,5 +31,13 @@ public interface TranslationProfileManagement
 
 	Map<String, OutputTranslationProfile> listOutputProfiles() throws EngineException;
 
+	/**
+	 * @param name
+	 * @return output profile with the given name or null if there is no such profile. The returned profile
+	 * is shared and should be used only for performing translations. 
+	 * @throws EngineException
+	 */
+	OutputTranslationProfile getOutputProfile(String name) throws EngineException;
+
 	OutputTranslationProfile getDefaultOutputProfile() throws EngineException;
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.server.api.internal;
+
+/**
+ * Implemented by in-memory caches of data derived from the database contents. Implementations are
+ * registered in the {@link CacheInvalidationRegistry} and are notified whenever the source data is modified.
+ * <p>
+ * Implementations must be thread safe and fast: they are called in the context of DB modifications.
+ *
+ * @author K. Benedyczak
+ */
+public interface CacheInvalidationListener
+{
+	/**
+	 * Data of the given entity was changed: its attributes, identities, group memberships or
+	 * the entity was removed.
+	 * @param entityId
+	 */
+	void invalidateEntity(long entityId);
+
+	/**
+	 * A change which may affect any entity was performed, e.g. a group or attribute type was modified, or
+	 * the whole database was reset.
+	 */
+	void invalidateAll();
+	
+	/**
+	 * Generic objects of the given type were added, changed or removed. Only the types for which watching
+	 * was enabled in the storage layer are reported. Reset of the whole database is reported for all
+	 * watched types.
+	 * @param type
+	 */
+	default void invalidateObjects(String type)
+	{
+	}
+}
@@ -0,0 +1,16 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.server.api.internal;
+
+/**
+ * Allows caches of data derived from the database contents, which are placed outside of the storage layer,
+ * to be notified about modifications of the source data.
+ * 
+ * @author K. Benedyczak
+ */
+public interface CacheInvalidationRegistry
+{
+	void addListener(CacheInvalidationListener listener);
+}
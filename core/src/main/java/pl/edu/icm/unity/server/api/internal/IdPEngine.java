@@ -5,7 +5,6 @@
 package pl.edu.icm.unity.server.api.internal;
 
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.List;
 
 import org.apache.log4j.Logger;
@@ -14,8 +13,6 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import pl.edu.icm.unity.exceptions.EngineException;
-import pl.edu.icm.unity.server.api.AttributesManagement;
-import pl.edu.icm.unity.server.api.IdentitiesManagement;
 import pl.edu.icm.unity.server.api.TranslationProfileManagement;
 import pl.edu.icm.unity.server.api.userimport.UserImportSerivce;
 import pl.edu.icm.unity.server.translation.out.OutputTranslationEngine;
@@ -23,8 +20,6 @@ import pl.edu.icm.unity.server.translation.out.OutputTranslationProfile;
 import pl.edu.icm.unity.server.translation.out.TranslationInput;
 import pl.edu.icm.unity.server.translation.out.TranslationResult;
 import pl.edu.icm.unity.server.utils.Log;
-import pl.edu.icm.unity.types.basic.AttributeExt;
-import pl.edu.icm.unity.types.basic.Entity;
 import pl.edu.icm.unity.types.basic.EntityParam;
 import pl.edu.icm.unity.types.basic.Identity;
 import pl.edu.icm.unity.types.basic.IdentityParam;
@@ -43,21 +38,19 @@ import eu.unicore.util.configuration.ConfigurationException;
 public class IdPEngine
 {
 	private static final Logger log = Log.getLogger(Log.U_SERVER, IdPEngine.class);
-	private AttributesManagement attributesMan;
-	private IdentitiesManagement identitiesMan;
+	private UserInformationProvider userInformationProvider;
 	private OutputTranslationEngine translationEngine;
 	private TranslationProfileManagement profileManagement;
 	private UserImportSerivce userImportService;
 	
 	@Autowired
-	public IdPEngine(AttributesManagement attributesMan, IdentitiesManagement identitiesMan,
+	public IdPEngine(UserInformationProvider userInformationProvider,
 			OutputTranslationEngine translationEngine,
 			@Qualifier("insecure") TranslationProfileManagement profileManagement,
 			UserImportSerivce userImportService)
 	{
 		super();
-		this.attributesMan = attributesMan;
-		this.identitiesMan = identitiesMan;
+		this.userInformationProvider = userInformationProvider;
 		this.translationEngine = translationEngine;
 		this.profileManagement = profileManagement;
 		this.userImportService = userImportService;
@@ -85,23 +78,21 @@ public class IdPEngine
 		IdentityTaV identityTaV = entity.getIdentity();
 		if (identityTaV != null && triggerImport)
 			userImportService.importUser(identityTaV.getValue(), identityTaV.getTypeId());
-		Collection<String> allGroups = identitiesMan.getGroups(entity).keySet();
-		Collection<AttributeExt<?>> allAttributes = attributesMan.getAttributes(
-				entity, group, null);
-		Entity fullEntity = identitiesMan.getEntity(entity, requester, allowIdentityCreate, group);
+		UserInformation userInfo = userInformationProvider.getUserInformation(entity, group, requester, 
+				allowIdentityCreate);
 		if (log.isTraceEnabled())
 			log.trace("Attributes to be returned (before postprocessing): " + 
-					allAttributes + "\nGroups: " + allGroups + "\nIdentities: " + 
-					Arrays.toString(fullEntity.getIdentities()));
+					userInfo.getAttributes() + "\nGroups: " + userInfo.getGroups() + "\nIdentities: " + 
+					Arrays.toString(userInfo.getEntity().getIdentities()));
 
 		OutputTranslationProfile translationProfile = profile == null ? 
 				profileManagement.getDefaultOutputProfile() :  
-				profileManagement.listOutputProfiles().get(profile);
+				profileManagement.getOutputProfile(profile);
 		if (translationProfile == null)
 			throw new ConfigurationException("The translation profile '" + profile + 
 					"' configured for the authenticator does not exist");
-		TranslationInput input = new TranslationInput(allAttributes, fullEntity, group, allGroups, 
-				requester, protocol, protocolSubType);
+		TranslationInput input = new TranslationInput(userInfo.getAttributes(), userInfo.getEntity(), 
+				group, userInfo.getGroups(), requester, protocol, protocolSubType);
 		TranslationResult result = translationProfile.translate(input);
 		translationEngine.process(input, result);
 		return result;
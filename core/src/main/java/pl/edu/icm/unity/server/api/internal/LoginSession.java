@@ -229,6 +229,8 @@ public class LoginSession
 		setMaxInactivity(maxInactive);
 		setEntityId(token.getOwner());
 		setRealm(realm);
+		if (token.getLastUsed() != null && token.getLastUsed().getTime() > lastUsed)
+			lastUsed = token.getLastUsed().getTime();
 		setLastUsed(new Date(lastUsed));
 		setEntityLabel(entityLabel);
 		setUsedOutdatedCredential(outdatedCred);
@@ -32,6 +32,19 @@ public interface SessionManagement
 	public LoginSession getCreateSession(long loggedEntity, AuthenticationRealm realm, 
 			String label, boolean outdatedCredential, Date absoluteExpiration);
 	
+	/**
+	 * Variant of {@link #getCreateSession(long, AuthenticationRealm, String, boolean, Date)} intended for
+	 * stateless API calls, which are authenticated on every request. The sessions are remembered in memory 
+	 * per entity and realm for a limited time, so that subsequent calls don't touch the database. 
+	 * The returned object is a private copy which can be modified by the caller.
+	 * @param loggedEntity
+	 * @param realm
+	 * @param outdatedCredential used only if a new session is created
+	 * @return
+	 */
+	public LoginSession getCreateAPISession(long loggedEntity, AuthenticationRealm realm, 
+			boolean outdatedCredential);
+	
 	/**
 	 * Updates the extra attributes of the session. Update is done via callback to enable transactional access.
 	 * @param id
@@ -42,7 +55,8 @@ public interface SessionManagement
 
 	/**
 	 * Updates the lastUsed timestamp of a session. The implementation may delay this action if the 
-	 * previous update happened recently.
+	 * previous update happened recently, and may store the timestamp asynchronously. Therefore
+	 * a missing session needs not to be reported.
 	 * @param id
 	 * @throws WrongArgumentException 
 	 */
@@ -19,6 +19,7 @@ public class Token
 	private Long owner;
 	private Date created;
 	private Date expires;
+	private Date lastUsed;
 	private byte[] contents;
 
 	public Token(String type, String value, Long owner)
@@ -68,6 +69,18 @@ public class Token
 	{
 		this.expires = expires;
 	}
+	/**
+	 * @return the last usage time of the token, stored separately from the contents. 
+	 * Null if it was never recorded.
+	 */
+	public Date getLastUsed()
+	{
+		return lastUsed;
+	}
+	public void setLastUsed(Date lastUsed)
+	{
+		this.lastUsed = lastUsed;
+	}
 	public byte[] getContents()
 	{
 		return contents;
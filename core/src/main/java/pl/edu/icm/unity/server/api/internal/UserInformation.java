@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.server.api.internal;
+
+import java.util.Collection;
+
+import pl.edu.icm.unity.types.basic.AttributeExt;
+import pl.edu.icm.unity.types.basic.Entity;
+
+/**
+ * Complete information about an entity, as returned by {@link UserInformationProvider}.
+ * @author K. Benedyczak
+ */
+public class UserInformation
+{
+	private Entity entity;
+	private Collection<String> groups;
+	private Collection<AttributeExt<?>> attributes;
+
+	public UserInformation(Entity entity, Collection<String> groups, Collection<AttributeExt<?>> attributes)
+	{
+		this.entity = entity;
+		this.groups = groups;
+		this.attributes = attributes;
+	}
+
+	/**
+	 * @return entity with its identities, including the dynamic ones established for the target
+	 */
+	public Entity getEntity()
+	{
+		return entity;
+	}
+
+	/**
+	 * @return paths of all groups of the entity
+	 */
+	public Collection<String> getGroups()
+	{
+		return groups;
+	}
+
+	/**
+	 * @return effective attributes of the entity in the queried group, without the local ones
+	 */
+	public Collection<AttributeExt<?>> getAttributes()
+	{
+		return attributes;
+	}
+}
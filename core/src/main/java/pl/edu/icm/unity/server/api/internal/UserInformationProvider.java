@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.server.api.internal;
+
+import pl.edu.icm.unity.exceptions.EngineException;
+import pl.edu.icm.unity.types.basic.EntityParam;
+
+/**
+ * Provides all the information about an entity which is published by IdPs. The result is equivalent to 
+ * the results of the IdentitiesManagement getGroups and getEntity and AttributesManagement getAttributes 
+ * methods, but it is obtained in a single transaction, with the entity resolved and authorized once.
+ * <p>
+ * Authorization is performed as in the mentioned methods.
+ * @author K. Benedyczak
+ */
+public interface UserInformationProvider
+{
+	/**
+	 * @param entity
+	 * @param group group in which effective attributes are resolved and read authorization is checked
+	 * @param target for whom dynamic (targeted) identities are returned. Can be null.
+	 * @param allowIdentityCreate whether a dynamic identity can be established for the target
+	 * @return obtained information
+	 * @throws EngineException
+	 */
+	UserInformation getUserInformation(EntityParam entity, String group, String target, 
+			boolean allowIdentityCreate) throws EngineException;
+}
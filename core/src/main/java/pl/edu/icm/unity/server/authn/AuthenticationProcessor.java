@@ -39,6 +39,8 @@ public class AuthenticationProcessor
 			if (result.getStatus() == Status.unknownRemotePrincipal)
 				throw new UnknownRemoteUserException("AuthenticationProcessorUtil.authnFailed", 
 						result);
+			if (result.getStatus() == Status.tryLater)
+				throw new AuthenticationTryLaterException("AuthenticationProcessorUtil.authnTryLater");
 			throw new AuthenticationException("AuthenticationProcessorUtil.authnFailed");
 		}
 		
@@ -83,6 +85,8 @@ public class AuthenticationProcessor
 		{
 			if (result2.getStatus() == Status.unknownRemotePrincipal)
 				throw new AuthenticationException("AuthenticationProcessorUtil.authnWrongUsers");
+			if (result2.getStatus() == Status.tryLater)
+				throw new AuthenticationTryLaterException("AuthenticationProcessorUtil.authnTryLater");
 			throw new AuthenticationException("AuthenticationProcessorUtil.authnFailed");
 		}
 		
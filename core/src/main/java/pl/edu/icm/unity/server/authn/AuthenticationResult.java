@@ -26,6 +26,12 @@ public class AuthenticationResult
 		 */
 		deny, 
 		
+		/**
+		 * The authentication could not be performed at the moment, e.g. as the server is overloaded.
+		 * The client should try later. It is not a failed authentication attempt.
+		 */
+		tryLater,
+		
 		/**
 		 * Can happen only in the case of remote authenticators, when the 
 		 * authentication was successful, but the remote principal is not 
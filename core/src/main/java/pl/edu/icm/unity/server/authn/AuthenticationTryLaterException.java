@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.server.authn;
+
+import pl.edu.icm.unity.server.authn.AuthenticationResult.Status;
+
+/**
+ * Thrown when authentication could not be performed at the moment, e.g. due to server overload.
+ * It should not be counted as an unsuccessful authentication attempt.
+ * 
+ * @author K. Benedyczak
+ */
+public class AuthenticationTryLaterException extends AuthenticationException
+{
+	private static final long serialVersionUID = 1L;
+
+	public AuthenticationTryLaterException(String msg)
+	{
+		super(new AuthenticationResult(Status.tryLater, null), msg);
+	}
+}
@@ -63,6 +63,8 @@ public class UnityServerConfiguration extends UnityFilePropertiesHelper
 	public static final String TEMPLATES_CONF = "templatesFile";
 	public static final String PKI_CONF = "pkiConfigFile";
 	public static final String THREAD_POOL_SIZE = "threadPoolSize";
+	public static final String PASSWORD_HASHING_THREADS = "passwordHashingThreads";
+	public static final String PASSWORD_HASHING_QUEUE = "passwordHashingQueueSize";
 	public static final String IGNORE_CONFIGURED_CONTENTS_SETTING = "ignoreContentsReloadingFromConfiguration";
 	public static final String CONFIG_ONLY_ERA_CONTROL = "fullyRecreateEndpointsAROnStartup";
 	private static final String RECREATE_ENDPOINTS_ON_STARTUP = "recreateEndpointsOnStartup";
@@ -92,6 +94,10 @@ public class UnityServerConfiguration extends UnityFilePropertiesHelper
 	public static final String INITIALIZERS = "initializers.";
 	public static final String UPDATE_INTERVAL = "asyncStateUpdateInterval";
 	public static final String WORKSPACE_DIRECTORY = "workspaceDirectory";
+	public static final String CACHES_TTL = "storageCachesTTL";
+	public static final String EFFECTIVE_ATTRIBUTES_CACHE_SIZE = "effectiveAttributesCacheSize";
+	public static final String SESSION_IDENTITIES_IN_DB = "storeSessionIdentitiesInDb";
+	public static final String GROUP_MEMBERS_MAX_PAGE = "groupMembersMaxPageSize";
 	public static final String MAIN_CREDENTIAL = "credential";
 	public static final String MAIN_TRUSTSTORE = "truststore";
 	
@@ -185,10 +191,36 @@ public class UnityServerConfiguration extends UnityFilePropertiesHelper
 				+ " happen that a faulty peer won't redirect the web agent back."));
 		defaults.put(THREAD_POOL_SIZE, new PropertyMD("4").setCategory(mainCat).setDescription(
 				"Number of threads used by internal processes of the server. HTTP server threads use a separate pool."));
+		defaults.put(PASSWORD_HASHING_THREADS, new PropertyMD("4").setPositive().setCategory(mainCat).
+				setDescription("Number of threads used to verify passwords of users being authenticated."));
+		defaults.put(PASSWORD_HASHING_QUEUE, new PropertyMD("200").setPositive().setCategory(mainCat).
+				setDescription("Maximum number of password verifications waiting for a free hashing thread. "
+				+ "When the limit is reached, further authentications with password are immediately "
+				+ "rejected, so that a burst of logins can not exhaust the HTTP server threads."));
 		defaults.put(INITIALIZERS, new PropertyMD().setList(true).setCategory(mainCat).setDescription(
 				"List of identifiers of initialization modules that should be run on the first startup."));
 		defaults.put(UPDATE_INTERVAL, new PropertyMD("60").setPositive().setCategory(mainCat).setDescription(
 				"Defines the interval of background update tasks in seconds. Those tasks are used to update runtime state of the server (for instance the deployed endpoints) with the data which is stored in database."));
+		defaults.put(CACHES_TTL, new PropertyMD("30").setNonNegative().setCategory(mainCat).setDescription(
+				"Defines for how long (in seconds) the data derived from the database contents "
+				+ "(as authorization roles of entities or the groups tree) is cached in memory. "
+				+ "The caches are invalidated on every relevant change performed by this server, so this "
+				+ "setting matters only when the database is modified externally, e.g. by a redundant "
+				+ "Unity instance. Zero value disables caching."));
+		defaults.put(EFFECTIVE_ATTRIBUTES_CACHE_SIZE, new PropertyMD("10000").setNonNegative().setCategory(mainCat).
+				setDescription("Maximum number of entities for which the computed effective attributes "
+				+ "(i.e. including the ones assigned by attribute statements) are kept in memory. "
+				+ "Zero value disables this cache. The cached data expires after the time set with " 
+				+ CACHES_TTL + "."));
+		defaults.put(SESSION_IDENTITIES_IN_DB, new PropertyMD("true").setCategory(mainCat).
+				setDescription("Identities valid only for a single login session (as transient identities) "
+				+ "are by default stored in the database, what is required when "
+				+ "login sessions are shared by redundant Unity instances using a common database. "
+				+ "If set to false such identities are kept in memory and are dropped together "
+				+ "with the session, what reduces the database load of a single instance deployment."));
+		defaults.put(GROUP_MEMBERS_MAX_PAGE, new PropertyMD("1000").setPositive().setCategory(mainCat).
+				setDescription("Maximum number of group members returned in a single page. "
+				+ "Larger pages requested by clients are reduced to this size."));
 		defaults.put(WORKSPACE_DIRECTORY, new PropertyMD("data/workspace").setPath().setCategory(mainCat).setDescription(
 				"Defines a folder where the server will write its internal files."));
 		defaults.put(MESSAGES_DIRECTORY, new PropertyMD("i18n").setPath().setCategory(mainCat).setDescription(
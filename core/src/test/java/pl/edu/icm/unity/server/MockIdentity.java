@@ -45,6 +45,12 @@ public class MockIdentity implements IdentityTypeDefinition
 		return true;
 	}
 
+	@Override
+	public boolean isSessionBound()
+	{
+		return false;
+	}
+
 	@Override
 	public boolean isTargeted()
 	{
@@ -601,6 +601,40 @@ public class AttributesManagementImpl implements AttributesManagement
 	}
 
 
+	@Override
+	@Transactional
+	public Map<Long, Collection<AttributeExt<?>>> getAllAttributes(Collection<Long> entities, boolean effective,
+			String groupPath, String attributeTypeId, boolean allowDegrade) throws EngineException
+	{
+		SqlSession sql = SqlSessionTL.sqlSession.get();
+		Set<Long> withHidden = authz.getAuthorizedEntities(entities, groupPath, 
+				AuthzCapability.readHidden, AuthzCapability.read);
+		Set<Long> visibleOnly = new HashSet<>();
+		if (allowDegrade)
+		{
+			visibleOnly.addAll(authz.getAuthorizedEntities(entities, groupPath, AuthzCapability.read));
+			visibleOnly.removeAll(withHidden);
+		}
+		Map<Long, Collection<AttributeExt<?>>> ret = attributesHelper.getAllAttributesInternal(sql, 
+				withHidden, effective, groupPath, attributeTypeId, true);
+		Map<Long, Collection<AttributeExt<?>>> visible = attributesHelper.getAllAttributesInternal(sql, 
+				visibleOnly, effective, groupPath, attributeTypeId, false);
+		for (Collection<AttributeExt<?>> attributes: visible.values())
+			filterLocal(attributes);
+		ret.putAll(visible);
+		return ret;
+	}
+
+	@Override
+	@Transactional
+	public Set<Long> getEntitiesWithAttributeValue(String attributeTypeId, String groupPath, String value)
+			throws EngineException
+	{
+		authz.checkAuthorization(groupPath, AuthzCapability.readHidden, AuthzCapability.read);
+		SqlSession sql = SqlSessionTL.sqlSession.get();
+		return dbAttributes.getEntitiesWithAttributeValue(attributeTypeId, groupPath, value, sql);
+	}
+
 	private void filterLocal(Collection<AttributeExt<?>> unfiltered)
 	{
 		Iterator<AttributeExt<?>> it = unfiltered.iterator();
@@ -33,12 +33,15 @@ import pl.edu.icm.unity.exceptions.EngineException;
 import pl.edu.icm.unity.exceptions.IllegalAttributeTypeException;
 import pl.edu.icm.unity.exceptions.IllegalAttributeValueException;
 import pl.edu.icm.unity.exceptions.IllegalGroupValueException;
+import pl.edu.icm.unity.exceptions.IllegalIdentityValueException;
 import pl.edu.icm.unity.exceptions.IllegalTypeException;
+import pl.edu.icm.unity.exceptions.WrongArgumentException;
 import pl.edu.icm.unity.server.api.GroupsManagement;
 import pl.edu.icm.unity.server.api.internal.TransactionalRunner;
 import pl.edu.icm.unity.server.attributes.AttributeClassHelper;
 import pl.edu.icm.unity.server.attributes.AttributeValueChecker;
 import pl.edu.icm.unity.server.authn.InvocationContext;
+import pl.edu.icm.unity.server.utils.UnityServerConfiguration;
 import pl.edu.icm.unity.types.basic.Attribute;
 import pl.edu.icm.unity.types.basic.AttributeStatement2;
 import pl.edu.icm.unity.types.basic.AttributeStatement2.ConflictResolution;
@@ -47,6 +50,7 @@ import pl.edu.icm.unity.types.basic.EntityParam;
 import pl.edu.icm.unity.types.basic.Group;
 import pl.edu.icm.unity.types.basic.GroupContents;
 import pl.edu.icm.unity.types.basic.GroupMembership;
+import pl.edu.icm.unity.types.basic.IdentityTaV;
 
 
 /**
@@ -68,12 +72,14 @@ public class GroupsManagementImpl implements GroupsManagement
 	private IdentitiesResolver idResolver;
 	private ConfirmationManager confirmationManager;
 	private TransactionalRunner tx;
+	private int maxMembersPage;
 	
 	@Autowired
 	public GroupsManagementImpl(TransactionalRunner tx, DBGroups dbGroups, DBShared dbShared,
 			DBAttributes dbAttributes, AttributeClassDB acDB,
 			AuthorizationManager authz, AttributesHelper attributesHelper,
-			IdentitiesResolver idResolver, ConfirmationManager confirmationsManager)
+			IdentitiesResolver idResolver, ConfirmationManager confirmationsManager,
+			UnityServerConfiguration cfg)
 	{
 		this.tx = tx;
 		this.dbGroups = dbGroups;
@@ -84,6 +90,7 @@ public class GroupsManagementImpl implements GroupsManagement
 		this.attributesHelper = attributesHelper;
 		this.idResolver = idResolver;
 		this.confirmationManager = confirmationsManager;
+		this.maxMembersPage = cfg.getIntValue(UnityServerConfiguration.GROUP_MEMBERS_MAX_PAGE);
 	}
 
 	@Override
@@ -187,6 +194,38 @@ public class GroupsManagementImpl implements GroupsManagement
 		return dbGroups.getContents(path, filter, sql);
 	}
 
+	@Override
+	@Transactional
+	public List<GroupMembership> getMembers(String path, int offset, int limit, boolean orderByCreation,
+			IdentityTaV identity) throws EngineException
+	{
+		if (offset < 0 || limit < 0)
+			throw new WrongArgumentException("Offset and limit of group members must not be negative");
+		authz.checkAuthorization(path, AuthzCapability.read);
+		SqlSession sql = SqlSessionTL.get();
+		Long entityId = null;
+		if (identity != null)
+		{
+			try
+			{
+				entityId = idResolver.getEntityId(new EntityParam(identity), sql);
+			} catch (IllegalIdentityValueException e)
+			{
+				return Collections.emptyList();
+			}
+		}
+		return dbGroups.getMembers(path, offset, Math.min(limit, maxMembersPage), orderByCreation, 
+				entityId, sql);
+	}
+
+	@Override
+	@Transactional
+	public int getMembersCount(String path) throws EngineException
+	{
+		authz.checkAuthorization(path, AuthzCapability.read);
+		return dbGroups.getMembersCount(path, SqlSessionTL.get());
+	}
+	
 	/**
 	 * Invoked whenever getContents fails due to insufficient authZ. In such case still some subgroups
 	 * of the given group can be returned, only if the requester is their member.
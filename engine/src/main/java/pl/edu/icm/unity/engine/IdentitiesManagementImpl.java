@@ -42,7 +42,6 @@ import pl.edu.icm.unity.exceptions.IllegalCredentialException;
 import pl.edu.icm.unity.exceptions.IllegalIdentityValueException;
 import pl.edu.icm.unity.exceptions.IllegalPreviousCredentialException;
 import pl.edu.icm.unity.exceptions.IllegalTypeException;
-import pl.edu.icm.unity.exceptions.InternalException;
 import pl.edu.icm.unity.exceptions.MergeConflictException;
 import pl.edu.icm.unity.exceptions.SchemaConsistencyException;
 import pl.edu.icm.unity.exceptions.WrongArgumentException;
@@ -54,7 +53,6 @@ import pl.edu.icm.unity.server.registries.IdentityTypesRegistry;
 import pl.edu.icm.unity.stdext.attr.StringAttribute;
 import pl.edu.icm.unity.stdext.utils.EntityNameMetadataProvider;
 import pl.edu.icm.unity.sysattrs.SystemAttributeTypes;
-import pl.edu.icm.unity.types.EntityInformation;
 import pl.edu.icm.unity.types.EntityScheduledOperation;
 import pl.edu.icm.unity.types.EntityState;
 import pl.edu.icm.unity.types.authn.CredentialInfo;
@@ -568,7 +566,7 @@ public class IdentitiesManagementImpl implements IdentitiesManagement
 		{
 			authz.checkAuthorization(authz.isSelf(entityId), group, AuthzCapability.readHidden);
 			Identity[] identities = dbIdentities.getIdentitiesForEntityNoContext(entityId, sqlMap);
-			ret = assembleEntity(entityId, identities, sqlMap);
+			ret = engineHelper.assembleEntity(entityId, identities, sqlMap);
 		} catch (AuthorizationException e)
 		{
 			ret = resolveEntityBasic(entityId, null, false, group, sqlMap);
@@ -576,6 +574,23 @@ public class IdentitiesManagementImpl implements IdentitiesManagement
 		return ret;
 	}
 	
+	@Transactional
+	@Override
+	public Map<Long, Entity> getEntities(Collection<Long> entities, String group, boolean noContext)
+			throws EngineException
+	{
+		SqlSession sqlMap = SqlSessionTL.get();
+		Set<Long> withHidden = noContext ? 
+				authz.getAuthorizedEntities(entities, group, AuthzCapability.readHidden) : 
+				Collections.emptySet();
+		Set<Long> basic = new HashSet<>(authz.getAuthorizedEntities(entities, group, AuthzCapability.read));
+		basic.removeAll(withHidden);
+		Map<Long, Identity[]> identities = new HashMap<>();
+		identities.putAll(dbIdentities.getIdentitiesForEntities(withHidden, true, sqlMap));
+		identities.putAll(dbIdentities.getIdentitiesForEntities(basic, false, sqlMap));
+		return engineHelper.assembleEntities(identities, sqlMap);
+	}
+	
 	@Transactional
 	@Override
 	public Entity getEntity(EntityParam entity, String target, boolean allowCreate, String group)
@@ -620,22 +635,7 @@ public class IdentitiesManagementImpl implements IdentitiesManagement
 		authz.checkAuthorization(authz.isSelf(entityId), group, AuthzCapability.read);
 		Identity[] identities = dbIdentities.getIdentitiesForEntity(entityId, target, allowCreate, 
 				sqlMap);
-		return assembleEntity(entityId, identities, sqlMap);
-	}
-	
-	/**
-	 * assembles the final entity by adding the credential and state info.
-	 * @param entityId
-	 * @param identities
-	 * @param sqlMap
-	 * @return
-	 * @throws EngineException
-	 */
-	private Entity assembleEntity(long entityId, Identity[] identities, SqlSession sqlMap) throws EngineException
-	{
-		CredentialInfo credInfo = getCredentialInfo(entityId, sqlMap);
-		EntityInformation theState = dbIdentities.getEntityInformation(entityId, sqlMap);
-		return new Entity(entityId, identities, theState, credInfo);
+		return engineHelper.assembleEntity(entityId, identities, sqlMap);
 	}
 	
 	/**
@@ -740,7 +740,7 @@ public class IdentitiesManagementImpl implements IdentitiesManagement
 		}
 		
 		//possible OPTIMIZATION: can get the status of selected credential only 
-		CredentialInfo credsInfo = getCredentialInfo(entityId, sqlMap);
+		CredentialInfo credsInfo = engineHelper.getCredentialInfo(entityId, sqlMap);
 		CredentialPublicInformation credInfo = credsInfo.getCredentialsState().get(credentialId);
 		if (credInfo == null)
 			throw new IllegalCredentialException("The credential " + credentialId + 
@@ -805,32 +805,7 @@ public class IdentitiesManagementImpl implements IdentitiesManagement
 		}
 	}
 	
-	private CredentialInfo getCredentialInfo(long entityId, SqlSession sqlMap) 
-			throws EngineException
-	{
-		Map<String, AttributeExt<?>> attributes = dbAttributes.getAllAttributesAsMapOneGroup(entityId, "/", null, sqlMap);
-		
-		Attribute<?> credReqA = attributes.get(SystemAttributeTypes.CREDENTIAL_REQUIREMENTS);
-		if (credReqA == null)
-			throw new InternalException("No credential requirement set for an entity"); 
-		String credentialRequirementId = (String)credReqA.getValues().get(0);
-		
-		CredentialRequirementsHolder credReq = engineHelper.getCredentialRequirements(
-				credentialRequirementId, sqlMap);
-		Set<String> required = credReq.getCredentialRequirements().getRequiredCredentials();
-		Map<String, CredentialPublicInformation> credentialsState = new HashMap<>();
-		for (String cd: required)
-		{
-			LocalCredentialVerificator handler = credReq.getCredentialHandler(cd);
-			Attribute<?> currentCredA = attributes.get(SystemAttributeTypes.CREDENTIAL_PREFIX+cd);
-			String currentCred = currentCredA == null ? null : (String)currentCredA.getValues().get(0);
-			
-			credentialsState.put(cd, handler.checkCredentialState(currentCred));
-		}
-		
-		return new CredentialInfo(credentialRequirementId, credentialsState);
-	}
-	
+
 
 	@Override
 	@Transactional
@@ -17,6 +17,7 @@ import pl.edu.icm.unity.db.generic.tprofile.TranslationProfileDB;
 import pl.edu.icm.unity.engine.authz.AuthorizationManager;
 import pl.edu.icm.unity.engine.authz.AuthzCapability;
 import pl.edu.icm.unity.engine.events.InvocationEventProducer;
+import pl.edu.icm.unity.engine.internal.OutputProfilesCache;
 import pl.edu.icm.unity.engine.transactions.SqlSessionTL;
 import pl.edu.icm.unity.engine.transactions.Transactional;
 import pl.edu.icm.unity.exceptions.EngineException;
@@ -45,18 +46,20 @@ public class TranslationProfileManagementImpl implements TranslationProfileManag
 	private TranslationProfileDB tpDB;
 	private InputTranslationActionsRegistry inputActionReg;
 	private OutputTranslationActionsRegistry outputActionReg;
+	private OutputProfilesCache outputProfilesCache;
 	private OutputTranslationProfile defaultProfile;
 	
 	@Autowired
 	public TranslationProfileManagementImpl(AuthorizationManager authz,
 			TranslationProfileDB tpDB, InputTranslationActionsRegistry inputActionReg,
-			OutputTranslationActionsRegistry outputActionReg) 
+			OutputTranslationActionsRegistry outputActionReg, OutputProfilesCache outputProfilesCache) 
 					throws IllegalTypeException, EngineException
 	{
 		this.authz = authz;
 		this.tpDB = tpDB;
 		this.inputActionReg = inputActionReg;
 		this.outputActionReg = outputActionReg;
+		this.outputProfilesCache = outputProfilesCache;
 
 		this.defaultProfile = createDefaultOutputProfile();
 	}
@@ -102,6 +105,14 @@ public class TranslationProfileManagementImpl implements TranslationProfileManag
 		return listProfiles(OutputTranslationProfile.class, ProfileType.OUTPUT);
 	}
 	
+	@Override
+	@Transactional(noTransaction=true, autoCommit=false)
+	public OutputTranslationProfile getOutputProfile(String name) throws EngineException
+	{
+		authz.checkAuthorization(AuthzCapability.maintenance);
+		return outputProfilesCache.get(name, SqlSessionTL.get());
+	}
+	
 
 	private <T extends TranslationProfile> Map<String, T> listProfiles(Class<T> clazz,
 			ProfileType type) throws EngineException
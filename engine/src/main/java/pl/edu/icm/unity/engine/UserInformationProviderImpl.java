@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.engine;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.apache.ibatis.session.SqlSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import pl.edu.icm.unity.db.DBIdentities;
+import pl.edu.icm.unity.db.DBShared;
+import pl.edu.icm.unity.db.resolvers.IdentitiesResolver;
+import pl.edu.icm.unity.engine.authz.AuthorizationManager;
+import pl.edu.icm.unity.engine.authz.AuthzCapability;
+import pl.edu.icm.unity.engine.internal.AttributesHelper;
+import pl.edu.icm.unity.engine.internal.EngineHelper;
+import pl.edu.icm.unity.engine.transactions.SqlSessionTL;
+import pl.edu.icm.unity.engine.transactions.Transactional;
+import pl.edu.icm.unity.exceptions.EngineException;
+import pl.edu.icm.unity.server.api.internal.UserInformation;
+import pl.edu.icm.unity.server.api.internal.UserInformationProvider;
+import pl.edu.icm.unity.types.basic.AttributeExt;
+import pl.edu.icm.unity.types.basic.AttributeVisibility;
+import pl.edu.icm.unity.types.basic.Entity;
+import pl.edu.icm.unity.types.basic.EntityParam;
+import pl.edu.icm.unity.types.basic.Identity;
+
+/**
+ * Implementation of {@link UserInformationProvider}
+ * @author K. Benedyczak
+ */
+@Component
+public class UserInformationProviderImpl implements UserInformationProvider
+{
+	private IdentitiesResolver idResolver;
+	private AuthorizationManager authz;
+	private DBShared dbShared;
+	private DBIdentities dbIdentities;
+	private AttributesHelper attributesHelper;
+	private EngineHelper engineHelper;
+
+	@Autowired
+	public UserInformationProviderImpl(IdentitiesResolver idResolver, AuthorizationManager authz,
+			DBShared dbShared, DBIdentities dbIdentities, AttributesHelper attributesHelper,
+			EngineHelper engineHelper)
+	{
+		this.idResolver = idResolver;
+		this.authz = authz;
+		this.dbShared = dbShared;
+		this.dbIdentities = dbIdentities;
+		this.attributesHelper = attributesHelper;
+		this.engineHelper = engineHelper;
+	}
+
+	@Override
+	@Transactional
+	public UserInformation getUserInformation(EntityParam entity, String group, String target,
+			boolean allowIdentityCreate) throws EngineException
+	{
+		entity.validateInitialization();
+		SqlSession sqlMap = SqlSessionTL.get();
+		long entityId = idResolver.getEntityId(entity, sqlMap);
+		boolean self = authz.isSelf(entityId);
+		authz.checkAuthorization(self, AuthzCapability.read);
+		authz.checkAuthorization(self, group, AuthzCapability.read);
+
+		Set<String> groups = dbShared.getGroupMembership(entityId, sqlMap).keySet();
+		Collection<AttributeExt<?>> attributes = attributesHelper.getAllAttributesInternal(sqlMap, entityId,
+				true, group, null, false);
+		Iterator<AttributeExt<?>> it = attributes.iterator();
+		while (it.hasNext())
+			if (it.next().getVisibility() == AttributeVisibility.local)
+				it.remove();
+		Identity[] identities = dbIdentities.getIdentitiesForEntity(entityId, target, allowIdentityCreate,
+				sqlMap);
+		Entity fullEntity = engineHelper.assembleEntity(entityId, identities, sqlMap);
+		return new UserInformation(fullEntity, groups, attributes);
+	}
+}
@@ -4,6 +4,7 @@
  */
 package pl.edu.icm.unity.engine.authz;
 
+import java.util.Collection;
 import java.util.Set;
 
 import pl.edu.icm.unity.exceptions.AuthorizationException;
@@ -62,6 +63,18 @@ public interface AuthorizationManager
 	 */
 	public void checkAuthorization(boolean selfAccess, String group, AuthzCapability... requiredCapabilities) throws AuthorizationException;
 	
+	/**
+	 * Bulk version of {@link #checkAuthorization(boolean, String, AuthzCapability...)}, useful when 
+	 * the same operation is performed on many entities.
+	 * @param entities entities on which the operation is invoked
+	 * @param group
+	 * @param requiredCapabilities
+	 * @return subset of the given entities, for which the current caller has all the requiredCapabilities
+	 * in the scope of the specified group.
+	 */
+	public Set<Long> getAuthorizedEntities(Collection<Long> entities, String group, 
+			AuthzCapability... requiredCapabilities);
+	
 	/**
 	 * Establishes capabilities of the caller in a specified group.
 	 * @param selfAccess if this operation is invoked on the the caller itself
@@ -4,10 +4,10 @@
  */
 package pl.edu.icm.unity.engine.authz;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -15,7 +15,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Component;
 
-import pl.edu.icm.unity.db.DBAttributes;
 import pl.edu.icm.unity.engine.transactions.SqlSessionTL;
 import pl.edu.icm.unity.engine.transactions.Transactional;
 import pl.edu.icm.unity.engine.transactions.TransactionalAspect;
@@ -26,9 +25,6 @@ import pl.edu.icm.unity.exceptions.IllegalTypeException;
 import pl.edu.icm.unity.exceptions.InternalException;
 import pl.edu.icm.unity.server.api.internal.LoginSession;
 import pl.edu.icm.unity.server.authn.InvocationContext;
-import pl.edu.icm.unity.sysattrs.SystemAttributeTypes;
-import pl.edu.icm.unity.types.basic.Attribute;
-import pl.edu.icm.unity.types.basic.AttributeExt;
 import pl.edu.icm.unity.types.basic.Group;
 
 
@@ -42,7 +38,7 @@ public class AuthorizationManagerImpl implements AuthorizationManager
 {
 	private Map<String, AuthzRole> roles = new LinkedHashMap<String, AuthzRole>(); 
 
-	private DBAttributes dbAttributes;
+	private AuthzRolesCache rolesCache;
 	/**
 	 * System manager role with all privileges. Must not be removed or modified.
 	 */
@@ -55,9 +51,9 @@ public class AuthorizationManagerImpl implements AuthorizationManager
 	public static final String ANONYMOUS_ROLE = "Anonymous User";
 			
 	@Autowired
-	public AuthorizationManagerImpl(DBAttributes dbAttributes)
+	public AuthorizationManagerImpl(AuthzRolesCache rolesCache)
 	{
-		this.dbAttributes = dbAttributes;
+		this.rolesCache = rolesCache;
 		setupRoleCapabilities();
 	}
 	
@@ -169,39 +165,65 @@ public class AuthorizationManagerImpl implements AuthorizationManager
 	@Transactional
 	public void checkAuthorization(AuthzCapability... requiredCapabilities) throws AuthorizationException
 	{
-		checkAuthorizationInternal(getCallerMethodName(2), false, null, requiredCapabilities);
+		checkAuthorizationInternal(false, null, requiredCapabilities);
 	}
 
 	@Override
 	@Transactional
 	public void checkAuthorization(boolean selfAccess, AuthzCapability... requiredCapabilities) throws AuthorizationException
 	{
-		checkAuthorizationInternal(getCallerMethodName(2), selfAccess, null, requiredCapabilities);
+		checkAuthorizationInternal(selfAccess, null, requiredCapabilities);
 	}
 	
 	@Override
 	@Transactional
 	public void checkAuthorization(String group, AuthzCapability... requiredCapabilities) throws AuthorizationException
 	{
-		checkAuthorizationInternal(getCallerMethodName(2), false, group, requiredCapabilities);
+		checkAuthorizationInternal(false, group, requiredCapabilities);
 	}
 
 	@Override
 	@Transactional
 	public void checkAuthorization(boolean selfAccess, String groupPath, AuthzCapability... requiredCapabilities) throws AuthorizationException
 	{
-		checkAuthorizationInternal(getCallerMethodName(2), selfAccess, groupPath, requiredCapabilities);
+		checkAuthorizationInternal(selfAccess, groupPath, requiredCapabilities);
 	}
 
+	@Override
+	@Transactional
+	public Set<Long> getAuthorizedEntities(Collection<Long> entities, String groupPath,
+			AuthzCapability... requiredCapabilities)
+	{
+		try
+		{
+			checkAuthorizationInternal(false, groupPath, requiredCapabilities);
+			return new HashSet<>(entities);
+		} catch (AuthorizationException e)
+		{
+			//ok, still the caller may be authorized to access itself
+		}
+		LoginSession client = InvocationContext.getCurrent().getLoginSession();
+		if (client == null || !entities.contains(client.getEntityId()))
+			return Collections.emptySet();
+		try
+		{
+			checkAuthorizationInternal(true, groupPath, requiredCapabilities);
+			return Collections.singleton(client.getEntityId());
+		} catch (AuthorizationException e)
+		{
+			return Collections.emptySet();
+		}
+	}
+	
 	@Override
 	@Transactional
 	public Set<AuthzCapability> getCapabilities(boolean selfAccess, String group) throws AuthorizationException
 	{
 		LoginSession client = getVerifiedClient(new AuthzCapability[] {});
-		return getCapabilities(getCallerMethodName(2), selfAccess, group, client);
+		return getCapabilities(selfAccess, group, client);
 	}
 	
-	private Set<AuthzCapability> getCapabilities(String callerMethod, boolean selfAccess, String groupPath,
+	private Set<AuthzCapability> getCapabilities(boolean selfAccess, String groupPath,
 			LoginSession client) throws AuthorizationException
 	{
 		Group group = groupPath == null ? new Group("/") : new Group(groupPath);
@@ -240,17 +262,17 @@ public class AuthorizationManagerImpl implements AuthorizationManager
 		return client;
 	}
 	
-	private void checkAuthorizationInternal(String callerMethod, boolean selfAccess, String groupPath, 
+	private void checkAuthorizationInternal(boolean selfAccess, String groupPath, 
 			AuthzCapability... requiredCapabilities) throws AuthorizationException
 	{
 		LoginSession client = getVerifiedClient(requiredCapabilities);
 		
-		Set<AuthzCapability> capabilities = getCapabilities(callerMethod, selfAccess, groupPath, client);
+		Set<AuthzCapability> capabilities = getCapabilities(selfAccess, groupPath, client);
 		
 		for (AuthzCapability requiredCapability: requiredCapabilities)
 			if (!capabilities.contains(requiredCapability))
 				throw new AuthorizationException("Access is denied. The operation " + 
-						callerMethod + " requires '" + requiredCapability + "' capability");
+						getCallerMethodName() + " requires '" + requiredCapability + "' capability");
 	}
 	
 	@Override
@@ -272,45 +294,37 @@ public class AuthorizationManagerImpl implements AuthorizationManager
 	
 	private Set<AuthzRole> establishRoles(long entityId, Group group) throws EngineException
 	{
-		Map<String, Map<String, AttributeExt<?>>> allAttributes = getAllAttributes(entityId);
+		Map<String, Set<String>> allRoles = getAllRoles(entityId);
 		Group current = group;
 		Set<AuthzRole> ret = new HashSet<AuthzRole>();
 		do
 		{
-			Map<String, AttributeExt<?>> inCurrent = allAttributes.get(current.toString());
+			Set<String> inCurrent = allRoles.get(current.toString());
 			if (inCurrent != null)
-				addRolesFromAttribute(inCurrent, ret);
+				addRoles(inCurrent, ret);
 			String parent = current.getParentPath();
 			current = parent == null ? null : new Group(parent);
 		} while (current != null);
 		return ret;
 	}
 
-	private void addRolesFromAttribute(Map<String, AttributeExt<?>> inCurrent, Set<AuthzRole> ret)
+	private void addRoles(Set<String> roleNames, Set<AuthzRole> ret)
 	{
-		Attribute<?> role = inCurrent.get(SystemAttributeTypes.AUTHORIZATION_ROLE);
-		if (role != null)
+		for (String r: roleNames)
 		{
-			List<?> roles = role.getValues();
-			for (Object r: roles)
-			{
-				AuthzRole rr = this.roles.get(r.toString());
-				if (rr == null)
-					throw new InternalException("Authorization attribute has " +
-							"unsupported role value: " + r);
-				ret.add(rr);
-			}
+			AuthzRole rr = this.roles.get(r);
+			if (rr == null)
+				throw new InternalException("Authorization attribute has " +
+						"unsupported role value: " + r);
+			ret.add(rr);
 		}
 	}
 	
-	private Map<String, Map<String, AttributeExt<?>>> getAllAttributes(long entityId) throws EngineException 
+	private Map<String, Set<String>> getAllRoles(long entityId) throws EngineException 
 	{
 		try
 		{
-			Map<String, Map<String, AttributeExt<?>>> allAttributes = 
-					dbAttributes.getAllAttributesAsMap(entityId, null, true, null, 
-							SqlSessionTL.sqlSession.get());
-			return allAttributes;
+			return rolesCache.getRoles(entityId, SqlSessionTL.sqlSession.get());
 		} catch (IllegalTypeException e)
 		{
 			throw new InternalException("Can't establish attributes for authorization pipeline", e);
@@ -320,17 +334,25 @@ public class AuthorizationManagerImpl implements AuthorizationManager
 		}
 	}
 	
-	private String getCallerMethodName(int toSkipBackwards)
+	/**
+	 * Resolves the name of the engine operation which requested authorization. As this requires
+	 * the stack trace it must be used only when the authorization fails.
+	 * Frames of this class (including AspectJ generated code), of the transactional aspect and 
+	 * of non-Unity classes are skipped.
+	 */
+	private String getCallerMethodName()
 	{
-		StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-		int i = toSkipBackwards+1;
-		while (i < stackTrace.length && 
-				(stackTrace[i].getClassName().equals(TransactionalAspect.class.getName()) || 
-				!stackTrace[i].getClassName().contains("pl.edu.icm.unity.")))
-			i++;
-		if (i >= stackTrace.length)
-			return "UNKNOWN";
-		return stackTrace[i].getMethodName();
+		StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+		String thisClass = AuthorizationManagerImpl.class.getName();
+		for (StackTraceElement element: stackTrace)
+		{
+			String className = element.getClassName();
+			if (className.startsWith(thisClass) || 
+					className.equals(TransactionalAspect.class.getName()) ||
+					!className.contains("pl.edu.icm.unity."))
+				continue;
+			return element.getMethodName();
+		}
+		return "UNKNOWN";
 	}
-
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.engine.authz;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.PersistenceConfiguration;
+
+import org.apache.ibatis.session.SqlSession;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import pl.edu.icm.unity.db.DBAttributes;
+import pl.edu.icm.unity.db.cache.CacheInvalidationManager;
+import pl.edu.icm.unity.exceptions.EngineException;
+import pl.edu.icm.unity.server.api.internal.CacheInvalidationListener;
+import pl.edu.icm.unity.server.utils.CacheProvider;
+import pl.edu.icm.unity.server.utils.Log;
+import pl.edu.icm.unity.server.utils.UnityServerConfiguration;
+import pl.edu.icm.unity.sysattrs.SystemAttributeTypes;
+import pl.edu.icm.unity.types.basic.Attribute;
+import pl.edu.icm.unity.types.basic.AttributeExt;
+
+/**
+ * Cache of the authorization role names of entities. For each entity the names of roles assigned
+ * (directly or with attribute statements) in each group are stored.
+ * <p>
+ * The cache is invalidated by the {@link CacheInvalidationManager}. Each invalidation is stamped with
+ * a version, remembered per entity (for a limited number of recently invalidated entities). Loaded roles
+ * are stored only if the entity (or everything) was not invalidated after loading started, so changes
+ * of other entities don't prevent caching.
+ * @author K. Benedyczak
+ */
+@Component
+public class AuthzRolesCache implements CacheInvalidationListener
+{
+	private static final Logger log = Log.getLogger(Log.U_SERVER, AuthzRolesCache.class);
+	private static final String CACHE_ID = AuthzRolesCache.class.getName();
+	private static final int STATS_LOG_INTERVAL = 1000;
+	private static final int MAX_REMEMBERED_INVALIDATIONS = 10000;
+
+	private DBAttributes dbAttributes;
+	private CacheInvalidationManager cacheInvalidation;
+	private Ehcache rolesCache;
+	private boolean disabled;
+	private long version;
+	private long globalInvalidation;
+	private long forgottenInvalidation;
+	private Map<Long, Long> entityInvalidations = new LinkedHashMap<Long, Long>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest)
+		{
+			if (size() <= MAX_REMEMBERED_INVALIDATIONS)
+				return false;
+			forgottenInvalidation = Math.max(forgottenInvalidation, eldest.getValue());
+			return true;
+		}
+	};
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+
+	@Autowired
+	public AuthzRolesCache(DBAttributes dbAttributes, CacheInvalidationManager cacheInvalidation,
+			CacheProvider cacheProvider, UnityServerConfiguration cfg)
+	{
+		this.dbAttributes = dbAttributes;
+		this.cacheInvalidation = cacheInvalidation;
+		int ttl = cfg.getIntValue(UnityServerConfiguration.CACHES_TTL);
+		disabled = ttl == 0;
+		initCache(cacheProvider.getManager(), ttl);
+		cacheInvalidation.addListener(this);
+	}
+
+	private void initCache(CacheManager cacheManager, int ttl)
+	{
+		rolesCache = cacheManager.addCacheIfAbsent(CACHE_ID);
+		CacheConfiguration config = rolesCache.getCacheConfiguration();
+		config.setTimeToIdleSeconds(ttl);
+		config.setTimeToLiveSeconds(ttl);
+		PersistenceConfiguration persistCfg = new PersistenceConfiguration();
+		persistCfg.setStrategy("none");
+		config.persistence(persistCfg);
+	}
+
+	/**
+	 * @param entityId
+	 * @param sql
+	 * @return map of role names indexed with groups. Only groups where the entity has a role
+	 * are included.
+	 * @throws EngineException
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, Set<String>> getRoles(long entityId, SqlSession sql) throws EngineException
+	{
+		if (disabled)
+			return loadRoles(entityId, sql);
+
+		Element cached = rolesCache.get(entityId);
+		if (cached != null && !cached.isExpired())
+		{
+			hits.incrementAndGet();
+			return (Map<String, Set<String>>) cached.getObjectValue();
+		}
+
+		long missesNum = misses.incrementAndGet();
+		if (log.isDebugEnabled() && missesNum % STATS_LOG_INTERVAL == 0)
+			log.debug("Authorization roles cache hits: " + hits.get() + ", misses: " + missesNum);
+
+		long versionBefore;
+		synchronized (entityInvalidations)
+		{
+			versionBefore = version;
+		}
+		Map<String, Set<String>> roles = loadRoles(entityId, sql);
+		if (!cacheInvalidation.isModifiedInSession(entityId, sql))
+			store(entityId, roles, versionBefore);
+		return roles;
+	}
+
+	private void store(long entityId, Map<String, Set<String>> roles, long versionBefore)
+	{
+		synchronized (entityInvalidations)
+		{
+			if (globalInvalidation > versionBefore || forgottenInvalidation > versionBefore)
+				return;
+			Long entityInvalidation = entityInvalidations.get(entityId);
+			if (entityInvalidation != null && entityInvalidation > versionBefore)
+				return;
+			rolesCache.put(new Element(entityId, roles));
+		}
+	}
+
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	@Override
+	public void invalidateEntity(long entityId)
+	{
+		synchronized (entityInvalidations)
+		{
+			entityInvalidations.put(entityId, ++version);
+			rolesCache.remove(entityId);
+		}
+	}
+
+	@Override
+	public void invalidateAll()
+	{
+		synchronized (entityInvalidations)
+		{
+			globalInvalidation = ++version;
+			entityInvalidations.clear();
+			forgottenInvalidation = 0;
+			rolesCache.removeAll();
+		}
+	}
+
+	private Map<String, Set<String>> loadRoles(long entityId, SqlSession sql) throws EngineException
+	{
+		Map<String, Map<String, AttributeExt<?>>> allAttributes = dbAttributes.getAllAttributesAsMap(
+				entityId, null, true, SystemAttributeTypes.AUTHORIZATION_ROLE, sql);
+		Map<String, Set<String>> ret = new HashMap<>();
+		for (Map.Entry<String, Map<String, AttributeExt<?>>> inGroup: allAttributes.entrySet())
+		{
+			Attribute<?> role = inGroup.getValue().get(SystemAttributeTypes.AUTHORIZATION_ROLE);
+			if (role == null)
+				continue;
+			List<?> values = role.getValues();
+			Set<String> roleNames = new HashSet<>(values.size());
+			for (Object value: values)
+				roleNames.add(value.toString());
+			ret.put(inGroup.getKey(), Collections.unmodifiableSet(roleNames));
+		}
+		return Collections.unmodifiableMap(ret);
+	}
+}
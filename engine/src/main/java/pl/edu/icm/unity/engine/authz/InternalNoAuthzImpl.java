@@ -4,6 +4,7 @@
  */
 package pl.edu.icm.unity.engine.authz;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -49,6 +50,13 @@ public class InternalNoAuthzImpl implements AuthorizationManager
 	{
 	}
 	
+	@Override
+	public Set<Long> getAuthorizedEntities(Collection<Long> entities, String group,
+			AuthzCapability... requiredCapabilities)
+	{
+		return new HashSet<>(entities);
+	}
+	
 	@Override
 	public boolean isSelf(long subject)
 	{
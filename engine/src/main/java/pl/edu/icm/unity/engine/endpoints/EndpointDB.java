@@ -38,6 +38,7 @@ public class EndpointDB extends GenericObjectsDB<EndpointInstance>
 	{
 		super(handler, dbGeneric, notificationManager, EndpointInstance.class,
 				"endpoint");
+		enableCaching();
 		notificationManager.addListener(new AuthenticatorChangeListener());
 		notificationManager.addListener(new RealmChangeListener());
 	}
@@ -6,6 +6,7 @@ package pl.edu.icm.unity.engine.internal;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +34,7 @@ import pl.edu.icm.unity.server.attributes.AttributeMetadataProvider;
 import pl.edu.icm.unity.server.registries.AttributeMetadataProvidersRegistry;
 import pl.edu.icm.unity.stdext.attr.StringAttribute;
 import pl.edu.icm.unity.sysattrs.SystemAttributeTypes;
+import pl.edu.icm.unity.types.EntityInformation;
 import pl.edu.icm.unity.types.EntityState;
 import pl.edu.icm.unity.types.basic.Attribute;
 import pl.edu.icm.unity.types.basic.AttributeExt;
@@ -148,6 +150,40 @@ public class AttributesHelper
 		return ret;
 	}
 	
+	/**
+	 * Bulk version of {@link #getAllAttributesInternal(SqlSession, long, boolean, String, String, boolean)}.
+	 * Instead of failing, entities which are disabled (if not allowed) or are not members of the group 
+	 * are skipped.
+	 * @return attributes indexed with entity ids.
+	 */
+	public Map<Long, Collection<AttributeExt<?>>> getAllAttributesInternal(SqlSession sql, 
+			Collection<Long> entities, boolean effective, String groupPath, String attributeTypeName, 
+			boolean allowDisabled) throws EngineException
+	{
+		Set<Long> allowed = new HashSet<>(entities);
+		if (!allowDisabled)
+		{
+			Map<Long, EntityInformation> information = dbIdentities.getEntitiesInformation(allowed, sql);
+			allowed.removeIf(entityId -> !information.containsKey(entityId) || 
+					information.get(entityId).getState() == EntityState.disabled);
+		}
+		Map<Long, Set<String>> allGroups = dbShared.getAllGroups(allowed, sql);
+		allowed.removeIf(entityId -> !allGroups.containsKey(entityId) || 
+				(groupPath != null && !allGroups.get(entityId).contains(groupPath)));
+		
+		Map<Long, Map<String, Map<String, AttributeExt<?>>>> asMap = dbAttributes.getAllAttributesAsMap(
+				allowed, groupPath, effective, attributeTypeName, sql);
+		Map<Long, Collection<AttributeExt<?>>> ret = new HashMap<>(asMap.size());
+		for (Map.Entry<Long, Map<String, Map<String, AttributeExt<?>>>> entry: asMap.entrySet())
+		{
+			List<AttributeExt<?>> attributes = new ArrayList<>();
+			for (Map<String, AttributeExt<?>> inGroup: entry.getValue().values())
+				attributes.addAll(inGroup.values());
+			ret.put(entry.getKey(), attributes);
+		}
+		return ret;
+	}
+	
 	/**
 	 * Adds an attribute. This method performs engine level checks: whether the attribute type is not immutable,
 	 * and properly sets unverified state if attribute is added by ordinary user (not an admin).
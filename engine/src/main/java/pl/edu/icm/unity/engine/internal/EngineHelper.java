@@ -7,6 +7,7 @@ package pl.edu.icm.unity.engine.internal;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,19 +30,23 @@ import pl.edu.icm.unity.exceptions.IllegalAttributeValueException;
 import pl.edu.icm.unity.exceptions.IllegalCredentialException;
 import pl.edu.icm.unity.exceptions.IllegalGroupValueException;
 import pl.edu.icm.unity.exceptions.IllegalTypeException;
+import pl.edu.icm.unity.exceptions.InternalException;
 import pl.edu.icm.unity.server.authn.LocalCredentialVerificator;
 import pl.edu.icm.unity.server.registries.LocalCredentialsRegistry;
 import pl.edu.icm.unity.server.utils.Log;
 import pl.edu.icm.unity.stdext.attr.StringAttribute;
 import pl.edu.icm.unity.sysattrs.SystemAttributeTypes;
+import pl.edu.icm.unity.types.EntityInformation;
 import pl.edu.icm.unity.types.EntityState;
 import pl.edu.icm.unity.types.authn.CredentialDefinition;
+import pl.edu.icm.unity.types.authn.CredentialInfo;
 import pl.edu.icm.unity.types.authn.CredentialPublicInformation;
 import pl.edu.icm.unity.types.authn.CredentialRequirements;
 import pl.edu.icm.unity.types.authn.LocalCredentialState;
 import pl.edu.icm.unity.types.basic.Attribute;
 import pl.edu.icm.unity.types.basic.AttributeExt;
 import pl.edu.icm.unity.types.basic.AttributeVisibility;
+import pl.edu.icm.unity.types.basic.Entity;
 import pl.edu.icm.unity.types.basic.EntityParam;
 import pl.edu.icm.unity.types.basic.Identity;
 import pl.edu.icm.unity.types.basic.IdentityParam;
@@ -146,6 +151,81 @@ public class EngineHelper
 			throw new IllegalCredentialException("The new credential is not compatible with the previous definition and can not keep the credential state as correct");
 	}
 	
+	/**
+	 * assembles the final entity by adding the credential and state info.
+	 * @param entityId
+	 * @param identities
+	 * @param sqlMap
+	 * @return
+	 * @throws EngineException
+	 */
+	public Entity assembleEntity(long entityId, Identity[] identities, SqlSession sqlMap) throws EngineException
+	{
+		CredentialInfo credInfo = getCredentialInfo(entityId, sqlMap);
+		EntityInformation theState = dbIdentities.getEntityInformation(entityId, sqlMap);
+		return new Entity(entityId, identities, theState, credInfo);
+	}
+	
+	/**
+	 * Bulk version of {@link #assembleEntity(long, Identity[], SqlSession)}.
+	 * @param identities identities of entities to be assembled, indexed with entity ids
+	 * @param sqlMap
+	 * @return assembled entities indexed with ids. Not existing entities are not included.
+	 * @throws EngineException
+	 */
+	public Map<Long, Entity> assembleEntities(Map<Long, Identity[]> identities, SqlSession sqlMap) 
+			throws EngineException
+	{
+		Map<Long, EntityInformation> states = dbIdentities.getEntitiesInformation(identities.keySet(), sqlMap);
+		Map<Long, Map<String, Map<String, AttributeExt<?>>>> rootAttributes = dbAttributes.getAllAttributesAsMap(
+				states.keySet(), "/", true, null, sqlMap);
+		Map<String, CredentialRequirementsHolder> credReqs = new HashMap<>();
+		Map<Long, Entity> ret = new HashMap<>(states.size());
+		for (Map.Entry<Long, EntityInformation> state: states.entrySet())
+		{
+			long entityId = state.getKey();
+			CredentialInfo credInfo = getCredentialInfo(rootAttributes.get(entityId).get("/"), 
+					credReqs, sqlMap);
+			ret.put(entityId, new Entity(entityId, identities.get(entityId), state.getValue(), credInfo));
+		}
+		return ret;
+	}
+	
+	public CredentialInfo getCredentialInfo(long entityId, SqlSession sqlMap) 
+			throws EngineException
+	{
+		Map<String, AttributeExt<?>> attributes = dbAttributes.getAllAttributesAsMapOneGroup(entityId, "/", null, sqlMap);
+		return getCredentialInfo(attributes, new HashMap<>(), sqlMap);
+	}
+	
+	private CredentialInfo getCredentialInfo(Map<String, AttributeExt<?>> attributes, 
+			Map<String, CredentialRequirementsHolder> credReqs, SqlSession sqlMap) throws EngineException
+	{
+		Attribute<?> credReqA = attributes.get(SystemAttributeTypes.CREDENTIAL_REQUIREMENTS);
+		if (credReqA == null)
+			throw new InternalException("No credential requirement set for an entity"); 
+		String credentialRequirementId = (String)credReqA.getValues().get(0);
+		
+		CredentialRequirementsHolder credReq = credReqs.get(credentialRequirementId);
+		if (credReq == null)
+		{
+			credReq = getCredentialRequirements(credentialRequirementId, sqlMap);
+			credReqs.put(credentialRequirementId, credReq);
+		}
+		Set<String> required = credReq.getCredentialRequirements().getRequiredCredentials();
+		Map<String, CredentialPublicInformation> credentialsState = new HashMap<>();
+		for (String cd: required)
+		{
+			LocalCredentialVerificator handler = credReq.getCredentialHandler(cd);
+			Attribute<?> currentCredA = attributes.get(SystemAttributeTypes.CREDENTIAL_PREFIX+cd);
+			String currentCred = currentCredA == null ? null : (String)currentCredA.getValues().get(0);
+			
+			credentialsState.put(cd, handler.checkCredentialState(currentCred));
+		}
+		
+		return new CredentialInfo(credentialRequirementId, credentialsState);
+	}
+
 	/**
 	 * Adds an entity with all the complicated logic around it. Does not perform authorization and DB 
 	 * transaction set up: pure business logic.
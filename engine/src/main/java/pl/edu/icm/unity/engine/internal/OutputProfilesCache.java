@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.engine.internal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.session.SqlSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import pl.edu.icm.unity.server.api.internal.CacheInvalidationListener;
+import pl.edu.icm.unity.db.cache.CacheInvalidationManager;
+import pl.edu.icm.unity.db.generic.tprofile.TranslationProfileDB;
+import pl.edu.icm.unity.db.generic.tprofile.TranslationProfileHandler;
+import pl.edu.icm.unity.exceptions.EngineException;
+import pl.edu.icm.unity.server.registries.OutputTranslationActionsRegistry;
+import pl.edu.icm.unity.server.translation.out.OutputTranslationProfile;
+import pl.edu.icm.unity.server.utils.UnityServerConfiguration;
+import pl.edu.icm.unity.types.translation.ProfileType;
+import pl.edu.icm.unity.types.translation.TranslationProfile;
+
+/**
+ * Keeps ready to use (i.e. with compiled rules) instances of all output translation profiles.
+ * The profiles are reloaded after any change of translation profiles. Other changes, including global ones
+ * as of groups or attribute types, do not affect output profiles and are ignored.
+ * @author K. Benedyczak
+ */
+@Component
+public class OutputProfilesCache implements CacheInvalidationListener
+{
+	private TranslationProfileDB tpDB;
+	private OutputTranslationActionsRegistry outputActionReg;
+	private CacheInvalidationManager cacheInvalidation;
+	private long maxAge;
+	private volatile Map<String, OutputTranslationProfile> profiles;
+	private volatile long loadTime;
+	private long generation;
+
+	@Autowired
+	public OutputProfilesCache(TranslationProfileDB tpDB, OutputTranslationActionsRegistry outputActionReg,
+			CacheInvalidationManager cacheInvalidation, UnityServerConfiguration cfg)
+	{
+		this.tpDB = tpDB;
+		this.outputActionReg = outputActionReg;
+		this.cacheInvalidation = cacheInvalidation;
+		this.maxAge = cfg.getIntValue(UnityServerConfiguration.CACHES_TTL) * 1000L;
+		cacheInvalidation.watchObjectType(TranslationProfileHandler.TRANSLATION_PROFILE_OBJECT_TYPE);
+		cacheInvalidation.addListener(this);
+	}
+
+	/**
+	 * @param name
+	 * @param sql
+	 * @return output profile with the given name or null if not found
+	 * @throws EngineException
+	 */
+	public OutputTranslationProfile get(String name, SqlSession sql) throws EngineException
+	{
+		Map<String, OutputTranslationProfile> current = profiles;
+		if (current != null && System.currentTimeMillis() - loadTime < maxAge)
+			return current.get(name);
+
+		long generationAtStart = getGeneration();
+		long loadStart = System.currentTimeMillis();
+		Map<String, OutputTranslationProfile> loaded = load(sql);
+		if (!cacheInvalidation.isObjectTypeModifiedInSession(
+				TranslationProfileHandler.TRANSLATION_PROFILE_OBJECT_TYPE, sql))
+			store(loaded, loadStart, generationAtStart);
+		return loaded.get(name);
+	}
+
+	private Map<String, OutputTranslationProfile> load(SqlSession sql) throws EngineException
+	{
+		List<TranslationProfile> all = tpDB.getAll(sql);
+		Map<String, OutputTranslationProfile> ret = new HashMap<>();
+		for (TranslationProfile profile: all)
+			if (profile.getProfileType() == ProfileType.OUTPUT)
+				ret.put(profile.getName(), new OutputTranslationProfile(profile.getName(),
+						profile.getDescription(), profile.getRules(), outputActionReg));
+		return Collections.unmodifiableMap(ret);
+	}
+
+	private synchronized long getGeneration()
+	{
+		return generation;
+	}
+
+	private synchronized void store(Map<String, OutputTranslationProfile> loaded, long loadStart,
+			long generationAtStart)
+	{
+		if (generation != generationAtStart)
+			return;
+		loadTime = loadStart;
+		profiles = loaded;
+	}
+
+	@Override
+	public void invalidateEntity(long entityId)
+	{
+	}
+
+	@Override
+	public void invalidateAll()
+	{
+	}
+
+	@Override
+	public synchronized void invalidateObjects(String type)
+	{
+		if (!TranslationProfileHandler.TRANSLATION_PROFILE_OBJECT_TYPE.equals(type))
+			return;
+		generation++;
+		profiles = null;
+	}
+}
@@ -9,12 +9,14 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +25,7 @@ import org.springframework.stereotype.Component;
 import pl.edu.icm.unity.db.DBAttributes;
 import pl.edu.icm.unity.db.DBIdentities;
 import pl.edu.icm.unity.db.DBSessionManager;
+import pl.edu.icm.unity.db.DBTokens;
 import pl.edu.icm.unity.engine.transactions.SqlSessionTL;
 import pl.edu.icm.unity.engine.transactions.Transactional;
 import pl.edu.icm.unity.exceptions.EngineException;
@@ -34,11 +37,13 @@ import pl.edu.icm.unity.server.api.internal.SessionParticipant;
 import pl.edu.icm.unity.server.api.internal.SessionParticipants;
 import pl.edu.icm.unity.server.api.internal.Token;
 import pl.edu.icm.unity.server.api.internal.TokensManagement;
+import pl.edu.icm.unity.server.api.internal.TransactionalRunner;
 import pl.edu.icm.unity.server.authn.InvocationContext;
 import pl.edu.icm.unity.server.authn.LoginToHttpSessionBinder;
 import pl.edu.icm.unity.server.registries.SessionParticipantTypesRegistry;
 import pl.edu.icm.unity.server.utils.ExecutorsService;
 import pl.edu.icm.unity.server.utils.Log;
+import pl.edu.icm.unity.server.utils.UnityServerConfiguration;
 import pl.edu.icm.unity.stdext.attr.StringAttribute;
 import pl.edu.icm.unity.sysattrs.SystemAttributeTypes;
 import pl.edu.icm.unity.types.authn.AuthenticationRealm;
@@ -54,33 +59,54 @@ public class SessionManagementImpl implements SessionManagement
 {
 	private static final Logger log = Log.getLogger(Log.U_SERVER, SessionManagementImpl.class);
 	public static final long DB_ACTIVITY_WRITE_DELAY = 3000;
+	private static final int DB_ACTIVITY_WRITE_BATCH = 500;
+	private static final int INACTIVE_SESSIONS_BATCH = 500;
 	public static final String SESSION_TOKEN_TYPE = "session";
 	private TokensManagement tokensManagement;
 	private LoginToHttpSessionBinder sessionBinder;
 	private SessionParticipantTypesRegistry participantTypesRegistry;
 	private DBIdentities dbIdentities;
 	private DBAttributes dbAttributes;
+	private DBTokens dbTokens;
 	private DBSessionManager db;
+	private TransactionalRunner tx;
+	private long apiSessionsMaxAge;
 	
 	/**
-	 * map of timestamps indexed by session ids, when the last activity update was written to DB.
+	 * map of last activity timestamps indexed by session ids, which were not yet written to DB.
 	 */
-	private Map<String, Long> recentUsageUpdates = new WeakHashMap<>();
+	private Map<String, Long> pendingActivity = new ConcurrentHashMap<>();
+	
+	/**
+	 * sessions used by API calls, indexed by entity and realm, see {@link #getCreateAPISession}.
+	 */
+	private Map<String, CachedSession> apiSessions = new ConcurrentHashMap<>();
+	
+	/**
+	 * keys of {@link #apiSessions} indexed by session ids.
+	 */
+	private Map<String, String> apiSessionKeys = new ConcurrentHashMap<>();
 	
 	@Autowired
 	public SessionManagementImpl(TokensManagement tokensManagement, ExecutorsService execService,
 			LoginToHttpSessionBinder sessionBinder, 
 			SessionParticipantTypesRegistry participantTypesRegistry, 
-			DBIdentities dbIdentities, DBAttributes dbAttributes, DBSessionManager db)
+			DBIdentities dbIdentities, DBAttributes dbAttributes, DBTokens dbTokens, 
+			DBSessionManager db, TransactionalRunner tx, UnityServerConfiguration cfg)
 	{
 		this.tokensManagement = tokensManagement;
 		this.sessionBinder = sessionBinder;
 		this.participantTypesRegistry = participantTypesRegistry;
 		this.dbIdentities = dbIdentities;
 		this.dbAttributes = dbAttributes;
+		this.dbTokens = dbTokens;
 		this.db = db;
+		this.tx = tx;
+		this.apiSessionsMaxAge = cfg.getIntValue(UnityServerConfiguration.CACHES_TTL) * 1000L;
 		execService.getService().scheduleWithFixedDelay(new TerminateInactiveSessions(), 
 				20, 30, TimeUnit.SECONDS);
+		execService.getService().scheduleWithFixedDelay(new ActivityWriter(), 
+				DB_ACTIVITY_WRITE_DELAY, DB_ACTIVITY_WRITE_DELAY, TimeUnit.MILLISECONDS);
 	}
 
 	@Override
@@ -88,55 +114,98 @@ public class SessionManagementImpl implements SessionManagement
 	public LoginSession getCreateSession(long loggedEntity, AuthenticationRealm realm, String entityLabel, 
 			boolean outdatedCredential, Date absoluteExpiration)
 	{
+		cleanScheduledRemoval(loggedEntity);
 		try
+		{
+			LoginSession ret = getOwnedSessionInternal(new EntityParam(loggedEntity), 
+					realm.getName());
+			if (ret != null)
+			{
+				ret.setLastUsed(new Date());
+				byte[] contents = ret.getTokenContents();
+				tokensManagement.updateToken(SESSION_TOKEN_TYPE, ret.getId(), null, 
+						contents);
+				updateSessionActivity(ret.getId());
+
+				if (log.isDebugEnabled())
+					log.debug("Using existing session " + ret.getId() + " for logged entity "
+						+ ret.getEntityId() + " in realm " + realm.getName());
+				return ret;
+			}
+		} catch (EngineException e)
+		{
+			throw new InternalException("Can't retrieve current sessions of the "
+					+ "authenticated user", e);
+		}
+
+		LoginSession ret = createSession(loggedEntity, realm, entityLabel, outdatedCredential,
+				absoluteExpiration);
+		if (log.isDebugEnabled())
+			log.debug("Created a new session " + ret.getId() + " for logged entity "
+				+ ret.getEntityId() + " in realm " + realm.getName());
+		return ret;
+	}
+	
+	/**
+	 * The session is taken from memory if it was used recently, then only its activity is recorded and 
+	 * the scheduled removal of the entity (if any) is cleared. 
+	 * Otherwise the regular {@link #getCreateSession(long, AuthenticationRealm, String, boolean, Date)}
+	 * is used and its result is remembered. Sessions removed on other nodes are noticed after the 
+	 * storage caches TTL passes.
+	 */
+	@Override
+	public LoginSession getCreateAPISession(final long loggedEntity, final AuthenticationRealm realm,
+			final boolean outdatedCredential)
+	{
+		String key = loggedEntity + "@" + realm.getName();
+		long now = System.currentTimeMillis();
+		CachedSession cached = apiSessions.get(key);
+		if (cached != null && cached.isValid(now, apiSessionsMaxAge))
 		{
 			try
 			{
-				LoginSession ret = getOwnedSessionInternal(new EntityParam(loggedEntity), 
-						realm.getName());
-				if (ret != null)
-				{
-					ret.setLastUsed(new Date());
-					byte[] contents = ret.getTokenContents();
-					tokensManagement.updateToken(SESSION_TOKEN_TYPE, ret.getId(), null, 
-							contents);
-					
-					if (log.isDebugEnabled())
-						log.debug("Using existing session " + ret.getId() + " for logged entity "
-							+ ret.getEntityId() + " in realm " + realm.getName());
-					return ret;
-				}
+				tx.runInTransaction(() -> cleanScheduledRemoval(loggedEntity));
 			} catch (EngineException e)
 			{
-				throw new InternalException("Can't retrieve current sessions of the "
-						+ "authenticated user", e);
+				throw new InternalException("Can't establish session of the authenticated user", e);
 			}
-			
-			LoginSession ret = createSession(loggedEntity, realm, entityLabel, outdatedCredential,
-					absoluteExpiration);
-			if (log.isDebugEnabled())
-				log.debug("Created a new session " + ret.getId() + " for logged entity "
-					+ ret.getEntityId() + " in realm " + realm.getName());
+			LoginSession ret = token2session(cached.token);
+			ret.setLastUsed(new Date(now));
+			updateSessionActivity(ret.getId());
 			return ret;
-		} finally
+		}
+		
+		LoginSession ret;
+		try
+		{
+			ret = tx.runInTransactionRet(() -> getCreateSession(loggedEntity, realm, "", 
+					outdatedCredential, null));
+		} catch (EngineException e)
 		{
-			cleanScheduledRemoval(loggedEntity);
+			throw new InternalException("Can't establish session of the authenticated user", e);
 		}
+		if (apiSessionsMaxAge > 0 && ret.getExpires() == null)
+		{
+			apiSessionKeys.put(ret.getId(), key);
+			CachedSession previous = apiSessions.put(key, 
+					new CachedSession(session2token(ret), ret.getMaxInactivity(), now));
+			if (previous != null && !previous.token.getValue().equals(ret.getId()))
+				apiSessionKeys.remove(previous.token.getValue(), key);
+		}
+		return ret;
 	}
 	
+	/**
+	 * Performed in the login transaction. The entity is modified only if its removal was scheduled.
+	 */
 	private void cleanScheduledRemoval(long loggedEntity)
 	{
-		SqlSession sqlMap = db.getSqlSession(true);
 		try
 		{
-			dbIdentities.clearScheduledRemovalStatus(loggedEntity, sqlMap);
-			sqlMap.commit();
+			dbIdentities.clearScheduledRemovalStatus(loggedEntity, SqlSessionTL.get());
 		} catch (EngineException e)
 		{
 			log.error("Can not clear automatic removal (if any) from the user being logged in", e);
-		} finally
-		{
-			db.releaseSqlSession(sqlMap);
 		}
 	}
 	
@@ -154,6 +223,9 @@ public class SessionManagementImpl implements SessionManagement
 		{
 			tokensManagement.addToken(SESSION_TOKEN_TYPE, id, new EntityParam(loggedEntity), 
 					ls.getTokenContents(), ls.getStarted(), ls.getExpires());
+			if (ls.getExpires() == null)
+				dbTokens.setMaxInactivity(id, SESSION_TOKEN_TYPE, ls.getMaxInactivity(), 
+						ls.getLastUsed(), SqlSessionTL.get());
 			updateLoginAttributes(loggedEntity, ls.getStarted());
 		} catch (Exception e)
 		{
@@ -169,6 +241,7 @@ public class SessionManagementImpl implements SessionManagement
 	{
 		Token token = tokensManagement.getTokenById(SESSION_TOKEN_TYPE, id);
 		LoginSession session = token2session(token);
+		forgetAPISession(id);
 		
 		updater.updateAttributes(session.getSessionData());
 
@@ -180,6 +253,9 @@ public class SessionManagementImpl implements SessionManagement
 	public void removeSession(String id, boolean soft)
 	{
 		sessionBinder.removeLoginSession(id, soft);
+		pendingActivity.remove(id);
+		forgetAPISession(id);
+		dbIdentities.removeSessionIdentities(id);
 		try
 		{
 			tokensManagement.removeToken(SESSION_TOKEN_TYPE, id);
@@ -223,24 +299,48 @@ public class SessionManagementImpl implements SessionManagement
 		return ret;
 	}
 	
+	/**
+	 * The activity is only recorded in memory. It is written to DB in background, see {@link ActivityWriter}.
+	 */
 	@Override
-	@Transactional
-	public void updateSessionActivity(String id) throws WrongArgumentException
+	public void updateSessionActivity(String id)
 	{
-		Long lastWrite = recentUsageUpdates.get(id);
-		if (lastWrite != null)
+		pendingActivity.put(id, System.currentTimeMillis());
+	}
+	
+	private void writeActivity()
+	{
+		Map<String, Long> batch = new HashMap<>();
+		for (Map.Entry<String, Long> entry: pendingActivity.entrySet())
 		{
-			if (System.currentTimeMillis() < lastWrite + DB_ACTIVITY_WRITE_DELAY)
-				return;
+			batch.put(entry.getKey(), entry.getValue());
+			if (batch.size() == DB_ACTIVITY_WRITE_BATCH)
+			{
+				writeActivity(batch);
+				batch.clear();
+			}
 		}
-		
-		Token token = tokensManagement.getTokenById(SESSION_TOKEN_TYPE, id);
-		LoginSession session = token2session(token);
-		session.setLastUsed(new Date());
-		byte[] contents = session.getTokenContents();
-		tokensManagement.updateToken(SESSION_TOKEN_TYPE, id, null, contents);
-		log.trace("Updated in db session activity timestamp for " + id);
-		recentUsageUpdates.put(id, System.currentTimeMillis());
+		if (!batch.isEmpty())
+			writeActivity(batch);
+	}
+	
+	private void writeActivity(Map<String, Long> batch)
+	{
+		Map<String, Date> lastUsed = new HashMap<>(batch.size());
+		for (Map.Entry<String, Long> entry: batch.entrySet())
+			lastUsed.put(entry.getKey(), new Date(entry.getValue()));
+		SqlSession sqlMap = db.getSqlSession(ExecutorType.BATCH, true);
+		try
+		{
+			dbTokens.updateLastUsed(SESSION_TOKEN_TYPE, lastUsed, sqlMap);
+			sqlMap.commit();
+		} finally
+		{
+			db.releaseSqlSession(sqlMap);
+		}
+		for (Map.Entry<String, Long> entry: batch.entrySet())
+			pendingActivity.remove(entry.getKey(), entry.getValue());
+		log.trace("Updated in db session activity timestamps of " + batch.size() + " sessions");
 	}
 	
 	@Override
@@ -264,9 +364,29 @@ public class SessionManagementImpl implements SessionManagement
 	{
 		LoginSession session = new LoginSession();
 		session.deserialize(token);
+		Long pendingLastUsed = pendingActivity.get(session.getId());
+		if (pendingLastUsed != null && pendingLastUsed > session.getLastUsed().getTime())
+			session.setLastUsed(new Date(pendingLastUsed));
 		return session;
 	}
 	
+	private Token session2token(LoginSession session)
+	{
+		Token token = new Token(SESSION_TOKEN_TYPE, session.getId(), session.getEntityId());
+		token.setContents(session.getTokenContents());
+		token.setCreated(session.getStarted());
+		token.setExpires(session.getExpires());
+		return token;
+	}
+	
+	private void forgetAPISession(String id)
+	{
+		String key = apiSessionKeys.remove(id);
+		if (key != null)
+			apiSessions.computeIfPresent(key, 
+					(k, cached) -> cached.token.getValue().equals(id) ? null : cached);
+	}
+	
 	private void updateLoginAttributes(long entityId, Date started) throws EngineException
 	{
 		SqlSession sqlMap = SqlSessionTL.get();
@@ -278,31 +398,108 @@ public class SessionManagementImpl implements SessionManagement
 		dbAttributes.addAttribute(entityId, lastAuthn, true, sqlMap);
 	}
 	
+	/**
+	 * Session used by API calls, stored in serialized form so that each caller gets its own copy.
+	 */
+	private static class CachedSession
+	{
+		private final Token token;
+		private final long cachedAt;
+		private final long maxInactivity;
+
+		private CachedSession(Token token, long maxInactivity, long cachedAt)
+		{
+			this.token = token;
+			this.maxInactivity = maxInactivity;
+			this.cachedAt = cachedAt;
+		}
+		
+		private boolean isValid(long now, long maxAge)
+		{
+			return now - cachedAt < Math.min(maxAge, maxInactivity);
+		}
+	}
+	
+	/**
+	 * Writes the recorded sessions activity to DB. Only the last usage time column is updated 
+	 * in batches, the serialized sessions are not touched.
+	 */
+	private class ActivityWriter implements Runnable
+	{
+		@Override
+		public void run()
+		{
+			try
+			{
+				writeActivity();
+			} catch (Exception e)
+			{
+				log.error("Can't store sessions activity timestamps", e);
+			}
+		}
+	}
+	
+	/**
+	 * Only the sessions with passed inactivity deadline are loaded, using the indexed DB column. 
+	 * The deadline is only a hint, as it is updated in background. Therefore each candidate 
+	 * is verified before removal.
+	 */
 	private class TerminateInactiveSessions implements Runnable
 	{
 		@Override
 		public void run()
 		{
-			List<Token> tokens = tokensManagement.getAllTokens(SESSION_TOKEN_TYPE);
-			long now = System.currentTimeMillis();
-			for (Token t: tokens)
+			Date now = new Date();
+			apiSessions.values().removeIf(cached -> !cached.isValid(now.getTime(), apiSessionsMaxAge));
+			List<String> candidates;
+			int removed;
+			do
+			{
+				candidates = getInactiveCandidates(now);
+				removed = 0;
+				for (String id: candidates)
+					if (removeIfInactive(id, now.getTime()))
+						removed++;
+			} while (candidates.size() == INACTIVE_SESSIONS_BATCH && removed > 0);
+		}
+		
+		private List<String> getInactiveCandidates(Date now)
+		{
+			SqlSession sqlMap = db.getSqlSession(false);
+			try
+			{
+				return dbTokens.getInactiveTokens(SESSION_TOKEN_TYPE, now, 
+						INACTIVE_SESSIONS_BATCH, sqlMap);
+			} finally
+			{
+				db.releaseSqlSession(sqlMap);
+			}
+		}
+		
+		private boolean removeIfInactive(String id, long now)
+		{
+			LoginSession session;
+			try
+			{
+				session = getSession(id);
+			} catch (WrongArgumentException e)
+			{
+				return false;
+			}
+			if (session.getExpires() != null)
+				return false;
+			long inactiveFor = now - session.getLastUsed().getTime(); 
+			if (inactiveFor <= session.getMaxInactivity())
+				return false;
+			log.debug("Expiring login session " + session + " inactive for: " + inactiveFor);
+			try
+			{
+				removeSession(session.getId(), false);
+				return true;
+			} catch (Exception e)
 			{
-				if (t.getExpires() != null)
-					continue;
-				LoginSession session = token2session(t);
-				long inactiveFor = now - session.getLastUsed().getTime(); 
-				if (inactiveFor > session.getMaxInactivity())
-				{
-					log.debug("Expiring login session " + session + " inactive for: " + 
-							inactiveFor);
-					try
-					{
-						removeSession(session.getId(), false);
-					} catch (Exception e)
-					{
-						log.error("Can't expire the session " + session, e);
-					}
-				}
+				log.error("Can't expire the session " + session, e);
+				return false;
 			}
 		}
 	}
@@ -5,10 +5,12 @@
 package pl.edu.icm.unity.engine.internal;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.ibatis.session.SqlSession;
@@ -41,11 +43,11 @@ import pl.edu.icm.unity.types.basic.EntityParam;
 public class TokensManagementImpl implements TokensManagement
 {
 	private static final Logger log = Log.getLogger(Log.U_SERVER, TokensManagementImpl.class);
+	private static final int EXPIRED_REMOVAL_BATCH = 1000;
 	private DBSessionManager db;
 	private IdentitiesResolver idResolver;
 	private DBTokens dbTokens;
-	private Map<String, List<TokenExpirationListener>> listeners = 
-			new HashMap<String, List<TokenExpirationListener>>();
+	private Map<String, List<TokenExpirationListener>> listeners = new ConcurrentHashMap<>();
 	
 	@Autowired
 	public TokensManagementImpl(DBSessionManager db, IdentitiesResolver idResolver,
@@ -60,7 +62,13 @@ public class TokensManagementImpl implements TokensManagement
 			@Override
 			public void run()
 			{
-				removeExpired();
+				try
+				{
+					removeExpired();
+				} catch (Exception e)
+				{
+					log.error("Problem removing expired tokens", e);
+				}
 			}
 		};
 		executorsService.getService().scheduleWithFixedDelay(cleaner, 30, 60, TimeUnit.SECONDS);
@@ -143,54 +151,62 @@ public class TokensManagementImpl implements TokensManagement
 		ret.setContents(token.getContents());
 		ret.setCreated(token.getCreated());
 		ret.setExpires(token.getExpires());
+		ret.setLastUsed(token.getLastUsed());
 		return ret;
 	}
 
 	@Override
-	public synchronized void addTokenExpirationListener(TokenExpirationListener listener, String type)
+	public void addTokenExpirationListener(TokenExpirationListener listener, String type)
 	{
-		List<TokenExpirationListener> l = listeners.get(type);
-		if (l == null)
-		{
-			l = new ArrayList<>();
-			listeners.put(type, l);
-		}
-		l.add(listener);
+		listeners.computeIfAbsent(type, t -> new CopyOnWriteArrayList<>()).add(listener);
 	}
 	
-	private synchronized void removeExpired()
+	/**
+	 * Expired tokens are removed in batches, each in a separate transaction. Only tokens 
+	 * of types with registered listeners are loaded, the remaining ones are deleted using their ids.
+	 */
+	private void removeExpired()
 	{
 		log.debug("Removing expired tokens");
-		SqlSession sql = db.getSqlSession(true);
+		Date now = new Date();
 		int removed = 0;
-		try
+		for (Map.Entry<String, List<TokenExpirationListener>> typeListeners: listeners.entrySet())
+			removed += removeExpired(typeListeners.getKey(), typeListeners.getValue(), now);
+		removed += removeExpired(null, Collections.emptyList(), now);
+		log.debug("Removed " + removed + " tokens in this round");
+	}
+
+	private int removeExpired(String type, List<TokenExpirationListener> typeListeners, Date now)
+	{
+		int removed = 0;
+		List<Long> expired;
+		do
 		{
-			List<TokenBean> tokens = dbTokens.getExpiredTokens(sql);
-			for (TokenBean t: tokens)
+			SqlSession sql = db.getSqlSession(true);
+			try
 			{
-				List<TokenExpirationListener> l = listeners.get(t.getType());
-				if (l != null)
-				{
-					Token tt = convert(t);
-					for (TokenExpirationListener listener: l)
-						listener.tokenExpired(tt);
-				}
-				try
-				{
-					dbTokens.removeToken(t.getName(), t.getType(), sql);
-					removed++;
-				} catch (Exception e)
-				{
-					log.error("Problem removing an expired token [" + t.getType() +
-							"] " + t.getName(), e);
-				}
+				expired = dbTokens.getExpiredTokenIds(type, now, EXPIRED_REMOVAL_BATCH, sql);
+				if (!typeListeners.isEmpty())
+					notifyExpired(dbTokens.getTokensById(expired, sql), typeListeners);
+				dbTokens.removeTokensById(expired, sql);
+				sql.commit();
+			} finally
+			{
+				db.releaseSqlSession(sql);
 			}
-			sql.commit();
-		} finally
+			removed += expired.size();
+		} while (expired.size() == EXPIRED_REMOVAL_BATCH);
+		return removed;
+	}
+	
+	private void notifyExpired(List<TokenBean> expired, List<TokenExpirationListener> typeListeners)
+	{
+		for (TokenBean t: expired)
 		{
-			db.releaseSqlSession(sql);
+			Token tt = convert(t);
+			for (TokenExpirationListener listener: typeListeners)
+				listener.tokenExpired(tt);
 		}
-		log.debug("Removed " + removed + " tokens in this round");
 	}
 	
 	@Transactional
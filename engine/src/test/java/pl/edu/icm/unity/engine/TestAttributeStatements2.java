@@ -62,6 +62,49 @@ public class TestAttributeStatements2 extends DBIntegrationTestBase
 		assertThat(aRet2.size(), is(1));
 	}
 
+	@Test
+	public void updatedStatementIsUsedAfterPreviousOneWasEvaluated() throws Exception
+	{
+		setupStateForConditions();
+		AttributeStatement2 statement1 = AttributeStatement2.getFixedEverybodyStatement(
+				new StringAttribute("a2", "/A", AttributeVisibility.local, "V1"));
+		groupA.setAttributeStatements(new AttributeStatement2[] {statement1});
+		groupsMan.updateGroup("/A", groupA);
+		Collection<AttributeExt<?>> aRet = attrsMan.getAllAttributes(entity, true, "/A", "a2", false);
+		assertThat(aRet.iterator().next().getValues().get(0), is((Object)"V1"));
+
+		AttributeStatement2 statement2 = AttributeStatement2.getFixedEverybodyStatement(
+				new StringAttribute("a2", "/A", AttributeVisibility.local, "V2"));
+		groupA.setAttributeStatements(new AttributeStatement2[] {statement2});
+		groupsMan.updateGroup("/A", groupA);
+
+		Collection<AttributeExt<?>> aRet2 = attrsMan.getAllAttributes(entity, true, "/A", "a2", false);
+		assertThat(aRet2.size(), is(1));
+		assertThat(aRet2.iterator().next().getValues().get(0), is((Object)"V2"));
+	}
+
+	@Test
+	public void attributeFromStatementIsUpdatedAfterChangeOfEntityMembership() throws Exception
+	{
+		setupStateForConditions();
+		AttributeStatement2 statement = new AttributeStatement2("groups contains '/A/C'", null,
+				ConflictResolution.skip,
+				new StringAttribute("a2", "/A", AttributeVisibility.local, "INC"));
+		groupA.setAttributeStatements(new AttributeStatement2[] {statement});
+		groupsMan.updateGroup("/A", groupA);
+		groupsMan.addGroup(new Group("/A/C"));
+		Collection<AttributeExt<?>> aRet = attrsMan.getAllAttributes(entity, true, "/A", "a2", false);
+		assertThat(aRet.isEmpty(), is(true));
+
+		groupsMan.addMemberFromParent("/A/C", entity);
+
+		Collection<AttributeExt<?>> aRet2 = attrsMan.getAllAttributes(entity, true, "/A", "a2", false);
+		assertThat(aRet2.size(), is(1));
+		aRet2.iterator().next().getValues().clear();
+		Collection<AttributeExt<?>> aRet3 = attrsMan.getAllAttributes(entity, true, "/A", "a2", false);
+		assertThat(aRet3.iterator().next().getValues().size(), is(1));
+	}
+
 	
 	private void setupStateForConditions() throws Exception
 	{
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.engine;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.apache.ibatis.session.SqlSession;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import pl.edu.icm.unity.db.DBSessionManager;
+import pl.edu.icm.unity.db.mapper.AttributesMapper;
+import pl.edu.icm.unity.db.model.AttributeTypeBean;
+import pl.edu.icm.unity.db.resolvers.AttributesResolver;
+import pl.edu.icm.unity.json.AttributeTypeSerializer;
+import pl.edu.icm.unity.stdext.attr.StringAttributeSyntax;
+import pl.edu.icm.unity.types.basic.AttributeType;
+
+/**
+ * Checks the in-memory registry of attribute types.
+ * @author K. Benedyczak
+ */
+public class TestAttributeTypesRegistry extends DBIntegrationTestBase
+{
+	@Autowired
+	private DBSessionManager db;
+	@Autowired
+	private AttributesResolver attributesResolver;
+	@Autowired
+	private AttributeTypeSerializer atSerializer;
+
+	@Test
+	public void updatedTypeIsReturned() throws Exception
+	{
+		attrsMan.addAttributeType(createType(10));
+		attrsMan.getAttributeTypesAsMap();
+
+		attrsMan.updateAttributeType(createType(20));
+
+		assertThat(getMaxLength(attrsMan.getAttributeTypesAsMap().get("at")), is(20));
+	}
+
+	@Test
+	public void typeChangedOnOtherNodeIsPickedUpAfterInvalidation() throws Exception
+	{
+		attrsMan.addAttributeType(createType(10));
+		attrsMan.getAttributeTypesAsMap();
+		updateBypassingCaches(createType(20));
+
+		AttributeType beforeInvalidation = attrsMan.getAttributeTypesAsMap().get("at");
+		attributesResolver.invalidateAll();
+		AttributeType afterInvalidation = attrsMan.getAttributeTypesAsMap().get("at");
+
+		assertThat(getMaxLength(beforeInvalidation), is(10));
+		assertThat(getMaxLength(afterInvalidation), is(20));
+	}
+
+	@Test
+	public void returnedTypesAreCopies() throws Exception
+	{
+		attrsMan.addAttributeType(createType(10));
+		AttributeType first = attrsMan.getAttributeTypesAsMap().get("at");
+		((StringAttributeSyntax) first.getValueType()).setMaxLength(30);
+		first.getMetadata().put("modified", "");
+		first.setMaxElements(5);
+
+		AttributeType second = attrsMan.getAttributeTypesAsMap().get("at");
+
+		assertThat(second, not(sameInstance(first)));
+		assertThat(second.getValueType(), not(sameInstance(first.getValueType())));
+		assertThat(getMaxLength(second), is(10));
+		assertThat(second.getMetadata().isEmpty(), is(true));
+		assertThat(second.getMaxElements(), is(1));
+	}
+
+	private AttributeType createType(int maxLength) throws Exception
+	{
+		StringAttributeSyntax syntax = new StringAttributeSyntax();
+		syntax.setMaxLength(maxLength);
+		return new AttributeType("at", syntax);
+	}
+
+	private int getMaxLength(AttributeType type)
+	{
+		return ((StringAttributeSyntax) type.getValueType()).getMaxLength();
+	}
+
+	/**
+	 * Simulates a change performed on other node.
+	 */
+	private void updateBypassingCaches(AttributeType updated)
+	{
+		SqlSession sql = db.getSqlSession(true);
+		try
+		{
+			sql.getMapper(AttributesMapper.class).updateAttributeType(new AttributeTypeBean(
+					updated.getName(), atSerializer.toJson(updated),
+					updated.getValueType().getValueSyntaxId()));
+			sql.commit();
+		} finally
+		{
+			db.releaseSqlSession(sql);
+		}
+	}
+}
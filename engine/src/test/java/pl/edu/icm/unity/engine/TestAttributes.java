@@ -11,14 +11,18 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 
 import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 
+import pl.edu.icm.unity.exceptions.EngineException;
 import pl.edu.icm.unity.exceptions.IllegalAttributeTypeException;
 import pl.edu.icm.unity.exceptions.IllegalAttributeValueException;
 import pl.edu.icm.unity.exceptions.IllegalGroupValueException;
 import pl.edu.icm.unity.exceptions.SchemaConsistencyException;
+import pl.edu.icm.unity.server.api.internal.TransactionalRunner;
 import pl.edu.icm.unity.stdext.attr.EnumAttributeSyntax;
 import pl.edu.icm.unity.stdext.attr.IntegerAttributeSyntax;
 import pl.edu.icm.unity.stdext.attr.StringAttribute;
@@ -38,6 +42,14 @@ import pl.edu.icm.unity.types.basic.IdentityParam;
 
 public class TestAttributes extends DBIntegrationTestBase
 {
+	/**
+	 * More than fits in a single page of instances read when attribute type is modified.
+	 */
+	private static final int MANY_INSTANCES = 1001;
+	
+	@Autowired
+	private TransactionalRunner tx;
+	
 	@Test
 	public void testSyntaxes() throws Exception
 	{
@@ -315,10 +327,125 @@ public class TestAttributes extends DBIntegrationTestBase
 		} catch (IllegalAttributeTypeException e) {/*OK*/}
 	}
 	
+	@Test
+	public void updateOfTypeChecksAllOfManyInstances() throws Exception
+	{
+		setupMockAuthn();
+		AttributeType at = createSimpleAT("some");
+		attrsMan.addAttributeType(at);
+		List<EntityParam> entities = addInstances("some", MANY_INSTANCES);
+		EntityParam last = entities.get(entities.size() - 1);
+		attrsMan.setAttribute(last, new StringAttribute("some", "/", AttributeVisibility.local, 
+				"1", "2", "3"), true);
+		
+		try
+		{
+			at.setMaxElements(2);
+			attrsMan.updateAttributeType(at);
+			fail("Managed to update attr setting restrictions incompatible with the last instance");
+		} catch (IllegalAttributeTypeException e) {/*OK*/}
+		
+		at.setMaxElements(3);
+		attrsMan.updateAttributeType(at);
+	}
+
+	@Test
+	public void typeWithManyInstancesIsRemoved() throws Exception
+	{
+		setupMockAuthn();
+		attrsMan.addAttributeType(createSimpleAT("some"));
+		List<EntityParam> entities = addInstances("some", MANY_INSTANCES);
+		
+		try
+		{
+			attrsMan.removeAttributeType("some", false);
+			fail("Managed to remove attr type with values");
+		} catch (IllegalAttributeTypeException e) {/*OK*/}
+		
+		attrsMan.removeAttributeType("some", true);
+		
+		assertNull(getAttributeTypeByName(attrsMan.getAttributeTypes(), "some"));
+		for (EntityParam entity: Arrays.asList(entities.get(0), entities.get(entities.size() - 1)))
+			for (AttributeExt<?> attribute: attrsMan.getAllAttributes(entity, false, "/", null, false))
+				assertNotEquals("some", attribute.getName());
+	}
+	
+	/**
+	 * Adds a single valued attribute of the given type to each of the given number of new entities. 
+	 */
+	private List<EntityParam> addInstances(String type, int count) throws EngineException
+	{
+		List<EntityParam> ret = new ArrayList<>();
+		tx.runInTransaction(() -> {
+			for (int i=0; i<count; i++)
+			{
+				Identity id = idsMan.addEntity(new IdentityParam(X500Identity.ID, "cn=user" + i), 
+						"crMock", EntityState.valid, false);
+				EntityParam entity = new EntityParam(id.getEntityId());
+				attrsMan.setAttribute(entity, new StringAttribute(type, "/", AttributeVisibility.local, 
+						"v" + i), false);
+				ret.add(entity);
+			}
+		});
+		return ret;
+	}
+	
 	/**
 	 * Tests {@link StringAttributeSyntax}, at the same time checking if the generic, wrapping infrastructure is
 	 * working correctly.
 	 */
+	@Test
+	public void entitiesAreFoundByAttributeValue() throws Exception
+	{
+		setupMockAuthn();
+		groupsMan.addGroup(new Group("/test"));
+		Identity id = idsMan.addEntity(new IdentityParam(X500Identity.ID, "cn=golbi"), "crMock", 
+				EntityState.valid, false);
+		EntityParam entity = new EntityParam(id.getEntityId());
+		Identity id2 = idsMan.addEntity(new IdentityParam(X500Identity.ID, "cn=golbi2"), "crMock", 
+				EntityState.valid, false);
+		EntityParam entity2 = new EntityParam(id2.getEntityId());
+		groupsMan.addMemberFromParent("/test", entity);
+		AttributeType at = new AttributeType("mail", new StringAttributeSyntax());
+		at.setMaxElements(3);
+		attrsMan.addAttributeType(at);
+		
+		attrsMan.setAttribute(entity, new StringAttribute("mail", "/", AttributeVisibility.full, 
+				"a@example.com", "b@example.com"), false);
+		attrsMan.setAttribute(entity, new StringAttribute("mail", "/test", AttributeVisibility.full, 
+				"c@example.com"), false);
+		attrsMan.setAttribute(entity2, new StringAttribute("mail", "/", AttributeVisibility.full, 
+				"b@example.com"), false);
+		
+		assertEquals(Collections.singleton(id.getEntityId()), 
+				attrsMan.getEntitiesWithAttributeValue("mail", null, "a@example.com"));
+		assertEquals(new HashSet<>(Arrays.asList(id.getEntityId(), id2.getEntityId())), 
+				attrsMan.getEntitiesWithAttributeValue("mail", "/", "b@example.com"));
+		assertTrue(attrsMan.getEntitiesWithAttributeValue("mail", null, "A@example.com").isEmpty());
+		assertTrue(attrsMan.getEntitiesWithAttributeValue("mail", "/", "c@example.com").isEmpty());
+		assertEquals(Collections.singleton(id.getEntityId()), 
+				attrsMan.getEntitiesWithAttributeValue("mail", "/test", "c@example.com"));
+		
+		attrsMan.setAttribute(entity, new StringAttribute("mail", "/", AttributeVisibility.full, 
+				"d@example.com"), true);
+		assertTrue(attrsMan.getEntitiesWithAttributeValue("mail", null, "a@example.com").isEmpty());
+		assertEquals(Collections.singleton(id2.getEntityId()), 
+				attrsMan.getEntitiesWithAttributeValue("mail", null, "b@example.com"));
+		assertEquals(Collections.singleton(id.getEntityId()), 
+				attrsMan.getEntitiesWithAttributeValue("mail", null, "d@example.com"));
+
+		attrsMan.removeAttribute(entity2, "/", "mail");
+		assertTrue(attrsMan.getEntitiesWithAttributeValue("mail", null, "b@example.com").isEmpty());
+		groupsMan.removeMember("/test", entity);
+		assertTrue(attrsMan.getEntitiesWithAttributeValue("mail", null, "c@example.com").isEmpty());
+		
+		try
+		{
+			attrsMan.getEntitiesWithAttributeValue("missing", null, "a@example.com");
+			fail("Searched by a missing attribute type");
+		} catch (IllegalAttributeTypeException e) {}
+	}
+	
 	@Test
 	public void testStringAT() throws Exception
 	{
@@ -16,6 +16,7 @@ import pl.edu.icm.unity.stdext.credential.PasswordToken;
 import pl.edu.icm.unity.stdext.identity.UsernameIdentity;
 import pl.edu.icm.unity.sysattrs.SystemAttributeTypes;
 import pl.edu.icm.unity.types.EntityState;
+import pl.edu.icm.unity.types.basic.AttributeStatement2;
 import pl.edu.icm.unity.types.basic.AttributeVisibility;
 import pl.edu.icm.unity.types.basic.EntityParam;
 import pl.edu.icm.unity.types.basic.Group;
@@ -121,4 +122,47 @@ public class TestAuthorization extends DBIntegrationTestBase
 				new PasswordToken("foo12!~").toJson());
 		idsMan.getIdentityTypes();
 	}
+	
+	@Test
+	public void roleChangesAreEffectiveImmediately() throws Exception
+	{
+		IdentityParam toAdd = new IdentityParam(UsernameIdentity.ID, "user1");
+		Identity added = idsMan.addEntity(toAdd, EngineInitialization.DEFAULT_CREDENTIAL_REQUIREMENT, 
+				EntityState.valid, false);
+		EntityParam entity = new EntityParam(added.getEntityId());
+		attrsMan.setAttribute(entity, new EnumAttribute(SystemAttributeTypes.AUTHORIZATION_ROLE,
+				"/", AttributeVisibility.local, AuthorizationManagerImpl.CONTENTS_MANAGER_ROLE), false);
+		setupUserContext("user1", false);
+		groupsMan.addGroup(new Group("/A"));
+		
+		setupUserContext("admin", false);
+		attrsMan.setAttribute(entity, new EnumAttribute(SystemAttributeTypes.AUTHORIZATION_ROLE,
+				"/", AttributeVisibility.local, AuthorizationManagerImpl.USER_ROLE), true);
+		setupUserContext("user1", false);
+		try
+		{
+			groupsMan.addGroup(new Group("/B"));
+			fail("addGrp possible after role was revoked");
+		} catch(AuthorizationException e) {}
+
+		setupUserContext("admin", false);
+		groupsMan.addMemberFromParent("/A", entity);
+		Group groupA = new Group("/A");
+		groupA.setAttributeStatements(new AttributeStatement2[] {
+				AttributeStatement2.getFixedEverybodyStatement(new EnumAttribute(
+						SystemAttributeTypes.AUTHORIZATION_ROLE, "/A", AttributeVisibility.local, 
+						AuthorizationManagerImpl.CONTENTS_MANAGER_ROLE))});
+		groupsMan.updateGroup("/A", groupA);
+		setupUserContext("user1", false);
+		groupsMan.addGroup(new Group("/A/B"));
+		
+		setupUserContext("admin", false);
+		groupsMan.removeMember("/A", entity);
+		setupUserContext("user1", false);
+		try
+		{
+			groupsMan.addGroup(new Group("/A/C"));
+			fail("addGrp possible after membership was removed");
+		} catch(AuthorizationException e) {}
+	}
 }
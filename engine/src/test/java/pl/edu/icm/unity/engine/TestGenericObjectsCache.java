@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.engine;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.ibatis.session.SqlSession;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import pl.edu.icm.unity.db.DB;
+import pl.edu.icm.unity.db.DBGeneric;
+import pl.edu.icm.unity.db.DBSessionManager;
+import pl.edu.icm.unity.db.cache.CacheInvalidationManager;
+import pl.edu.icm.unity.db.generic.ac.AttributeClassDB;
+import pl.edu.icm.unity.db.generic.ac.AttributeClassHandler;
+import pl.edu.icm.unity.db.mapper.GenericMapper;
+import pl.edu.icm.unity.db.model.GenericObjectBean;
+import pl.edu.icm.unity.server.utils.UnityServerConfiguration;
+import pl.edu.icm.unity.types.basic.AttributesClass;
+
+/**
+ * Checks caching of decoded generic objects. A separate {@link DBGeneric} is used, so its cache
+ * is not populated by other code.
+ * @author K. Benedyczak
+ */
+public class TestGenericObjectsCache extends DBIntegrationTestBase
+{
+	private static final String TYPE = AttributeClassHandler.ATTRIBUTE_CLASS_OBJECT_TYPE;
+
+	@Autowired
+	private DBSessionManager db;
+	@Autowired
+	private DB dbInfo;
+	@Autowired
+	private CacheInvalidationManager cacheInvalidation;
+	@Autowired
+	private AttributeClassHandler handler;
+	@Autowired
+	private AttributeClassDB acDB;
+
+	private AtomicInteger decodings = new AtomicInteger();
+	private Function<GenericObjectBean, AttributesClass> decoder = raw -> {
+		decodings.incrementAndGet();
+		return handler.fromBlob(raw, null);
+	};
+
+	@Test
+	public void decodedObjectIsReusedFromCache() throws Exception
+	{
+		DBGeneric dbGeneric = createDBGeneric(100);
+		attrsMan.addAttributeClass(createAC("ac1", "a1"));
+
+		AttributesClass first = getDecoded(dbGeneric, "ac1");
+		AttributesClass second = getDecoded(dbGeneric, "ac1");
+
+		assertThat(decodings.get(), is(1));
+		assertThat(second, sameInstance(first));
+	}
+
+	@Test
+	public void decodedObjectIsDroppedAfterUpdate() throws Exception
+	{
+		DBGeneric dbGeneric = createDBGeneric(100);
+		attrsMan.addAttributeClass(createAC("ac1", "a1"));
+		getDecoded(dbGeneric, "ac1");
+
+		attrsMan.updateAttributeClass(createAC("ac1", "a2"));
+		AttributesClass updated = getDecoded(dbGeneric, "ac1");
+
+		assertThat(decodings.get(), is(2));
+		assertThat(updated.getAllowed(), is(Collections.singleton("a2")));
+	}
+
+	@Test
+	public void decodedObjectIsDroppedAfterRemoval() throws Exception
+	{
+		DBGeneric dbGeneric = createDBGeneric(100);
+		attrsMan.addAttributeClass(createAC("ac1", "a1"));
+		getDecoded(dbGeneric, "ac1");
+
+		attrsMan.removeAttributeClass("ac1");
+
+		assertThat(getDecoded(dbGeneric, "ac1"), is(nullValue()));
+	}
+
+	@Test
+	public void decodedObjectExpiresAfterTTL() throws Exception
+	{
+		DBGeneric dbGeneric = createDBGeneric(1);
+		attrsMan.addAttributeClass(createAC("ac1", "a1"));
+		getDecoded(dbGeneric, "ac1");
+		updateBypassingCaches(createAC("ac1", "a2"));
+
+		AttributesClass beforeExpiration = getDecoded(dbGeneric, "ac1");
+		Thread.sleep(1100);
+		AttributesClass afterExpiration = getDecoded(dbGeneric, "ac1");
+
+		assertThat(beforeExpiration.getAllowed(), is(Collections.singleton("a1")));
+		assertThat(afterExpiration.getAllowed(), is(Collections.singleton("a2")));
+		assertThat(decodings.get(), is(2));
+	}
+
+	@Test
+	public void cachedObjectsAreReturnedAsCopies() throws Exception
+	{
+		attrsMan.addAttributeClass(createAC("ac1", "a1"));
+		SqlSession sql = db.getSqlSession(false);
+		try
+		{
+			AttributesClass first = acDB.get("ac1", sql);
+			first.getAllowed().add("modified");
+			AttributesClass second = acDB.getAllAsMap(sql).get("ac1");
+
+			assertThat(second, not(sameInstance(first)));
+			assertThat(second.getAllowed(), is(Collections.singleton("a1")));
+		} finally
+		{
+			db.releaseSqlSession(sql);
+		}
+	}
+
+	private DBGeneric createDBGeneric(int ttl)
+	{
+		UnityServerConfiguration cfg = mock(UnityServerConfiguration.class);
+		when(cfg.getIntValue(UnityServerConfiguration.CACHES_TTL)).thenReturn(ttl);
+		DBGeneric dbGeneric = new DBGeneric(dbInfo, cacheInvalidation, cfg);
+		dbGeneric.enableCaching(TYPE);
+		return dbGeneric;
+	}
+
+	private AttributesClass getDecoded(DBGeneric dbGeneric, String name)
+	{
+		SqlSession sql = db.getSqlSession(false);
+		try
+		{
+			return dbGeneric.getDecodedObject(name, TYPE, sql, decoder);
+		} finally
+		{
+			db.releaseSqlSession(sql);
+		}
+	}
+
+	/**
+	 * Simulates a change performed on other node.
+	 */
+	private void updateBypassingCaches(AttributesClass updated)
+	{
+		SqlSession sql = db.getSqlSession(true);
+		try
+		{
+			GenericObjectBean blob = handler.toBlob(updated, sql);
+			sql.getMapper(GenericMapper.class).updateByNameType(blob);
+			sql.commit();
+		} finally
+		{
+			db.releaseSqlSession(sql);
+		}
+	}
+
+	private AttributesClass createAC(String name, String allowed)
+	{
+		return new AttributesClass(name, "", Collections.singleton(allowed),
+				Collections.<String>emptySet(), false, Collections.<String>emptySet());
+	}
+}
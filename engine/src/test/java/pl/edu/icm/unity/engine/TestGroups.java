@@ -4,13 +4,19 @@
  */
 package pl.edu.icm.unity.engine;
 
+import static com.googlecode.catchexception.CatchException.catchException;
+import static com.googlecode.catchexception.CatchException.caughtException;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.isA;
+import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import org.junit.Test;
@@ -22,6 +28,7 @@ import pl.edu.icm.unity.exceptions.WrongArgumentException;
 import pl.edu.icm.unity.stdext.attr.StringAttribute;
 import pl.edu.icm.unity.stdext.attr.StringAttributeSyntax;
 import pl.edu.icm.unity.stdext.identity.UsernameIdentity;
+import pl.edu.icm.unity.types.EntityState;
 import pl.edu.icm.unity.types.I18nString;
 import pl.edu.icm.unity.types.basic.AttributeStatement2;
 import pl.edu.icm.unity.types.basic.AttributeType;
@@ -29,6 +36,8 @@ import pl.edu.icm.unity.types.basic.AttributeVisibility;
 import pl.edu.icm.unity.types.basic.EntityParam;
 import pl.edu.icm.unity.types.basic.Group;
 import pl.edu.icm.unity.types.basic.GroupContents;
+import pl.edu.icm.unity.types.basic.GroupMembership;
+import pl.edu.icm.unity.types.basic.IdentityParam;
 import pl.edu.icm.unity.types.basic.IdentityTaV;
 import pl.edu.icm.unity.types.basic.IdentityType;
 
@@ -209,4 +218,96 @@ public class TestGroups extends DBIntegrationTestBase
 		assertThat(abChildren.contains("/A/B"), is(true));
 		assertThat(abChildren.contains("/A/B/D"), is(true));
 	}
+	
+	@Test
+	public void recreatedGroupIsResolved() throws Exception
+	{
+		groupsMan.addGroup(new Group("/A"));
+		groupsMan.addGroup(new Group("/A/B"));
+		groupsMan.getContents("/A/B", GroupContents.METADATA);
+		
+		groupsMan.removeGroup("/A", true);
+		try
+		{
+			groupsMan.getContents("/A/B", GroupContents.METADATA);
+			fail("removed group was resolved");
+		} catch (IllegalGroupValueException e) {}
+		
+		groupsMan.addGroup(new Group("/A"));
+		Group ab = new Group("/A/B");
+		ab.setDescription(new I18nString("recreated"));
+		groupsMan.addGroup(ab);
+		
+		GroupContents abC = groupsMan.getContents("/A/B", GroupContents.METADATA);
+		assertEquals(new I18nString("recreated"), abC.getGroup().getDescription());
+		GroupContents aC = groupsMan.getContents("/A", GroupContents.GROUPS);
+		assertEquals(1, aC.getSubGroups().size());
+		assertEquals("/A/B", aC.getSubGroups().get(0));
+	}
+	
+	@Test
+	public void membersArePaged() throws Exception
+	{
+		groupsMan.addGroup(new Group("/A"));
+		List<Long> entities = new ArrayList<>();
+		for (int i=0; i<3; i++)
+		{
+			IdentityParam idParam = new IdentityParam(UsernameIdentity.ID, "member" + i);
+			entities.add(idsMan.addEntity(idParam, "crMock", EntityState.valid, false).getEntityId());
+		}
+		for (int i=2; i>=0; i--)
+		{
+			groupsMan.addMemberFromParent("/A", new EntityParam(entities.get(i)));
+			Thread.sleep(2);
+		}
+		
+		assertThat(groupsMan.getMembersCount("/A"), is(3));
+		
+		List<GroupMembership> page = groupsMan.getMembers("/A", 1, 1, false, null);
+		assertThat(page.size(), is(1));
+		assertThat(page.get(0).getEntityId(), is(entities.get(1)));
+		assertThat(page.get(0).getCreationTs(), is(notNullValue()));
+
+		List<GroupMembership> byCreation = groupsMan.getMembers("/A", 0, 2, true, null);
+		assertThat(byCreation.size(), is(2));
+		assertThat(byCreation.get(0).getEntityId(), is(entities.get(2)));
+		assertThat(byCreation.get(1).getEntityId(), is(entities.get(1)));
+		
+		List<GroupMembership> filtered = groupsMan.getMembers("/A", 0, 10, false, 
+				new IdentityTaV(UsernameIdentity.ID, "member0"));
+		assertThat(filtered.size(), is(1));
+		assertThat(filtered.get(0).getEntityId(), is(entities.get(0)));
+		
+		List<GroupMembership> missing = groupsMan.getMembers("/A", 0, 10, false, 
+				new IdentityTaV(UsernameIdentity.ID, "missing"));
+		assertThat(missing.isEmpty(), is(true));
+	}
+	
+	@Test
+	public void membersPageIsLimitedToConfiguredMaximum() throws Exception
+	{
+		groupsMan.addGroup(new Group("/A"));
+		for (int i=0; i<3; i++)
+		{
+			IdentityParam idParam = new IdentityParam(UsernameIdentity.ID, "member" + i);
+			long entity = idsMan.addEntity(idParam, "crMock", EntityState.valid, false).getEntityId();
+			groupsMan.addMemberFromParent("/A", new EntityParam(entity));
+		}
+		
+		List<GroupMembership> page = groupsMan.getMembers("/A", 0, 10, false, null);
+		
+		assertThat(page.size(), is(2));
+	}
+
+	@Test
+	public void negativeMembersOffsetOrLimitIsRejected() throws Exception
+	{
+		groupsMan.addGroup(new Group("/A"));
+		
+		catchException(groupsMan).getMembers("/A", -1, 10, false, null);
+		assertThat(caughtException(), isA(WrongArgumentException.class));
+		
+		catchException(groupsMan).getMembers("/A", 0, -1, false, null);
+		assertThat(caughtException(), isA(WrongArgumentException.class));
+	}
 }
@@ -35,6 +35,8 @@ import pl.edu.icm.unity.exceptions.IllegalAttributeTypeException;
 import pl.edu.icm.unity.exceptions.IllegalGroupValueException;
 import pl.edu.icm.unity.exceptions.IllegalIdentityValueException;
 import pl.edu.icm.unity.exceptions.SchemaConsistencyException;
+import pl.edu.icm.unity.server.api.internal.UserInformation;
+import pl.edu.icm.unity.server.api.internal.UserInformationProvider;
 import pl.edu.icm.unity.stdext.attr.IntegerAttributeSyntax;
 import pl.edu.icm.unity.stdext.attr.StringAttributeSyntax;
 import pl.edu.icm.unity.stdext.identity.EmailIdentity;
@@ -49,6 +51,7 @@ import pl.edu.icm.unity.types.EntityState;
 import pl.edu.icm.unity.types.basic.Attribute;
 import pl.edu.icm.unity.types.basic.AttributeExt;
 import pl.edu.icm.unity.types.basic.AttributeType;
+import pl.edu.icm.unity.types.basic.AttributeVisibility;
 import pl.edu.icm.unity.types.basic.Entity;
 import pl.edu.icm.unity.types.basic.EntityParam;
 import pl.edu.icm.unity.types.basic.Group;
@@ -63,6 +66,8 @@ public class TestIdentities extends DBIntegrationTestBase
 {
 	@Autowired
 	private EntitiesScheduledUpdater entitiesUpdater;
+	@Autowired
+	private UserInformationProvider userInfoProvider;
 	private EntityParam entityParam;
 	
 	@Test
@@ -597,6 +602,67 @@ public class TestIdentities extends DBIntegrationTestBase
 		assertTrue(getByType(e5, PersistentIdentity.ID).getValue().length() > 0);
 	}
 	
+	@Test
+	public void userInformationIsEquivalentToSeparateQueries() throws Exception
+	{
+		setupMockAuthn();
+		Identity id = idsMan.addEntity(new IdentityParam(X500Identity.ID, "CN=golbi"), "crMock", 
+				EntityState.valid, false);
+		EntityParam entityParam = new EntityParam(id.getEntityId());
+		groupsMan.addGroup(new Group("/A"));
+		groupsMan.addMemberFromParent("/A", entityParam);
+		
+		UserInformation info = userInfoProvider.getUserInformation(entityParam, "/", "target1", true);
+		
+		assertEquals(idsMan.getGroups(entityParam).keySet(), new HashSet<>(info.getGroups()));
+		assertEquals(attrsMan.getAttributes(entityParam, "/", null).size(), info.getAttributes().size());
+		for (AttributeExt<?> attribute: info.getAttributes())
+			assertNotEquals(AttributeVisibility.local, attribute.getVisibility());
+		Entity full = info.getEntity();
+		assertEquals(4, full.getIdentities().length);
+		assertEquals(getByType(full, TargetedPersistentIdentity.ID).getValue(),
+				getByType(idsMan.getEntity(entityParam, "target1", false, "/"), 
+						TargetedPersistentIdentity.ID).getValue());
+		assertNotNull(full.getCredentialInfo());
+	}
+	
+	@Test
+	public void bulkResolutionIsEquivalentToSeparateQueries() throws Exception
+	{
+		setupMockAuthn();
+		Identity id1 = idsMan.addEntity(new IdentityParam(X500Identity.ID, "CN=golbi"), "crMock", 
+				EntityState.valid, false);
+		Identity id2 = idsMan.addEntity(new IdentityParam(X500Identity.ID, "CN=golbi2"), "crMock", 
+				EntityState.valid, false);
+		groupsMan.addGroup(new Group("/A"));
+		groupsMan.addMemberFromParent("/A", new EntityParam(id1.getEntityId()));
+		Set<Long> ids = Sets.newHashSet(id1.getEntityId(), id2.getEntityId(), 9999l);
+		
+		Map<Long, Entity> entities = idsMan.getEntities(ids, "/", true);
+		Map<Long, Collection<AttributeExt<?>>> rootAttributes = attrsMan.getAllAttributes(ids, true, "/", 
+				null, false);
+		Map<Long, Collection<AttributeExt<?>>> groupAttributes = attrsMan.getAllAttributes(ids, true, "/A", 
+				null, false);
+		
+		assertEquals(Sets.newHashSet(id1.getEntityId(), id2.getEntityId()), entities.keySet());
+		assertEquals(Sets.newHashSet(id1.getEntityId(), id2.getEntityId()), rootAttributes.keySet());
+		assertEquals(Sets.newHashSet(id1.getEntityId()), groupAttributes.keySet());
+		for (Identity id: new Identity[] {id1, id2})
+		{
+			EntityParam entityParam = new EntityParam(id.getEntityId());
+			Entity single = idsMan.getEntityNoContext(entityParam, "/");
+			Entity bulk = entities.get(id.getEntityId());
+			assertEquals(single.getIdentities().length, bulk.getIdentities().length);
+			assertEquals(single.getState(), bulk.getState());
+			assertEquals(single.getCredentialInfo().getCredentialRequirementId(), 
+					bulk.getCredentialInfo().getCredentialRequirementId());
+			assertEquals(attrsMan.getAllAttributes(entityParam, true, "/", null, false).size(), 
+					rootAttributes.get(id.getEntityId()).size());
+		}
+		assertEquals(attrsMan.getAllAttributes(new EntityParam(id1), true, "/A", null, false).size(), 
+				groupAttributes.get(id1.getEntityId()).size());
+	}
+	
 	private Identity getByType(Entity e, String type)
 	{
 		for (Identity id: e.getIdentities())
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.apache.ibatis.session.SqlSession;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+
+import pl.edu.icm.unity.db.DBIdentities;
+import pl.edu.icm.unity.db.DBSessionManager;
+import pl.edu.icm.unity.server.api.internal.SessionManagement;
+import pl.edu.icm.unity.server.authn.InvocationContext;
+import pl.edu.icm.unity.stdext.identity.TransientIdentity;
+import pl.edu.icm.unity.stdext.identity.X500Identity;
+import pl.edu.icm.unity.types.EntityState;
+import pl.edu.icm.unity.types.basic.Entity;
+import pl.edu.icm.unity.types.basic.EntityParam;
+import pl.edu.icm.unity.types.basic.Identity;
+import pl.edu.icm.unity.types.basic.IdentityParam;
+
+/**
+ * Session bound identities with the non default configuration, where they are kept in memory.
+ * @author K. Benedyczak
+ */
+@ContextConfiguration(locations={"classpath*:META-INF/components.xml", 
+		"classpath:META-INF/test-sessionIdentitiesInMemory.xml"}, inheritLocations=false)
+public class TestSessionIdentitiesInMemory extends DBIntegrationTestBase
+{
+	@Autowired
+	private SessionManagement sessionMan;
+	@Autowired
+	private DBIdentities dbIdentities;
+	@Autowired
+	private DBSessionManager db;
+	
+	@Test
+	public void transientIdentityIsRemovedWithLoginSession() throws Exception
+	{
+		setupMockAuthn();
+		setupAdmin();
+		Identity id = idsMan.addEntity(new IdentityParam(X500Identity.ID, "CN=golbi"), "crMock", 
+				EntityState.valid, false);
+		EntityParam entityParam = new EntityParam(id.getEntityId());
+		
+		Entity e1 = idsMan.getEntity(entityParam, "target1", true, "/");
+		Entity e2 = idsMan.getEntity(entityParam, "target1", true, "/");
+		assertEquals(getTransient(e1.getIdentities()).getValue(), 
+				getTransient(e2.getIdentities()).getValue());
+		
+		sessionMan.removeSession(InvocationContext.getCurrent().getLoginSession().getId(), false);
+		
+		Entity e3 = idsMan.getEntity(entityParam, "target1", false, "/");
+		assertNull(getTransient(e3.getIdentities()));
+	}
+	
+	@Test
+	public void transientIdentityIsDroppedWithRolledBackTransaction() throws Exception
+	{
+		setupMockAuthn();
+		setupAdmin();
+		Identity id = idsMan.addEntity(new IdentityParam(X500Identity.ID, "CN=golbi"), "crMock", 
+				EntityState.valid, false);
+		
+		SqlSession sql = db.getSqlSession(true);
+		try
+		{
+			Identity[] created = dbIdentities.getIdentitiesForEntity(id.getEntityId(), "target1", true, sql);
+			assertNotNull(getTransient(created));
+			sql.rollback();
+		} finally
+		{
+			db.releaseSqlSession(sql);
+		}
+		
+		Entity e1 = idsMan.getEntity(new EntityParam(id.getEntityId()), "target1", false, "/");
+		assertNull(getTransient(e1.getIdentities()));
+	}
+	
+	private Identity getTransient(Identity[] identities)
+	{
+		for (Identity identity: identities)
+			if (identity.getTypeId().equals(TransientIdentity.ID))
+				return identity;
+		return null;
+	}
+}
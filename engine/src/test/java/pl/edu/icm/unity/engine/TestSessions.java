@@ -11,17 +11,22 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.Map;
 
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import pl.edu.icm.unity.engine.internal.EngineInitialization;
+import pl.edu.icm.unity.engine.internal.SessionManagementImpl;
 import pl.edu.icm.unity.exceptions.EngineException;
 import pl.edu.icm.unity.exceptions.WrongArgumentException;
 import pl.edu.icm.unity.server.api.internal.LoginSession;
 import pl.edu.icm.unity.server.api.internal.SessionManagement;
 import pl.edu.icm.unity.server.api.internal.SessionManagement.AttributeUpdater;
+import pl.edu.icm.unity.server.api.internal.Token;
+import pl.edu.icm.unity.server.api.internal.TokensManagement;
 import pl.edu.icm.unity.server.utils.TimeUtil;
 import pl.edu.icm.unity.stdext.identity.UsernameIdentity;
 import pl.edu.icm.unity.sysattrs.SystemAttributeTypes;
@@ -37,6 +42,8 @@ public class TestSessions extends DBIntegrationTestBase
 {
 	@Autowired
 	protected SessionManagement sessionMan;
+	@Autowired
+	protected TokensManagement tokensMan;
 	
 	@Test
 	public void test() throws Exception
@@ -87,6 +94,64 @@ public class TestSessions extends DBIntegrationTestBase
 		sessionMan.removeSession(s3.getId(), false);
 	}
 	
+	@Test
+	public void sessionActivityIsStoredInBackground() throws Exception
+	{
+		IdentityParam toAdd = new IdentityParam(UsernameIdentity.ID, "u1");
+		Identity id = idsMan.addEntity(toAdd, EngineInitialization.DEFAULT_CREDENTIAL_REQUIREMENT, 
+				EntityState.valid, false);
+		AuthenticationRealm realm = new AuthenticationRealm("test", "", 3, 33, -1, 100);
+		LoginSession s = sessionMan.getCreateSession(id.getEntityId(), realm, "u1", false, null);
+		Thread.sleep(1100);
+		
+		long activity = System.currentTimeMillis();
+		sessionMan.updateSessionActivity(s.getId());
+		
+		assertThat(sessionMan.getSession(s.getId()).getLastUsed().getTime() >= activity, is(true));
+		Thread.sleep(SessionManagementImpl.DB_ACTIVITY_WRITE_DELAY * 2);
+		Token token = tokensMan.getTokenById(SessionManagementImpl.SESSION_TOKEN_TYPE, s.getId());
+		assertNotNull(token.getLastUsed());
+		assertThat(token.getLastUsed().getTime() >= TimeUtil.roundToS(new Date(activity)).getTime(), is(true));
+	}
+	
+	@Test
+	public void apiSessionIsReusedUntilRemoved() throws Exception
+	{
+		IdentityParam toAdd = new IdentityParam(UsernameIdentity.ID, "u1");
+		Identity id = idsMan.addEntity(toAdd, EngineInitialization.DEFAULT_CREDENTIAL_REQUIREMENT, 
+				EntityState.valid, false);
+		AuthenticationRealm realm = new AuthenticationRealm("test", "", 3, 33, -1, 100);
+		LoginSession s = sessionMan.getCreateAPISession(id.getEntityId(), realm, false);
+		s.addAuthenticatedIdentities(Collections.singleton("u1"));
+		
+		LoginSession s2 = sessionMan.getCreateAPISession(id.getEntityId(), realm, false);
+		testEquals(s, s2);
+		assertThat(s2.getAuthenticatedIdentities().isEmpty(), is(true));
+		
+		sessionMan.removeSession(s.getId(), false);
+		LoginSession s3 = sessionMan.getCreateAPISession(id.getEntityId(), realm, false);
+		assertNotEquals(s.getId(), s3.getId());
+		testEquals(s3, sessionMan.getSession(s3.getId()));
+	}
+	
+	@Test
+	public void reusedApiSessionClearsScheduledRemoval() throws Exception
+	{
+		IdentityParam toAdd = new IdentityParam(UsernameIdentity.ID, "u1");
+		Identity id = idsMan.addEntity(toAdd, EngineInitialization.DEFAULT_CREDENTIAL_REQUIREMENT, 
+				EntityState.valid, false);
+		EntityParam entityParam = new EntityParam(id.getEntityId());
+		AuthenticationRealm realm = new AuthenticationRealm("test", "", 3, 33, -1, 100);
+		LoginSession s = sessionMan.getCreateAPISession(id.getEntityId(), realm, false);
+		idsMan.scheduleRemovalByUser(entityParam, new Date(System.currentTimeMillis() + 3600000));
+		assertThat(idsMan.getEntity(entityParam).getState(), is(EntityState.onlyLoginPermitted));
+		
+		LoginSession s2 = sessionMan.getCreateAPISession(id.getEntityId(), realm, false);
+		
+		assertEquals(s.getId(), s2.getId());
+		assertThat(idsMan.getEntity(entityParam).getState(), is(EntityState.valid));
+	}
+	
 	private void checkLastAuthnAttribute(long entityId) throws EngineException
 	{
 		Collection<AttributeExt<?>> attrs = attrsMan.getAllAttributes(new EntityParam(entityId), false, "/", 
@@ -9,9 +9,12 @@ import static org.junit.Assert.*;
 import java.util.Date;
 import java.util.List;
 
+import org.apache.ibatis.session.SqlSession;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import pl.edu.icm.unity.db.DBSessionManager;
+import pl.edu.icm.unity.db.DBTokens;
 import pl.edu.icm.unity.engine.internal.EngineInitialization;
 import pl.edu.icm.unity.exceptions.WrongArgumentException;
 import pl.edu.icm.unity.server.api.internal.Token;
@@ -28,6 +31,10 @@ public class TestTokens extends DBIntegrationTestBase
 {
 	@Autowired
 	protected TokensManagement tokensMan;
+	@Autowired
+	protected DBTokens dbTokens;
+	@Autowired
+	protected DBSessionManager db;
 	
 	@Test
 	public void test() throws Exception
@@ -74,4 +81,38 @@ public class TestTokens extends DBIntegrationTestBase
 			//OK
 		}
 	}
+
+	@Test
+	public void expiredAndInactiveTokensAreFoundInBatches() throws Exception
+	{
+		Date now = new Date();
+		Date expired = new Date(now.getTime() - 5000);
+		for (int i=0; i<3; i++)
+			tokensMan.addToken("t", "exp" + i, new byte[] {'a'}, expired, expired);
+		tokensMan.addToken("t", "valid", new byte[] {'a'}, now, new Date(now.getTime() + 500000));
+		tokensMan.addToken("t", "inactive", new byte[] {'a'}, now, null);
+		tokensMan.addToken("t", "active", new byte[] {'a'}, now, null);
+		
+		SqlSession sql = db.getSqlSession(true);
+		try
+		{
+			dbTokens.setMaxInactivity("inactive", "t", 1000, expired, sql);
+			dbTokens.setMaxInactivity("active", "t", 1000, now, sql);
+			
+			List<String> inactive = dbTokens.getInactiveTokens("t", new Date(now.getTime() + 500), 10, sql);
+			assertEquals(1, inactive.size());
+			assertEquals("inactive", inactive.get(0));
+			
+			List<Long> expiredIds = dbTokens.getExpiredTokenIds("t", now, 2, sql);
+			assertEquals(2, expiredIds.size());
+			dbTokens.removeTokensById(expiredIds, sql);
+			expiredIds = dbTokens.getExpiredTokenIds(null, now, 2, sql);
+			assertEquals(1, expiredIds.size());
+			assertEquals(1, dbTokens.getTokensById(expiredIds, sql).size());
+			sql.commit();
+		} finally
+		{
+			db.releaseSqlSession(sql);
+		}
+	}
 }
@@ -173,6 +173,7 @@ public class TestTranslationProfiles extends DBIntegrationTestBase
 				getAction().getName());
 		assertEquals("dynAttr", profiles.get("p1").getRules().get(0).getAction().getParameters()[0]);
 		assertEquals("'joe'", profiles.get("p1").getRules().get(0).getAction().getParameters()[1]);
+		assertEquals(2, tprofMan.getOutputProfile("p1").getRules().size());
 		
 		rules.remove(0);
 		toAdd = new OutputTranslationProfile("p1", rules, outtactionReg);
@@ -183,9 +184,11 @@ public class TestTranslationProfiles extends DBIntegrationTestBase
 		assertEquals(FilterAttributeActionFactory.NAME, profiles.get("p1").getRules().get(0).
 				getAction().getName());
 		assertEquals("attr", profiles.get("p1").getRules().get(0).getAction().getParameters()[0]);
+		assertEquals(1, tprofMan.getOutputProfile("p1").getRules().size());
 		
 		tprofMan.removeProfile("p1");
 		assertEquals(0, tprofMan.listOutputProfiles().size());
+		assertNull(tprofMan.getOutputProfile("p1"));
 	}
 	
 	@Test
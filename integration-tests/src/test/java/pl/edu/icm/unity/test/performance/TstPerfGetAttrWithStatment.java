@@ -9,21 +9,33 @@ import java.util.ArrayList;
 import java.util.Map;
 
 import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 
+import pl.edu.icm.unity.db.EffectiveAttributesCache;
+import pl.edu.icm.unity.db.GroupStatementsCache;
 import pl.edu.icm.unity.exceptions.EngineException;
+import pl.edu.icm.unity.stdext.identity.UsernameIdentity;
 import pl.edu.icm.unity.types.basic.AttributeType;
 import pl.edu.icm.unity.types.basic.Entity;
+import pl.edu.icm.unity.types.basic.EntityParam;
 import pl.edu.icm.unity.types.basic.Group;
 import pl.edu.icm.unity.types.basic.GroupContents;
+import pl.edu.icm.unity.types.basic.IdentityParam;
 
 /**
- * Test get user attributes with attributes statements processing
+ * Test get user attributes with attributes statements processing. Besides the regular (cached) path, 
+ * evaluation of compiled statements and evaluation with statements compilation are measured separately.
  * 
  * @author P.Piernik
  * 
  */
 public class TstPerfGetAttrWithStatment extends PerformanceTestBase
 {
+	@Autowired
+	private GroupStatementsCache groupStatementsCache;
+	@Autowired
+	private EffectiveAttributesCache effectiveAttributesCache;
+	
 	@Test
 	public void testGetAttributesWithStatment() throws EngineException, IOException
 	{
@@ -56,5 +68,36 @@ public class TstPerfGetAttrWithStatment extends PerformanceTestBase
 		}
 		timer.calculateResults("Get attribute for user with eval attr statment");
 		
-	}	
+		for (int i = 0; i < TEST_REPETITIONS; i++)
+		{
+			effectiveAttributesCache.invalidateAll();
+			timer.startTimer();
+			getUsersAttr(GROUP_IN_TIER, enInGroup, false);
+			timer.stopTimer(GROUP_IN_TIER, "Get attribute for user with eval of compiled attr statment");
+		}
+		timer.calculateResults("Get attribute for user with eval of compiled attr statment");
+		
+		for (int i = 0; i < TEST_REPETITIONS; i++)
+		{
+			timer.startTimer();
+			getUsersAttrWithoutCaches(GROUP_IN_TIER, enInGroup);
+			timer.stopTimer(GROUP_IN_TIER, "Get attribute for user with compilation and eval attr statment");
+		}
+		timer.calculateResults("Get attribute for user with compilation and eval attr statment");
+	}
+	
+	/**
+	 * As {@link #getUsersAttr(int, ArrayList, boolean)} but before each call the attribute statements are 
+	 * dropped from cache, so they are deserialized and compiled again as it happens after groups changes.
+	 */
+	private void getUsersAttrWithoutCaches(int n, ArrayList<String> enInGroup) throws EngineException
+	{
+		for (int i = 0; i < n; i++)
+		{
+			groupStatementsCache.invalidateAll();
+			effectiveAttributesCache.invalidateAll();
+			attrsMan.getAttributes(new EntityParam(new IdentityParam(UsernameIdentity.ID, "user" + i)), 
+					enInGroup.get(i), null);
+		}
+	}
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.test.performance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.ibatis.session.SqlSession;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import pl.edu.icm.unity.db.DBSessionManager;
+
+/**
+ * Test throughput of opening and releasing SqlSessions by concurrent threads.
+ *
+ * @author K. Benedyczak
+ */
+public class TstPerfOpenSqlSession extends PerformanceTestBase
+{
+	public final int SESSIONS_PER_THREAD = 20000;
+	public final int[] THREADS = {1, 8, 32};
+
+	@Autowired
+	private DBSessionManager db;
+
+	@Test
+	public void testOpenSqlSession() throws Exception
+	{
+		for (int threads: THREADS)
+		{
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try
+			{
+				//warm-up
+				openSessions(executor, threads);
+
+				String label = "Open SqlSession by " + threads + " threads";
+				for (int i = 0; i < TEST_REPETITIONS; i++)
+				{
+					timer.startTimer();
+					openSessions(executor, threads);
+					timer.stopTimer(threads * SESSIONS_PER_THREAD, label);
+				}
+				timer.calculateResults(label);
+				timer.clear();
+			} finally
+			{
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	private void openSessions(ExecutorService executor, int threads) throws Exception
+	{
+		Callable<Void> task = () -> {
+			for (int i = 0; i < SESSIONS_PER_THREAD; i++)
+			{
+				SqlSession sql = db.getSqlSession(true);
+				db.releaseSqlSession(sql);
+			}
+			return null;
+		};
+		List<Future<Void>> results = new ArrayList<>();
+		for (int i = 0; i < threads; i++)
+			results.add(executor.submit(task));
+		for (Future<Void> result: results)
+			result.get();
+	}
+}
@@ -12,6 +12,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.ibatis.session.SqlSession;
 import org.apache.log4j.Logger;
 import org.apache.log4j.NDC;
 import org.mvel2.MVEL;
@@ -19,13 +20,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import pl.edu.icm.unity.db.generic.ac.AttributeClassUtil;
-import pl.edu.icm.unity.db.json.GroupsSerializer;
 import pl.edu.icm.unity.db.mapper.AttributesMapper;
-import pl.edu.icm.unity.db.mapper.GroupsMapper;
 import pl.edu.icm.unity.db.model.AttributeTypeBean;
-import pl.edu.icm.unity.db.model.GroupBean;
 import pl.edu.icm.unity.db.resolvers.AttributesResolver;
-import pl.edu.icm.unity.db.resolvers.GroupResolver;
 import pl.edu.icm.unity.exceptions.EngineException;
 import pl.edu.icm.unity.exceptions.IllegalAttributeTypeException;
 import pl.edu.icm.unity.exceptions.IllegalAttributeValueException;
@@ -42,7 +39,6 @@ import pl.edu.icm.unity.types.basic.AttributeStatement2.Direction;
 import pl.edu.icm.unity.types.basic.AttributeType;
 import pl.edu.icm.unity.types.basic.AttributeValueSyntax;
 import pl.edu.icm.unity.types.basic.AttributesClass;
-import pl.edu.icm.unity.types.basic.Group;
 import pl.edu.icm.unity.types.basic.Identity;
 
 /**
@@ -66,17 +62,14 @@ public class AttributeStatementProcessor
 		entityId;
 	}
 	
-	private GroupResolver groupResolver;
 	private AttributesResolver attrResolver;
-	private GroupsSerializer jsonS;
+	private GroupStatementsCache statementsCache;
 	
 	@Autowired
-	public AttributeStatementProcessor(GroupResolver groupResolver,
-			AttributesResolver attrResolver, GroupsSerializer jsonS)
+	public AttributeStatementProcessor(AttributesResolver attrResolver, GroupStatementsCache statementsCache)
 	{
-		this.groupResolver = groupResolver;
 		this.attrResolver = attrResolver;
-		this.jsonS = jsonS;
+		this.statementsCache = statementsCache;
 	}
 
 
@@ -100,7 +93,7 @@ public class AttributeStatementProcessor
 	 * @param directAttributesByGroup map with group as keys with all regular attributes of the user. Values
 	 * are maps of attributes by name.
 	 * @param atMapper
-	 * @param gMapper
+	 * @param sql
 	 * @return collected attributes in a map form. Map keys are attribute names.
 	 * @throws IllegalGroupValueException 
 	 * @throws WrongArgumentException 
@@ -108,41 +101,25 @@ public class AttributeStatementProcessor
 	public Map<String, AttributeExt<?>> getEffectiveAttributes(Identity[] identities, String group, 
 			String queriedAttribute, 
 			Set<String> allGroups, Map<String, Map<String, AttributeExt<?>>> directAttributesByGroup,
-			AttributesMapper atMapper, GroupsMapper gMapper, Map<String, AttributesClass> knownClasses) 
+			AttributesMapper atMapper, SqlSession sql, Map<String, AttributesClass> knownClasses) 
 					throws IllegalGroupValueException, IllegalTypeException
 	{		
 		Map<String, Map<String, AttributeExt<?>>> downwardsAttributes = 
 				new HashMap<String, Map<String,AttributeExt<?>>>();
 		collectUpOrDownAttributes(Direction.downwards, group, null, identities, downwardsAttributes, 
-				directAttributesByGroup, allGroups, atMapper, gMapper, knownClasses);
+				directAttributesByGroup, allGroups, atMapper, sql, knownClasses);
 
 		Map<String, Map<String, AttributeExt<?>>> upwardsAttributes = new HashMap<String, Map<String,AttributeExt<?>>>();
 		collectUpOrDownAttributes(Direction.upwards, group, null, identities, upwardsAttributes, 
-				directAttributesByGroup, allGroups, atMapper, gMapper, knownClasses);
+				directAttributesByGroup, allGroups, atMapper, sql, knownClasses);
 
-		AttributeStatement2[] statements = getGroupStatements(group, atMapper, gMapper);
+		AttributeStatement2[] statements = statementsCache.getStatements(group, sql);
 		
 		return processAttributeStatements(Direction.undirected, directAttributesByGroup, 
 				upwardsAttributes, downwardsAttributes, group, 
 				queriedAttribute, identities, statements, allGroups, atMapper, knownClasses);
 	}
 
-	/**
-	 * Resolves group path and returns group's attribute statements
-	 * @param groupPath
-	 * @param mapper
-	 * @param gMapper
-	 * @return 
-	 * @throws IllegalGroupValueException 
-	 */
-	private AttributeStatement2[] getGroupStatements(String groupPath, AttributesMapper mapper, 
-			GroupsMapper gMapper) throws IllegalGroupValueException
-	{
-		GroupBean groupBean = groupResolver.resolveGroup(groupPath, gMapper);
-		Group group = jsonS.resolveGroupBean(groupBean, gMapper, mapper);
-		return group.getAttributeStatements(); 
-	}
-	
 	/**
 	 * Recursive method collecting attributes in down or up direction. Works as follows:
 	 * <ol>
@@ -159,7 +136,7 @@ public class AttributeStatementProcessor
 	 * @param allAttributesByGroup
 	 * @param allGroups
 	 * @param mapper
-	 * @param gMapper
+	 * @param sql
 	 * @throws IllegalGroupValueException 
 	 * @throws WrongArgumentException 
 	 * @throws IllegalAttributeTypeException 
@@ -169,11 +146,11 @@ public class AttributeStatementProcessor
 			Identity[] identities,
 			Map<String, Map<String, AttributeExt<?>>> upOrDownAttributes, 
 			Map<String, Map<String, AttributeExt<?>>> allAttributesByGroup,
-			Set<String> allGroups, AttributesMapper mapper, GroupsMapper gMapper, 
+			Set<String> allGroups, AttributesMapper mapper, SqlSession sql, 
 			Map<String, AttributesClass> knownClasses) 
 			throws IllegalGroupValueException, IllegalTypeException
 	{
-		AttributeStatement2[] statements = getGroupStatements(groupPath, mapper, gMapper);
+		AttributeStatement2[] statements = statementsCache.getStatements(groupPath, sql);
 		
 		Set<String> interestingGroups = new HashSet<String>();
 		for (AttributeStatement2 as: statements)
@@ -192,7 +169,7 @@ public class AttributeStatementProcessor
 				continue;
 			collectUpOrDownAttributes(mode, interestingGroup, queriedAttribute, identities,
 					upOrDownAttributes, allAttributesByGroup,
-					allGroups, mapper, gMapper, knownClasses);
+					allGroups, mapper, sql, knownClasses);
 		}
 		
 		Map<String, AttributeExt<?>> ret = (mode == Direction.upwards) ? 
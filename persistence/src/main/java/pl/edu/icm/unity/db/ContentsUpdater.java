@@ -37,16 +37,26 @@ import com.fasterxml.jackson.core.JsonParser;
 public class ContentsUpdater
 {
 	private static final Logger log = Log.getLogger(Log.U_SERVER_DB, ContentsUpdater.class);
+	private static final String SESSION_TOKEN_TYPE = "session";
 	private final IdentitiesIE identitiesIE;
 	private GenericsIE genericsIE;
 	private GroupsIE groupsIE;
+	private DBIdentities dbIdentities;
+	private DBGroups dbGroups;
+	private DBAttributes dbAttributes;
+	private DBTokens dbTokens;
 	
 	@Autowired
-	public ContentsUpdater(IdentitiesIE identitiesIE, GenericsIE genericsIE, GroupsIE groupsIE)
+	public ContentsUpdater(IdentitiesIE identitiesIE, GenericsIE genericsIE, GroupsIE groupsIE, 
+			DBIdentities dbIdentities, DBGroups dbGroups, DBAttributes dbAttributes, DBTokens dbTokens)
 	{
 		this.identitiesIE = identitiesIE;
 		this.genericsIE = genericsIE;
 		this.groupsIE = groupsIE;
+		this.dbIdentities = dbIdentities;
+		this.dbGroups = dbGroups;
+		this.dbAttributes = dbAttributes;
+		this.dbTokens = dbTokens;
 	}
 
 	public void update(long oldDbVersion, SqlSession sql) throws IOException, EngineException
@@ -62,6 +72,17 @@ public class ContentsUpdater
 			log.info(" - Updating registration forms");
 			updateGeneric(sql);
 		}
+		if (oldDbVersion < InitDB.dbVersion2Long("2_1_6"))
+		{
+			log.info(" - Setting times of scheduled entity operations");
+			dbIdentities.updateScheduledOperationTimes(sql);
+			log.info(" - Setting creation times of group memberships");
+			dbGroups.updateMembershipCreationTimes(sql);
+			log.info(" - Creating index of attribute values");
+			dbAttributes.createAttributeValuesIndex(sql);
+			log.info(" - Setting inactivity deadlines of login sessions");
+			dbTokens.updateMaxInactivityFromContents(SESSION_TOKEN_TYPE, sql);
+		}
 	}
 	
 	private DumpHeader headerForVersion(long version)
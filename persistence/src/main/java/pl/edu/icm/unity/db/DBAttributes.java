@@ -4,20 +4,28 @@
  */
 package pl.edu.icm.unity.db;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.ibatis.session.SqlSession;
+import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import pl.edu.icm.unity.db.cache.CacheInvalidationManager;
 import pl.edu.icm.unity.db.generic.DependencyNotificationManager;
 import pl.edu.icm.unity.db.generic.ac.AttributeClassDB;
 import pl.edu.icm.unity.db.json.AttributeSerializer;
@@ -25,6 +33,8 @@ import pl.edu.icm.unity.db.mapper.AttributesMapper;
 import pl.edu.icm.unity.db.mapper.GroupsMapper;
 import pl.edu.icm.unity.db.model.AttributeBean;
 import pl.edu.icm.unity.db.model.AttributeTypeBean;
+import pl.edu.icm.unity.db.model.AttributeValueHashBean;
+import pl.edu.icm.unity.db.model.AttributesOfTypeQueryBean;
 import pl.edu.icm.unity.db.model.DBLimits;
 import pl.edu.icm.unity.db.model.GroupBean;
 import pl.edu.icm.unity.db.model.GroupElementBean;
@@ -39,6 +49,7 @@ import pl.edu.icm.unity.exceptions.InternalException;
 import pl.edu.icm.unity.exceptions.WrongArgumentException;
 import pl.edu.icm.unity.json.AttributeTypeSerializer;
 import pl.edu.icm.unity.server.attributes.AttributeValueChecker;
+import pl.edu.icm.unity.server.utils.Log;
 import pl.edu.icm.unity.types.basic.Attribute;
 import pl.edu.icm.unity.types.basic.AttributeExt;
 import pl.edu.icm.unity.types.basic.AttributeType;
@@ -53,7 +64,9 @@ import pl.edu.icm.unity.types.basic.Identity;
 @Component
 public class DBAttributes
 {
+	private static final Logger log = Log.getLogger(Log.U_SERVER_DB, DBAttributes.class);
 	public static final String ATTRIBUTE_TYPES_NOTIFICATION_ID = "attributeTypes";
+	private static final int INSTANCES_PAGE_SIZE = 1000;
 	private DBLimits limits;
 	private AttributesResolver attrResolver;
 	private AttributeTypeSerializer atSerializer;
@@ -64,6 +77,8 @@ public class DBAttributes
 	private AttributeClassDB acDB;
 	private DependencyNotificationManager notificationsManager;
 	private DBIdentities dbIdentities;
+	private CacheInvalidationManager cacheInvalidation;
+	private EffectiveAttributesCache effectiveAttributesCache;
 	
 	
 	@Autowired
@@ -71,9 +86,12 @@ public class DBAttributes
 			AttributeTypeSerializer atSerializer, AttributeSerializer aSerializer,
 			GroupResolver groupResolver, DBShared dbShared,
 			AttributeStatementProcessor statementsHelper, AttributeClassDB acDB,
-			DependencyNotificationManager notificationsManager, DBIdentities dbIdentities)
+			DependencyNotificationManager notificationsManager, DBIdentities dbIdentities,
+			CacheInvalidationManager cacheInvalidation, EffectiveAttributesCache effectiveAttributesCache)
 	{
 		this.dbIdentities = dbIdentities;
+		this.cacheInvalidation = cacheInvalidation;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 		this.limits = db.getDBLimits();
 		this.attrResolver = attrResolver;
 		this.atSerializer = atSerializer;
@@ -98,15 +116,14 @@ public class DBAttributes
 				toAdd.getValueType().getValueSyntaxId());
 		notificationsManager.firePreAddEvent(ATTRIBUTE_TYPES_NOTIFICATION_ID, toAdd, sqlMap);
 		mapper.insertAttributeType(atb);
+		cacheInvalidation.objectsChanged(ATTRIBUTE_TYPES_NOTIFICATION_ID, sqlMap);
 	}
 
 	
 	public AttributeType getAttributeType(String id, SqlSession sqlMap) 
 			throws IllegalAttributeTypeException, IllegalTypeException
 	{
-		AttributesMapper mapper = sqlMap.getMapper(AttributesMapper.class);
-		AttributeTypeBean atBean = attrResolver.resolveAttributeType(id, mapper);
-		return attrResolver.resolveAttributeTypeBean(atBean);
+		return attrResolver.getAttributeTypeCopy(id, sqlMap);
 	}
 	
 	public void removeAttributeType(String id, boolean withInstances, SqlSession sqlMap)
@@ -116,14 +133,9 @@ public class DBAttributes
 		if (mapper.getAttributeType(id) == null)
 			throw new IllegalAttributeTypeException("The attribute type with name " + id + 
 					" does not exist");
-		if (!withInstances)
-		{
-			AttributeBean ab = new AttributeBean();
-			ab.setName(id);
-			if (mapper.getAttributes(ab).size() > 0)
-				throw new IllegalAttributeTypeException("The attribute type " + id + " has instances");
-		}
 		AttributeTypeBean atBean = attrResolver.resolveAttributeType(id, mapper);
+		if (!withInstances && mapper.hasAttributesOfType(atBean.getId()))
+			throw new IllegalAttributeTypeException("The attribute type " + id + " has instances");
 		AttributeType removed = attrResolver.resolveAttributeTypeBean(atBean);
 		notificationsManager.firePreRemoveEvent(ATTRIBUTE_TYPES_NOTIFICATION_ID, removed, sqlMap);
 		mapper.deleteAttributeType(id);
@@ -135,26 +147,10 @@ public class DBAttributes
 		limits.checkNameLimit(toUpdate.getName());
 		AttributesMapper mapper = sqlMap.getMapper(AttributesMapper.class);
 		GroupsMapper gMapper = sqlMap.getMapper(GroupsMapper.class);
-		AttributeBean atb = new AttributeBean();
-		atb.setName(toUpdate.getName());
-		List<AttributeBean> allAttributesOfType = mapper.getAttributes(atb);
-		for (AttributeBean ab: allAttributesOfType)
-		{
-			String groupPath = groupResolver.resolveGroupPath(ab.getGroupId(), gMapper);
-			Attribute<?> attribute = attrResolver.resolveAttributeBean(ab, groupPath);
-			try
-			{
-				AttributeValueChecker.validate(attribute, toUpdate);
-			} catch (Exception e)
-			{
-				throw new IllegalAttributeTypeException("Can't update the attribute type as at least " +
-						"one attribute instance will be in conflict with the new type. " +
-						"The conflicting attribute which was found: " + attribute, e);
-			}
-		}
+		AttributeTypeBean atBean = attrResolver.resolveAttributeType(toUpdate.getName(), mapper);
+		validateInstances(toUpdate, atBean.getId(), mapper, gMapper, sqlMap);
 		AttributeTypeBean updatedB = new AttributeTypeBean(toUpdate.getName(), atSerializer.toJson(toUpdate), 
 				toUpdate.getValueType().getValueSyntaxId());
-		AttributeTypeBean atBean = attrResolver.resolveAttributeType(toUpdate.getName(), mapper);
 		AttributeType old = attrResolver.resolveAttributeTypeBean(atBean);
 		notificationsManager.firePreUpdateEvent(ATTRIBUTE_TYPES_NOTIFICATION_ID, old, toUpdate, sqlMap);
 		mapper.updateAttributeType(updatedB);
@@ -162,22 +158,14 @@ public class DBAttributes
 	
 	public Map<String, AttributeType> getAttributeTypes(SqlSession sqlMap)
 	{
-		AttributesMapper mapper = sqlMap.getMapper(AttributesMapper.class);
-		List<AttributeTypeBean> raw = mapper.getAttributeTypes();
-		Map<String, AttributeType> ret = new HashMap<String, AttributeType>(raw.size());
-		for (int i=0; i<raw.size(); i++)
+		try
 		{
-			AttributeTypeBean r = raw.get(i);
-			try
-			{
-				ret.put(r.getName(), attrResolver.resolveAttributeTypeBean(r));
-			} catch (IllegalTypeException e)
-			{
-				throw new InternalException("Can not find implementation for attribtue type returned " +
-						"by the getAttributeTypes() " + r.getName(), e);
-			}
+			return attrResolver.getAttributeTypeCopies(sqlMap);
+		} catch (IllegalTypeException e)
+		{
+			throw new InternalException("Can not find implementation for attribtue type returned " +
+					"by the getAttributeTypes()", e);
 		}
-		return ret;
 	}
 	
 	
@@ -231,8 +219,8 @@ public class DBAttributes
 		AttributesMapper mapper = sqlMap.getMapper(AttributesMapper.class);
 		GroupsMapper grMapper = sqlMap.getMapper(GroupsMapper.class);
 
-		AttributeTypeBean atBean = attrResolver.resolveAttributeType(attribute.getName(), mapper);
-		AttributeType at = attrResolver.resolveAttributeTypeBean(atBean);
+		AttributeTypeBean atBean = attrResolver.resolveAttributeType(attribute.getName(), sqlMap);
+		AttributeType at = attrResolver.resolveAttributeTypeFull(attribute.getName(), sqlMap);
 		AttributeValueChecker.validate(attribute, at);
 		
 		AttributeBean param = prepareAttributeParam(entityId, atBean.getId(), attribute.getName(),
@@ -245,6 +233,7 @@ public class DBAttributes
 						+ "of the group specified in the attribute");
 			param.setValues(aSerializer.toJson(attribute));
 			mapper.insertAttribute(param);
+			addValueHashes(param, attribute, mapper);
 		} else
 		{
 			if (!update)
@@ -254,7 +243,10 @@ public class DBAttributes
 			attribute.setCreationTs(creationTs == null ? null : new Date(creationTs));
 			param.setValues(aSerializer.toJson(attribute));
 			mapper.updateAttribute(param);
+			mapper.deleteAttributeValueHashes(param);
+			addValueHashes(param, attribute, mapper);
 		}
+		cacheInvalidation.entityChanged(entityId, sqlMap);
 	}
 	
 	public void removeAttribute(long entityId, String groupPath, String attributeTypeName, SqlSession sqlMap) 
@@ -263,14 +255,71 @@ public class DBAttributes
 		AttributesMapper mapper = sqlMap.getMapper(AttributesMapper.class);
 		GroupsMapper grMapper = sqlMap.getMapper(GroupsMapper.class);
 		
-		AttributeTypeBean atBean = attrResolver.resolveAttributeType(attributeTypeName, mapper);
+		AttributeTypeBean atBean = attrResolver.resolveAttributeType(attributeTypeName, sqlMap);
 		AttributeBean param = prepareAttributeParam(entityId, atBean.getId(), attributeTypeName,
 				groupPath, mapper, grMapper);
 		List<AttributeBean> existing = mapper.getAttributes(param);
 		if (existing.size() == 0)
 			throw new IllegalAttributeValueException("The attribute does not exist");
 		
+		mapper.deleteAttributeValueHashes(param);
 		mapper.deleteAttribute(param);
+		cacheInvalidation.entityChanged(entityId, sqlMap);
+	}
+	
+	/**
+	 * Stores hashes of all string values of the attribute in the attribute values index. 
+	 * The index is used to find entities with a given value without scanning all attributes of the type.
+	 */
+	private void addValueHashes(AttributeBean stored, Attribute<?> attribute, AttributesMapper mapper)
+	{
+		Set<String> hashes = new HashSet<>();
+		for (Object value: attribute.getValues())
+			if (value instanceof String)
+				hashes.add(hashValue((String) value));
+		for (String hash: hashes)
+			mapper.insertAttributeValueHash(new AttributeValueHashBean(stored.getTypeId(), 
+					stored.getEntityId(), stored.getGroupId(), hash));
+	}
+
+	/**
+	 * The value is normalized before hashing, so the index can also serve case insensitive lookups. 
+	 * Therefore entries found in the index must be always verified against the actual values, what 
+	 * also protects against hash collisions.
+	 */
+	private static String hashValue(String value)
+	{
+		String normalized = Normalizer.normalize(value.trim(), Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest(normalized.getBytes(StandardCharsets.UTF_8));
+			return Base64.getEncoder().encodeToString(hash);
+		} catch (NoSuchAlgorithmException e)
+		{
+			throw new InternalException("SHA-256 is not supported", e);
+		}
+	}
+	
+	/**
+	 * Fills the attribute values index with all the existing attributes. Used when updating 
+	 * the database from a version without the index, which must be empty.
+	 * @param sql
+	 * @throws IllegalTypeException
+	 */
+	public void createAttributeValuesIndex(SqlSession sql) throws IllegalTypeException
+	{
+		AttributesMapper atMapper = sql.getMapper(AttributesMapper.class);
+		GroupsMapper gMapper = sql.getMapper(GroupsMapper.class);
+		for (GroupBean gb: gMapper.getGroupsStructure())
+		{
+			String groupPath = groupResolver.resolveGroupPath(gb, gMapper);
+			for (AttributeBean ab: getDefinedAttributes(null, gb.getId(), null, atMapper))
+			{
+				Attribute<?> attribute = attrResolver.resolveAttributeBean(ab, groupPath);
+				addValueHashes(ab, attribute, atMapper);
+			}
+		}
 	}
 	
 	private List<String> getGroupsOrGroup(long entityId, String groupPath, GroupsMapper grMapper)
@@ -344,6 +393,7 @@ public class DBAttributes
 	/**
 	 * See {@link #getAllAttributes(long, String, String, SqlSession)}, the only difference is that the result
 	 * is returned in a map indexed with groups (1st key) and attribute names (submap key).
+	 * Effective attributes are served from the {@link EffectiveAttributesCache} if possible.
 	 * @param entityId
 	 * @param groupPath
 	 * @param attributeTypeName
@@ -356,28 +406,91 @@ public class DBAttributes
 			boolean effective, String attributeTypeName, SqlSession sql) 
 			throws EngineException
 	{
+		if (effective)
+			return effectiveAttributesCache.getEffectiveAttributes(entityId, groupPath, attributeTypeName, 
+					sql, () -> computeEffectiveAttributes(entityId, groupPath, attributeTypeName, sql));
+
 		AttributesMapper atMapper = sql.getMapper(AttributesMapper.class);
 		GroupsMapper gMapper = sql.getMapper(GroupsMapper.class);
-		
 		Map<String, Map<String, AttributeExt<?>>> directAttributesByGroup = createAllAttrsMap(entityId, 
 				atMapper, gMapper);
+		filterMap(directAttributesByGroup, groupPath, attributeTypeName);
+		return directAttributesByGroup;
+	}
+
+	/**
+	 * Bulk version of {@link #getAllAttributesAsMap(long, String, boolean, String, SqlSession)}. 
+	 * Direct attributes, group memberships and identities of all the entities are loaded with a constant
+	 * number of queries, independent of the number of entities.
+	 * @param entityIds
+	 * @param groupPath
+	 * @param effective
+	 * @param attributeTypeName
+	 * @param sql
+	 * @return attributes indexed with entity ids, groups and attribute names.
+	 * @throws EngineException
+	 */
+	public Map<Long, Map<String, Map<String, AttributeExt<?>>>> getAllAttributesAsMap(Collection<Long> entityIds, 
+			String groupPath, boolean effective, String attributeTypeName, SqlSession sql) 
+			throws EngineException
+	{
+		AttributesMapper atMapper = sql.getMapper(AttributesMapper.class);
+		GroupsMapper gMapper = sql.getMapper(GroupsMapper.class);
+		Map<Long, Map<String, Map<String, AttributeExt<?>>>> directAttributes = createAllAttrsMaps(entityIds, 
+				atMapper, gMapper);
 		if (!effective)
 		{
-			filterMap(directAttributesByGroup, groupPath, attributeTypeName);
-			return directAttributesByGroup;
+			for (Map<String, Map<String, AttributeExt<?>>> directAttributesByGroup: directAttributes.values())
+				filterMap(directAttributesByGroup, groupPath, attributeTypeName);
+			return directAttributes;
 		}
-		List<String> groups = getGroupsOrGroup(entityId, groupPath, gMapper);
-		Set<String> allGroups = dbShared.getAllGroups(entityId, gMapper);
-		Map<String, Map<String, AttributeExt<?>>> ret = new HashMap<String, Map<String, AttributeExt<?>>>();
 		
+		Map<Long, Set<String>> allGroups = dbShared.getAllGroups(entityIds, sql);
+		Map<Long, Identity[]> identities = dbIdentities.getIdentitiesForEntities(entityIds, false, sql);
 		Map<String, AttributesClass> allClasses = acDB.getAllAsMap(sql);
+		Map<Long, Map<String, Map<String, AttributeExt<?>>>> ret = new HashMap<>();
+		for (long entityId: entityIds)
+		{
+			Set<String> entityGroups = allGroups.containsKey(entityId) ? 
+					allGroups.get(entityId) : Collections.emptySet();
+			List<String> groups = groupPath == null ? new ArrayList<>(entityGroups) : 
+				Collections.singletonList(groupPath);
+			ret.put(entityId, effectiveAttributesCache.getEffectiveAttributes(entityId, groupPath, 
+					attributeTypeName, sql, 
+					() -> computeEffectiveAttributes(identities.get(entityId), groups, attributeTypeName, 
+							entityGroups, directAttributes.get(entityId), atMapper, sql, 
+							allClasses)));
+		}
+		return ret;
+	}
+	
+	private Map<String, Map<String, AttributeExt<?>>> computeEffectiveAttributes(long entityId, 
+			String groupPath, String attributeTypeName, SqlSession sql) throws EngineException
+	{
+		AttributesMapper atMapper = sql.getMapper(AttributesMapper.class);
+		GroupsMapper gMapper = sql.getMapper(GroupsMapper.class);
 		
+		Map<String, Map<String, AttributeExt<?>>> directAttributesByGroup = createAllAttrsMap(entityId, 
+				atMapper, gMapper);
+		List<String> groups = getGroupsOrGroup(entityId, groupPath, gMapper);
+		Set<String> allGroups = dbShared.getAllGroups(entityId, gMapper);
+		Map<String, AttributesClass> allClasses = acDB.getAllAsMap(sql);
 		Identity[] identities = dbIdentities.getIdentitiesForEntity(entityId, null, false, sql);
+		return computeEffectiveAttributes(identities, groups, attributeTypeName, allGroups, 
+				directAttributesByGroup, atMapper, sql, allClasses);
+	}
+	
+	private Map<String, Map<String, AttributeExt<?>>> computeEffectiveAttributes(Identity[] identities, 
+			List<String> groups, String attributeTypeName, Set<String> allGroups,
+			Map<String, Map<String, AttributeExt<?>>> directAttributesByGroup, AttributesMapper atMapper,
+			SqlSession sql, Map<String, AttributesClass> allClasses) throws EngineException
+	{
+		Map<String, Map<String, AttributeExt<?>>> ret = new HashMap<String, Map<String, AttributeExt<?>>>();
 		for (String group: groups)
 		{
 			Map<String, AttributeExt<?>> inGroup = statementsHelper.getEffectiveAttributes(identities, 
 					group, attributeTypeName, allGroups, directAttributesByGroup, atMapper, 
-					gMapper, allClasses);
+					sql, allClasses);
 			ret.put(group, inGroup);
 		}
 		return ret;
@@ -428,14 +541,21 @@ public class DBAttributes
 		AttributesMapper atMapper = sql.getMapper(AttributesMapper.class);
 
 		GroupBean grBean = groupResolver.resolveGroup(groupPath, grMapper);
-		List<AttributeBean> allAts = getDefinedAttributes(null, grBean.getId(), attributeTypeName, atMapper);
-		
+		AttributeTypeBean atBean = atMapper.getAttributeType(attributeTypeName);
 		Set<Long> ret = new HashSet<Long>();
-		for (AttributeBean ab: allAts)
+		if (atBean == null)
+			return ret;
+		
+		for (String value: values)
 		{
-			Attribute<?> attr = attrResolver.resolveAttributeBean(ab, groupPath);
-			if (values.contains((String)attr.getValues().get(0)))
-				ret.add(ab.getEntityId());
+			List<AttributeBean> candidates = atMapper.getAttributesByValueHash(new AttributeValueHashBean(
+					atBean.getId(), null, grBean.getId(), hashValue(value)));
+			for (AttributeBean ab: candidates)
+			{
+				Attribute<?> attr = attrResolver.resolveAttributeBean(ab, groupPath);
+				if (values.contains((String)attr.getValues().get(0)))
+					ret.add(ab.getEntityId());
+			}
 		}
 		return ret;
 	}
@@ -456,15 +576,46 @@ public class DBAttributes
 			throws IllegalTypeException, IllegalGroupValueException
 	{
 		AttributesMapper atMapper = sql.getMapper(AttributesMapper.class);
-		List<AttributeBean> allAts = getDefinedAttributes(null, null, attributeTypeName, atMapper);
-		
+		AttributeTypeBean atBean = atMapper.getAttributeType(attributeTypeName);
+		if (atBean == null)
+			return new HashSet<Long>();
+		return getEntitiesWithValue(atBean.getId(), null, value, atMapper);
+	}
+
+	/**
+	 * Exact match search of entities which have the given string value among values of the attribute.
+	 * Only directly assigned attributes are considered (i.e. attribute statements are not evaluated).
+	 * @param attributeTypeName
+	 * @param groupPath group of the attribute, if null then attributes in all groups are considered
+	 * @param value
+	 * @param sql
+	 * @return ids of entities having the value
+	 * @throws IllegalAttributeTypeException
+	 * @throws IllegalGroupValueException
+	 * @throws IllegalTypeException
+	 */
+	public Set<Long> getEntitiesWithAttributeValue(String attributeTypeName, String groupPath, String value, 
+			SqlSession sql) throws IllegalAttributeTypeException, IllegalGroupValueException, 
+			IllegalTypeException
+	{
+		AttributesMapper atMapper = sql.getMapper(AttributesMapper.class);
+		AttributeTypeBean atBean = attrResolver.resolveAttributeType(attributeTypeName, sql);
+		Long groupId = groupPath == null ? null : 
+			groupResolver.resolveGroup(groupPath, sql.getMapper(GroupsMapper.class)).getId();
+		return getEntitiesWithValue(atBean.getId(), groupId, value, atMapper);
+	}
+	
+	private Set<Long> getEntitiesWithValue(long typeId, Long groupId, String value, AttributesMapper atMapper) 
+			throws IllegalTypeException
+	{
+		List<AttributeBean> candidates = atMapper.getAttributesByValueHash(new AttributeValueHashBean(
+				typeId, null, groupId, hashValue(value)));
 		Set<Long> ret = new HashSet<Long>();
-		for (AttributeBean ab: allAts)
+		for (AttributeBean ab: candidates)
 		{
 			Attribute<?> attr = attrResolver.resolveAttributeBean(ab, "/");
-			for (Object av: attr.getValues())
-				if (value.equals(av))
-					ret.add(ab.getEntityId());
+			if (attr.getValues().contains(value))
+				ret.add(ab.getEntityId());
 		}
 		return ret;
 	}
@@ -483,19 +634,36 @@ public class DBAttributes
 		Map<String, Map<String, AttributeExt<?>>> ret = new HashMap<String, Map<String, AttributeExt<?>>>();
 		List<AttributeBean> allAts = getDefinedAttributes(entityId, null, null, atMapper);
 		for (AttributeBean ab: allAts)
+			addToAttrsMap(ret, ab, gMapper);
+		return ret;
+	}
+
+	private Map<Long, Map<String, Map<String, AttributeExt<?>>>> createAllAttrsMaps(Collection<Long> entityIds, 
+			AttributesMapper atMapper, GroupsMapper gMapper) 
+					throws IllegalTypeException, IllegalGroupValueException
+	{
+		Map<Long, Map<String, Map<String, AttributeExt<?>>>> ret = new HashMap<>();
+		for (long entityId: entityIds)
+			ret.put(entityId, new HashMap<>());
+		for (List<Long> part: DBShared.partition(entityIds))
+			for (AttributeBean ab: atMapper.getAttributesOfEntities(part))
+				addToAttrsMap(ret.get(ab.getEntityId()), ab, gMapper);
+		return ret;
+	}
+	
+	private void addToAttrsMap(Map<String, Map<String, AttributeExt<?>>> attrsMap, AttributeBean ab,
+			GroupsMapper gMapper) throws IllegalTypeException, IllegalGroupValueException
+	{
+		String groupPath = groupResolver.resolveGroupPath(ab.getGroupId(), gMapper);
+		AttributeExt<?> attribute = attrResolver.resolveAttributeBean(ab, groupPath);
+		
+		Map<String, AttributeExt<?>> attrsInGroup = attrsMap.get(groupPath);
+		if (attrsInGroup == null)
 		{
-			String groupPath = groupResolver.resolveGroupPath(ab.getGroupId(), gMapper);
-			AttributeExt<?> attribute = attrResolver.resolveAttributeBean(ab, groupPath);
-			
-			Map<String, AttributeExt<?>> attrsInGroup = ret.get(groupPath);
-			if (attrsInGroup == null)
-			{
-				attrsInGroup = new HashMap<String, AttributeExt<?>>();
-				ret.put(groupPath, attrsInGroup);
-			}
-			attrsInGroup.put(attribute.getName(), attribute);
+			attrsInGroup = new HashMap<String, AttributeExt<?>>();
+			attrsMap.put(groupPath, attrsInGroup);
 		}
-		return ret;
+		attrsInGroup.put(attribute.getName(), attribute);
 	}
 	
 	public List<AttributeBean> getDefinedAttributes(Long entityId, Long groupId, String attributeName, 
@@ -507,6 +675,85 @@ public class DBAttributes
 		param.setName(attributeName);
 		return mapper.getAttributes(param);
 	}
+	
+	/**
+	 * Checks all instances of the attribute type against its updated definition. Instances are read 
+	 * in pages by ids, so that they are never loaded into memory at once. The session's local cache is 
+	 * cleared after each page, as otherwise it would retain all read pages until the end of the transaction.
+	 */
+	private void validateInstances(AttributeType updated, long typeId, AttributesMapper mapper, 
+			GroupsMapper gMapper, SqlSession sqlMap) throws EngineException
+	{
+		InstancesValidator validator = new InstancesValidator(updated, gMapper);
+		AttributesOfTypeQueryBean query = new AttributesOfTypeQueryBean(typeId, 0, INSTANCES_PAGE_SIZE);
+		List<AttributeBean> page;
+		do
+		{
+			page = mapper.getAttributesOfTypePage(query);
+			for (AttributeBean ab: page)
+				validator.validate(ab);
+			if (!page.isEmpty())
+				query.setAfterId(page.get(page.size() - 1).getId());
+			sqlMap.clearCache();
+		} while (page.size() == INSTANCES_PAGE_SIZE);
+		validator.finished();
+	}
+	
+	/**
+	 * Validates attribute instances against an updated attribute type, throwing an exception for 
+	 * the first conflicting one. Paths of groups are cached, as typically there are many 
+	 * instances in few groups. Progress of long validations is logged.
+	 */
+	private class InstancesValidator
+	{
+		private static final int PROGRESS_INTERVAL = 100000;
+		private final AttributeType updated;
+		private final GroupsMapper gMapper;
+		private final Map<Long, String> groupPaths = new HashMap<>();
+		private long validated = 0;
+
+		public InstancesValidator(AttributeType updated, GroupsMapper gMapper)
+		{
+			this.updated = updated;
+			this.gMapper = gMapper;
+		}
+
+		public void validate(AttributeBean ab) throws EngineException
+		{
+			Attribute<?> attribute = attrResolver.resolveAttributeBean(ab, getGroupPath(ab.getGroupId()));
+			try
+			{
+				AttributeValueChecker.validate(attribute, updated);
+			} catch (Exception e)
+			{
+				throw new IllegalAttributeTypeException("Can't update the attribute type as at least " +
+						"one attribute instance will be in conflict with the new type. " +
+						"The conflicting attribute which was found: " + attribute, e);
+			}
+			validated++;
+			if (validated % PROGRESS_INTERVAL == 0)
+				log.info("Validated " + validated + " instances of the updated attribute type " + 
+						updated.getName());
+		}
+		
+		private String getGroupPath(long groupId) throws IllegalGroupValueException
+		{
+			String groupPath = groupPaths.get(groupId);
+			if (groupPath == null)
+			{
+				groupPath = groupResolver.resolveGroupPath(groupId, gMapper);
+				groupPaths.put(groupId, groupPath);
+			}
+			return groupPath;
+		}
+		
+		public void finished()
+		{
+			if (validated >= PROGRESS_INTERVAL)
+				log.info("All " + validated + " instances of the attribute type " + updated.getName() + 
+						" are valid");
+		}
+	}
 }
 
 
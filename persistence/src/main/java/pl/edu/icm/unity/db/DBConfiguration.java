@@ -45,6 +45,7 @@ public class DBConfiguration extends PropertiesHelper
 	public static final String DBCONFIG_FILE = "mapconfigFile";
 	public static final String LOCAL_DB_URL = "localDBUrl";
 	public static final String IGNORE_ALTERNATIVE_DB_CONFIG = "ignoreAlternativeDbConfig";
+	public static final String SESSION_STACKTRACE_SAMPLING = "sessionStackTraceSampling";
 	
 	/**
 	 * System property: if set it is providing an alternative path to a file with DB configuration.
@@ -69,6 +70,11 @@ public class DBConfiguration extends PropertiesHelper
 						+ "property with alternative DB config is ignored. It is useful "
 						+ "when test case works only with specific DB configuration and"
 						+ "manual, general purpose config has no sense."));
+		META.put(SESSION_STACKTRACE_SAMPLING, new PropertyMD("0").setNonNegative().
+				setDescription("Debugging option. If set to a positive number N, then stack trace "
+						+ "of the code opening a database session is recorded for every N-th session. "
+						+ "The stack trace is printed when the session is kept open for too long. "
+						+ "Recording of stack traces is costly, so it is disabled by default."));
 	}
 	
 	@Autowired
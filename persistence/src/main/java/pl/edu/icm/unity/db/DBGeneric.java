@@ -4,33 +4,69 @@
  */
 package pl.edu.icm.unity.db;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import org.apache.ibatis.session.SqlSession;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import pl.edu.icm.unity.server.api.internal.CacheInvalidationListener;
+import pl.edu.icm.unity.db.cache.CacheInvalidationManager;
 import pl.edu.icm.unity.db.mapper.GenericMapper;
 import pl.edu.icm.unity.db.model.DBLimits;
 import pl.edu.icm.unity.db.model.GenericObjectBean;
 import pl.edu.icm.unity.exceptions.WrongArgumentException;
+import pl.edu.icm.unity.server.utils.UnityServerConfiguration;
 
 
 /**
  * Interface allowing to manipulate generic content tables.
+ * <p>
+ * Objects of types for which caching was enabled are kept in memory. All modifications are performed with
+ * this class, so the cache of a type is dropped whenever its object is added, updated or removed. 
+ * Sessions which modified objects of a type are not using its cache until released. 
+ * Changes performed on other nodes are visible after the storage caches TTL passes.
+ * <p>
+ * Together with the raw objects also their decoded forms can be cached, see 
+ * {@link #getDecodedObjectsOfType(String, SqlSession, Function)}. Those are dropped with the raw objects.
  * @author K. Benedyczak
  */
 @Component
-public class DBGeneric
+public class DBGeneric implements CacheInvalidationListener
 {
 	private DBLimits limits;
+	private CacheInvalidationManager cacheInvalidation;
+	private long maxAge;
+	private Map<String, TypeCache> caches = new ConcurrentHashMap<>();
 	
 	@Autowired
-	public DBGeneric(DB db)
+	public DBGeneric(DB db, CacheInvalidationManager cacheInvalidation, UnityServerConfiguration cfg)
 	{
 		this.limits = db.getDBLimits();
+		this.cacheInvalidation = cacheInvalidation;
+		this.maxAge = cfg.getIntValue(UnityServerConfiguration.CACHES_TTL) * 1000L;
+		cacheInvalidation.addListener(this);
+	}
+
+	/**
+	 * Enables in-memory caching of all objects of the given type. Should be used only for types with 
+	 * a moderate number of rarely modified objects, as configuration elements.
+	 * @param type
+	 */
+	public void enableCaching(String type)
+	{
+		if (maxAge > 0)
+			caches.putIfAbsent(type, new TypeCache());
 	}
 
 	/**
@@ -62,6 +98,7 @@ public class DBGeneric
 			mapper.insertObject2(toAdd);
 		else
 			mapper.insertObject(toAdd);
+		typeChanged(type, sqlMap);
 		return toAdd.getId();
 	}
 	
@@ -73,22 +110,66 @@ public class DBGeneric
 
 	public Set<String> getNamesOfType(String type, SqlSession sqlMap)
 	{
+		CachedObjects cached = getCached(type, sqlMap);
+		if (cached != null)
+			return new HashSet<>(cached.byName.keySet());
 		GenericMapper mapper = sqlMap.getMapper(GenericMapper.class);
 		return mapper.selectObjectNamesByType(type);
 	}
 	
 	public List<GenericObjectBean> getObjectsOfType(String type, SqlSession sqlMap)
 	{
+		CachedObjects cached = getCached(type, sqlMap);
+		if (cached != null)
+			return new ArrayList<>(cached.all);
 		GenericMapper mapper = sqlMap.getMapper(GenericMapper.class);
 		return mapper.selectObjectsByType(type);
 	}
 	
 	public GenericObjectBean getObjectByNameType(String name, String type, SqlSession sqlMap)
 	{
+		CachedObjects cached = getCached(type, sqlMap);
+		if (cached != null)
+			return cached.byName.get(name);
 		GenericMapper mapper = sqlMap.getMapper(GenericMapper.class);
 		return mapper.selectObjectByNameType(new GenericObjectBean(name, null, type));
 	}
 
+	/**
+	 * Returns the object decoded with the given decoder. If the type is cached, the decoded object is 
+	 * cached too, so the decoder is not invoked again until the type's cache is invalidated. 
+	 * Therefore the decoder must not depend on the session state and the returned object, 
+	 * which is shared, must not be modified.
+	 * @return decoded object or null if there is no such object
+	 */
+	public <T> T getDecodedObject(String name, String type, SqlSession sqlMap, 
+			Function<GenericObjectBean, T> decoder)
+	{
+		CachedObjects cached = getCached(type, sqlMap);
+		if (cached == null)
+		{
+			GenericObjectBean raw = getObjectByNameType(name, type, sqlMap);
+			return raw == null ? null : decoder.apply(raw);
+		}
+		GenericObjectBean raw = cached.byName.get(name);
+		return raw == null ? null : cached.getDecoded(raw, decoder);
+	}
+
+	/**
+	 * As {@link #getDecodedObject(String, String, SqlSession, Function)} but returns all objects of the type.
+	 * @return decoded objects indexed with names, in the order of the raw objects.
+	 */
+	public <T> Map<String, T> getDecodedObjectsOfType(String type, SqlSession sqlMap, 
+			Function<GenericObjectBean, T> decoder)
+	{
+		CachedObjects cached = getCached(type, sqlMap);
+		List<GenericObjectBean> all = cached == null ? getObjectsOfType(type, sqlMap) : cached.all;
+		Map<String, T> ret = new LinkedHashMap<>(all.size());
+		for (GenericObjectBean raw: all)
+			ret.put(raw.getName(), cached == null ? decoder.apply(raw) : cached.getDecoded(raw, decoder));
+		return ret;
+	}
+
 	public void removeObject(String name, String type, SqlSession sqlMap)
 			throws WrongArgumentException
 	{
@@ -96,12 +177,14 @@ public class DBGeneric
 		GenericObjectBean param = new GenericObjectBean(name, null, type);
 		checkExists(param, mapper, true);
 		mapper.deleteObjectByNameType(param);
+		typeChanged(type, sqlMap);
 	}
 	
 	public void removeObjectsByType(String type, SqlSession sqlMap)
 	{
 		GenericMapper mapper = sqlMap.getMapper(GenericMapper.class);
 		mapper.deleteObjectsByType(type);
+		typeChanged(type, sqlMap);
 	}
 	
 	
@@ -116,6 +199,7 @@ public class DBGeneric
 		GenericObjectBean updated = new GenericObjectBean(name, contents, type);
 		checkExists(updated, mapper, true);
 		mapper.updateByNameType(updated);
+		typeChanged(type, sqlMap);
 	}
 	
 	private void checkExists(GenericObjectBean param, GenericMapper mapper, boolean shouldExist) 
@@ -133,7 +217,97 @@ public class DBGeneric
 					+ " name already exists");
 		}
 	}
-}
 
+	/**
+	 * @return cached objects of the given type or null if the cache can not be used
+	 */
+	private CachedObjects getCached(String type, SqlSession sqlMap)
+	{
+		TypeCache cache = caches.get(type);
+		if (cache == null || cacheInvalidation.isObjectTypeModifiedInSession(type, sqlMap))
+			return null;
+		CachedObjects current = cache.objects;
+		if (current != null && System.currentTimeMillis() - current.created < maxAge)
+			return current;
+
+		long generationAtStart = cache.getGeneration();
+		long loadStart = System.currentTimeMillis();
+		GenericMapper mapper = sqlMap.getMapper(GenericMapper.class);
+		CachedObjects loaded = new CachedObjects(mapper.selectObjectsByType(type), loadStart);
+		cache.store(loaded, generationAtStart);
+		return loaded;
+	}
 
+	private void typeChanged(String type, SqlSession sqlMap)
+	{
+		if (caches.containsKey(type))
+			cacheInvalidation.objectsChanged(type, sqlMap);
+	}
 
+	@Override
+	public void invalidateEntity(long entityId)
+	{
+	}
+
+	@Override
+	public void invalidateAll()
+	{
+		for (TypeCache cache: caches.values())
+			cache.invalidate();
+	}
+
+	@Override
+	public void invalidateObjects(String type)
+	{
+		TypeCache cache = caches.get(type);
+		if (cache != null)
+			cache.invalidate();
+	}
+
+	private static class TypeCache
+	{
+		private volatile CachedObjects objects;
+		private long generation;
+
+		private synchronized long getGeneration()
+		{
+			return generation;
+		}
+
+		private synchronized void store(CachedObjects loaded, long generationAtStart)
+		{
+			if (generation == generationAtStart)
+				objects = loaded;
+		}
+
+		private synchronized void invalidate()
+		{
+			generation++;
+			objects = null;
+		}
+	}
+
+	private static class CachedObjects
+	{
+		private final List<GenericObjectBean> all;
+		private final Map<String, GenericObjectBean> byName;
+		private final Map<String, Object> decoded = new ConcurrentHashMap<>();
+		private final long created;
+
+		private CachedObjects(List<GenericObjectBean> all, long created)
+		{
+			this.all = Collections.unmodifiableList(all);
+			this.created = created;
+			Map<String, GenericObjectBean> byName = new HashMap<>(all.size());
+			for (GenericObjectBean object: all)
+				byName.put(object.getName(), object);
+			this.byName = Collections.unmodifiableMap(byName);
+		}
+
+		@SuppressWarnings("unchecked")
+		private <T> T getDecoded(GenericObjectBean raw, Function<GenericObjectBean, T> decoder)
+		{
+			return (T) decoded.computeIfAbsent(raw.getName(), name -> decoder.apply(raw));
+		}
+	}
+}
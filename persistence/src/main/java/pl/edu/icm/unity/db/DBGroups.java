@@ -15,6 +15,7 @@ import org.apache.ibatis.session.SqlSession;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import pl.edu.icm.unity.db.cache.CacheInvalidationManager;
 import pl.edu.icm.unity.db.generic.DependencyNotificationManager;
 import pl.edu.icm.unity.db.json.GroupMembershipSerializer;
 import pl.edu.icm.unity.db.json.GroupsSerializer;
@@ -24,6 +25,7 @@ import pl.edu.icm.unity.db.model.AttributeBean;
 import pl.edu.icm.unity.db.model.DBLimits;
 import pl.edu.icm.unity.db.model.GroupBean;
 import pl.edu.icm.unity.db.model.GroupElementBean;
+import pl.edu.icm.unity.db.model.GroupMembersQueryBean;
 import pl.edu.icm.unity.db.resolvers.GroupResolver;
 import pl.edu.icm.unity.db.resolvers.IdentitiesResolver;
 import pl.edu.icm.unity.exceptions.EngineException;
@@ -54,13 +56,15 @@ public class DBGroups
 	private GroupsSerializer jsonS;
 	private DependencyNotificationManager notificationsManager;
 	private GroupMembershipSerializer groupMembershipSerializer;
+	private CacheInvalidationManager cacheInvalidation;
 	
 	@Autowired
 	public DBGroups(DBShared dbShared, GroupResolver groupResolver, IdentitiesResolver idResolver, 
 			GroupsSerializer jsonS, DB db, DependencyNotificationManager notificationsManager,
-			GroupMembershipSerializer groupMembershipSerializer)
+			GroupMembershipSerializer groupMembershipSerializer, CacheInvalidationManager cacheInvalidation)
 	{
 		this.groupResolver = groupResolver;
+		this.cacheInvalidation = cacheInvalidation;
 		this.idResolver = idResolver;
 		this.groupMembershipSerializer = groupMembershipSerializer;
 		this.limits = db.getDBLimits();
@@ -99,6 +103,7 @@ public class DBGroups
 		notificationsManager.firePreAddEvent(GROUPS_NOTIFICATION_ID, toAdd, sqlMap);
 		
 		mapper.insertGroup(param);
+		cacheInvalidation.allChanged(sqlMap);
 		
 		sqlMap.clearCache();
 	}
@@ -206,9 +211,65 @@ public class DBGroups
 				translationProfile, idp));
 		GroupElementBean param = new GroupElementBean(gb.getId(), entityId);
 		param.setContents(contents);
+		param.setCreated(getCreated(creationTs));
 		if (mapper.isMember(param) != null)
 			throw new IllegalGroupValueException("The entity is already a member of this group");
 		mapper.insertMember(param);
+		cacheInvalidation.entityChanged(entityId, sqlMap);
+	}
+	
+	private static long getCreated(Date creationTs)
+	{
+		return creationTs == null ? 0 : creationTs.getTime();
+	}
+	
+	/**
+	 * Returns a page of the group members, ordered by entity ids or by the membership creation time.
+	 * @param path
+	 * @param offset number of members to be skipped
+	 * @param limit maximum number of members to be returned
+	 * @param orderByCreation
+	 * @param entityId if not null then only membership of this entity is returned
+	 * @param sqlMap
+	 * @return
+	 * @throws IllegalGroupValueException
+	 */
+	public List<GroupMembership> getMembers(String path, int offset, int limit, boolean orderByCreation, 
+			Long entityId, SqlSession sqlMap) throws IllegalGroupValueException
+	{
+		GroupsMapper mapper = sqlMap.getMapper(GroupsMapper.class);
+		GroupBean gb = groupResolver.resolveGroup(path, mapper);
+		List<GroupElementBean> membersRaw = mapper.getMembersPage(new GroupMembersQueryBean(gb.getId(), 
+				entityId, orderByCreation, offset, limit));
+		return convertEntities(membersRaw, path);
+	}
+
+	public int getMembersCount(String path, SqlSession sqlMap) throws IllegalGroupValueException
+	{
+		GroupsMapper mapper = sqlMap.getMapper(GroupsMapper.class);
+		GroupBean gb = groupResolver.resolveGroup(path, mapper);
+		return mapper.getMembersCount(new GroupMembersQueryBean(gb.getId(), null, false, 0, 0));
+	}
+	
+	/**
+	 * Sets the indexed creation time of all group memberships, using the time stored in the membership 
+	 * contents. Used when updating from the older DB schema version.
+	 * @param sqlMap
+	 */
+	public void updateMembershipCreationTimes(SqlSession sqlMap)
+	{
+		GroupsMapper mapper = sqlMap.getMapper(GroupsMapper.class);
+		for (GroupBean gb: mapper.getGroupsStructure())
+		{
+			String path = groupResolver.resolveGroupPath(gb, mapper);
+			for (GroupElementBean member: mapper.getMembers(gb.getId()))
+			{
+				GroupMembership membership = groupMembershipSerializer.fromJson(member.getContents(), 
+						member.getElementId(), path);
+				member.setCreated(getCreated(membership.getCreationTs()));
+				mapper.updateMemberCreated(member);
+			}
+		}
 	}
 	
 	public void removeMember(String path, EntityParam entity, SqlSession sqlMap) 
@@ -236,9 +297,11 @@ public class DBGroups
 				AttributeBean ab = new AttributeBean();
 				ab.setEntityId(entityId);
 				ab.setGroupId(gb2.getId());
+				aMapper.deleteAttributeValueHashesInGroup(ab);
 				aMapper.deleteAttributesInGroup(ab);
 			}
 		}
+		cacheInvalidation.entityChanged(entityId, sqlMap);
 	}
 	
 	/**
@@ -269,6 +332,8 @@ public class DBGroups
 				modified++;
 			}
 		}
+		if (modified > 0)
+			cacheInvalidation.allChanged(sqlMap);
 		return modified;
 	}
 	
@@ -5,6 +5,7 @@
 package pl.edu.icm.unity.db;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -17,12 +18,14 @@ import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import pl.edu.icm.unity.db.cache.CacheInvalidationManager;
 import pl.edu.icm.unity.db.json.EntitySerializer;
 import pl.edu.icm.unity.db.json.IdentitySerializer;
 import pl.edu.icm.unity.db.json.IdentityTypeSerializer;
 import pl.edu.icm.unity.db.mapper.IdentitiesMapper;
 import pl.edu.icm.unity.db.model.BaseBean;
 import pl.edu.icm.unity.db.model.DBLimits;
+import pl.edu.icm.unity.db.model.EntityBean;
 import pl.edu.icm.unity.db.model.IdentityBean;
 import pl.edu.icm.unity.db.resolvers.IdentitiesResolver;
 import pl.edu.icm.unity.exceptions.IllegalIdentityValueException;
@@ -56,12 +59,17 @@ public class DBIdentities
 	private IdentityTypeSerializer idTypeSerializer;
 	private IdentityTypesRegistry idTypesRegistry;
 	private IdentitiesResolver idResolver;
+	private CacheInvalidationManager cacheInvalidation;
+	private SessionIdentitiesStore sessionIdentities;
 	
 	@Autowired
 	public DBIdentities(DB db, IdentityTypesRegistry idTypesRegistry, IdentitySerializer idSerializer,
 			IdentityTypeSerializer idTypeSerializer, IdentitiesResolver idResolver, 
-			EntitySerializer entitySerializer)
+			EntitySerializer entitySerializer, CacheInvalidationManager cacheInvalidation,
+			SessionIdentitiesStore sessionIdentities)
 	{
+		this.cacheInvalidation = cacheInvalidation;
+		this.sessionIdentities = sessionIdentities;
 		this.limits = db.getDBLimits();
 		this.idSerializer = idSerializer;
 		this.idTypeSerializer = idTypeSerializer;
@@ -118,9 +126,12 @@ public class DBIdentities
 	 * @param entityB
 	 * @param sqlMap
 	 */
-	public void insertEntity(BaseBean entityB, SqlSession sqlMap)
+	public void insertEntity(EntityBean entityB, SqlSession sqlMap)
 	{
 		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
+		if (entityB.getContents() != null)
+			entityB.setScheduledOperationTime(getScheduledOperationTime(
+					entitySerializer.fromJson(entityB.getContents())));
 		if (entityB.getId() == null)
 			mapper.insertEntity(entityB);
 		else
@@ -165,13 +176,13 @@ public class DBIdentities
 						+ "for identity type " + idTypeDef.getId());
 		}
 		String cmpVal = IdentitiesResolver.getComparableIdentityValue(toAdd, idTypeDef);
-		if (mapper.getIdentityByName(cmpVal) != null)
+		if (idResolver.getIdentityByName(cmpVal, idTypeDef, sqlMap) != null)
 			throw new IllegalIdentityValueException("The identity with this value is already present");
 		limits.checkNameLimit(cmpVal);
 		
 		if (entityId == null)
 		{
-			BaseBean entityB = new BaseBean();
+			EntityBean entityB = new EntityBean();
 			insertEntity(entityB, sqlMap);
 			entityId = entityB.getId();
 		}
@@ -183,6 +194,7 @@ public class DBIdentities
 		Date ts = new Date();
 		idB.setContents(idSerializer.toJson(toAdd, ts, ts));
 		mapper.insertIdentity(idB);
+		cacheInvalidation.entityChanged(entityId, sqlMap);
 		
 		IdentityType idType = idResolver.resolveIdentityType(identityTypeB);
 		return new Identity(idType, toAdd.getValue(), entityId, toAdd.getRealm(), toAdd.getTarget(),
@@ -210,6 +222,7 @@ public class DBIdentities
 		Date ts = new Date();
 		idB.setContents(idSerializer.toJson(resolved, resolved.getCreationTs(), ts));
 		mapper.updateIdentity(idB);
+		cacheInvalidation.entityChanged(idBean.getEntityId(), sqlMap);
 		return resolved;
 	}
 	
@@ -217,7 +230,7 @@ public class DBIdentities
 			throws IllegalTypeException
 	{
 		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
-		List<IdentityBean> rawRet = mapper.getIdentitiesByEntity(entityId);
+		List<IdentityBean> rawRet = getIdentityBeansOfEntity(entityId, mapper, sqlMap);
 		List<Identity> ret = new ArrayList<Identity>(rawRet.size());
 		Set<String> presentTypes = new HashSet<String>();
 		for (int i=0; i<rawRet.size(); i++)
@@ -230,7 +243,7 @@ public class DBIdentities
 			}
 		}
 		if (allowCreate)
-			addDynamic(entityId, presentTypes, ret, target, mapper);
+			addDynamic(entityId, presentTypes, ret, target, mapper, sqlMap);
 		return ret.toArray(new Identity[ret.size()]);
 	}
 
@@ -238,7 +251,7 @@ public class DBIdentities
 			throws IllegalTypeException
 	{
 		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
-		List<IdentityBean> rawRet = mapper.getIdentitiesByEntity(entityId);
+		List<IdentityBean> rawRet = getIdentityBeansOfEntity(entityId, mapper, sqlMap);
 		List<Identity> ret = new ArrayList<Identity>(rawRet.size());
 		for (int i=0; i<rawRet.size(); i++)
 		{
@@ -249,31 +262,113 @@ public class DBIdentities
 		return ret.toArray(new Identity[ret.size()]);
 	}
 	
+	/**
+	 * Bulk version of {@link #getIdentitiesForEntityNoContext(long, SqlSession)} (if noContext is true)
+	 * or {@link #getIdentitiesForEntity(long, String, boolean, SqlSession)} without target and 
+	 * without creation of dynamic identities (otherwise).
+	 * @param entityIds
+	 * @param noContext
+	 * @param sqlMap
+	 * @return identities of the given entities, indexed with entity ids
+	 * @throws IllegalTypeException
+	 */
+	public Map<Long, Identity[]> getIdentitiesForEntities(Collection<Long> entityIds, boolean noContext, 
+			SqlSession sqlMap) throws IllegalTypeException
+	{
+		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
+		Map<Long, List<Identity>> resolved = new HashMap<>();
+		for (long entityId: entityIds)
+			resolved.put(entityId, new ArrayList<>());
+		for (List<Long> part: DBShared.partition(entityIds))
+			for (IdentityBean idBean: mapper.getIdentitiesByEntities(part))
+				addResolved(idBean, noContext, mapper, resolved);
+		for (long entityId: entityIds)
+			for (IdentityBean idBean: sessionIdentities.getForEntity(entityId, sqlMap))
+				addResolved(idBean, noContext, mapper, resolved);
+		
+		Map<Long, Identity[]> ret = new HashMap<>(resolved.size());
+		for (Map.Entry<Long, List<Identity>> entry: resolved.entrySet())
+			ret.put(entry.getKey(), entry.getValue().toArray(new Identity[entry.getValue().size()]));
+		return ret;
+	}
+	
+	private void addResolved(IdentityBean idBean, boolean noContext, IdentitiesMapper mapper, 
+			Map<Long, List<Identity>> resolved) throws IllegalTypeException
+	{
+		Identity id = noContext ? idResolver.resolveIdentityBeanNoContext(idBean, mapper) :
+			idResolver.resolveIdentityBean(idBean, mapper, null);
+		if (id != null)
+			resolved.get(idBean.getEntityId()).add(id);
+	}
+	
+	private List<IdentityBean> getIdentityBeansOfEntity(long entityId, IdentitiesMapper mapper, 
+			SqlSession sqlMap)
+	{
+		List<IdentityBean> rawRet = mapper.getIdentitiesByEntity(entityId);
+		List<IdentityBean> inMemory = sessionIdentities.getForEntity(entityId, sqlMap);
+		if (inMemory.isEmpty())
+			return rawRet;
+		List<IdentityBean> ret = new ArrayList<>(rawRet.size() + inMemory.size());
+		ret.addAll(rawRet);
+		ret.addAll(inMemory);
+		return ret;
+	}
+	
+	/**
+	 * Removes expired identities. Only identities of dynamic types are checked, as other ones never expire.
+	 * Session bound identities are checked in memory, the database is queried for those which were stored
+	 * there. 
+	 * @param sqlMap
+	 */
 	public void removeExpiredIdentities(SqlSession sqlMap)
 	{
 		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
-		List<IdentityBean> rawRet = mapper.getIdentities();
-		for (IdentityBean identityBean: rawRet)
+		for (IdentityBean identityBean: sessionIdentities.getAll())
 		{
-			Identity resolved;
-			try
-			{
-				resolved = idResolver.resolveIdentityBeanNoExternalize(identityBean, mapper);
-			} catch (IllegalTypeException e)
+			if (isExpired(identityBean, mapper))
 			{
-				log.error("Can't resolve an identity stored in DB", e);
-				continue;
+				sessionIdentities.remove(identityBean.getName(), sqlMap);
+				cacheInvalidation.entityChanged(identityBean.getEntityId(), sqlMap);
 			}
-			IdentityRepresentation idRepresentation = new IdentityRepresentation(identityBean.getName(), 
-					resolved.getValue());
-			if (resolved.getType().getIdentityTypeProvider().isExpired(idRepresentation))
+		}
+		
+		for (IdentityTypeDefinition idType: idTypesRegistry.getDynamic())
+		{
+			BaseBean idTypeBean = mapper.getIdentityTypeByName(idType.getId());
+			if (idTypeBean == null)
+				continue;
+			for (IdentityBean identityBean: mapper.getIdentitiesByType(idTypeBean.getId()))
 			{
-				log.debug("Removing expired identity " + resolved);
-				mapper.deleteIdentity(identityBean.getName());
+				if (isExpired(identityBean, mapper))
+				{
+					mapper.deleteIdentity(identityBean.getName());
+					cacheInvalidation.entityChanged(identityBean.getEntityId(), sqlMap);
+				}
 			}
 		}
 	}
 	
+	private boolean isExpired(IdentityBean identityBean, IdentitiesMapper mapper)
+	{
+		Identity resolved;
+		try
+		{
+			resolved = idResolver.resolveIdentityBeanNoExternalize(identityBean, mapper);
+		} catch (IllegalTypeException e)
+		{
+			log.error("Can't resolve an identity stored in DB", e);
+			return false;
+		}
+		IdentityRepresentation idRepresentation = new IdentityRepresentation(identityBean.getName(), 
+				resolved.getValue());
+		if (resolved.getType().getIdentityTypeProvider().isExpired(idRepresentation))
+		{
+			log.debug("Removing expired identity " + resolved);
+			return true;
+		}
+		return false;
+	}
+	
 	public boolean isIdentityConfirmed(SqlSession sqlMap, IdentityTaV tav) 
 			throws IllegalTypeException, IllegalIdentityValueException
 	{
@@ -282,7 +377,7 @@ public class DBIdentities
 			return true;
 		String cmpVal = IdentitiesResolver.getComparableIdentityValue(tav, idTypeDef);
 		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
-		IdentityBean idBean = mapper.getIdentityByName(cmpVal);
+		IdentityBean idBean = idResolver.getIdentityByName(cmpVal, idTypeDef, sqlMap);
 		Identity resolved = idResolver.resolveIdentityBeanNoExternalize(idBean, mapper);
 		return resolved.isConfirmed();
 	}
@@ -291,7 +386,7 @@ public class DBIdentities
 	 * Creates dynamic identities which are currently absent for the entity.
 	 */
 	private void addDynamic(long entityId, Set<String> presentTypes, List<Identity> ret, String target, 
-			IdentitiesMapper mapper)
+			IdentitiesMapper mapper, SqlSession sqlMap)
 	{
 		for (IdentityTypeDefinition idType: idTypesRegistry.getDynamic())
 		{
@@ -299,9 +394,12 @@ public class DBIdentities
 				continue;
 			if (idType.isTargeted() && target == null)
 				continue;
-			Identity added = idResolver.createDynamicIdentity(idType, entityId, mapper, target);
+			Identity added = idResolver.createDynamicIdentity(idType, entityId, sqlMap, target);
 			if (added != null)
+			{
 				ret.add(added);
+				cacheInvalidation.entityChanged(entityId, sqlMap);
+			}
 		}
 	}
 	
@@ -309,7 +407,7 @@ public class DBIdentities
 			throws IllegalTypeException
 	{
 		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
-		List<IdentityBean> rawRet = mapper.getIdentitiesByEntity(entityId);
+		List<IdentityBean> rawRet = getIdentityBeansOfEntity(entityId, mapper, sqlMap);
 		for (IdentityBean idBean: rawRet)
 		{
 			Identity id = idResolver.resolveIdentityBeanNoExternalize(idBean, mapper);
@@ -322,7 +420,7 @@ public class DBIdentities
 					continue;
 				if (target != null && !target.equals(id.getTarget()))
 					continue;
-				mapper.deleteIdentity(idBean.getName());
+				deleteIdentity(idBean, mapper, sqlMap);
 			}
 		}
 	}
@@ -331,10 +429,27 @@ public class DBIdentities
 			throws IllegalIdentityValueException, IllegalTypeException
 	{
 		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
-		BaseBean bean = mapper.getEntityById(entityId);
+		EntityBean bean = mapper.getEntityById(entityId);
 		return entitySerializer.fromJson(bean.getContents());
 	}
 
+	/**
+	 * Bulk version of {@link #getEntityInformation(long, SqlSession)}.
+	 * @param entityIds
+	 * @param sqlMap
+	 * @return information about the given entities, indexed with entity ids. Not existing entities are
+	 * not included.
+	 */
+	public Map<Long, EntityInformation> getEntitiesInformation(Collection<Long> entityIds, SqlSession sqlMap) 
+	{
+		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
+		Map<Long, EntityInformation> ret = new HashMap<>();
+		for (List<Long> part: DBShared.partition(entityIds))
+			for (EntityBean bean: mapper.getEntitiesById(part))
+				ret.put(bean.getId(), entitySerializer.fromJson(bean.getContents()));
+		return ret;
+	}
+
 	public EntityState getEntityStatus(long entityId, SqlSession sqlMap) 
 			throws IllegalIdentityValueException, IllegalTypeException
 	{
@@ -345,17 +460,18 @@ public class DBIdentities
 			throws IllegalIdentityValueException, IllegalTypeException
 	{
 		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
-		BaseBean bean = mapper.getEntityById(entityId);
+		EntityBean bean = mapper.getEntityById(entityId);
 		EntityInformation info = entitySerializer.fromJson(bean.getContents());
 		info.setState(status);
-		byte[] infoJson = entitySerializer.toJson(info);
-		bean.setContents(infoJson);
-		mapper.updateEntity(bean);
+		updateEntity(bean, info, mapper);
 	}
 	
 	/**
 	 * If entity is in the state {@link EntityState#onlyLoginPermitted} this method clears the 
 	 *  removal of the entity: state is set to enabled and user ordered removal is removed.
+	 * The entity is loaded only if it has any operation scheduled, what is checked with the indexed 
+	 * column first. The state is set only together with the user ordered removal time, so the check is
+	 * sufficient.
 	 * @param entityId
 	 * @param sqlMap
 	 * @throws IllegalIdentityValueException
@@ -365,7 +481,9 @@ public class DBIdentities
 			throws IllegalIdentityValueException, IllegalTypeException
 	{
 		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
-		BaseBean bean = mapper.getEntityById(entityId);
+		if (mapper.getScheduledOperationTimeOfEntity(entityId) == null)
+			return;
+		EntityBean bean = mapper.getEntityById(entityId);
 		EntityInformation info = entitySerializer.fromJson(bean.getContents());
 		if (info.getState() != EntityState.onlyLoginPermitted)
 			return;
@@ -373,9 +491,7 @@ public class DBIdentities
 			entityId);
 		info.setState(EntityState.valid);
 		info.setRemovalByUserTime(null);
-		byte[] infoJson = entitySerializer.toJson(info);
-		bean.setContents(infoJson);
-		mapper.updateEntity(bean);
+		updateEntity(bean, info, mapper);
 	}
 
 	public void setScheduledOperationByAdmin(long entityId, Date when,
@@ -385,7 +501,7 @@ public class DBIdentities
 		if (operation != null && when == null)
 			throw new IllegalArgumentException("Date must be set for the scheduled operation");
 		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
-		BaseBean bean = mapper.getEntityById(entityId);
+		EntityBean bean = mapper.getEntityById(entityId);
 		EntityInformation info = entitySerializer.fromJson(bean.getContents());
 
 		if (operation == null)
@@ -398,16 +514,14 @@ public class DBIdentities
 			info.setScheduledOperationTime(when);
 		}
 
-		byte[] infoJson = entitySerializer.toJson(info);
-		bean.setContents(infoJson);
-		mapper.updateEntity(bean);
+		updateEntity(bean, info, mapper);
 	}
 
 	public void setScheduledRemovalByUser(long entityId, Date when, SqlSession sqlMap) 
 			throws IllegalIdentityValueException, IllegalTypeException
 	{
 		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
-		BaseBean bean = mapper.getEntityById(entityId);
+		EntityBean bean = mapper.getEntityById(entityId);
 		EntityInformation info = entitySerializer.fromJson(bean.getContents());
 
 		if (when == null)
@@ -419,9 +533,7 @@ public class DBIdentities
 			info.setState(EntityState.onlyLoginPermitted);
 		}
 
-		byte[] infoJson = entitySerializer.toJson(info);
-		bean.setContents(infoJson);
-		mapper.updateEntity(bean);
+		updateEntity(bean, info, mapper);
 	}
 	
 	public void removeIdentity(IdentityTaV toRemove, SqlSession sqlMap) throws IllegalIdentityValueException, 
@@ -433,21 +545,83 @@ public class DBIdentities
 		
 		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
 		String cmpVal = IdentitiesResolver.getComparableIdentityValue(toRemove, idTypeDef);
-		IdentityBean idBean = mapper.getIdentityByName(cmpVal); 
+		IdentityBean idBean = idResolver.getIdentityByName(cmpVal, idTypeDef, sqlMap); 
 		if (idBean == null)
 			throw new IllegalIdentityValueException("The identity does not exist");
 		
-		mapper.deleteIdentity(cmpVal);
+		deleteIdentity(idBean, mapper, sqlMap);
+	}
+	
+	private void deleteIdentity(IdentityBean idBean, IdentitiesMapper mapper, SqlSession sqlMap)
+	{
+		if (!sessionIdentities.remove(idBean.getName(), sqlMap))
+			mapper.deleteIdentity(idBean.getName());
+		cacheInvalidation.entityChanged(idBean.getEntityId(), sqlMap);
 	}
 	
 	public void removeEntity(long entityId, SqlSession sqlMap)
 	{
 		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
 		mapper.deleteEntity(entityId);
+		sessionIdentities.removeForEntity(entityId, sqlMap);
+		cacheInvalidation.entityChanged(entityId, sqlMap);
+	}
+	
+	/**
+	 * Drops session bound identities kept in memory, which were created for the given login session.
+	 * @param loginSessionId
+	 */
+	public void removeSessionIdentities(String loginSessionId)
+	{
+		sessionIdentities.removeForSession(loginSessionId);
+	}
+	
+	private void updateEntity(EntityBean bean, EntityInformation info, IdentitiesMapper mapper)
+	{
+		bean.setContents(entitySerializer.toJson(info));
+		bean.setScheduledOperationTime(getScheduledOperationTime(info));
+		mapper.updateEntity(bean);
+	}
+	
+	/**
+	 * @param info
+	 * @return the time of the earliest operation scheduled for the entity (either by admin or by the user) 
+	 * or null if there is no such operation.
+	 */
+	private static Long getScheduledOperationTime(EntityInformation info)
+	{
+		Date adminOp = info.getScheduledOperationTime();
+		Date userRemoval = info.getRemovalByUserTime();
+		if (adminOp == null)
+			return userRemoval == null ? null : userRemoval.getTime();
+		if (userRemoval == null)
+			return adminOp.getTime();
+		return Math.min(adminOp.getTime(), userRemoval.getTime());
+	}
+	
+	/**
+	 * Sets the time of the earliest scheduled operation of all entities. Needed only once, 
+	 * after the column was added to the schema.
+	 * @param sqlMap
+	 */
+	public void updateScheduledOperationTimes(SqlSession sqlMap)
+	{
+		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
+		for (EntityBean entityBean: mapper.getEntities())
+		{
+			EntityInformation entityInfo = entitySerializer.fromJson(entityBean.getContents());
+			Long scheduledOperationTime = getScheduledOperationTime(entityInfo);
+			if (scheduledOperationTime != null)
+			{
+				entityBean.setScheduledOperationTime(scheduledOperationTime);
+				mapper.updateEntity(entityBean);
+			}
+		}
 	}
 	
 	/**
-	 * Performs all scheduled operations due by now
+	 * Performs all scheduled operations due by now. Only the entities with due operations are loaded, 
+	 * using the indexed time of the earliest scheduled operation.
 	 * @param sqlMap
 	 * @return the time when the earliest scheduled operation should take place. If there is no such operation 
 	 * returned time is very far in future.
@@ -455,39 +629,35 @@ public class DBIdentities
 	public Date performScheduledEntityOperations(SqlSession sqlMap)
 	{
 		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
-		List<BaseBean> rawRet = mapper.getEntities();
 		Date now = new Date();
-		Date ret = new Date(Long.MAX_VALUE);
-		for (BaseBean entityBean: rawRet)
+		List<EntityBean> rawRet = mapper.getEntitiesWithScheduledOperationDue(now.getTime());
+		for (EntityBean entityBean: rawRet)
 		{
 			EntityInformation entityInfo = entitySerializer.fromJson(entityBean.getContents());
 			if (isSetAndAfter(now, entityInfo.getScheduledOperationTime()))
 			{
 				EntityScheduledOperation op = entityInfo.getScheduledOperation();
-				performScheduledOperationInternal(entityBean, op, entityInfo, mapper);
+				performScheduledOperationInternal(entityBean, op, entityInfo, mapper, sqlMap);
 			} else if (isSetAndAfter(now, entityInfo.getRemovalByUserTime()))
 			{
 				performScheduledOperationInternal(entityBean, 
-						EntityScheduledOperation.REMOVE, entityInfo, mapper);
+						EntityScheduledOperation.REMOVE, entityInfo, mapper, sqlMap);
 			}
-			
-			Date nextOp = entityInfo.getScheduledOperationTime();
-			if (nextOp != null && nextOp.before(ret))
-				ret = nextOp;
 		}
-		return ret;
+		Long next = mapper.getNextScheduledOperationTime();
+		return new Date(next == null ? Long.MAX_VALUE : next);
 	}
 
 	public void performScheduledOperation(long entityId, EntityScheduledOperation op, SqlSession sqlMap)
 	{
 		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
-		BaseBean entityBean = mapper.getEntityById(entityId);
+		EntityBean entityBean = mapper.getEntityById(entityId);
 		EntityInformation entityInfo = entitySerializer.fromJson(entityBean.getContents());
-		performScheduledOperationInternal(entityBean, op, entityInfo, mapper);
+		performScheduledOperationInternal(entityBean, op, entityInfo, mapper, sqlMap);
 	}
 	
-	private void performScheduledOperationInternal(BaseBean entityBean, EntityScheduledOperation op,
-			EntityInformation entityInfo, IdentitiesMapper mapper)
+	private void performScheduledOperationInternal(EntityBean entityBean, EntityScheduledOperation op,
+			EntityInformation entityInfo, IdentitiesMapper mapper, SqlSession sqlMap)
 	{
 		switch (op)
 		{
@@ -498,19 +668,19 @@ public class DBIdentities
 		case REMOVE:
 			log.info("Performing scheduled removal of entity " + entityBean.getId());
 			mapper.deleteEntity(entityBean.getId());
+			sessionIdentities.removeForEntity(entityBean.getId(), sqlMap);
+			cacheInvalidation.entityChanged(entityBean.getId(), sqlMap);
 			break;
 		}
 	}
 	
-	private void disableInternal(EntityInformation entityInfo, BaseBean entityBean, IdentitiesMapper mapper)
+	private void disableInternal(EntityInformation entityInfo, EntityBean entityBean, IdentitiesMapper mapper)
 	{
 		entityInfo.setState(EntityState.disabled);
 		entityInfo.setScheduledOperation(null);
 		entityInfo.setScheduledOperationTime(null);
 		entityInfo.setRemovalByUserTime(null);
-		byte[] infoJson = entitySerializer.toJson(entityInfo);
-		entityBean.setContents(infoJson);
-		mapper.updateEntity(entityBean);
+		updateEntity(entityBean, entityInfo, mapper);
 	}
 	
 	private boolean isSetAndAfter(Date now, Date date)
@@ -529,6 +699,8 @@ public class DBIdentities
 		ib.setName(cmpVal);
 		ib.setEntityId(to);
 		mapper.updateIdentityEntity(ib);
+		cacheInvalidation.entityChanged(toReassign.getEntityId(), sqlMap);
+		cacheInvalidation.entityChanged(to, sqlMap);
 	}
 }
 
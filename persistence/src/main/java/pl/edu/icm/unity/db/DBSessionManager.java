@@ -11,11 +11,18 @@ package pl.edu.icm.unity.db;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.session.Configuration;
@@ -27,13 +34,21 @@ import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import pl.edu.icm.unity.db.cache.CacheInvalidationManager;
 import pl.edu.icm.unity.exceptions.InternalException;
+import pl.edu.icm.unity.server.utils.ExecutorsService;
 import pl.edu.icm.unity.server.utils.Log;
 import eu.unicore.util.db.DBPropertiesHelper;
 
 
 /**
  * Provides initial MyBatis initialization and support for obtaining MyBatis SqlSessions.
+ * <p>
+ * Sessions which are kept open for too long are reported by a watchdog running in background. 
+ * Stack traces of the code opening sessions are recorded only if enabled in configuration, 
+ * for every N-th session.
+ * <p>
+ * The returned sessions report commits, rollbacks and closing to the registered {@link SqlSessionListener}s.
  * 
  * @author K. Benedyczak
  */
@@ -45,17 +60,37 @@ public class DBSessionManager implements SessionManager
 	public static final String DEF_MAPCONFIG_LOCATION = "pl/edu/icm/unity/db/mapper/mapconfig.xml";
 
 	public static final int SESSION_KEEP_WARN_TIME = 3000;
+	public static final int WATCHDOG_INTERVAL = 1000;
 	
 	private SqlSessionFactory sqlMapFactory;
-	private Map<SqlSession, Holder> used = new HashMap<SqlSession, Holder>();
+	private Map<SqlSession, Holder> used = new ConcurrentHashMap<SqlSession, Holder>();
+	private CacheInvalidationManager cacheInvalidation;
+	private int stackTraceSampling;
+	private AtomicLong openedSessions = new AtomicLong();
+	private List<SqlSessionListener> listeners = new CopyOnWriteArrayList<>();
 
 	@Autowired
-	public DBSessionManager(DBConfiguration config) throws InternalException, IOException
+	public DBSessionManager(DBConfiguration config, CacheInvalidationManager cacheInvalidation,
+			ExecutorsService executorsService) throws InternalException, IOException
 	{
-		sqlMapFactory = loadMybatis(config);
+		this(loadMybatis(config), cacheInvalidation, 
+				config.getIntValue(DBConfiguration.SESSION_STACKTRACE_SAMPLING));
+		executorsService.getService().scheduleWithFixedDelay(this::runSessionWatchdog, 
+				WATCHDOG_INTERVAL, WATCHDOG_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * For tests: the watchdog is not scheduled.
+	 */
+	DBSessionManager(SqlSessionFactory sqlMapFactory, CacheInvalidationManager cacheInvalidation,
+			int stackTraceSampling)
+	{
+		this.sqlMapFactory = sqlMapFactory;
+		this.cacheInvalidation = cacheInvalidation;
+		this.stackTraceSampling = stackTraceSampling;
 	}
 	
-	private SqlSessionFactory loadMybatis(DBConfiguration config) throws IOException
+	private static SqlSessionFactory loadMybatis(DBConfiguration config) throws IOException
 	{
 		String mapFile = config.getFileValueAsString(DBConfiguration.DBCONFIG_FILE, false);
 		SqlSessionFactoryBuilder builder = new SqlSessionFactoryBuilder();
@@ -79,6 +114,9 @@ public class DBSessionManager implements SessionManager
 		return builder.build(reader, properties);
 	}
 
+	/**
+	 * Information about an open session. Report related fields are modified only by the watchdog.
+	 */
 	private static class Holder
 	{
 		private long timestamp;
@@ -96,6 +134,16 @@ public class DBSessionManager implements SessionManager
 		}
 	}
 	
+	/**
+	 * Listeners should be added during startup: only the sessions opened afterwards are reported.
+	 * If there are no listeners the sessions are not wrapped at all.
+	 * @param listener
+	 */
+	public void addListener(SqlSessionListener listener)
+	{
+		listeners.add(listener);
+	}
+	
 	@Override
 	public Configuration getMyBatisConfiguration()
 	{
@@ -111,47 +159,62 @@ public class DBSessionManager implements SessionManager
 	@Override
 	public SqlSession getSqlSession(ExecutorType executor, boolean transactional)
 	{
-		runSessionWatchdog();
 		SqlSession newSession = sqlMapFactory.openSession(executor, !transactional);
-		synchronized(this)
-		{
-			Holder h = new Holder(System.currentTimeMillis(), 
-				Thread.currentThread().getStackTrace(), 
-				Thread.currentThread().getName());
-			Holder p = used.put(newSession, h);
-			if (p != null)
-				log.warn("Ups! MyBatis returned a SqlSession which is already used!");
-		}
+		if (!listeners.isEmpty())
+			newSession = (SqlSession) Proxy.newProxyInstance(SqlSession.class.getClassLoader(), 
+					new Class<?>[] {SqlSession.class}, new ListenedSession(newSession, transactional));
+		Thread current = Thread.currentThread();
+		StackTraceElement[] stackTrace = shouldRecordStackTrace() ? current.getStackTrace() : null;
+		Holder h = new Holder(System.currentTimeMillis(), stackTrace, current.getName());
+		Holder p = used.put(newSession, h);
+		if (p != null)
+			log.warn("Ups! MyBatis returned a SqlSession which is already used!");
 		return newSession;
 	}
 	
-	private synchronized void runSessionWatchdog()
+	private boolean shouldRecordStackTrace()
 	{
-		long now = System.currentTimeMillis();
-		Iterator<Entry<SqlSession, Holder>> it = used.entrySet().iterator();
-		
-		while(it.hasNext())
+		return stackTraceSampling > 0 && 
+				openedSessions.incrementAndGet() % stackTraceSampling == 0;
+	}
+	
+	private void runSessionWatchdog()
+	{
+		for (String report: reportLongKeptSessions(System.currentTimeMillis()))
+			log.warn(report);
+	}
+	
+	/**
+	 * @param now
+	 * @return reports about the sessions which are kept open for too long and were not reported recently.
+	 */
+	List<String> reportLongKeptSessions(long now)
+	{
+		List<String> ret = new ArrayList<>();
+		for (Holder e: used.values())
 		{
-			Holder e = it.next().getValue();
 			long wait = now - e.timestamp;
 			long sinceLastLog = now - e.lastReport;
 			if (wait > SESSION_KEEP_WARN_TIME && sinceLastLog > e.reportDelay)
 			{
 				e.lastReport = now;
 				e.reportDelay *= 2;
-				log.warn("SqlSession is kept for more than " +
+				ret.add("SqlSession is kept for more than " +
 						SESSION_KEEP_WARN_TIME/1000 +
 						"s: " + wait/1000.0 + "s by " +
 						e.threadName + ". Next report in at least " + 
-						e.reportDelay + "ms. Stacktrace is:\n" +
-						produceStackTrace(e.stackTrace));
+						e.reportDelay + "ms. " + produceStackTrace(e.stackTrace));
 			}
 		}
+		return ret;
 	}
 	
 	private String produceStackTrace(StackTraceElement[] stackTrace)
 	{
-		StringBuilder sb = new StringBuilder();
+		if (stackTrace == null)
+			return "Stacktrace was not recorded, set " + DBConfiguration.PREFIX + 
+					DBConfiguration.SESSION_STACKTRACE_SAMPLING + " to record it.";
+		StringBuilder sb = new StringBuilder("Stacktrace is:\n");
 		for (StackTraceElement se: stackTrace)
 			sb.append("  ").append(se.toString()).append("\n");
 		return sb.toString();
@@ -160,16 +223,68 @@ public class DBSessionManager implements SessionManager
 	@Override
 	public void releaseSqlSession(SqlSession session)
 	{
-		synchronized(this)
+		Holder p = used.remove(session);
+		if (p == null)
 		{
-			Holder p = used.remove(session);
-			if (p == null)
+			log.warn("Thread trying to release not known session. "
+				+ produceStackTrace(Thread.currentThread().getStackTrace()));
+		}
+		session.close();
+		cacheInvalidation.sessionReleased(session);
+	}
+	
+	/**
+	 * Forwards all calls to the MyBatis session and notifies listeners about the end of work. 
+	 * The proxy has identity semantics of equals, as it is used as a key by the session aware components.
+	 */
+	private class ListenedSession implements InvocationHandler
+	{
+		private final SqlSession target;
+		private final boolean transactional;
+
+		private ListenedSession(SqlSession target, boolean transactional)
+		{
+			this.target = target;
+			this.transactional = transactional;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+		{
+			switch (method.getName())
+			{
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			}
+			Object ret;
+			try
+			{
+				ret = method.invoke(target, args);
+			} catch (InvocationTargetException e)
 			{
-				log.warn("Thread trying to release not known session:\n"
-					+ produceStackTrace(
-						Thread.currentThread().getStackTrace()));
+				throw e.getCause();
 			}
+			switch (method.getName())
+			{
+			case "commit":
+				for (SqlSessionListener listener: listeners)
+					listener.committed((SqlSession) proxy);
+				break;
+			case "rollback":
+				for (SqlSessionListener listener: listeners)
+					listener.rolledBack((SqlSession) proxy);
+				break;
+			case "close":
+				for (SqlSessionListener listener: listeners)
+					if (transactional)
+						listener.rolledBack((SqlSession) proxy);
+					else
+						listener.committed((SqlSession) proxy);
+				break;
+			}
+			return ret;
 		}
-		session.close();
 	}
 }
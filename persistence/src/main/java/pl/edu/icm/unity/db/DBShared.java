@@ -4,6 +4,9 @@
  */
 package pl.edu.icm.unity.db;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -14,6 +17,8 @@ import org.apache.ibatis.session.SqlSession;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.google.common.collect.Lists;
+
 import pl.edu.icm.unity.db.json.GroupMembershipSerializer;
 import pl.edu.icm.unity.db.json.GroupsSerializer;
 import pl.edu.icm.unity.db.mapper.GroupsMapper;
@@ -30,6 +35,12 @@ import pl.edu.icm.unity.types.basic.GroupMembership;
 @Component
 public class DBShared
 {
+	/**
+	 * Maximum number of ids put in a single IN (...) clause of bulk queries. Larger sets are queried 
+	 * in several parts. 
+	 */
+	public static final int BULK_QUERY_SIZE = 500;
+	
 	private GroupResolver groupResolver;
 	private GroupsSerializer jsonS;
 	private GroupMembershipSerializer groupMembershipSerializer;
@@ -53,17 +64,20 @@ public class DBShared
 
 	private GroupMembership toMembership(GroupElementBean b, GroupsMapper gMapper)
 	{
-		String group;
+		return groupMembershipSerializer.fromJson(
+				b.getContents(), b.getElementId(), getMembershipGroup(b, gMapper));
+	}
+
+	private String getMembershipGroup(GroupElementBean b, GroupsMapper gMapper)
+	{
 		try
 		{
-			group = groupResolver.resolveGroupPath(b.getGroupId(), gMapper);
+			return groupResolver.resolveGroupPath(b.getGroupId(), gMapper);
 		} catch (Exception e)
 		{
 			throw new IllegalStateException("DB inconsitent: group id in membership is unknown: " 
 					+ b.getGroupId());
 		}
-		return groupMembershipSerializer.fromJson(
-				b.getContents(), b.getElementId(), group);
 	}
 	
 	public Set<String> getAllGroups(long entityId, SqlSession sqlMap)
@@ -81,6 +95,42 @@ public class DBShared
 		return ret;
 	}
 	
+	/**
+	 * Bulk version of {@link #getAllGroups(long, SqlSession)}.
+	 * @param entityIds
+	 * @param sqlMap
+	 * @return groups of each of the given entities, indexed with entity id. Not existing entities are 
+	 * not included.
+	 */
+	public Map<Long, Set<String>> getAllGroups(Collection<Long> entityIds, SqlSession sqlMap)
+	{
+		GroupsMapper gMapper = sqlMap.getMapper(GroupsMapper.class);
+		Map<Long, Set<String>> ret = new HashMap<>();
+		for (List<Long> part: partition(entityIds))
+		{
+			for (GroupElementBean membership: gMapper.getGroupMembership4Entities(part))
+			{
+				Set<String> groups = ret.get(membership.getElementId());
+				if (groups == null)
+				{
+					groups = new HashSet<>();
+					ret.put(membership.getElementId(), groups);
+				}
+				groups.add(getMembershipGroup(membership, gMapper));
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * @param ids
+	 * @return the given ids split into lists which can be used in a single bulk query
+	 */
+	public static List<List<Long>> partition(Collection<Long> ids)
+	{
+		return Lists.partition(new ArrayList<>(ids), BULK_QUERY_SIZE);
+	}
+	
 	public Set<Group> getAllGroupsWithNames(long entityId, SqlSession sqlMap)
 	{
 		GroupsMapper gMapper = sqlMap.getMapper(GroupsMapper.class);
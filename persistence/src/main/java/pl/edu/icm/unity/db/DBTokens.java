@@ -4,18 +4,25 @@
  */
 package pl.edu.icm.unity.db;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.session.SqlSession;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import pl.edu.icm.unity.Constants;
 import pl.edu.icm.unity.db.mapper.TokensMapper;
 import pl.edu.icm.unity.db.model.DBLimits;
 import pl.edu.icm.unity.db.model.TokenBean;
 import pl.edu.icm.unity.exceptions.WrongArgumentException;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 
 /**
  * Interface allowing for manipulation of the tokens table.
@@ -99,6 +106,25 @@ public class DBTokens
 		}
 	}
 	
+	/**
+	 * Updates the last usage time of tokens and their inactivity deadline, if the maximum inactivity
+	 * time was set. Only the dedicated columns are updated, contents are not touched. 
+	 * Not existing tokens are ignored.
+	 * @param type
+	 * @param lastUsed last usage times indexed with token ids
+	 * @param sqlMap
+	 */
+	public void updateLastUsed(String type, Map<String, Date> lastUsed, SqlSession sqlMap)
+	{
+		TokensMapper mapper = sqlMap.getMapper(TokensMapper.class);
+		for (Map.Entry<String, Date> entry: lastUsed.entrySet())
+		{
+			TokenBean updated = new TokenBean(entry.getKey(), type);
+			updated.setLastUsed(entry.getValue());
+			mapper.updateTokenLastUsed(updated);
+		}
+	}
+	
 	public TokenBean getTokenById(String type, String id, SqlSession sqlMap) throws WrongArgumentException
 	{
 		TokensMapper mapper = sqlMap.getMapper(TokensMapper.class);
@@ -125,10 +151,94 @@ public class DBTokens
 		return mapper.selectTokensByType(type);
 	}
 	
-	public List<TokenBean> getExpiredTokens(SqlSession sqlMap)
+	/**
+	 * @param type if null then tokens of all types are returned
+	 * @param now
+	 * @param limit maximum number of returned ids
+	 * @param sqlMap
+	 * @return ids of tokens which expired before the given time
+	 */
+	public List<Long> getExpiredTokenIds(String type, Date now, int limit, SqlSession sqlMap)
+	{
+		TokensMapper mapper = sqlMap.getMapper(TokensMapper.class);
+		TokenBean param = new TokenBean(null, type);
+		param.setExpires(now);
+		return mapper.selectExpiredTokenIds(param, new RowBounds(0, limit));
+	}
+
+	public List<TokenBean> getTokensById(List<Long> ids, SqlSession sqlMap)
+	{
+		if (ids.isEmpty())
+			return new ArrayList<>();
+		TokensMapper mapper = sqlMap.getMapper(TokensMapper.class);
+		return mapper.selectTokensById(ids);
+	}
+	
+	public void removeTokensById(List<Long> ids, SqlSession sqlMap)
+	{
+		if (ids.isEmpty())
+			return;
+		TokensMapper mapper = sqlMap.getMapper(TokensMapper.class);
+		mapper.deleteTokensById(ids);
+	}
+
+	/**
+	 * Sets the maximum inactivity time of a token. The token is inactive when its last usage time 
+	 * is older then the maximum inactivity time.
+	 * @param id
+	 * @param type
+	 * @param maxInactivity in ms
+	 * @param lastUsed
+	 * @param sqlMap
+	 */
+	public void setMaxInactivity(String id, String type, long maxInactivity, Date lastUsed, SqlSession sqlMap)
+	{
+		TokensMapper mapper = sqlMap.getMapper(TokensMapper.class);
+		TokenBean updated = new TokenBean(id, type);
+		updated.setLastUsed(lastUsed);
+		updated.setMaxInactivity(maxInactivity);
+		updated.setInactivityDeadline(lastUsed.getTime() + maxInactivity);
+		mapper.updateTokenMaxInactivity(updated);
+	}
+	
+	/**
+	 * Sets the maximum inactivity time, last usage time and inactivity deadline of tokens without
+	 * absolute expiration, using the maxInactivity and lastUsed values of their JSON contents.
+	 * Needed only once, after the columns were added to the schema.
+	 * @param type
+	 * @param sqlMap
+	 * @throws IOException
+	 */
+	public void updateMaxInactivityFromContents(String type, SqlSession sqlMap) throws IOException
+	{
+		for (TokenBean token: getTokens(type, sqlMap))
+		{
+			if (token.getExpires() != null || token.getMaxInactivity() != null)
+				continue;
+			JsonNode contents = Constants.MAPPER.readTree(token.getContents());
+			if (!contents.has("maxInactivity") || !contents.has("lastUsed"))
+				continue;
+			long lastUsed = contents.get("lastUsed").asLong();
+			if (token.getLastUsed() != null && token.getLastUsed().getTime() > lastUsed)
+				lastUsed = token.getLastUsed().getTime();
+			setMaxInactivity(token.getName(), type, contents.get("maxInactivity").asLong(), 
+					new Date(lastUsed), sqlMap);
+		}
+	}
+	
+	/**
+	 * @param type
+	 * @param now
+	 * @param limit maximum number of returned names
+	 * @param sqlMap
+	 * @return names of tokens which were not used for longer then their maximum inactivity time.
+	 */
+	public List<String> getInactiveTokens(String type, Date now, int limit, SqlSession sqlMap)
 	{
 		TokensMapper mapper = sqlMap.getMapper(TokensMapper.class);
-		return mapper.selectExpiredTokens();
+		TokenBean param = new TokenBean(null, type);
+		param.setInactivityDeadline(now.getTime());
+		return mapper.selectInactiveTokenNames(param, new RowBounds(0, limit));
 	}
 	
 	private void checkExists(TokenBean param, TokensMapper mapper, boolean shouldExist) 
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.db;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.session.SqlSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import pl.edu.icm.unity.server.api.internal.CacheInvalidationListener;
+import pl.edu.icm.unity.db.cache.CacheInvalidationManager;
+import pl.edu.icm.unity.exceptions.EngineException;
+import pl.edu.icm.unity.server.utils.UnityServerConfiguration;
+import pl.edu.icm.unity.types.basic.AttributeExt;
+
+/**
+ * Materialized effective attributes of entities. For each entity the results of effective attribute
+ * queries are stored, per queried group and attribute.
+ * <p>
+ * Effective attributes of an entity depend only on its own identities, group memberships and direct attributes
+ * and on the global data: groups with their attribute statements, attribute types and attribute classes.
+ * Therefore a change of an entity drops the results of this entity only, while a global change drops
+ * everything. Results are neither used nor stored by sessions which modified the entity.
+ * Changes performed on other nodes are visible after the storage caches TTL passes.
+ * <p>
+ * The number of cached entities is limited, the least recently used entities are evicted.
+ * A loaded result is stored only if the entity's entry, which was current when loading started,
+ * was not invalidated in the meantime. Therefore changes of other entities don't prevent storing.
+ * @author K. Benedyczak
+ */
+@Component
+public class EffectiveAttributesCache implements CacheInvalidationListener
+{
+	private CacheInvalidationManager cacheInvalidation;
+	private long maxAge;
+	private int maxEntities;
+	private Map<Long, EntityEntry> entries;
+
+	@Autowired
+	public EffectiveAttributesCache(CacheInvalidationManager cacheInvalidation, UnityServerConfiguration cfg)
+	{
+		this.cacheInvalidation = cacheInvalidation;
+		this.maxAge = cfg.getIntValue(UnityServerConfiguration.CACHES_TTL) * 1000L;
+		this.maxEntities = cfg.getIntValue(UnityServerConfiguration.EFFECTIVE_ATTRIBUTES_CACHE_SIZE);
+		this.entries = new LinkedHashMap<Long, EntityEntry>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, EntityEntry> eldest)
+			{
+				return size() > maxEntities;
+			}
+		};
+		cacheInvalidation.addListener(this);
+	}
+
+	/**
+	 * @param entityId
+	 * @param groupPath queried group or null if all groups should be returned
+	 * @param attributeTypeName queried attribute or null if all should be returned
+	 * @param sql
+	 * @param loader used to compute the attributes if they are not cached
+	 * @return effective attributes indexed with groups and attribute names. The returned map is a copy which
+	 * can be freely modified.
+	 * @throws EngineException
+	 */
+	public Map<String, Map<String, AttributeExt<?>>> getEffectiveAttributes(long entityId, String groupPath,
+			String attributeTypeName, SqlSession sql, EffectiveAttributesLoader loader)
+			throws EngineException
+	{
+		if (maxAge == 0 || maxEntities == 0 || cacheInvalidation.isModifiedInSession(entityId, sql))
+			return loader.load();
+
+		QueryKey key = new QueryKey(groupPath, attributeTypeName);
+		EntityEntry entry = getCurrentEntry(entityId, System.currentTimeMillis());
+		Map<String, Map<String, AttributeExt<?>>> cached = entry.results.get(key);
+		if (cached != null)
+			return copy(cached);
+
+		Map<String, Map<String, AttributeExt<?>>> loaded = loader.load();
+		if (!cacheInvalidation.isModifiedInSession(entityId, sql))
+			store(entityId, entry, key, copy(loaded));
+		return loaded;
+	}
+
+	/**
+	 * @return the not expired entry of the entity. A new, empty entry is created if needed.
+	 */
+	private EntityEntry getCurrentEntry(long entityId, long now)
+	{
+		synchronized (entries)
+		{
+			EntityEntry entry = entries.get(entityId);
+			if (entry == null || now - entry.created >= maxAge)
+			{
+				entry = new EntityEntry(now);
+				entries.put(entityId, entry);
+			}
+			return entry;
+		}
+	}
+
+	/**
+	 * Stores the result only if the entry used when loading started is still current, i.e. the entity was
+	 * not invalidated (nor evicted) in the meantime.
+	 */
+	private void store(long entityId, EntityEntry entry, QueryKey key,
+			Map<String, Map<String, AttributeExt<?>>> loaded)
+	{
+		synchronized (entries)
+		{
+			if (entries.get(entityId) == entry)
+				entry.results.put(key, loaded);
+		}
+	}
+
+	private static Map<String, Map<String, AttributeExt<?>>> copy(Map<String, Map<String, AttributeExt<?>>> src)
+	{
+		Map<String, Map<String, AttributeExt<?>>> ret = new HashMap<>(src.size());
+		for (Map.Entry<String, Map<String, AttributeExt<?>>> inGroup: src.entrySet())
+		{
+			Map<String, AttributeExt<?>> attributes = new HashMap<>(inGroup.getValue().size());
+			for (Map.Entry<String, AttributeExt<?>> attribute: inGroup.getValue().entrySet())
+				attributes.put(attribute.getKey(), copy(attribute.getValue()));
+			ret.put(inGroup.getKey(), attributes);
+		}
+		return ret;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static AttributeExt<?> copy(AttributeExt<?> src)
+	{
+		return new AttributeExt(src);
+	}
+
+	@Override
+	public void invalidateEntity(long entityId)
+	{
+		synchronized (entries)
+		{
+			entries.remove(entityId);
+		}
+	}
+
+	@Override
+	public void invalidateAll()
+	{
+		synchronized (entries)
+		{
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Computes effective attributes when they are not available in cache.
+	 */
+	public interface EffectiveAttributesLoader
+	{
+		Map<String, Map<String, AttributeExt<?>>> load() throws EngineException;
+	}
+
+	private static class EntityEntry
+	{
+		private final long created;
+		private final Map<QueryKey, Map<String, Map<String, AttributeExt<?>>>> results =
+				new ConcurrentHashMap<>();
+
+		private EntityEntry(long created)
+		{
+			this.created = created;
+		}
+	}
+
+	private static class QueryKey
+	{
+		private final String group;
+		private final String attribute;
+
+		private QueryKey(String group, String attribute)
+		{
+			this.group = group;
+			this.attribute = attribute;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(group, attribute);
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (!(obj instanceof QueryKey))
+				return false;
+			QueryKey other = (QueryKey) obj;
+			return Objects.equals(group, other.group) && Objects.equals(attribute, other.attribute);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.db;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.session.SqlSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import pl.edu.icm.unity.server.api.internal.CacheInvalidationListener;
+import pl.edu.icm.unity.db.cache.CacheInvalidationManager;
+import pl.edu.icm.unity.db.json.GroupsSerializer;
+import pl.edu.icm.unity.db.mapper.AttributesMapper;
+import pl.edu.icm.unity.db.mapper.GroupsMapper;
+import pl.edu.icm.unity.db.model.GroupBean;
+import pl.edu.icm.unity.db.resolvers.GroupResolver;
+import pl.edu.icm.unity.exceptions.IllegalGroupValueException;
+import pl.edu.icm.unity.server.utils.UnityServerConfiguration;
+import pl.edu.icm.unity.types.basic.AttributeStatement2;
+import pl.edu.icm.unity.types.basic.Group;
+
+/**
+ * Keeps ready to use (i.e. deserialized, with compiled MVEL expressions) attribute statements of groups.
+ * Statements are loaded lazily, per group. All of them are dropped after any change of groups,
+ * attribute types or attribute classes and also after the storage caches TTL passes, what bounds
+ * the time for which changes performed on other nodes are not visible.
+ * <p>
+ * The returned statements are shared and must not be modified.
+ * @author K. Benedyczak
+ */
+@Component
+public class GroupStatementsCache implements CacheInvalidationListener
+{
+	private GroupResolver groupResolver;
+	private GroupsSerializer jsonS;
+	private CacheInvalidationManager cacheInvalidation;
+	private long maxAge;
+	private volatile CachedStatements statements;
+	private long generation;
+
+	@Autowired
+	public GroupStatementsCache(GroupResolver groupResolver, GroupsSerializer jsonS,
+			CacheInvalidationManager cacheInvalidation, UnityServerConfiguration cfg)
+	{
+		this.groupResolver = groupResolver;
+		this.jsonS = jsonS;
+		this.cacheInvalidation = cacheInvalidation;
+		this.maxAge = cfg.getIntValue(UnityServerConfiguration.CACHES_TTL) * 1000L;
+		cacheInvalidation.addListener(this);
+	}
+
+	/**
+	 * @param groupPath
+	 * @param sql
+	 * @return attribute statements of the given group
+	 * @throws IllegalGroupValueException
+	 */
+	public AttributeStatement2[] getStatements(String groupPath, SqlSession sql)
+			throws IllegalGroupValueException
+	{
+		CachedStatements current = statements;
+		if (current != null && System.currentTimeMillis() - current.created < maxAge)
+		{
+			AttributeStatement2[] cached = current.byGroup.get(groupPath);
+			if (cached != null)
+				return cached;
+		}
+
+		long generationAtStart = getGeneration();
+		long loadStart = System.currentTimeMillis();
+		AttributeStatement2[] loaded = load(groupPath, sql);
+		if (maxAge > 0 && !cacheInvalidation.isGloballyModifiedInSession(sql))
+			store(groupPath, loaded, loadStart, generationAtStart);
+		return loaded;
+	}
+
+	private AttributeStatement2[] load(String groupPath, SqlSession sql) throws IllegalGroupValueException
+	{
+		GroupsMapper gMapper = sql.getMapper(GroupsMapper.class);
+		GroupBean groupBean = groupResolver.resolveGroup(groupPath, gMapper);
+		Group group = jsonS.resolveGroupBean(groupBean, gMapper, sql.getMapper(AttributesMapper.class));
+		return group.getAttributeStatements();
+	}
+
+	private synchronized long getGeneration()
+	{
+		return generation;
+	}
+
+	private synchronized void store(String groupPath, AttributeStatement2[] loaded, long loadStart,
+			long generationAtStart)
+	{
+		if (generation != generationAtStart)
+			return;
+		CachedStatements current = statements;
+		if (current == null || loadStart - current.created >= maxAge)
+		{
+			current = new CachedStatements(loadStart);
+			statements = current;
+		}
+		current.byGroup.put(groupPath, loaded);
+	}
+
+	@Override
+	public void invalidateEntity(long entityId)
+	{
+	}
+
+	@Override
+	public synchronized void invalidateAll()
+	{
+		generation++;
+		statements = null;
+	}
+
+	private static class CachedStatements
+	{
+		private final long created;
+		private final Map<String, AttributeStatement2[]> byGroup = new ConcurrentHashMap<>();
+
+		private CachedStatements(long created)
+		{
+			this.created = created;
+		}
+	}
+}
@@ -20,6 +20,7 @@ import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import pl.edu.icm.unity.db.cache.CacheInvalidationManager;
 import pl.edu.icm.unity.db.mapper.GroupsMapper;
 import pl.edu.icm.unity.db.model.GroupBean;
 import pl.edu.icm.unity.db.resolvers.GroupResolver;
@@ -41,13 +42,18 @@ public class InitDB
 	private long dbVersionAtServerStarup;
 	private DBSessionManager db;
 	private LocalDBSessionManager localDb;
+	private CacheInvalidationManager cacheInvalidation;
+	private SessionIdentitiesStore sessionIdentities;
 
 	@Autowired
-	public InitDB(DBSessionManager db, LocalDBSessionManager localDb) 
+	public InitDB(DBSessionManager db, LocalDBSessionManager localDb, CacheInvalidationManager cacheInvalidation,
+			SessionIdentitiesStore sessionIdentities) 
 			throws FileNotFoundException, InternalException, IOException, EngineException
 	{
 		this.db = db;
 		this.localDb = localDb;
+		this.cacheInvalidation = cacheInvalidation;
+		this.sessionIdentities = sessionIdentities;
 	}
 
 	/**
@@ -60,6 +66,8 @@ public class InitDB
 		performUpdate(localDb, "cleardb-");
 		log.info("The whole contents removed");
 		initDB();
+		sessionIdentities.clear();
+		cacheInvalidation.everythingChanged(null);
 	}
 	
 	public void initIfNeeded() throws FileNotFoundException, IOException, InternalException, EngineException
@@ -117,6 +125,8 @@ public class InitDB
 				if (name.startsWith("resetIndex-"))
 					session.update(name);
 		}
+		sessionIdentities.clear();
+		cacheInvalidation.everythingChanged(session);
 	}
 
 	/**
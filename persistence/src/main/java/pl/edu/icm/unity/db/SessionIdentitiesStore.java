@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.db;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ibatis.session.SqlSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import pl.edu.icm.unity.db.model.IdentityBean;
+import pl.edu.icm.unity.server.utils.UnityServerConfiguration;
+import pl.edu.icm.unity.types.basic.IdentityTypeDefinition;
+
+/**
+ * In-memory storage of identities of session bound types (see {@link IdentityTypeDefinition#isSessionBound()}).
+ * Such identities are created on the fly and are valid only for a single login session. They are kept 
+ * in this store instead of the database only if it is enabled with 
+ * {@link UnityServerConfiguration#SESSION_IDENTITIES_IN_DB}.
+ * <p>
+ * Identities are indexed by their in-DB names, entities and login sessions. The store follows the database
+ * transactions: changes are visible only to the session which made them, until it is committed. Changes of 
+ * a rolled back session are dropped.
+ * <p>
+ * This class is thread safe.
+ * @author K. Benedyczak
+ */
+@Component
+public class SessionIdentitiesStore implements SqlSessionListener
+{
+	private boolean enabled;
+	private Map<String, StoredIdentity> byName = new HashMap<>();
+	private Map<Long, Set<String>> byEntity = new HashMap<>();
+	private Map<String, Set<String>> bySession = new HashMap<>();
+	private Map<SqlSession, PendingChanges> pending = new HashMap<>();
+
+	@Autowired
+	public SessionIdentitiesStore(UnityServerConfiguration cfg, DBSessionManager db)
+	{
+		this.enabled = !cfg.getBooleanValue(UnityServerConfiguration.SESSION_IDENTITIES_IN_DB);
+		if (enabled)
+			db.addListener(this);
+	}
+
+	/**
+	 * @param type
+	 * @return true if identities of the given type are kept in this store instead of the database.
+	 */
+	public boolean isHandled(IdentityTypeDefinition type)
+	{
+		return enabled && type.isSessionBound();
+	}
+
+	/**
+	 * @param identity identity to be stored, must have its name, entity and type set.
+	 * @param loginSessionId id of the login session to which the identity is bound
+	 * @param sql session of the transaction adding the identity
+	 */
+	public synchronized void add(IdentityBean identity, String loginSessionId, SqlSession sql)
+	{
+		getPending(sql).added.put(identity.getName(), new StoredIdentity(identity, loginSessionId));
+	}
+
+	/**
+	 * @param name in-DB name of the identity
+	 * @param sql
+	 * @return the identity or null if not found
+	 */
+	public synchronized IdentityBean get(String name, SqlSession sql)
+	{
+		StoredIdentity stored = getVisible(name, pending.get(sql));
+		return stored == null ? null : stored.identity;
+	}
+
+	public synchronized List<IdentityBean> getForEntity(long entityId, SqlSession sql)
+	{
+		PendingChanges changes = pending.get(sql);
+		List<IdentityBean> ret = new ArrayList<>();
+		Set<String> names = byEntity.get(entityId);
+		if (names != null)
+			for (String name: names)
+				if (changes == null || !changes.isModified(name))
+					ret.add(byName.get(name).identity);
+		if (changes != null)
+			for (StoredIdentity stored: changes.added.values())
+				if (stored.identity.getEntityId() == entityId)
+					ret.add(stored.identity);
+		return ret;
+	}
+
+	/**
+	 * @return all committed identities
+	 */
+	public synchronized List<IdentityBean> getAll()
+	{
+		List<IdentityBean> ret = new ArrayList<>(byName.size());
+		for (StoredIdentity stored: byName.values())
+			ret.add(stored.identity);
+		return ret;
+	}
+
+	/**
+	 * @param name
+	 * @param sql session of the transaction removing the identity
+	 * @return true if the identity was removed, false if it was not found
+	 */
+	public synchronized boolean remove(String name, SqlSession sql)
+	{
+		PendingChanges changes = getPending(sql);
+		boolean found = getVisible(name, changes) != null;
+		changes.added.remove(name);
+		if (byName.containsKey(name))
+			changes.removed.add(name);
+		return found;
+	}
+
+	public synchronized void removeForEntity(long entityId, SqlSession sql)
+	{
+		for (IdentityBean identity: getForEntity(entityId, sql))
+			remove(identity.getName(), sql);
+	}
+
+	/**
+	 * Removes identities of the login session immediately, regardless of transactions: the identities 
+	 * are useless without the session and are recreated on demand.
+	 * @param loginSessionId
+	 */
+	public synchronized void removeForSession(String loginSessionId)
+	{
+		Set<String> names = bySession.get(loginSessionId);
+		if (names != null)
+			for (String name: new ArrayList<>(names))
+				removeCommitted(name);
+		for (PendingChanges changes: pending.values())
+			changes.added.values().removeIf(stored -> loginSessionId.equals(stored.loginSessionId));
+	}
+
+	/**
+	 * Removes all stored identities, used when the whole database contents is removed.
+	 */
+	public synchronized void clear()
+	{
+		byName.clear();
+		byEntity.clear();
+		bySession.clear();
+		pending.clear();
+	}
+
+	@Override
+	public synchronized void committed(SqlSession sql)
+	{
+		PendingChanges changes = pending.remove(sql);
+		if (changes == null)
+			return;
+		for (String name: changes.removed)
+			removeCommitted(name);
+		for (StoredIdentity stored: changes.added.values())
+		{
+			String name = stored.identity.getName();
+			removeCommitted(name);
+			byName.put(name, stored);
+			addToIndex(byEntity, stored.identity.getEntityId(), name);
+			addToIndex(bySession, stored.loginSessionId, name);
+		}
+	}
+
+	@Override
+	public synchronized void rolledBack(SqlSession sql)
+	{
+		pending.remove(sql);
+	}
+
+	private PendingChanges getPending(SqlSession sql)
+	{
+		PendingChanges changes = pending.get(sql);
+		if (changes == null)
+		{
+			changes = new PendingChanges();
+			pending.put(sql, changes);
+		}
+		return changes;
+	}
+
+	private StoredIdentity getVisible(String name, PendingChanges changes)
+	{
+		if (changes != null)
+		{
+			StoredIdentity added = changes.added.get(name);
+			if (added != null)
+				return added;
+			if (changes.removed.contains(name))
+				return null;
+		}
+		return byName.get(name);
+	}
+
+	private void removeCommitted(String name)
+	{
+		StoredIdentity removed = byName.remove(name);
+		if (removed == null)
+			return;
+		removeFromIndex(byEntity, removed.identity.getEntityId(), name);
+		removeFromIndex(bySession, removed.loginSessionId, name);
+	}
+
+	private static <T> void addToIndex(Map<T, Set<String>> index, T key, String name)
+	{
+		Set<String> names = index.get(key);
+		if (names == null)
+		{
+			names = new HashSet<>();
+			index.put(key, names);
+		}
+		names.add(name);
+	}
+
+	private static <T> void removeFromIndex(Map<T, Set<String>> index, T key, String name)
+	{
+		Set<String> names = index.get(key);
+		if (names == null)
+			return;
+		names.remove(name);
+		if (names.isEmpty())
+			index.remove(key);
+	}
+
+	private static class StoredIdentity
+	{
+		private final IdentityBean identity;
+		private final String loginSessionId;
+
+		private StoredIdentity(IdentityBean identity, String loginSessionId)
+		{
+			this.identity = identity;
+			this.loginSessionId = loginSessionId;
+		}
+	}
+
+	/**
+	 * Changes performed in a not yet committed transaction.
+	 */
+	private static class PendingChanges
+	{
+		private final Map<String, StoredIdentity> added = new HashMap<>();
+		private final Set<String> removed = new HashSet<>();
+
+		private boolean isModified(String name)
+		{
+			return added.containsKey(name) || removed.contains(name);
+		}
+	}
+}
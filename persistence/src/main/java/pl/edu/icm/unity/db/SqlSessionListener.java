@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.db;
+
+import org.apache.ibatis.session.SqlSession;
+
+/**
+ * Implemented by holders of in-memory state which must follow the database transactions.
+ * Implementations are notified by the {@link DBSessionManager} about the end of work performed with
+ * its sessions.
+ * <p>
+ * Implementations must be thread safe and fast.
+ *
+ * @author K. Benedyczak
+ */
+public interface SqlSessionListener
+{
+	/**
+	 * Changes performed with the session were committed. Also called when a non transactional session
+	 * is closed.
+	 * @param sql
+	 */
+	void committed(SqlSession sql);
+
+	/**
+	 * Changes performed with the session after the last commit were dropped: the session was rolled back
+	 * or a transactional session was closed.
+	 * @param sql
+	 */
+	void rolledBack(SqlSession sql);
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.db.cache;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.ibatis.session.SqlSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import pl.edu.icm.unity.db.DBAttributes;
+import pl.edu.icm.unity.db.DBGroups;
+import pl.edu.icm.unity.db.generic.DependencyChangeListener;
+import pl.edu.icm.unity.db.generic.DependencyNotificationManager;
+import pl.edu.icm.unity.db.generic.ac.AttributeClassHandler;
+import pl.edu.icm.unity.server.api.internal.CacheInvalidationListener;
+import pl.edu.icm.unity.server.api.internal.CacheInvalidationRegistry;
+
+/**
+ * Notifications hub for caches of data derived from the entities related DB contents.
+ * DB code reports here modifications of entities, while the changes of groups, attribute types
+ * and attribute classes are collected from the {@link DependencyNotificationManager}. Changes of other
+ * generic objects are reported for the types which were registered with {@link #watchObjectType(String)}.
+ * <p>
+ * Changes are reported before the transaction is committed. Therefore the registered listeners are notified
+ * twice: immediately and once again after the SqlSession which performed the modification is released
+ * (see {@link #sessionReleased(SqlSession)}). This way a concurrent load of the old data,
+ * performed between the change and commit, is not retained. Caches should also check
+ * {@link #isModifiedInSession(long, SqlSession)} before storing data, so that uncommitted changes
+ * are never published.
+ * <p>
+ * This class is thread safe.
+ * @author K. Benedyczak
+ */
+@Component
+public class CacheInvalidationManager implements CacheInvalidationRegistry
+{
+	private static final int MAX_PENDING_ENTITIES = 1000;
+	private List<CacheInvalidationListener> listeners = new CopyOnWriteArrayList<>();
+	private Map<SqlSession, PendingInvalidations> pending = new ConcurrentHashMap<>();
+	private Set<String> watchedTypes = ConcurrentHashMap.newKeySet();
+	private DependencyNotificationManager notificationsManager;
+
+	@Autowired
+	public CacheInvalidationManager(DependencyNotificationManager notificationsManager)
+	{
+		this.notificationsManager = notificationsManager;
+		notificationsManager.addListener(new GlobalChangeListener(DBGroups.GROUPS_NOTIFICATION_ID));
+		notificationsManager.addListener(new GlobalChangeListener(DBAttributes.ATTRIBUTE_TYPES_NOTIFICATION_ID));
+		notificationsManager.addListener(new GlobalChangeListener(
+				AttributeClassHandler.ATTRIBUTE_CLASS_OBJECT_TYPE));
+	}
+
+	@Override
+	public void addListener(CacheInvalidationListener listener)
+	{
+		listeners.add(listener);
+	}
+
+	/**
+	 * Enables reporting of changes of generic objects of the given type.
+	 * @param type
+	 */
+	public void watchObjectType(String type)
+	{
+		if (watchedTypes.add(type))
+			notificationsManager.addListener(new ObjectTypeChangeListener(type));
+	}
+
+	/**
+	 * @param entityId
+	 * @param sql session used to perform the modification
+	 */
+	public void entityChanged(long entityId, SqlSession sql)
+	{
+		getPending(sql).addEntity(entityId);
+		for (CacheInvalidationListener listener: listeners)
+			listener.invalidateEntity(entityId);
+	}
+
+	/**
+	 * @param sql session used to perform the modification. Can be null if the modification 
+	 * was already committed.
+	 */
+	public void allChanged(SqlSession sql)
+	{
+		if (sql != null)
+			getPending(sql).setAll();
+		fireAll();
+	}
+
+	/**
+	 * The whole database contents was removed or replaced: besides the global change, changes of generic
+	 * objects of all watched types are reported.
+	 * @param sql session used to perform the modification. Can be null if the modification 
+	 * was already committed.
+	 */
+	public void everythingChanged(SqlSession sql)
+	{
+		allChanged(sql);
+		for (String type: watchedTypes)
+		{
+			if (sql != null)
+				getPending(sql).objectTypes.add(type);
+			fireObjects(type);
+		}
+	}
+
+	/**
+	 * @param type type of the changed generic objects
+	 * @param sql session used to perform the modification
+	 */
+	public void objectsChanged(String type, SqlSession sql)
+	{
+		getPending(sql).objectTypes.add(type);
+		fireObjects(type);
+	}
+
+	/**
+	 * @param entityId
+	 * @param sql
+	 * @return true if the given entity was modified using the given session, i.e. the session may see 
+	 * uncommitted data of the entity.
+	 */
+	public boolean isModifiedInSession(long entityId, SqlSession sql)
+	{
+		PendingInvalidations current = pending.get(sql);
+		return current != null && current.contains(entityId);
+	}
+
+	/**
+	 * @param sql
+	 * @return true if a global change (e.g. of groups or attribute types) was performed using the given
+	 * session.
+	 */
+	public boolean isGloballyModifiedInSession(SqlSession sql)
+	{
+		PendingInvalidations current = pending.get(sql);
+		return current != null && current.all;
+	}
+
+	/**
+	 * Useful for caches which can not tell which session was used to load the data.
+	 * @return true if a global change was performed using any of the not yet released sessions.
+	 */
+	public boolean isGloballyModifiedInAnySession()
+	{
+		for (PendingInvalidations current: pending.values())
+			if (current.all)
+				return true;
+		return false;
+	}
+
+	/**
+	 * @param type
+	 * @param sql
+	 * @return true if generic objects of the given type were modified using the given session.
+	 */
+	public boolean isObjectTypeModifiedInSession(String type, SqlSession sql)
+	{
+		PendingInvalidations current = pending.get(sql);
+		return current != null && (current.all || current.objectTypes.contains(type));
+	}
+
+	/**
+	 * Must be called after the session is closed, i.e. after its transaction was committed or rolled back.
+	 * All listeners are notified once again about the changes performed with the session.
+	 */
+	public void sessionReleased(SqlSession sql)
+	{
+		PendingInvalidations current = pending.remove(sql);
+		if (current == null)
+			return;
+		if (current.all)
+		{
+			fireAll();
+		} else
+		{
+			for (Long entityId: current.entities)
+				for (CacheInvalidationListener listener: listeners)
+					listener.invalidateEntity(entityId);
+		}
+		for (String type: current.objectTypes)
+			fireObjects(type);
+	}
+
+	private void fireAll()
+	{
+		for (CacheInvalidationListener listener: listeners)
+			listener.invalidateAll();
+	}
+
+	private void fireObjects(String type)
+	{
+		for (CacheInvalidationListener listener: listeners)
+			listener.invalidateObjects(type);
+	}
+
+	private PendingInvalidations getPending(SqlSession sql)
+	{
+		return pending.computeIfAbsent(sql, s -> new PendingInvalidations());
+	}
+
+	private static class PendingInvalidations
+	{
+		private volatile boolean all;
+		private Set<Long> entities = new HashSet<>();
+		private Set<String> objectTypes = new HashSet<>();
+
+		private void addEntity(long entityId)
+		{
+			if (all)
+				return;
+			entities.add(entityId);
+			if (entities.size() > MAX_PENDING_ENTITIES)
+				setAll();
+		}
+
+		private void setAll()
+		{
+			all = true;
+			entities.clear();
+		}
+
+		private boolean contains(long entityId)
+		{
+			return all || entities.contains(entityId);
+		}
+	}
+
+	private class GlobalChangeListener implements DependencyChangeListener<Object>
+	{
+		private String type;
+
+		public GlobalChangeListener(String type)
+		{
+			this.type = type;
+		}
+
+		@Override
+		public String getDependencyObjectType()
+		{
+			return type;
+		}
+
+		@Override
+		public void preAdd(Object newObject, SqlSession sql) {}
+
+		@Override
+		public void preUpdate(Object oldObject, Object updatedObject, SqlSession sql)
+		{
+			allChanged(sql);
+		}
+
+		@Override
+		public void preRemove(Object removedObject, SqlSession sql)
+		{
+			allChanged(sql);
+		}
+	}
+
+	private class ObjectTypeChangeListener implements DependencyChangeListener<Object>
+	{
+		private String type;
+
+		public ObjectTypeChangeListener(String type)
+		{
+			this.type = type;
+		}
+
+		@Override
+		public String getDependencyObjectType()
+		{
+			return type;
+		}
+
+		@Override
+		public void preAdd(Object newObject, SqlSession sql)
+		{
+			objectsChanged(type, sql);
+		}
+
+		@Override
+		public void preUpdate(Object oldObject, Object updatedObject, SqlSession sql)
+		{
+			objectsChanged(type, sql);
+		}
+
+		@Override
+		public void preRemove(Object removedObject, SqlSession sql)
+		{
+			objectsChanged(type, sql);
+		}
+	}
+}
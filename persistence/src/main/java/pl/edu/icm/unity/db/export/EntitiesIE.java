@@ -14,7 +14,7 @@ import org.springframework.stereotype.Component;
 import pl.edu.icm.unity.db.DBIdentities;
 import pl.edu.icm.unity.db.json.EntitySerializer;
 import pl.edu.icm.unity.db.mapper.IdentitiesMapper;
-import pl.edu.icm.unity.db.model.BaseBean;
+import pl.edu.icm.unity.db.model.EntityBean;
 import pl.edu.icm.unity.exceptions.EngineException;
 import pl.edu.icm.unity.types.EntityInformation;
 
@@ -46,9 +46,9 @@ public class EntitiesIE extends AbstractIE
 	public void serialize(SqlSession sql, JsonGenerator jg) throws JsonGenerationException, IOException
 	{
 		IdentitiesMapper mapper = sql.getMapper(IdentitiesMapper.class);
-		List<BaseBean> beans = mapper.getEntities();
+		List<EntityBean> beans = mapper.getEntities();
 		jg.writeStartArray();
-		for (BaseBean bean: beans)
+		for (EntityBean bean: beans)
 		{
 			jg.writeStartObject();
 			serializeBaseBeanToJson(jg, bean);
@@ -62,7 +62,7 @@ public class EntitiesIE extends AbstractIE
 		JsonUtils.expect(input, JsonToken.START_ARRAY);
 		while(input.nextToken() == JsonToken.START_OBJECT)
 		{
-			BaseBean bean = new BaseBean();
+			EntityBean bean = new EntityBean();
 			deserializeBaseBeanFromJson(input, bean);
 			JsonUtils.nextExpect(input, JsonToken.END_OBJECT);
 			
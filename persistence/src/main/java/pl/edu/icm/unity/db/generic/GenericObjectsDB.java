@@ -10,9 +10,11 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 
 import org.apache.ibatis.session.SqlSession;
 
@@ -40,6 +42,7 @@ public class GenericObjectsDB<T>
 	protected String type;
 	protected DependencyNotificationManager notificationManager;
 	protected String objectName;
+	protected UnaryOperator<T> copier;
 	
 	public GenericObjectsDB(GenericEntityHandler<T> handler, DBGeneric dbGeneric, 
 			DependencyNotificationManager notificationManager, Class<T> handledObjectClass,
@@ -54,6 +57,27 @@ public class GenericObjectsDB<T>
 		this.objectName = name;
 	}
 
+	/**
+	 * Enables in-memory caching of the raw objects of the handled type. 
+	 * See {@link DBGeneric#enableCaching(String)}.
+	 */
+	protected void enableCaching()
+	{
+		dbGeneric.enableCaching(type);
+	}
+
+	/**
+	 * As {@link #enableCaching()} but also the decoded objects are cached, so they are not decoded on 
+	 * each read. Callers receive copies created with the given function. Can be used only if the handler 
+	 * doesn't use the session when decoding.
+	 * @param copier creates a deep copy of an object
+	 */
+	protected void enableCaching(UnaryOperator<T> copier)
+	{
+		this.copier = copier;
+		enableCaching();
+	}
+
 
 	public boolean exists(String name, SqlSession sql) throws EngineException
 	{
@@ -75,6 +99,13 @@ public class GenericObjectsDB<T>
 	
 	public T get(String name, SqlSession sql) throws EngineException
 	{
+		if (copier != null)
+		{
+			T cached = dbGeneric.getDecodedObject(name, type, sql, raw -> handler.fromBlob(raw, sql));
+			if (cached == null)
+				throw new WrongArgumentException("There is no " + name + " " + objectName);
+			return copier.apply(cached);
+		}
 		GenericObjectBean raw = dbGeneric.getObjectByNameType(name, type, sql);
 		if (raw == null)
 			throw new WrongArgumentException("There is no " + name + " " + objectName);
@@ -83,6 +114,8 @@ public class GenericObjectsDB<T>
 	
 	public List<T> getAll(SqlSession sql) throws EngineException
 	{
+		if (copier != null)
+			return new ArrayList<>(getAllCopies(sql).values());
 		List<GenericObjectBean> allRaw = dbGeneric.getObjectsOfType(type, sql);
 		List<T> ret = new ArrayList<>(allRaw.size());
 		for (GenericObjectBean raw: allRaw)
@@ -122,6 +155,8 @@ public class GenericObjectsDB<T>
 	
 	public Map<String, T> getAllAsMap(SqlSession sql) throws EngineException
 	{
+		if (copier != null)
+			return getAllCopies(sql);
 		List<GenericObjectBean> allRaw = dbGeneric.getObjectsOfType(type, sql);
 		Map<String, T> ret = new HashMap<>(allRaw.size());
 		for (GenericObjectBean raw: allRaw)
@@ -129,6 +164,16 @@ public class GenericObjectsDB<T>
 		return ret;
 	}
 	
+	private Map<String, T> getAllCopies(SqlSession sql)
+	{
+		Map<String, T> cached = dbGeneric.getDecodedObjectsOfType(type, sql, 
+				raw -> handler.fromBlob(raw, sql));
+		Map<String, T> ret = new LinkedHashMap<>(cached.size());
+		for (Map.Entry<String, T> entry: cached.entrySet())
+			ret.put(entry.getKey(), copier.apply(entry.getValue()));
+		return ret;
+	}
+	
 	public void remove(String name, SqlSession sql) throws EngineException
 	{
 		T removed = get(name, sql);
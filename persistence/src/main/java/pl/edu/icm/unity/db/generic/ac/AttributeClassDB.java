@@ -25,5 +25,19 @@ public class AttributeClassDB extends GenericObjectsDB<AttributesClass>
 	{
 		super(handler, dbGeneric, notificationManager, AttributesClass.class,
 				"attributes class");
+		enableCaching(AttributeClassDB::copy);
+	}
+	
+	private static AttributesClass copy(AttributesClass src)
+	{
+		AttributesClass ret = new AttributesClass();
+		ret.setName(src.getName());
+		ret.setDescription(src.getDescription());
+		ret.setAllowed(src.getAllowed());
+		ret.setMandatory(src.getMandatory());
+		ret.setAllowArbitrary(src.isAllowArbitrary());
+		if (src.getParentClasses() != null)
+			ret.setParentClassName(src.getParentClasses());
+		return ret;
 	}
 }
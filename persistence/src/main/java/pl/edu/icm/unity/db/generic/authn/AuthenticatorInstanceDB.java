@@ -37,6 +37,7 @@ public class AuthenticatorInstanceDB extends GenericObjectsDB<AuthenticatorInsta
 	{
 		super(handler, dbGeneric, notificationManager, AuthenticatorInstance.class,
 				"authenticator");
+		enableCaching();
 		notificationManager.addListener(new CredentialChangeListener());
 	}
 	
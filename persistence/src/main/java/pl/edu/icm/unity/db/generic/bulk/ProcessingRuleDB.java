@@ -24,5 +24,6 @@ public class ProcessingRuleDB extends GenericObjectsDB<ScheduledProcessingRule>
 			DBGeneric dbGeneric, DependencyNotificationManager notificationManager)
 	{
 		super(handler, dbGeneric, notificationManager, ScheduledProcessingRule.class, "processing rule");
+		enableCaching();
 	}
 }
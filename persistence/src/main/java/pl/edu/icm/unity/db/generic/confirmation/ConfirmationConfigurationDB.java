@@ -38,6 +38,7 @@ public class ConfirmationConfigurationDB extends GenericObjectsDB<ConfirmationCo
 	{
 		super(handler, dbGeneric, notificationManager, ConfirmationConfiguration.class,
 				"confirmation configuration");
+		enableCaching();
 		notificationManager.addListener(new AttributeTypeChangeListener());
 		notificationManager.addListener(new MessageTemplateChangeListener());
 	}
@@ -25,5 +25,6 @@ public class CredentialDB extends GenericObjectsDB<CredentialDefinition>
 	{
 		super(handler, dbGeneric, notificationManager, CredentialDefinition.class,
 				"credential");
+		enableCaching(CredentialDefinition::clone);
 	}
 }
@@ -4,6 +4,7 @@
  */
 package pl.edu.icm.unity.db.generic.credreq;
 
+import java.util.HashSet;
 import java.util.List;
 
 import org.apache.ibatis.session.SqlSession;
@@ -35,9 +36,17 @@ public class CredentialRequirementDB extends GenericObjectsDB<CredentialRequirem
 	{
 		super(handler, dbGeneric, notificationManager, CredentialRequirements.class,
 				"credential requirement");
+		enableCaching(CredentialRequirementDB::copy);
 		notificationManager.addListener(new CredentialChangeListener());
 	}
 	
+	private static CredentialRequirements copy(CredentialRequirements src)
+	{
+		return new CredentialRequirements(src.getName(), src.getDescription(), 
+				src.getRequiredCredentials() == null ? null : 
+					new HashSet<>(src.getRequiredCredentials()));
+	}
+	
 	private class CredentialChangeListener implements DependencyChangeListener<CredentialDefinition>
 	{
 		@Override
@@ -26,6 +26,7 @@ public class MessageTemplateDB extends GenericObjectsDB<MessageTemplate>
 			DBGeneric dbGeneric, DependencyNotificationManager notificationManager)
 	{
 		super(handler, dbGeneric, notificationManager, MessageTemplate.class, "message template");
+		enableCaching();
 	}
 }
 
@@ -25,5 +25,6 @@ public class NotificationChannelDB extends GenericObjectsDB<NotificationChannel>
 	{
 		super(handler, dbGeneric, notificationManager, NotificationChannel.class,
 				"notification channel");
+		enableCaching();
 	}
 }
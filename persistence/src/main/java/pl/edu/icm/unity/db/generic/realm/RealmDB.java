@@ -24,5 +24,13 @@ public class RealmDB  extends GenericObjectsDB<AuthenticationRealm>
 			DependencyNotificationManager notificationManager)
 	{
 		super(handler, dbGeneric, notificationManager, AuthenticationRealm.class, "authentication realm");
+		enableCaching(RealmDB::copy);
+	}
+	
+	private static AuthenticationRealm copy(AuthenticationRealm src)
+	{
+		return new AuthenticationRealm(src.getName(), src.getDescription(), 
+				src.getBlockAfterUnsuccessfulLogins(), src.getBlockFor(), 
+				src.getAllowForRememberMeDays(), src.getMaxInactivity());
 	}
 }
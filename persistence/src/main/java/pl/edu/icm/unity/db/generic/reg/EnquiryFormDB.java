@@ -34,6 +34,7 @@ public class EnquiryFormDB extends GenericObjectsDB<EnquiryForm>
 	{
 		super(handler, dbGeneric, notificationManager, EnquiryForm.class,
 				"enquiry form");
+		enableCaching();
 		notificationManager.addListener(new CredentialChangeListener(sql -> getAll(sql)));
 		notificationManager.addListener(new GroupChangeListener(sql -> getAll(sql)));
 		notificationManager.addListener(new AttributeTypeChangeListener(sql -> getAll(sql)));
@@ -37,6 +37,7 @@ public class RegistrationFormDB extends GenericObjectsDB<RegistrationForm>
 	{
 		super(handler, dbGeneric, notificationManager, RegistrationForm.class,
 				"registration form");
+		enableCaching();
 		notificationManager.addListener(new CredentialChangeListener(sql -> getAll(sql)));
 		notificationManager.addListener(new CredentialRequirementChangeListener());
 		notificationManager.addListener(new GroupChangeListener(sql -> getAll(sql)));
@@ -26,5 +26,6 @@ public class TranslationProfileDB extends GenericObjectsDB<TranslationProfile>
 			DBGeneric dbGeneric, DependencyNotificationManager notificationManager)
 	{
 		super(handler, dbGeneric, notificationManager, TranslationProfile.class, "translation profile");
+		enableCaching();
 	}
 }
@@ -8,6 +8,8 @@ import java.util.List;
 
 import pl.edu.icm.unity.db.model.AttributeBean;
 import pl.edu.icm.unity.db.model.AttributeTypeBean;
+import pl.edu.icm.unity.db.model.AttributeValueHashBean;
+import pl.edu.icm.unity.db.model.AttributesOfTypeQueryBean;
 
 
 
@@ -25,8 +27,20 @@ public interface AttributesMapper
 	public AttributeTypeBean getAttributeTypeById(long id);
 	
 	public List<AttributeBean> getAttributes(AttributeBean a);
+	public List<AttributeBean> getAttributesOfEntities(List<Long> entityIds);
+	/**
+	 * @return attributes of the given type with ids larger than the given one, ordered by ids. 
+	 * Allows for reading all attributes of a type page by page, on all supported databases.
+	 */
+	public List<AttributeBean> getAttributesOfTypePage(AttributesOfTypeQueryBean query);
+	public boolean hasAttributesOfType(long typeId);
 	public void insertAttribute(AttributeBean a);
 	public void updateAttribute(AttributeBean a);
 	public void deleteAttribute(AttributeBean a);
 	public void deleteAttributesInGroup(AttributeBean a);
+	
+	public List<AttributeBean> getAttributesByValueHash(AttributeValueHashBean query);
+	public void insertAttributeValueHash(AttributeValueHashBean hash);
+	public void deleteAttributeValueHashes(AttributeBean a);
+	public void deleteAttributeValueHashesInGroup(AttributeBean a);
 }
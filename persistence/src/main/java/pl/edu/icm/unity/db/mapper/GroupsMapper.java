@@ -9,6 +9,7 @@ import java.util.List;
 import pl.edu.icm.unity.db.model.GroupBean;
 import pl.edu.icm.unity.db.model.GroupElementBean;
 import pl.edu.icm.unity.db.model.GroupElementChangeBean;
+import pl.edu.icm.unity.db.model.GroupMembersQueryBean;
 
 
 /**
@@ -32,14 +33,22 @@ public interface GroupsMapper
 	List<GroupBean> getSubgroups(long parentId);
 	List<GroupBean> getGroups4Entity(long entityId);
 	List<GroupElementBean> getGroupMembership4Entity(long entityId);
+	List<GroupElementBean> getGroupMembership4Entities(List<Long> entityIds);
 	List<GroupBean> getLinkedGroups(long parentId);
 	List<GroupElementBean> getMembers(long groupId);
+	List<GroupElementBean> getMembersPage(GroupMembersQueryBean query);
+	int getMembersCount(GroupMembersQueryBean query);
 	
 	GroupBean getGroup(long id);
 	List<GroupBean> getAllGroups();
+	/**
+	 * @return all groups, without contents loaded
+	 */
+	List<GroupBean> getGroupsStructure();
 	
 	GroupElementBean isMember(GroupElementBean param);
 	void insertMember(GroupElementBean param);
+	void updateMemberCreated(GroupElementBean param);
 	void deleteMember(GroupElementBean param);
 	
 	void updateMeembership(GroupElementChangeBean param);
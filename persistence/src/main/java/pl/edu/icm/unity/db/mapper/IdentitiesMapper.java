@@ -7,6 +7,7 @@ package pl.edu.icm.unity.db.mapper;
 import java.util.List;
 
 import pl.edu.icm.unity.db.model.BaseBean;
+import pl.edu.icm.unity.db.model.EntityBean;
 import pl.edu.icm.unity.db.model.IdentityBean;
 
 /**
@@ -21,11 +22,15 @@ public interface IdentitiesMapper
 	BaseBean getIdentityTypeByName(String name);
 	BaseBean getIdentityTypeById(long id);
 	
-	void insertEntity(BaseBean arg);
-	void insertEntityWithId(BaseBean arg);
-	List<BaseBean> getEntities();	
-	BaseBean getEntityById(long id);
-	void updateEntity(BaseBean arg);
+	void insertEntity(EntityBean arg);
+	void insertEntityWithId(EntityBean arg);
+	List<EntityBean> getEntities();	
+	EntityBean getEntityById(long id);
+	List<EntityBean> getEntitiesById(List<Long> ids);
+	List<EntityBean> getEntitiesWithScheduledOperationDue(long time);
+	Long getScheduledOperationTimeOfEntity(long id);
+	Long getNextScheduledOperationTime();
+	void updateEntity(EntityBean arg);
 	void deleteEntity(long id);
 	
 	void updateIdentityEntity(IdentityBean arg);
@@ -37,4 +42,6 @@ public interface IdentitiesMapper
 	IdentityBean getIdentityByName(String name);
 	List<IdentityBean> getIdentities();
 	List<IdentityBean> getIdentitiesByEntity(long entityId);
+	List<IdentityBean> getIdentitiesByEntities(List<Long> entityIds);
+	List<IdentityBean> getIdentitiesByType(long typeId);
 }
@@ -6,6 +6,8 @@ package pl.edu.icm.unity.db.mapper;
 
 import java.util.List;
 
+import org.apache.ibatis.session.RowBounds;
+
 import pl.edu.icm.unity.db.model.TokenBean;
 
 /**
@@ -19,8 +21,13 @@ public interface TokensMapper
 	public void updateToken(TokenBean updated);
 	public void updateTokenExpiration(TokenBean updated);
 	public void updateTokenContents(TokenBean updated);
+	public void updateTokenLastUsed(TokenBean updated);
+	public void updateTokenMaxInactivity(TokenBean updated);
+	public void deleteTokensById(List<Long> ids);
 	public TokenBean selectTokenById(TokenBean toSelect);
 	public List<TokenBean> selectTokensByOwner(TokenBean toSelect);
 	public List<TokenBean> selectTokensByType(String type);
-	public List<TokenBean> selectExpiredTokens();
+	public List<TokenBean> selectTokensById(List<Long> ids);
+	public List<Long> selectExpiredTokenIds(TokenBean param, RowBounds bounds);
+	public List<String> selectInactiveTokenNames(TokenBean param, RowBounds bounds);
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.db.model;
+
+/**
+ * In DB representation of an entry of the attribute values index: hash of a single, normalized value 
+ * of an attribute. Also used as a query parameter, then the group id is optional.
+ * @author K. Benedyczak
+ */
+public class AttributeValueHashBean
+{
+	private Long typeId;
+	private Long entityId;
+	private Long groupId;
+	private String valueHash;
+
+	public AttributeValueHashBean(Long typeId, Long entityId, Long groupId, String valueHash)
+	{
+		this.typeId = typeId;
+		this.entityId = entityId;
+		this.groupId = groupId;
+		this.valueHash = valueHash;
+	}
+
+	public Long getTypeId()
+	{
+		return typeId;
+	}
+
+	public void setTypeId(Long typeId)
+	{
+		this.typeId = typeId;
+	}
+
+	public Long getEntityId()
+	{
+		return entityId;
+	}
+
+	public void setEntityId(Long entityId)
+	{
+		this.entityId = entityId;
+	}
+
+	public Long getGroupId()
+	{
+		return groupId;
+	}
+
+	public void setGroupId(Long groupId)
+	{
+		this.groupId = groupId;
+	}
+
+	public String getValueHash()
+	{
+		return valueHash;
+	}
+
+	public void setValueHash(String valueHash)
+	{
+		this.valueHash = valueHash;
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.db.model;
+
+/**
+ * Parameters of a query for a page of attributes of a given type. Pages are selected by attribute ids:
+ * the page contains attributes with ids larger than the last id of the previous page.
+ * @author K. Benedyczak
+ */
+public class AttributesOfTypeQueryBean
+{
+	private long typeId;
+	private long afterId;
+	private int limit;
+
+	public AttributesOfTypeQueryBean(long typeId, long afterId, int limit)
+	{
+		this.typeId = typeId;
+		this.afterId = afterId;
+		this.limit = limit;
+	}
+
+	public long getTypeId()
+	{
+		return typeId;
+	}
+
+	public void setTypeId(long typeId)
+	{
+		this.typeId = typeId;
+	}
+
+	public long getAfterId()
+	{
+		return afterId;
+	}
+
+	public void setAfterId(long afterId)
+	{
+		this.afterId = afterId;
+	}
+
+	public int getLimit()
+	{
+		return limit;
+	}
+
+	public void setLimit(int limit)
+	{
+		this.limit = limit;
+	}
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.db.model;
+
+
+/**
+ * In DB entity representation. Besides the serialized entity information the time of the earliest 
+ * scheduled operation is stored in a separate, indexed column.
+ * @author K. Benedyczak
+ */
+public class EntityBean extends BaseBean
+{
+	private Long scheduledOperationTime;
+	
+	public EntityBean()
+	{
+	}
+
+	public Long getScheduledOperationTime()
+	{
+		return scheduledOperationTime;
+	}
+
+	public void setScheduledOperationTime(Long scheduledOperationTime)
+	{
+		this.scheduledOperationTime = scheduledOperationTime;
+	}
+}
@@ -13,6 +13,7 @@ public class GroupElementBean
 	private long groupId;
 	private long elementId;
 	private byte[] contents;
+	private Long created;
 
 	public GroupElementBean()
 	{
@@ -47,4 +48,12 @@ public class GroupElementBean
 	{
 		this.contents = contents;
 	}
+	public Long getCreated()
+	{
+		return created;
+	}
+	public void setCreated(Long created)
+	{
+		this.created = created;
+	}
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.db.model;
+
+/**
+ * Parameters of a query for a page of group members.
+ * @author K. Benedyczak
+ */
+public class GroupMembersQueryBean
+{
+	private long groupId;
+	private Long entityId;
+	private boolean orderByCreation;
+	private int offset;
+	private int limit;
+
+	public GroupMembersQueryBean(long groupId, Long entityId, boolean orderByCreation, int offset, int limit)
+	{
+		this.groupId = groupId;
+		this.entityId = entityId;
+		this.orderByCreation = orderByCreation;
+		this.offset = offset;
+		this.limit = limit;
+	}
+
+	public long getGroupId()
+	{
+		return groupId;
+	}
+
+	public void setGroupId(long groupId)
+	{
+		this.groupId = groupId;
+	}
+
+	public Long getEntityId()
+	{
+		return entityId;
+	}
+
+	public void setEntityId(Long entityId)
+	{
+		this.entityId = entityId;
+	}
+
+	public boolean isOrderByCreation()
+	{
+		return orderByCreation;
+	}
+
+	public void setOrderByCreation(boolean orderByCreation)
+	{
+		this.orderByCreation = orderByCreation;
+	}
+
+	public int getOffset()
+	{
+		return offset;
+	}
+
+	public void setOffset(int offset)
+	{
+		this.offset = offset;
+	}
+
+	public int getLimit()
+	{
+		return limit;
+	}
+
+	public void setLimit(int limit)
+	{
+		this.limit = limit;
+	}
+}
@@ -12,6 +12,9 @@ public class TokenBean extends BaseBean
 	private Long owner;
 	private Date created;
 	private Date expires;
+	private Date lastUsed;
+	private Long maxInactivity;
+	private Long inactivityDeadline;
 
 	public TokenBean()
 	{
@@ -71,6 +74,32 @@ public class TokenBean extends BaseBean
 		this.expires = expires;
 	}
 	
+	public Date getLastUsed()
+	{
+		return lastUsed;
+	}
+	public void setLastUsed(Date lastUsed)
+	{
+		this.lastUsed = lastUsed;
+	}
+	
+	public Long getMaxInactivity()
+	{
+		return maxInactivity;
+	}
+	public void setMaxInactivity(Long maxInactivity)
+	{
+		this.maxInactivity = maxInactivity;
+	}
+	public Long getInactivityDeadline()
+	{
+		return inactivityDeadline;
+	}
+	public void setInactivityDeadline(Long inactivityDeadline)
+	{
+		this.inactivityDeadline = inactivityDeadline;
+	}
+	
 	public boolean isExpired()
 	{
 		return expires != null ? new Date().after(expires) : false;
@@ -5,11 +5,19 @@
 package pl.edu.icm.unity.db.resolvers;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.ibatis.session.SqlSession;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import pl.edu.icm.unity.db.DBAttributes;
+import pl.edu.icm.unity.server.api.internal.CacheInvalidationListener;
+import pl.edu.icm.unity.db.cache.CacheInvalidationManager;
 import pl.edu.icm.unity.db.json.AttributeSerializer;
 import pl.edu.icm.unity.db.mapper.AttributesMapper;
 import pl.edu.icm.unity.db.model.AttributeBean;
@@ -19,30 +27,49 @@ import pl.edu.icm.unity.exceptions.IllegalTypeException;
 import pl.edu.icm.unity.json.AttributeTypeSerializer;
 import pl.edu.icm.unity.server.attributes.AttributeValueSyntaxFactory;
 import pl.edu.icm.unity.server.registries.AttributeSyntaxFactoriesRegistry;
+import pl.edu.icm.unity.server.utils.UnityServerConfiguration;
 import pl.edu.icm.unity.types.basic.AttributeExt;
 import pl.edu.icm.unity.types.basic.AttributeType;
 import pl.edu.icm.unity.types.basic.AttributeValueSyntax;
 
 /**
  * Resolvers of attributes and attribute types.
+ * <p>
+ * The session aware methods use an in-memory registry of all attribute types. The registry is dropped 
+ * whenever attribute types are added, updated or removed and is reloaded after the storage caches TTL passes,
+ * so changes performed on other nodes are also picked up. Sessions which modified attribute types 
+ * are not using the registry. Callers which may modify the returned types receive copies of the registry's
+ * types, which are cheaper to create than decoding.
+ * <p>
+ * Attributes are decoded with a single, shared instance of each value syntax (in the default configuration,
+ * as the attribute's type is not resolved).
  * @author K. Benedyczak
  */
 @Component
-public class AttributesResolver
+public class AttributesResolver implements CacheInvalidationListener
 {
 	private AttributeTypeSerializer atSerializer;
 	private AttributeSerializer aSerializer;
 	private AttributeSyntaxFactoriesRegistry typesRegistry;
+	private CacheInvalidationManager cacheInvalidation;
+	private long maxAge;
+	private volatile AttributeTypesSnapshot types;
+	private long generation;
+	private Map<String, AttributeValueSyntax<?>> defaultSyntaxes = new ConcurrentHashMap<>();
 	
 	@Autowired
 	public AttributesResolver(AttributeTypeSerializer atSerializer,
 			AttributeSerializer aSerializer,
-			AttributeSyntaxFactoriesRegistry typesRegistry)
+			AttributeSyntaxFactoriesRegistry typesRegistry,
+			CacheInvalidationManager cacheInvalidation, UnityServerConfiguration cfg)
 	{
 		super();
 		this.atSerializer = atSerializer;
 		this.aSerializer = aSerializer;
 		this.typesRegistry = typesRegistry;
+		this.cacheInvalidation = cacheInvalidation;
+		this.maxAge = cfg.getIntValue(UnityServerConfiguration.CACHES_TTL) * 1000L;
+		cacheInvalidation.addListener(this);
 	}
 
 	public AttributeType resolveAttributeTypeBean(AttributeTypeBean raw) throws IllegalTypeException
@@ -74,6 +101,140 @@ public class AttributesResolver
 		return resolveAttributeTypeBean(atb);
 	}
 
+	/**
+	 * As {@link #resolveAttributeType(String, AttributesMapper)} but uses the in-memory registry if possible.
+	 * The returned object is shared and must not be modified.
+	 */
+	public AttributeTypeBean resolveAttributeType(String attributeName, SqlSession sql) 
+			throws IllegalAttributeTypeException
+	{
+		AttributeTypesSnapshot current = getTypes(sql);
+		if (current != null)
+		{
+			ResolvedType resolved = current.byName.get(attributeName);
+			if (resolved != null)
+				return resolved.bean;
+		}
+		return resolveAttributeType(attributeName, sql.getMapper(AttributesMapper.class));
+	}
+
+	/**
+	 * As {@link #resolveAttributeTypeFull(String, AttributesMapper)} but uses the in-memory registry 
+	 * if possible. The returned object is shared and must not be modified.
+	 */
+	public AttributeType resolveAttributeTypeFull(String attributeName, SqlSession sql) 
+			throws IllegalAttributeTypeException, IllegalTypeException
+	{
+		AttributeTypesSnapshot current = getTypes(sql);
+		if (current != null)
+		{
+			ResolvedType resolved = current.byName.get(attributeName);
+			if (resolved != null && resolved.type != null)
+				return resolved.type;
+		}
+		return resolveAttributeTypeFull(attributeName, sql.getMapper(AttributesMapper.class));
+	}
+
+	/**
+	 * @return the attribute type. If possible it is a copy of the registry's type, otherwise it is decoded.
+	 * The returned object can be freely modified.
+	 */
+	public AttributeType getAttributeTypeCopy(String attributeName, SqlSession sql) 
+			throws IllegalAttributeTypeException, IllegalTypeException
+	{
+		AttributeTypesSnapshot current = getTypes(sql);
+		if (current != null)
+		{
+			ResolvedType resolved = current.byName.get(attributeName);
+			if (resolved != null && resolved.type != null)
+				return copy(resolved);
+		}
+		return resolveAttributeTypeFull(attributeName, sql.getMapper(AttributesMapper.class));
+	}
+
+	/**
+	 * @return all attribute types indexed with names. As {@link #getAttributeTypeCopy(String, SqlSession)}
+	 * the returned objects can be freely modified.
+	 */
+	public Map<String, AttributeType> getAttributeTypeCopies(SqlSession sql) throws IllegalTypeException
+	{
+		AttributeTypesSnapshot current = getTypes(sql);
+		List<AttributeTypeBean> raw = current != null ? current.all : 
+			sql.getMapper(AttributesMapper.class).getAttributeTypes();
+		Map<String, AttributeType> ret = new HashMap<>(raw.size());
+		for (AttributeTypeBean bean: raw)
+		{
+			ResolvedType resolved = current != null ? current.byName.get(bean.getName()) : null;
+			ret.put(bean.getName(), resolved != null && resolved.type != null ? 
+					copy(resolved) : resolveAttributeTypeBean(bean));
+		}
+		return ret;
+	}
+
+	private AttributeType copy(ResolvedType resolved) throws IllegalTypeException
+	{
+		AttributeType src = resolved.type;
+		AttributeValueSyntax<?> syntax = typesRegistry.getByName(
+				resolved.bean.getValueSyntaxId()).createInstance();
+		syntax.setSerializedConfiguration(resolved.syntaxState);
+		AttributeType ret = new AttributeType(src.getName(), syntax, src.getDisplayedName().clone(), 
+				src.getDescription() == null ? null : src.getDescription().clone());
+		ret.setMinElements(src.getMinElements());
+		ret.setMaxElements(src.getMaxElements());
+		ret.setUniqueValues(src.isUniqueValues());
+		ret.setSelfModificable(src.isSelfModificable());
+		ret.setVisibility(src.getVisibility());
+		ret.setFlags(src.getFlags());
+		ret.setMetadata(new HashMap<>(src.getMetadata()));
+		return ret;
+	}
+
+	private AttributeTypesSnapshot getTypes(SqlSession sql)
+	{
+		if (maxAge == 0 || cacheInvalidation.isObjectTypeModifiedInSession(
+				DBAttributes.ATTRIBUTE_TYPES_NOTIFICATION_ID, sql))
+			return null;
+		AttributeTypesSnapshot current = types;
+		if (current != null && System.currentTimeMillis() - current.created < maxAge)
+			return current;
+		long generationAtStart = getGeneration();
+		long loadStart = System.currentTimeMillis();
+		List<AttributeTypeBean> raw = sql.getMapper(AttributesMapper.class).getAttributeTypes();
+		AttributeTypesSnapshot loaded = new AttributeTypesSnapshot(raw, loadStart);
+		storeTypes(loaded, generationAtStart);
+		return loaded;
+	}
+
+	private synchronized long getGeneration()
+	{
+		return generation;
+	}
+
+	private synchronized void storeTypes(AttributeTypesSnapshot loaded, long generationAtStart)
+	{
+		if (generation == generationAtStart)
+			types = loaded;
+	}
+
+	@Override
+	public void invalidateEntity(long entityId)
+	{
+	}
+
+	@Override
+	public synchronized void invalidateAll()
+	{
+		generation++;
+		types = null;
+	}
+
+	@Override
+	public void invalidateObjects(String type)
+	{
+		if (DBAttributes.ATTRIBUTE_TYPES_NOTIFICATION_ID.equals(type))
+			invalidateAll();
+	}
+
 	
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public AttributeExt<?> resolveAttributeBean(AttributeBean raw, String groupPath) throws IllegalTypeException
@@ -81,8 +242,7 @@ public class AttributesResolver
 		AttributeExt attr = new AttributeExt();
 		attr.setName(raw.getName());
 		attr.setGroupPath(groupPath);
-		AttributeValueSyntaxFactory<?> syntaxFactory = typesRegistry.getByName(raw.getValueSyntaxId());
-		AttributeValueSyntax attributeSyntax = syntaxFactory.createInstance();
+		AttributeValueSyntax attributeSyntax = getDefaultSyntax(raw.getValueSyntaxId());
 		attr.setAttributeSyntax(attributeSyntax);
 		attr.setDirect(true);
 		aSerializer.fromJson(raw.getValues(), attr);
@@ -96,4 +256,56 @@ public class AttributesResolver
 			ret.add(resolveAttributeBean(ab, groupPath));
 		return ret;
 	}
+
+	private AttributeValueSyntax<?> getDefaultSyntax(String syntaxId) throws IllegalTypeException
+	{
+		AttributeValueSyntax<?> syntax = defaultSyntaxes.get(syntaxId);
+		if (syntax == null)
+		{
+			AttributeValueSyntaxFactory<?> syntaxFactory = typesRegistry.getByName(syntaxId);
+			syntax = syntaxFactory.createInstance();
+			defaultSyntaxes.putIfAbsent(syntaxId, syntax);
+		}
+		return syntax;
+	}
+
+	private class AttributeTypesSnapshot
+	{
+		private final List<AttributeTypeBean> all;
+		private final Map<String, ResolvedType> byName;
+		private final long created;
+
+		private AttributeTypesSnapshot(List<AttributeTypeBean> raw, long created)
+		{
+			this.all = Collections.unmodifiableList(raw);
+			this.created = created;
+			byName = new HashMap<>(raw.size());
+			for (AttributeTypeBean bean: raw)
+			{
+				AttributeType type;
+				try
+				{
+					type = resolveAttributeTypeBean(bean);
+				} catch (IllegalTypeException e)
+				{
+					type = null;
+				}
+				byName.put(bean.getName(), new ResolvedType(bean, type));
+			}
+		}
+	}
+
+	private static class ResolvedType
+	{
+		private final AttributeTypeBean bean;
+		private final AttributeType type;
+		private final String syntaxState;
+
+		private ResolvedType(AttributeTypeBean bean, AttributeType type)
+		{
+			this.bean = bean;
+			this.type = type;
+			this.syntaxState = type == null ? null : type.getValueType().getSerializedConfiguration();
+		}
+	}
 }
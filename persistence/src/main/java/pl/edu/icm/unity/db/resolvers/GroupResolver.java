@@ -4,32 +4,60 @@
  */
 package pl.edu.icm.unity.db.resolvers;
 
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import pl.edu.icm.unity.server.api.internal.CacheInvalidationListener;
+import pl.edu.icm.unity.db.cache.CacheInvalidationManager;
 import pl.edu.icm.unity.db.mapper.GroupsMapper;
 import pl.edu.icm.unity.db.model.GroupBean;
+import pl.edu.icm.unity.db.resolvers.GroupsIndex.Node;
 import pl.edu.icm.unity.exceptions.IllegalGroupValueException;
+import pl.edu.icm.unity.server.utils.UnityServerConfiguration;
 import pl.edu.icm.unity.types.basic.Group;
 
 /**
- * Serializes Group to GroupBean and vice-versa
+ * Serializes Group to GroupBean and vice-versa.
+ * <p>
+ * Groups paths are resolved using an in-memory index of the groups tree, which is dropped whenever groups
+ * are added or removed. The index is only a hint: group resolved with it (either by path or by id) is
+ * always loaded by id and verified, and if anything is not matching (e.g. the index is outdated or the group
+ * was modified in the current, not yet committed transaction) the resolution falls back to the database.
+ * This is safe as groups can not be renamed or moved. As the resolver doesn't know which session is used,
+ * the index is neither loaded nor stored while any session has uncommitted global changes. This way
+ * the uncommitted groups structure is never shared.
  * @author K. Benedyczak
  */
 @Component
-public class GroupResolver
+public class GroupResolver implements CacheInvalidationListener
 {
 	public static final String ROOT_GROUP_NAME = "ROOT";
 
+	private CacheInvalidationManager cacheInvalidation;
+	private long maxIndexAge;
+	private volatile GroupsIndex index;
+	private long generation;
+
+	@Autowired
+	public GroupResolver(CacheInvalidationManager cacheInvalidation, UnityServerConfiguration cfg)
+	{
+		this.cacheInvalidation = cacheInvalidation;
+		maxIndexAge = cfg.getIntValue(UnityServerConfiguration.CACHES_TTL) * 1000L;
+		cacheInvalidation.addListener(this);
+	}
+
 	/**
 	 * Low level resolve of a group: finds it in a given parent group by name.
 	 * Note - this method does not perform loading of group JSON contents.
 	 * @param name
 	 * @param parentId can be null
 	 * @param mapper
-	 * @return 
+	 * @return
 	 * @throws GroupNotKnownException
 	 */
-	private GroupBean resolveGroup(String name, Long parentId, GroupsMapper mapper) 
+	private GroupBean resolveGroup(String name, Long parentId, GroupsMapper mapper)
 			throws IllegalGroupValueException
 	{
 		GroupBean res = null;
@@ -47,9 +75,13 @@ public class GroupResolver
 	 * @return
 	 * @throws GroupNotKnownException
 	 */
-	public GroupBean resolveGroup(String groupPath, GroupsMapper mapper) 
+	public GroupBean resolveGroup(String groupPath, GroupsMapper mapper)
 			throws IllegalGroupValueException
 	{
+		GroupBean fromIndex = resolveGroupWithIndex(groupPath, mapper);
+		if (fromIndex != null)
+			return fromIndex;
+
 		Group group = new Group(groupPath);
 		String path[] = group.getPath();
 		GroupBean b = resolveGroup(ROOT_GROUP_NAME, null, mapper);
@@ -61,21 +93,38 @@ public class GroupResolver
 		}
 		return b;
 	}
-	
+
+	private GroupBean resolveGroupWithIndex(String groupPath, GroupsMapper mapper)
+	{
+		GroupsIndex current = getIndex(mapper);
+		if (current == null)
+			return null;
+		Node node = current.get(groupPath);
+		if (node == null)
+			return null;
+		GroupBean gb = mapper.getGroup(node.id);
+		if (gb == null || !Objects.equals(gb.getParent(), node.parentId) || !gb.getName().equals(node.name))
+			return null;
+		return gb;
+	}
+
 	public String resolveGroupPath(long groupId, GroupsMapper mapper) throws IllegalGroupValueException
 	{
 		GroupBean gb = mapper.getGroup(groupId);
 		if (gb == null)
 			throw new IllegalGroupValueException("Group unknown: " + groupId);
 		return resolveGroupPath(gb, mapper);
-	}	
-	
+	}
+
 	public String resolveGroupPath(GroupBean gb, GroupsMapper mapper)
 	{
 		if (gb.getParent() == null)
 			return "/";
+		String fromIndex = resolveGroupPathWithIndex(gb, mapper);
+		if (fromIndex != null)
+			return fromIndex;
+
 		StringBuilder path = new StringBuilder();
-		
 		GroupBean parent = gb;
 		while (parent.getParent() != null)
 		{
@@ -84,4 +133,56 @@ public class GroupResolver
 		}
 		return path.toString();
 	}
+
+	/**
+	 * @return path of the given group from index or null if the index entry doesn't match the loaded group.
+	 */
+	private String resolveGroupPathWithIndex(GroupBean gb, GroupsMapper mapper)
+	{
+		GroupsIndex current = getIndex(mapper);
+		if (current == null)
+			return null;
+		Node node = current.get(gb.getId());
+		if (node == null || !Objects.equals(gb.getParent(), node.parentId) || !gb.getName().equals(node.name))
+			return null;
+		return node.getPath();
+	}
+
+	private GroupsIndex getIndex(GroupsMapper mapper)
+	{
+		if (maxIndexAge == 0)
+			return null;
+		GroupsIndex current = index;
+		if (current != null && System.currentTimeMillis() - current.getCreated() < maxIndexAge)
+			return current;
+		if (cacheInvalidation.isGloballyModifiedInAnySession())
+			return null;
+		long generationAtStart = getGeneration();
+		GroupsIndex loaded = new GroupsIndex(mapper.getGroupsStructure());
+		storeIndex(loaded, generationAtStart);
+		return loaded;
+	}
+
+	private synchronized long getGeneration()
+	{
+		return generation;
+	}
+
+	private synchronized void storeIndex(GroupsIndex loaded, long generationAtStart)
+	{
+		if (generation == generationAtStart)
+			index = loaded;
+	}
+
+	@Override
+	public void invalidateEntity(long entityId)
+	{
+	}
+
+	@Override
+	public synchronized void invalidateAll()
+	{
+		generation++;
+		index = null;
+	}
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.db.resolvers;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import pl.edu.icm.unity.db.model.GroupBean;
+
+/**
+ * Immutable snapshot of the groups tree structure: groups ids, names, parents and resulting paths.
+ * Groups contents are not stored.
+ * @author K. Benedyczak
+ */
+class GroupsIndex
+{
+	private final Map<Long, Node> byId;
+	private final Map<String, Node> byPath;
+	private final long created;
+
+	GroupsIndex(List<GroupBean> groups)
+	{
+		created = System.currentTimeMillis();
+		byId = new HashMap<>(groups.size());
+		byPath = new HashMap<>(groups.size());
+		for (GroupBean gb: groups)
+			byId.put(gb.getId(), new Node(gb.getId(), gb.getParent(), gb.getName()));
+		for (Node node: byId.values())
+		{
+			node.path = establishPath(node);
+			if (node.path != null)
+				byPath.put(node.path, node);
+		}
+	}
+
+	private String establishPath(Node node)
+	{
+		if (node.parentId == null)
+			return "/";
+		StringBuilder path = new StringBuilder();
+		Node current = node;
+		while (current.parentId != null)
+		{
+			path.insert(0, '/' + current.name);
+			current = byId.get(current.parentId);
+			if (current == null)
+				return null;
+		}
+		return path.toString();
+	}
+
+	long getCreated()
+	{
+		return created;
+	}
+
+	/**
+	 * @return group node or null if not found
+	 */
+	Node get(String path)
+	{
+		return byPath.get(path);
+	}
+
+	/**
+	 * @return group node or null if not found
+	 */
+	Node get(long id)
+	{
+		return byId.get(id);
+	}
+
+	static class Node
+	{
+		final long id;
+		final Long parentId;
+		final String name;
+		private String path;
+
+		private Node(long id, Long parentId, String name)
+		{
+			this.id = id;
+			this.parentId = parentId;
+			this.name = name;
+		}
+
+		String getPath()
+		{
+			return path;
+		}
+	}
+}
@@ -12,6 +12,7 @@ import org.bouncycastle.crypto.digests.SHA512Digest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import pl.edu.icm.unity.db.SessionIdentitiesStore;
 import pl.edu.icm.unity.db.json.IdentitySerializer;
 import pl.edu.icm.unity.db.json.IdentityTypeSerializer;
 import pl.edu.icm.unity.db.mapper.IdentitiesMapper;
@@ -19,6 +20,7 @@ import pl.edu.icm.unity.db.model.BaseBean;
 import pl.edu.icm.unity.db.model.IdentityBean;
 import pl.edu.icm.unity.exceptions.IllegalIdentityValueException;
 import pl.edu.icm.unity.exceptions.IllegalTypeException;
+import pl.edu.icm.unity.server.api.internal.LoginSession;
 import pl.edu.icm.unity.server.authn.InvocationContext;
 import pl.edu.icm.unity.server.registries.IdentityTypesRegistry;
 import pl.edu.icm.unity.types.basic.EntityParam;
@@ -39,15 +41,18 @@ public class IdentitiesResolver
 	private IdentityTypeSerializer idTypeSerializer;
 	private IdentitySerializer idSerializer;
 	private IdentityTypesRegistry idTypesRegistry;
+	private SessionIdentitiesStore sessionIdentities;
 	
 	@Autowired
 	public IdentitiesResolver(IdentityTypeSerializer idTypeSerializer,
 			IdentitySerializer idSerializer,
-			IdentityTypesRegistry idTypesRegistry)
+			IdentityTypesRegistry idTypesRegistry,
+			SessionIdentitiesStore sessionIdentities)
 	{
 		this.idTypeSerializer = idTypeSerializer;
 		this.idSerializer = idSerializer;
 		this.idTypesRegistry = idTypesRegistry;
+		this.sessionIdentities = sessionIdentities;
 	}
 
 
@@ -137,13 +142,33 @@ public class IdentitiesResolver
 			}
 			inDBIdentityValue = getComparableIdentityValue(idtavParam, idTypeDef);
 
-			IdentityBean idBean = mapper.getIdentityByName(inDBIdentityValue);
+			IdentityBean idBean = getIdentityByName(inDBIdentityValue, idTypeDef, sqlMap);
 			if (idBean == null)
 				throw new IllegalIdentityValueException("The entity id is invalid: " + entityParam);
 			return idBean.getEntityId();
 		}
 	}
 
+	/**
+	 * Session bound identities are looked up in the {@link SessionIdentitiesStore} first. The database
+	 * is queried for them too, as they could have been stored there before.
+	 * @param inDBIdentityValue
+	 * @param idTypeDef
+	 * @param sqlMap
+	 * @return identity with the given in-DB name or null if it is not found
+	 */
+	public IdentityBean getIdentityByName(String inDBIdentityValue, IdentityTypeDefinition idTypeDef, 
+			SqlSession sqlMap)
+	{
+		if (sessionIdentities.isHandled(idTypeDef))
+		{
+			IdentityBean idBean = sessionIdentities.get(inDBIdentityValue, sqlMap);
+			if (idBean != null)
+				return idBean;
+		}
+		return sqlMap.getMapper(IdentitiesMapper.class).getIdentityByName(inDBIdentityValue);
+	}
+
 	public Identity resolveIdentityBeanNoExternalize(IdentityBean idB, IdentitiesMapper mapper) 
 			throws IllegalTypeException
 	{
@@ -202,8 +227,9 @@ public class IdentitiesResolver
 	
 	
 	public Identity createDynamicIdentity(IdentityTypeDefinition idTypeImpl, long entityId, 
-			IdentitiesMapper mapper, String target)
+			SqlSession sqlMap, String target)
 	{
+		IdentitiesMapper mapper = sqlMap.getMapper(IdentitiesMapper.class);
 		String realm = InvocationContext.safeGetRealm();
 		
 		if (idTypeImpl.isTargeted() && (realm == null || target == null))
@@ -224,7 +250,12 @@ public class IdentitiesResolver
 				idParam.setTarget(target);
 			}
 			newIdBean.setContents(idSerializer.toJson(idParam, null, null));
-			mapper.insertIdentity(newIdBean);
+			LoginSession loginSession = sessionIdentities.isHandled(idTypeImpl) ? 
+					InvocationContext.getCurrent().getLoginSession() : null;
+			if (loginSession != null)
+				sessionIdentities.add(newIdBean, loginSession.getId(), sqlMap);
+			else
+				mapper.insertIdentity(newIdBean);
 			
 			String externalizedValue = idTypeImpl.toExternalForm(realm, target, newId.getContents());
 			Identity ret = resolveIdentityBeanNoExternalize(newIdBean, mapper);
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.db;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.Test;
+
+import pl.edu.icm.unity.db.cache.CacheInvalidationManager;
+
+public class TestDBSessionManager
+{
+	private static final long LATE = DBSessionManager.SESSION_KEEP_WARN_TIME + 1000;
+
+	@Test
+	public void leakedSessionIsReportedWithoutStackTraceWhenNotSampled()
+	{
+		DBSessionManager sessionManager = createSessionManager(0);
+		sessionManager.getSqlSession(true);
+
+		List<String> reports = sessionManager.reportLongKeptSessions(System.currentTimeMillis() + LATE);
+
+		assertThat(reports.size(), is(1));
+		assertThat(reports.get(0), containsString(Thread.currentThread().getName()));
+		assertThat(reports.get(0), containsString(DBConfiguration.PREFIX +
+				DBConfiguration.SESSION_STACKTRACE_SAMPLING));
+		assertThat(reports.get(0), not(containsString("leakedSessionIsReported")));
+	}
+
+	@Test
+	public void leakedSessionIsReportedWithStackTraceWhenSampled()
+	{
+		DBSessionManager sessionManager = createSessionManager(1);
+		sessionManager.getSqlSession(true);
+
+		List<String> reports = sessionManager.reportLongKeptSessions(System.currentTimeMillis() + LATE);
+
+		assertThat(reports.size(), is(1));
+		assertThat(reports.get(0), containsString("Stacktrace is:"));
+		assertThat(reports.get(0), containsString("leakedSessionIsReportedWithStackTraceWhenSampled"));
+	}
+
+	@Test
+	public void leakedSessionIsNotReportedAgainImmediately()
+	{
+		DBSessionManager sessionManager = createSessionManager(0);
+		sessionManager.getSqlSession(true);
+		long now = System.currentTimeMillis() + LATE;
+		sessionManager.reportLongKeptSessions(now);
+
+		List<String> reports = sessionManager.reportLongKeptSessions(now + 1);
+
+		assertThat(reports.isEmpty(), is(true));
+	}
+
+	@Test
+	public void releasedSessionIsNotReported()
+	{
+		DBSessionManager sessionManager = createSessionManager(1);
+		SqlSession session = sessionManager.getSqlSession(true);
+		sessionManager.releaseSqlSession(session);
+
+		List<String> reports = sessionManager.reportLongKeptSessions(System.currentTimeMillis() + LATE);
+
+		assertThat(reports.isEmpty(), is(true));
+	}
+
+	@Test
+	public void recentlyOpenedSessionIsNotReported()
+	{
+		DBSessionManager sessionManager = createSessionManager(1);
+		sessionManager.getSqlSession(true);
+
+		List<String> reports = sessionManager.reportLongKeptSessions(System.currentTimeMillis());
+
+		assertThat(reports.isEmpty(), is(true));
+	}
+
+	private DBSessionManager createSessionManager(int stackTraceSampling)
+	{
+		SqlSessionFactory factory = mock(SqlSessionFactory.class);
+		when(factory.openSession(any(ExecutorType.class), anyBoolean())).thenReturn(mock(SqlSession.class));
+		return new DBSessionManager(factory, mock(CacheInvalidationManager.class), stackTraceSampling);
+	}
+}
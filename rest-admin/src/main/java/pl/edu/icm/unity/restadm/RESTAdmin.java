@@ -99,6 +99,7 @@ import pl.edu.icm.unity.types.registration.invite.RESTInvitationWithCode;
 public class RESTAdmin
 {
 	private static final int UUID_LENGTH = 36;
+	private static final int DEFAULT_MEMBERS_LIMIT = 1000;
 	
 	private static final Logger log = Log.getLogger(Log.U_SERVER_REST, RESTAdmin.class);
 	private IdentitiesManagement identitiesMan;
@@ -419,6 +420,29 @@ public class RESTAdmin
 	}
 
 	
+	@Path("/group/{groupPath}/members")
+	@GET
+	public String getGroupMembers(@PathParam("groupPath") String group, 
+			@QueryParam("offset") Integer offset, @QueryParam("limit") Integer limit,
+			@QueryParam("orderBy") String orderBy, 
+			@QueryParam("identity") String identity, @QueryParam("identityType") String idType) 
+			throws EngineException, JsonProcessingException
+	{
+		log.debug("getGroupMembers query for " + group);
+		if (orderBy != null && !orderBy.equals("entityId") && !orderBy.equals("created"))
+			throw new WrongArgumentException("Members can be ordered either by 'entityId' or 'created'");
+		if (identity != null && idType == null)
+			throw new WrongArgumentException("Identity type must be given for the identity");
+		if ((offset != null && offset < 0) || (limit != null && limit < 0))
+			throw new WrongArgumentException("Offset and limit must not be negative");
+		IdentityTaV identityFilter = identity == null ? null : new IdentityTaV(idType, identity);
+		List<GroupMembership> members = groupsMan.getMembers(group, 
+				offset == null ? 0 : offset, 
+				limit == null ? DEFAULT_MEMBERS_LIMIT : limit, 
+				"created".equals(orderBy), identityFilter);
+		return mapper.writeValueAsString(members);
+	}
+	
 	@Path("/group/{groupPath}")
 	@DELETE
 	public void removeGroup(@PathParam("groupPath") String group, 
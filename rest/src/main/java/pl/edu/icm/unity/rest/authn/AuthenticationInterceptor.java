@@ -30,6 +30,7 @@ import pl.edu.icm.unity.server.authn.AuthenticationOption;
 import pl.edu.icm.unity.server.authn.AuthenticationProcessor;
 import pl.edu.icm.unity.server.authn.AuthenticationProcessor.PartialAuthnState;
 import pl.edu.icm.unity.server.authn.AuthenticationResult;
+import pl.edu.icm.unity.server.authn.AuthenticationTryLaterException;
 import pl.edu.icm.unity.server.authn.InvocationContext;
 import pl.edu.icm.unity.server.authn.UnsuccessfulAuthenticationCounter;
 import pl.edu.icm.unity.server.utils.Log;
@@ -86,6 +87,7 @@ public class AuthenticationInterceptor extends AbstractPhaseInterceptor<Message>
 		InvocationContext ctx = new InvocationContext(tlsId, realm); 
 		InvocationContext.setCurrent(ctx);
 		AuthenticationException firstError = null;
+		boolean denied = false;
 		AuthenticatedEntity client = null;
 		
 		if (isToNotProtected(message))
@@ -103,6 +105,8 @@ public class AuthenticationInterceptor extends AbstractPhaseInterceptor<Message>
 							"will try another: " + e);
 				if (firstError == null)
 					firstError = new AuthenticationException(msg.getMessage(e.getMessage()));
+				if (!(e instanceof AuthenticationTryLaterException))
+					denied = true;
 				continue;
 			}
 			break;
@@ -110,7 +114,8 @@ public class AuthenticationInterceptor extends AbstractPhaseInterceptor<Message>
 		if (client == null)
 		{
 			log.info("Authentication failed for client");
-			unsuccessfulAuthenticationCounter.unsuccessfulAttempt(ip);
+			if (denied)
+				unsuccessfulAuthenticationCounter.unsuccessfulAttempt(ip);
 			throw new Fault(firstError == null ? new Exception("Authentication failed") : firstError);
 		} else
 		{
@@ -144,8 +149,8 @@ public class AuthenticationInterceptor extends AbstractPhaseInterceptor<Message>
 					client.getEntityId() + "] " + client.getAuthenticatedWith().toString());
 		unsuccessfulAuthenticationCounter.successfulAttempt(ip);
 		
-		LoginSession ls = sessionMan.getCreateSession(client.getEntityId(), realm, 
-				"", client.isUsedOutdatedCredential(), null);
+		LoginSession ls = sessionMan.getCreateAPISession(client.getEntityId(), realm, 
+				client.isUsedOutdatedCredential());
 		ctx.setLoginSession(ls);
 		ls.addAuthenticatedIdentities(client.getAuthenticatedWith());
 		ls.setRemoteIdP(client.getRemoteIdP());
@@ -15,8 +15,8 @@ import pl.edu.icm.unity.server.authn.CredentialRetrieval;
  */
 public class HttpBasicRetrieval extends HttpBasicRetrievalBase implements CredentialRetrieval, JAXRSAuthentication
 {
-	public HttpBasicRetrieval()
+	public HttpBasicRetrieval(HttpBasicVerificationCache verificationCache)
 	{
-		super(JAXRSAuthentication.NAME);
+		super(JAXRSAuthentication.NAME, verificationCache);
 	}
 }
@@ -15,6 +15,10 @@ import org.apache.cxf.transport.http.AbstractHTTPDestination;
 import org.apache.log4j.Logger;
 import org.apache.xmlbeans.impl.util.Base64;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import pl.edu.icm.unity.Constants;
 import pl.edu.icm.unity.exceptions.InternalException;
 import pl.edu.icm.unity.rest.authn.CXFAuthentication;
 import pl.edu.icm.unity.server.authn.AbstractCredentialRetrieval;
@@ -27,6 +31,9 @@ import eu.unicore.security.HTTPAuthNTokens;
 
 /**
  * Base code for retrieving HTTP BASIC authn data from CXF.
+ * <p>
+ * Optionally successful verifications can be cached for the configured time, 
+ * see {@link HttpBasicVerificationCache}.
  * 
  * @author K. Benedyczak
  */
@@ -34,21 +41,43 @@ public abstract class HttpBasicRetrievalBase extends AbstractCredentialRetrieval
 		implements CredentialRetrieval, CXFAuthentication
 {
 	private static final Logger log = Log.getLogger(Log.U_SERVER_REST, HttpBasicRetrievalBase.class);
+	public static final String CACHE_TIME = "cacheTime";
+	private HttpBasicVerificationCache verificationCache;
+	private int cacheTime = 0;
 	
-	public HttpBasicRetrievalBase(String bindingName)
+	public HttpBasicRetrievalBase(String bindingName, HttpBasicVerificationCache verificationCache)
 	{
 		super(bindingName);
+		this.verificationCache = verificationCache;
 	}
 
 	@Override
 	public String getSerializedConfiguration() throws InternalException
 	{
-		return "";
+		if (cacheTime == 0)
+			return "";
+		ObjectNode root = Constants.MAPPER.createObjectNode();
+		root.put(CACHE_TIME, cacheTime);
+		return root.toString();
 	}
 
 	@Override
 	public void setSerializedConfiguration(String json) throws InternalException
 	{
+		cacheTime = 0;
+		if (json == null || json.trim().isEmpty())
+			return;
+		try
+		{
+			JsonNode cacheNode = Constants.MAPPER.readTree(json).get(CACHE_TIME);
+			if (cacheNode != null && !cacheNode.isNull())
+				cacheTime = cacheNode.asInt();
+		} catch (Exception e)
+		{
+			throw new InternalException("Can't deserialize HTTP BASIC retrieval configuration from JSON", e);
+		}
+		if (cacheTime < 0)
+			throw new InternalException("The " + CACHE_TIME + " of HTTP BASIC retrieval must be non-negative");
 	}
 	
 	@Override
@@ -69,8 +98,13 @@ public abstract class HttpBasicRetrievalBase extends AbstractCredentialRetrieval
 		log.trace("HTTP BASIC auth header found");
 		try
 		{
-			return credentialExchange.checkPassword(authnTokens.getUserName(), authnTokens.getPasswd(),
-					null);
+			if (cacheTime == 0 || verificationCache == null)
+				return credentialExchange.checkPassword(authnTokens.getUserName(), 
+						authnTokens.getPasswd(), null);
+			return verificationCache.verify(getAuthenticatorId(), authnTokens.getUserName(), 
+					authnTokens.getPasswd(), cacheTime, 
+					() -> credentialExchange.checkPassword(authnTokens.getUserName(), 
+							authnTokens.getPasswd(), null));
 		} catch (Exception e)
 		{
 			log.trace("HTTP BASIC credential is invalid");
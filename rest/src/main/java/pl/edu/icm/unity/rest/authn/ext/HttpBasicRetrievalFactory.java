@@ -4,6 +4,7 @@
  */
 package pl.edu.icm.unity.rest.authn.ext;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import pl.edu.icm.unity.rest.authn.JAXRSAuthentication;
@@ -21,6 +22,14 @@ public class HttpBasicRetrievalFactory implements CredentialRetrievalFactory
 {
 	public static final String NAME = "rest-httpbasic";
 	
+	private HttpBasicVerificationCache verificationCache;
+	
+	@Autowired
+	public HttpBasicRetrievalFactory(HttpBasicVerificationCache verificationCache)
+	{
+		this.verificationCache = verificationCache;
+	}
+	
 	@Override
 	public String getName()
 	{
@@ -36,7 +45,7 @@ public class HttpBasicRetrievalFactory implements CredentialRetrievalFactory
 	@Override
 	public CredentialRetrieval newInstance()
 	{
-		return new HttpBasicRetrieval();
+		return new HttpBasicRetrieval(verificationCache);
 	}
 
 	@Override
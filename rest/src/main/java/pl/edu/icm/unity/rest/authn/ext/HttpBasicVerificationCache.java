@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.rest.authn.ext;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import pl.edu.icm.unity.exceptions.InternalException;
+import pl.edu.icm.unity.server.api.internal.CacheInvalidationListener;
+import pl.edu.icm.unity.server.api.internal.CacheInvalidationRegistry;
+import pl.edu.icm.unity.server.authn.AuthenticatedEntity;
+import pl.edu.icm.unity.server.authn.AuthenticationResult;
+import pl.edu.icm.unity.server.authn.AuthenticationResult.Status;
+import pl.edu.icm.unity.server.utils.Log;
+
+/**
+ * Remembers successful verifications of HTTP BASIC credentials, so that API clients authenticating
+ * with each request don't trigger the full password verification every time. Caching is enabled
+ * per authenticator, with the retrieval's configuration.
+ * <p>
+ * Entries are keyed with the authenticator, username and a HMAC of the password, computed with
+ * a random key generated on startup, so the passwords are never kept in memory. Results of an entity
+ * are dropped whenever the entity is changed (e.g. its credential or state), all results are dropped
+ * on global changes. Changes performed on other nodes are visible after the entry TTL passes.
+ * <p>
+ * The number of entries is limited, the least recently used ones are evicted. As the entity is known only
+ * after verification, each invalidation is stamped with a version, remembered per entity. A fresh result
+ * is stored only if its entity (or everything) was not invalidated after the verification started.
+ * Keys of the stored results are additionally indexed by entity, so the invalidation of an entity
+ * doesn't need to scan all entries.
+ * @author K. Benedyczak
+ */
+@Component
+public class HttpBasicVerificationCache implements CacheInvalidationListener
+{
+	private static final Logger log = Log.getLogger(Log.U_SERVER_REST, HttpBasicVerificationCache.class);
+	private static final String HMAC_ALG = "HmacSHA256";
+	private static final int MAX_ENTRIES = 10000;
+	private SecretKeySpec hmacKey;
+	private long version;
+	private long globalInvalidation;
+	private long forgottenInvalidation;
+	private Map<String, CachedVerification> entries = new LinkedHashMap<String, CachedVerification>(
+			16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedVerification> eldest)
+		{
+			if (size() <= MAX_ENTRIES)
+				return false;
+			unindex(eldest.getKey(), eldest.getValue());
+			return true;
+		}
+	};
+	private Map<Long, Set<String>> keysOfEntity = new HashMap<>();
+	private Map<Long, Long> entityInvalidations = new LinkedHashMap<Long, Long>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest)
+		{
+			if (size() <= MAX_ENTRIES)
+				return false;
+			forgottenInvalidation = Math.max(forgottenInvalidation, eldest.getValue());
+			return true;
+		}
+	};
+
+	@Autowired
+	public HttpBasicVerificationCache(CacheInvalidationRegistry cacheInvalidation)
+	{
+		byte[] key = new byte[32];
+		new SecureRandom().nextBytes(key);
+		hmacKey = new SecretKeySpec(key, HMAC_ALG);
+		cacheInvalidation.addListener(this);
+	}
+
+	/**
+	 * @param authenticatorId
+	 * @param username
+	 * @param password
+	 * @param ttl maximum age of the cached result in seconds
+	 * @param verifier used to verify the credential if there is no cached result
+	 * @return authentication result, either cached or fresh
+	 */
+	public AuthenticationResult verify(String authenticatorId, String username, String password, int ttl,
+			CredentialVerifier verifier) throws Exception
+	{
+		String key = getKey(authenticatorId, username, password);
+		long now = System.currentTimeMillis();
+		CachedVerification cached;
+		long versionBefore;
+		synchronized (this)
+		{
+			cached = entries.get(key);
+			versionBefore = version;
+		}
+		if (cached != null && now < cached.expires)
+		{
+			log.trace("Using cached HTTP BASIC verification result of " + username);
+			return new AuthenticationResult(Status.success,
+					new AuthenticatedEntity(cached.entityId, username, cached.outdatedCredential));
+		}
+
+		AuthenticationResult result = verifier.verify();
+		if (result.getStatus() == Status.success && result.getAuthenticatedEntity() != null &&
+				result.getAuthenticatedEntity().getRemoteIdP() == null)
+			store(key, new CachedVerification(result.getAuthenticatedEntity(), now + ttl * 1000L), 
+					versionBefore);
+		return result;
+	}
+
+	private synchronized void store(String key, CachedVerification verification, long versionBefore)
+	{
+		if (globalInvalidation > versionBefore || forgottenInvalidation > versionBefore)
+			return;
+		Long entityInvalidation = entityInvalidations.get(verification.entityId);
+		if (entityInvalidation != null && entityInvalidation > versionBefore)
+			return;
+		CachedVerification previous = entries.put(key, verification);
+		if (previous != null)
+			unindex(key, previous);
+		keysOfEntity.computeIfAbsent(verification.entityId, id -> new HashSet<>()).add(key);
+	}
+
+	private void unindex(String key, CachedVerification verification)
+	{
+		Set<String> keys = keysOfEntity.get(verification.entityId);
+		if (keys == null)
+			return;
+		keys.remove(key);
+		if (keys.isEmpty())
+			keysOfEntity.remove(verification.entityId);
+	}
+
+	private String getKey(String authenticatorId, String username, String password)
+	{
+		try
+		{
+			Mac mac = Mac.getInstance(HMAC_ALG);
+			mac.init(hmacKey);
+			byte[] hmac = mac.doFinal((password == null ? "" : password).getBytes(StandardCharsets.UTF_8));
+			return authenticatorId + "\n" + username + "\n" + Base64.getEncoder().encodeToString(hmac);
+		} catch (GeneralSecurityException e)
+		{
+			throw new InternalException("Can't compute HMAC of the password", e);
+		}
+	}
+
+	@Override
+	public synchronized void invalidateEntity(long entityId)
+	{
+		entityInvalidations.put(entityId, ++version);
+		Set<String> keys = keysOfEntity.remove(entityId);
+		if (keys != null)
+			entries.keySet().removeAll(keys);
+	}
+
+	@Override
+	public synchronized void invalidateAll()
+	{
+		globalInvalidation = ++version;
+		entityInvalidations.clear();
+		forgottenInvalidation = 0;
+		entries.clear();
+		keysOfEntity.clear();
+	}
+
+	/**
+	 * Performs the actual verification of a credential.
+	 */
+	public interface CredentialVerifier
+	{
+		AuthenticationResult verify() throws Exception;
+	}
+
+	private static class CachedVerification
+	{
+		private final long entityId;
+		private final boolean outdatedCredential;
+		private final long expires;
+
+		private CachedVerification(AuthenticatedEntity entity, long expires)
+		{
+			this.entityId = entity.getEntityId();
+			this.outdatedCredential = entity.isUsedOutdatedCredential();
+			this.expires = expires;
+		}
+	}
+}
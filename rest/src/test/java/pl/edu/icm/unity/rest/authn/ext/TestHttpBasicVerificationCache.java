@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.rest.authn.ext;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.edu.icm.unity.rest.authn.ext.HttpBasicVerificationCache.CredentialVerifier;
+import pl.edu.icm.unity.server.authn.AuthenticatedEntity;
+import pl.edu.icm.unity.server.authn.AuthenticationResult;
+import pl.edu.icm.unity.server.authn.AuthenticationResult.Status;
+
+public class TestHttpBasicVerificationCache
+{
+	private HttpBasicVerificationCache cache;
+	private AtomicInteger verifications;
+	private CredentialVerifier success;
+	private CredentialVerifier deny;
+
+	@Before
+	public void init()
+	{
+		cache = new HttpBasicVerificationCache(listener -> {});
+		verifications = new AtomicInteger();
+		success = () -> {
+			verifications.incrementAndGet();
+			return new AuthenticationResult(Status.success, new AuthenticatedEntity(7L, "user", false));
+		};
+		deny = () -> {
+			verifications.incrementAndGet();
+			return new AuthenticationResult(Status.deny, null);
+		};
+	}
+
+	@Test
+	public void successfulVerificationIsReused() throws Exception
+	{
+		cache.verify("authn", "user", "pass", 10, success);
+		AuthenticationResult result = cache.verify("authn", "user", "pass", 10, success);
+
+		assertThat(verifications.get(), is(1));
+		assertThat(result.getStatus(), is(Status.success));
+		assertThat(result.getAuthenticatedEntity().getEntityId(), is(7L));
+	}
+
+	@Test
+	public void differentPasswordIsVerified() throws Exception
+	{
+		cache.verify("authn", "user", "pass", 10, success);
+		AuthenticationResult result = cache.verify("authn", "user", "other", 10, deny);
+
+		assertThat(verifications.get(), is(2));
+		assertThat(result.getStatus(), is(Status.deny));
+	}
+
+	@Test
+	public void failedVerificationIsNotCached() throws Exception
+	{
+		cache.verify("authn", "user", "pass", 10, deny);
+		cache.verify("authn", "user", "pass", 10, deny);
+
+		assertThat(verifications.get(), is(2));
+	}
+
+	@Test
+	public void resultIsDroppedAfterEntityChange() throws Exception
+	{
+		cache.verify("authn", "user", "pass", 10, success);
+		cache.invalidateEntity(7L);
+		AuthenticationResult result = cache.verify("authn", "user", "pass", 10, deny);
+
+		assertThat(verifications.get(), is(2));
+		assertThat(result.getStatus(), is(Status.deny));
+	}
+
+	@Test
+	public void resultsOfOtherEntityAreKeptAfterEntityChange() throws Exception
+	{
+		cache.verify("authn", "user", "pass", 10, success);
+		cache.verify("authn", "user2", "pass", 10, () -> {
+			verifications.incrementAndGet();
+			return new AuthenticationResult(Status.success, new AuthenticatedEntity(8L, "user2", false));
+		});
+		cache.invalidateEntity(8L);
+		cache.verify("authn", "user", "pass", 10, success);
+
+		assertThat(verifications.get(), is(2));
+	}
+
+	@Test
+	public void resultIsNotSharedBetweenAuthenticators() throws Exception
+	{
+		cache.verify("authn", "user", "pass", 10, success);
+		cache.verify("authn2", "user", "pass", 10, success);
+
+		assertThat(verifications.get(), is(2));
+	}
+
+	@Test
+	public void resultIsNotStoredWhenEntityChangedDuringVerification() throws Exception
+	{
+		cache.verify("authn", "user", "pass", 10, () -> {
+			cache.invalidateEntity(7L);
+			return success.verify();
+		});
+		cache.verify("authn", "user", "pass", 10, success);
+
+		assertThat(verifications.get(), is(2));
+	}
+
+	@Test
+	public void resultIsStoredWhenOtherEntityChangedDuringVerification() throws Exception
+	{
+		cache.verify("authn", "user", "pass", 10, () -> {
+			cache.invalidateEntity(8L);
+			return success.verify();
+		});
+		cache.verify("authn", "user", "pass", 10, success);
+
+		assertThat(verifications.get(), is(1));
+	}
+
+	@Test
+	public void leastRecentlyUsedResultIsEvicted() throws Exception
+	{
+		cache.verify("authn", "user", "pass", 10, success);
+		for (int i = 1; i < 10000; i++)
+			cache.verify("authn", "user" + i, "pass", 10, success);
+		cache.verify("authn", "user", "pass", 10, success);
+		cache.verify("authn", "newUser", "pass", 10, success);
+
+		cache.verify("authn", "user", "pass", 10, success);
+		cache.verify("authn", "user1", "pass", 10, success);
+		assertThat(verifications.get(), is(10000 + 1 + 1));
+	}
+
+	@Test
+	public void entityChangeDropsResultsRemainingAfterEviction() throws Exception
+	{
+		for (int i = 0; i <= 10000; i++)
+			cache.verify("authn", "user" + i, "pass", 10, success);
+		cache.invalidateEntity(7L);
+		cache.verify("authn", "user1", "pass", 10, success);
+		cache.verify("authn", "user10000", "pass", 10, success);
+
+		assertThat(verifications.get(), is(10001 + 2));
+	}
+}
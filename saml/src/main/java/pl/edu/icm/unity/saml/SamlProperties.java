@@ -132,6 +132,18 @@ public abstract class SamlProperties extends UnityPropertiesHelper
 	@Override
 	public abstract SamlProperties clone();	
 	
+	/**
+	 * @param properties
+	 * @return a new, fully initialized configuration object of the same type as this one, 
+	 * using the given properties. This object is not modified.
+	 */
+	public SamlProperties cloneWithProperties(Properties properties)
+	{
+		SamlProperties ret = clone();
+		ret.setProperties(properties);
+		return ret;
+	}
+	
 	public abstract Properties getSourceProperties();
 	
 	public List<SAMLEndpointDefinition> getLogoutEndpointsFromStructuredList(String configKey)
@@ -12,6 +12,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -230,6 +231,11 @@ public class SamlIdpProperties extends SamlProperties
 	private SamlAttributeMapper attributesMapper;
 	private PKIManagement pkiManagement;
 	private IdentityTypeMapper idTypeMapper;
+	private Map<String, String> spKeysByEntity;
+	private Map<String, String> spKeysByDN;
+	private Map<String, Set<String>> spCertNames;
+	private Map<String, String> spReturnAddresses;
+	private Set<String> knownRequesters;
 	
 	public SamlIdpProperties(Properties src, PKIManagement pkiManagement) throws ConfigurationException, IOException
 	{
@@ -269,6 +275,7 @@ public class SamlIdpProperties extends SamlProperties
 	
 	private void init()
 	{
+		indexAllowedSPs();
 		ResponseSigningPolicy repPolicy = getEnumValue(SamlIdpProperties.SIGN_RESPONSE, ResponseSigningPolicy.class);
 		signRespAlways = signRespNever = false;
 		if (repPolicy == ResponseSigningPolicy.always)
@@ -353,6 +360,51 @@ public class SamlIdpProperties extends SamlProperties
 		attributesMapper = new DefaultSamlAttributesMapper();
 	}
 	
+	/**
+	 * Builds lookup tables of the allowed SPs, so that requests can be matched with the SP configuration
+	 * without scanning the whole (possibly metadata-derived and huge) list of allowed SPs. 
+	 * If an SP is defined more then once, the first definition is used.
+	 */
+	private void indexAllowedSPs()
+	{
+		Set<String> allowedKeys = getStructuredListKeys(ALLOWED_SP_PREFIX);
+		spKeysByEntity = new HashMap<>(allowedKeys.size());
+		spKeysByDN = new HashMap<>();
+		spCertNames = new HashMap<>(allowedKeys.size());
+		spReturnAddresses = new HashMap<>(allowedKeys.size());
+		Set<String> knownRequesters = new HashSet<>();
+		for (String allowedKey: allowedKeys)
+		{
+			String entity = getValue(allowedKey + ALLOWED_SP_ENTITY);
+			if (entity != null && !spKeysByEntity.containsKey(entity))
+				spKeysByEntity.put(entity, allowedKey);
+			String dn = getValue(allowedKey + ALLOWED_SP_DN);
+			if (dn != null)
+			{
+				try
+				{
+					String comparableDN = X500NameUtils.getComparableForm(dn);
+					if (!spKeysByDN.containsKey(comparableDN))
+						spKeysByDN.put(comparableDN, allowedKey);
+				} catch (IllegalArgumentException e)
+				{
+					log.warn("The DN of the allowed SP entry " + allowedKey + 
+							" is invalid and will be ignored: " + dn);
+				}
+			}
+			spCertNames.put(allowedKey, Collections.unmodifiableSet(getCertificateNames(allowedKey, 
+					ALLOWED_SP_CERTIFICATE, ALLOWED_SP_CERTIFICATES)));
+			String returnAddress = getValue(allowedKey + ALLOWED_SP_RETURN_URL);
+			if (returnAddress != null)
+			{
+				spReturnAddresses.put(allowedKey, returnAddress);
+				if (entity != null)
+					knownRequesters.add(entity);
+			}
+		}
+		this.knownRequesters = Collections.unmodifiableSet(knownRequesters);
+	}
+	
 	private void initPki() throws EngineException
 	{
 		RequestAcceptancePolicy policy = getEnumValue(SP_ACCEPT_POLICY, RequestAcceptancePolicy.class); 
@@ -435,16 +487,15 @@ public class SamlIdpProperties extends SamlProperties
 	
 	public void configureKnownRequesters(UnityAuthnRequestValidator validator)
 	{
-		Set<String> allowedKeys = getStructuredListKeys(ALLOWED_SP_PREFIX);
-		for (String allowedKey: allowedKeys)
-		{
-			String name = getValue(allowedKey + ALLOWED_SP_ENTITY);
-			if (name == null)
-				continue;
-			if (!isSet(allowedKey + ALLOWED_SP_RETURN_URL))
-				continue;
-			validator.addKnownRequester(name);
-		}
+		validator.setKnownRequesters(knownRequesters);
+	}
+	
+	/**
+	 * @return entity ids of the allowed SPs with a configured return URL
+	 */
+	public Set<String> getKnownRequesters()
+	{
+		return knownRequesters;
 	}
 
 	public String getReturnAddressForRequester(NameIDType requester)
@@ -453,7 +504,7 @@ public class SamlIdpProperties extends SamlProperties
 		if (spKey == null)
 			return null;
 
-		return getValue(spKey + ALLOWED_SP_RETURN_URL);
+		return spReturnAddresses.get(spKey);
 	}
 	
 	/**
@@ -501,34 +552,26 @@ public class SamlIdpProperties extends SamlProperties
 	
 	public Set<String> getAllowedSpCerts(String idpKey)
 	{
+		Set<String> indexed = spCertNames.get(idpKey);
+		if (indexed != null)
+			return indexed;
 		return getCertificateNames(idpKey, ALLOWED_SP_CERTIFICATE, ALLOWED_SP_CERTIFICATES);
 	}
 	
 	public String getSPConfigKey(NameIDType requester)
 	{
-		Set<String> allowedKeys = getStructuredListKeys(ALLOWED_SP_PREFIX);
 		boolean dnName = requester.getFormat() != null && requester.getFormat().equals(
 				SAMLConstants.NFORMAT_DN); 
-		for (String allowedKey: allowedKeys)
+		if (!dnName)
+			return spKeysByEntity.get(requester.getStringValue());
+		try
 		{
-			if (dnName)
-			{
-				String name = getValue(allowedKey + ALLOWED_SP_DN);
-				if (name == null)
-					continue;
-				if (!X500NameUtils.equal(name, requester.getStringValue()))
-					continue;
-			} else
-			{
-				String name = getValue(allowedKey + ALLOWED_SP_ENTITY);
-				if (name == null)
-					continue;
-				if (!name.equals(requester.getStringValue()))
-					continue;
-			}
-			return allowedKey;
+			return spKeysByDN.get(X500NameUtils.getComparableForm(requester.getStringValue()));
+		} catch (IllegalArgumentException e)
+		{
+			log.debug("Requester's DN is invalid: " + requester.getStringValue());
+			return null;
 		}
-		return null;
 	}
 
 	public SamlTrustChecker getSoapTrustChecker()
@@ -600,6 +643,18 @@ public class SamlIdpProperties extends SamlProperties
 		
 	}
 
+	@Override
+	public SamlProperties cloneWithProperties(Properties properties)
+	{
+		try
+		{
+			return new SamlIdpProperties(properties, pkiManagement);
+		} catch (IOException e)
+		{
+			throw new ConfigurationException("Can not clone saml properties", e);
+		} 
+	}
+	
 	public Properties getSourceProperties()
 	{
 		Properties configProps = new Properties();
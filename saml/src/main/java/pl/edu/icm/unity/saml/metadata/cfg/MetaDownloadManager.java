@@ -12,10 +12,13 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
@@ -50,6 +53,7 @@ public class MetaDownloadManager
 	private UnityServerConfiguration mainConfig;
 	private Map<String, Long> downloadedFiles;
 	private Set<String> downlodingFiles;
+	private Map<String, ContentValidators> contentValidators;
 
 	@Autowired
 	public MetaDownloadManager(PKIManagement pkiManagement, UnityServerConfiguration mainConfig)
@@ -58,6 +62,7 @@ public class MetaDownloadManager
 		this.mainConfig = mainConfig;
 		this.downloadedFiles = new HashMap<String, Long>();
 		this.downlodingFiles = new HashSet<String>();
+		this.contentValidators = new ConcurrentHashMap<String, ContentValidators>();
 	}
 	
 	/**
@@ -116,7 +121,17 @@ public class MetaDownloadManager
 		HttpClient client = url.startsWith("https:") ? getSSLClient(url, customTruststore)
 				: HttpClientBuilder.create().build();
 		HttpGet request = new HttpGet(url);
+		ContentValidators validators = contentValidators.get(url);
+		if (validators != null && cachedFile.exists())
+			validators.addConditions(request);
 		HttpResponse response = client.execute(request);
+		if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED)
+		{
+			EntityUtils.consumeQuietly(response.getEntity());
+			log.debug("Metadata from " + url + " was not modified, using the cached file " 
+					+ cachedFile.toString());
+			return;
+		}
 		if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK)
 		{
 			String body = response.getEntity().getContentLength() < 10240 ? EntityUtils
@@ -134,6 +149,11 @@ public class MetaDownloadManager
 
 		cachedFile.delete();
 		FileUtils.moveFile(cachedFilePart, cachedFile);
+		ContentValidators newValidators = new ContentValidators(response);
+		if (newValidators.isEmpty())
+			contentValidators.remove(url);
+		else
+			contentValidators.put(url, newValidators);
 		log.debug("Downloaded metadata from " + url + " to final file "
 				+ cachedFile.toString());
 	}
@@ -249,4 +269,35 @@ public class MetaDownloadManager
 			return HttpClientBuilder.create().build();
 		}
 	}
+
+	/**
+	 * HTTP ETag and Last-Modified headers of a downloaded file, used to download the file again
+	 * only if it was modified.
+	 */
+	private static class ContentValidators
+	{
+		private String eTag;
+		private String lastModified;
+		
+		ContentValidators(HttpResponse response)
+		{
+			Header eTagH = response.getFirstHeader(HttpHeaders.ETAG);
+			eTag = eTagH == null ? null : eTagH.getValue();
+			Header lastModifiedH = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+			lastModified = lastModifiedH == null ? null : lastModifiedH.getValue();
+		}
+		
+		boolean isEmpty()
+		{
+			return eTag == null && lastModified == null;
+		}
+		
+		void addConditions(HttpGet request)
+		{
+			if (eTag != null)
+				request.setHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+			if (lastModified != null)
+				request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+		}
+	}
 }
@@ -77,6 +77,41 @@ public class MetadataVerificator
 		}
 	}
 
+	/**
+	 * @param metaDoc
+	 * @return the earliest expiration time of the metadata or any of its parts, or null if 
+	 * the metadata has no expiration time set.
+	 */
+	public Date getExpirationTime(EntitiesDescriptorDocument metaDoc)
+	{
+		return getExpirationTime(metaDoc.getEntitiesDescriptor(), null);
+	}
+	
+	private Date getExpirationTime(EntitiesDescriptorType meta, Date current)
+	{
+		if (meta.isSetValidUntil())
+			current = earlier(current, meta.getValidUntil().getTime());
+		EntitiesDescriptorType[] nested = meta.getEntitiesDescriptorArray();
+		if (nested != null)
+		{
+			for (EntitiesDescriptorType nestedD: nested)
+				current = getExpirationTime(nestedD, current);
+		}
+		EntityDescriptorType[] entities = meta.getEntityDescriptorArray();
+		if (entities != null)
+		{
+			for (EntityDescriptorType entity: entities)
+				if (entity.isSetValidUntil())
+					current = earlier(current, entity.getValidUntil().getTime());
+		}
+		return current;
+	}
+	
+	private static Date earlier(Date current, Date candidate)
+	{
+		return current == null || candidate.before(current) ? candidate : current;
+	}
+
 	protected void validateSignature(X509Certificate issuerCertificate, String name, Document doc) 
 			throws MetadataValidationException
 	{
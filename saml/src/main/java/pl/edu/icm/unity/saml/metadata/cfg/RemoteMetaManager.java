@@ -5,8 +5,13 @@
 package pl.edu.icm.unity.saml.metadata.cfg;
 
 import java.io.IOException;
+import java.net.URL;
 import java.security.cert.X509Certificate;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -25,7 +30,14 @@ import pl.edu.icm.unity.server.utils.UnityServerConfiguration;
 import xmlbeans.org.oasis.saml2.metadata.EntitiesDescriptorDocument;
 
 /**
- * Manages the retrieval, loading and update of runtime configuration based on the remote SAML metadata. 
+ * Manages the retrieval, loading and update of runtime configuration based on the remote SAML metadata.
+ * <p>
+ * The runtime (virtual) configuration is published as an immutable snapshot, which is replaced 
+ * as a whole after each metadata reload. The properties obtained from each metadata source are stored
+ * separately. Metadata is hashed before parsing: only the sources which changed since the previous reload 
+ * are parsed, validated and converted again, the stored properties of the remaining sources are reused. 
+ * If nothing changed the runtime configuration is not replaced. A change of the base configuration 
+ * causes processing of all sources.
  * @author K. Benedyczak
  */
 public class RemoteMetaManager
@@ -37,7 +49,10 @@ public class RemoteMetaManager
 	private RemoteMetadataProvider remoteMetaProvider;
 	private AbstractMetaToConfigConverter converter;
 	private MetadataVerificator verificator;
-	private SamlProperties virtualConfiguration;
+	private volatile SamlProperties virtualConfiguration;
+	private final Object reloadLock = new Object();
+	private Map<String, ConvertedMetadata> converted = new HashMap<>();
+	private SamlProperties publishedBaseConfiguration;
 	private Date validationDate;
 	private String metaPrefix;
 	
@@ -64,26 +79,66 @@ public class RemoteMetaManager
 	}
 	
 	public void reloadAll()
+	{
+		synchronized (reloadLock)
+		{
+			reloadAllInternal();
+		}
+	}
+	
+	private void reloadAllInternal()
 	{
 		SamlProperties configuration = getBaseConfiguration();
 		Set<String> keys = configuration.getStructuredListKeys(metaPrefix);
-		Properties virtualConfigProps = configuration.getSourceProperties();
+		Date now = validationDate != null ? validationDate : new Date();
+		boolean baseChanged = configuration != publishedBaseConfiguration;
+		boolean changed = baseChanged;
+		Map<String, ConvertedMetadata> newConverted = new LinkedHashMap<>();
 		for (String key: keys)
 		{
-			reloadSingle(key, virtualConfigProps, configuration);
+			FetchedMetadata fetched = fetchSingle(key, configuration);
+			if (fetched == null)
+				continue;
+			ConvertedMetadata previous = converted.get(key);
+			if (!baseChanged && previous != null && previous.matches(fetched, now))
+			{
+				newConverted.put(key, previous);
+				continue;
+			}
+			ConvertedMetadata current = reloadSingle(key, fetched, configuration, now);
+			if (current != null)
+			{
+				newConverted.put(key, current);
+				changed = true;
+			}
+		}
+		if (!changed && newConverted.keySet().equals(converted.keySet()))
+		{
+			log.trace("Metadata was not changed, the current virtual configuration is up to date");
+			return;
 		}
-		log.trace("Full reloading of metadata completed, updated virtal configuration is ready to be applied");
+		
+		Properties virtualConfigProps = configuration.getSourceProperties();
+		for (ConvertedMetadata sourceResult: newConverted.values())
+			for (Map.Entry<Object, Object> entry: sourceResult.properties.entrySet())
+				virtualConfigProps.putIfAbsent(entry.getKey(), entry.getValue());
+		log.trace("Reloading of metadata completed, updated virtal configuration is ready to be applied");
+		converted = newConverted;
+		publishedBaseConfiguration = configuration;
 		setVirtualConfiguration(virtualConfigProps);
 	}
 	
-	public synchronized SamlProperties getVirtualConfiguration()
+	/**
+	 * @return the current runtime configuration. The returned object is shared and must not be modified.
+	 */
+	public SamlProperties getVirtualConfiguration()
 	{
-		return virtualConfiguration.clone();
+		return virtualConfiguration;
 	}
 
-	private synchronized void setVirtualConfiguration(Properties virtualConfigurationProperties)
+	private void setVirtualConfiguration(Properties virtualConfigurationProperties)
 	{
-		this.virtualConfiguration.setProperties(virtualConfigurationProperties);
+		this.virtualConfiguration = virtualConfiguration.cloneWithProperties(virtualConfigurationProperties);
 	}
 	
 	public synchronized void setBaseConfiguration(SamlProperties configuration)
@@ -101,52 +156,89 @@ public class RemoteMetaManager
 		return configuration;
 	}
 	
-	private void reloadSingle(String key, Properties virtualProps, SamlProperties configuration)
+	/**
+	 * Downloads (if needed) metadata and computes its hash, without parsing it.
+	 * @return fetched metadata or null if the metadata can not be used.
+	 */
+	private FetchedMetadata fetchSingle(String key, SamlProperties configuration)
 	{
 		String url = configuration.getValue(key + SamlProperties.METADATA_URL);
 		int refreshInterval = configuration.getIntValue(key + SamlProperties.METADATA_REFRESH);
 		String customTruststore = configuration.getValue(key + SamlProperties.METADATA_HTTPS_TRUSTSTORE);
-		EntitiesDescriptorDocument metadata;
+		String issuerCertificateName = configuration.getValue(key + SamlProperties.METADATA_ISSUER_CERT);
+		
+		URL localMetadata;
+		String contentHash;
 		try
 		{
-			metadata = remoteMetaProvider.load(url, refreshInterval, customTruststore);
-		} catch (XmlException e)
-		{
-			log.warn("Metadata from " + url + " was downloaded, but can not be parsed", e);
-			return;
+			localMetadata = remoteMetaProvider.fetch(url, refreshInterval, customTruststore);
+			contentHash = remoteMetaProvider.getContentHash(localMetadata);
 		} catch (IOException e)
 		{
 			log.warn("Problem fetching metadata from " + url, e);
-			return;
+			return null;
 		} catch (EngineException e)
 		{
 			log.error("Internal problem fetching metadata from " + url, e);
-			return;
+			return null;
 		}
 		
-		MetadataSignatureValidation sigCheckingMode = configuration.getEnumValue(
-				key + SamlProperties.METADATA_SIGNATURE, MetadataSignatureValidation.class);
-		String issuerCertificateName = configuration.getValue(key + SamlProperties.METADATA_ISSUER_CERT);
-		
+		X509Certificate issuerCertificate;
 		try
 		{
-			X509Certificate issuerCertificate = issuerCertificateName != null ? 
+			issuerCertificate = issuerCertificateName != null ? 
 					pkiManagement.getCertificate(issuerCertificateName) : null;
-			verificator.validate(metadata, validationDate != null ? validationDate : new Date(),
-					sigCheckingMode, issuerCertificate);
-		} catch (MetadataValidationException e)
-		{
-			log.error("Metadata from " + url + " is invalid, won't be used", e);
-			return;
 		} catch (EngineException e)
 		{
 			log.error("Problem establishing certificate for metadata validation " + 
 					issuerCertificateName, e);
-			return;
+			return null;
+		}
+		return new FetchedMetadata(url, localMetadata, contentHash, issuerCertificate);
+	}
+	
+	/**
+	 * Parses, validates and converts the fetched metadata into the virtual configuration properties.
+	 * @return the properties added by the metadata together with its fingerprint or null if the metadata 
+	 * can not be used.
+	 */
+	private ConvertedMetadata reloadSingle(String key, FetchedMetadata fetched, SamlProperties configuration, 
+			Date now)
+	{
+		MetadataSignatureValidation sigCheckingMode = configuration.getEnumValue(
+				key + SamlProperties.METADATA_SIGNATURE, MetadataSignatureValidation.class);
+		EntitiesDescriptorDocument metadata;
+		try
+		{
+			metadata = remoteMetaProvider.parse(fetched.localMetadata);
+		} catch (XmlException e)
+		{
+			log.warn("Metadata from " + fetched.url + " was downloaded, but can not be parsed", e);
+			return null;
+		} catch (IOException e)
+		{
+			log.warn("Problem reading metadata from " + fetched.url, e);
+			return null;
+		}
+		
+		try
+		{
+			verificator.validate(metadata, now, sigCheckingMode, fetched.issuerCertificate);
+		} catch (MetadataValidationException e)
+		{
+			log.error("Metadata from " + fetched.url + " is invalid, won't be used", e);
+			return null;
 		}
 		
+		Properties baseProps = configuration.getSourceProperties();
+		Properties virtualProps = configuration.getSourceProperties();
 		converter.convertToProperties(metadata, virtualProps, configuration, key);
-		log.trace("Converted metadata from " + url + " to virtual configuration");
+		Properties added = new Properties();
+		for (Map.Entry<Object, Object> entry: virtualProps.entrySet())
+			if (!baseProps.containsKey(entry.getKey()))
+				added.put(entry.getKey(), entry.getValue());
+		log.trace("Converted metadata from " + fetched.url + " to virtual configuration");
+		return new ConvertedMetadata(fetched, verificator.getExpirationTime(metadata), added);
 	}
 
 	public void setValidationDate(Date validationDate)
@@ -154,6 +246,53 @@ public class RemoteMetaManager
 		this.validationDate = validationDate;
 	}
 	
+	/**
+	 * Metadata which was fetched, but not yet parsed.
+	 */
+	private static class FetchedMetadata
+	{
+		private String url;
+		private URL localMetadata;
+		private String contentHash;
+		private X509Certificate issuerCertificate;
+		
+		FetchedMetadata(String url, URL localMetadata, String contentHash,
+				X509Certificate issuerCertificate)
+		{
+			this.url = url;
+			this.localMetadata = localMetadata;
+			this.contentHash = contentHash;
+			this.issuerCertificate = issuerCertificate;
+		}
+	}
+	
+	/**
+	 * Properties obtained from a single metadata source, which are merged into the published virtual 
+	 * configuration, together with the identification of the metadata used.
+	 */
+	private static class ConvertedMetadata
+	{
+		private String contentHash;
+		private X509Certificate issuerCertificate;
+		private Date expiration;
+		private Properties properties;
+		
+		ConvertedMetadata(FetchedMetadata fetched, Date expiration, Properties properties)
+		{
+			this.contentHash = fetched.contentHash;
+			this.issuerCertificate = fetched.issuerCertificate;
+			this.expiration = expiration;
+			this.properties = properties;
+		}
+
+		boolean matches(FetchedMetadata fetched, Date now)
+		{
+			return contentHash.equals(fetched.contentHash) && 
+					Objects.equals(issuerCertificate, fetched.issuerCertificate) &&
+					(expiration == null || now.before(expiration));
+		}
+	}
+	
 	private class Reloader implements Runnable
 	{		
 		public void run()
@@ -6,11 +6,11 @@ package pl.edu.icm.unity.saml.metadata.cfg;
 
 import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.xmlbeans.XmlException;
 
 import pl.edu.icm.unity.exceptions.EngineException;
@@ -32,27 +32,47 @@ public class RemoteMetadataProvider
 	public EntitiesDescriptorDocument load(String url, int refreshInterval,
 			String customTruststore) throws XmlException, IOException, EngineException
 	{
-		return EntitiesDescriptorDocument.Factory.parse(getAsLocalFile(url, refreshInterval, customTruststore));
+		return parse(fetch(url, refreshInterval, customTruststore));
 	}
+	
 	/**
-	 * If url is local file return its stream in other case try download remote file using download manager
+	 * If url is local file it is returned as is, in other case the remote file is downloaded 
+	 * using download manager and the locally cached copy is returned.
 	 * @param url
 	 * @param refreshInterval
 	 * @param customTruststore
-	 * @return
+	 * @return URL of a locally available metadata
 	 * @throws IOException
 	 * @throws EngineException
 	 */
-	private InputStream getAsLocalFile(String url, int refreshInterval,
-			String customTruststore) throws IOException, EngineException
+	public URL fetch(String url, int refreshInterval, String customTruststore) 
+			throws IOException, EngineException
 	{
 		if (url.startsWith("file:"))
-		{
-			URL localUrl = new URL(url);
-			return localUrl.openStream();
-		}
+			return new URL(url);
 			
 		File cachedFile = downloadManager.tryDownloading(url, refreshInterval, customTruststore);
-		return new BufferedInputStream(new FileInputStream(cachedFile));
-	}	
+		return cachedFile.toURI().toURL();
+	}
+	
+	/**
+	 * @param localMetadata
+	 * @return hash of the metadata contents. The contents is streamed, not loaded into memory.
+	 * @throws IOException
+	 */
+	public String getContentHash(URL localMetadata) throws IOException
+	{
+		try (InputStream is = new BufferedInputStream(localMetadata.openStream()))
+		{
+			return DigestUtils.sha256Hex(is);
+		}
+	}
+	
+	public EntitiesDescriptorDocument parse(URL localMetadata) throws XmlException, IOException
+	{
+		try (InputStream is = new BufferedInputStream(localMetadata.openStream()))
+		{
+			return EntitiesDescriptorDocument.Factory.parse(is);
+		}
+	}
 }
@@ -4,7 +4,7 @@
  */
 package pl.edu.icm.unity.saml.validator;
 
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Set;
 
 import eu.unicore.samly2.SAMLConstants;
@@ -40,16 +40,17 @@ public class UnityAuthnRequestValidator extends SSOAuthnRequestValidator
 			long requestValidity, ReplayAttackChecker replayChecker)
 	{
 		super(consumerEndpointUri, trustChecker, requestValidity, replayChecker);
-		knownRequesters = new HashSet<>();
+		knownRequesters = Collections.emptySet();
 	}
 
 	/**
-	 * Adds a new known requester, for which we have a response URL defined out of bands.
-	 * @param requesterName
+	 * Sets known requesters, for which we have a response URL defined out of bands. The set is not copied,
+	 * so it must not be modified afterwards.
+	 * @param knownRequesters
 	 */
-	public void addKnownRequester(String requesterName)
+	public void setKnownRequesters(Set<String> knownRequesters)
 	{
-		knownRequesters.add(requesterName);
+		this.knownRequesters = knownRequesters;
 	}
 	
 	@Override
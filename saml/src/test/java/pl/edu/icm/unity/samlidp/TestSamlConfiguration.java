@@ -5,10 +5,15 @@
 package pl.edu.icm.unity.samlidp;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 import static pl.edu.icm.unity.saml.SamlProperties.IDENTITY_LOCAL;
 import static pl.edu.icm.unity.saml.SamlProperties.IDENTITY_MAPPING_PFX;
 import static pl.edu.icm.unity.saml.SamlProperties.IDENTITY_SAML;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.ALLOWED_SP_DN;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.ALLOWED_SP_ENTITY;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.ALLOWED_SP_PREFIX;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.ALLOWED_SP_RETURN_URL;
 import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.CREDENTIAL;
 import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.DEFAULT_GROUP;
 import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.GROUP;
@@ -17,6 +22,7 @@ import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.GROUP_TARGET;
 import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.ISSUER_URI;
 import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.P;
 
+import java.util.Collections;
 import java.util.Properties;
 
 import org.junit.Test;
@@ -27,6 +33,7 @@ import pl.edu.icm.unity.saml.idp.IdentityTypeMapper;
 import pl.edu.icm.unity.saml.idp.SamlIdpProperties;
 import pl.edu.icm.unity.stdext.identity.TargetedPersistentIdentity;
 import pl.edu.icm.unity.stdext.identity.X500Identity;
+import xmlbeans.org.oasis.saml2.assertion.NameIDType;
 import eu.unicore.samly2.SAMLConstants;
 import eu.unicore.samly2.exceptions.SAMLRequesterException;
 
@@ -85,4 +92,34 @@ public class TestSamlConfiguration
 		
 		assertEquals(idMapper.getSupportedIdentityTypes().toString(), 7, idMapper.getSupportedIdentityTypes().size());
 	}
+	
+	@Test
+	public void testSPLookup() throws Exception
+	{
+		Properties p = new Properties();
+		p.setProperty(P+ISSUER_URI, "foo");
+		p.setProperty(P+CREDENTIAL, "MAIN");
+		p.setProperty(P+DEFAULT_GROUP, "/");
+		p.setProperty(P+ALLOWED_SP_PREFIX+"1."+ALLOWED_SP_ENTITY, "http://sp1.org");
+		p.setProperty(P+ALLOWED_SP_PREFIX+"1."+ALLOWED_SP_RETURN_URL, "http://sp1.org/return");
+		p.setProperty(P+ALLOWED_SP_PREFIX+"2."+ALLOWED_SP_DN, "CN=SP 2,O=ICM,C=PL");
+		p.setProperty(P+ALLOWED_SP_PREFIX+"2."+ALLOWED_SP_RETURN_URL, "http://sp2.org/return");
+		SamlIdpProperties cfg = new SamlIdpProperties(p, new SimplePKIManagement());
+
+		assertEquals("http://sp1.org/return", cfg.getReturnAddressForRequester(
+				createRequester("http://sp1.org", SAMLConstants.NFORMAT_ENTITY)));
+		assertEquals("http://sp2.org/return", cfg.getReturnAddressForRequester(
+				createRequester("cn=SP 2, o=ICM, c=PL", SAMLConstants.NFORMAT_DN)));
+		assertNull(cfg.getSPConfigKey(createRequester("http://sp2.org", SAMLConstants.NFORMAT_ENTITY)));
+		assertNull(cfg.getSPConfigKey(createRequester("CN=SP 1,O=ICM,C=PL", SAMLConstants.NFORMAT_DN)));
+		assertEquals(Collections.singleton("http://sp1.org"), cfg.getKnownRequesters());
+	}
+	
+	private NameIDType createRequester(String value, String format)
+	{
+		NameIDType ret = NameIDType.Factory.newInstance();
+		ret.setStringValue(value);
+		ret.setFormat(format);
+		return ret;
+	}
 }
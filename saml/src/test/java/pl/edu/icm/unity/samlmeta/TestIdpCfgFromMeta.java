@@ -6,18 +6,24 @@ package pl.edu.icm.unity.samlmeta;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.*;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.security.cert.X509Certificate;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import pl.edu.icm.unity.engine.DBIntegrationTestBase;
+import pl.edu.icm.unity.saml.SamlProperties;
 import pl.edu.icm.unity.saml.idp.SamlIdpProperties;
 import pl.edu.icm.unity.saml.metadata.cfg.MetaDownloadManager;
 import pl.edu.icm.unity.saml.metadata.cfg.MetaToIDPConfigConverter;
@@ -26,6 +32,7 @@ import pl.edu.icm.unity.server.api.PKIManagement;
 import pl.edu.icm.unity.server.utils.ExecutorsService;
 import pl.edu.icm.unity.server.utils.UnityMessageSource;
 import pl.edu.icm.unity.server.utils.UnityServerConfiguration;
+import xmlbeans.org.oasis.saml2.metadata.EntitiesDescriptorDocument;
 import eu.emi.security.authn.x509.impl.CertificateUtils;
 import eu.emi.security.authn.x509.impl.CertificateUtils.Encoding;
 
@@ -144,6 +151,100 @@ public class TestIdpCfgFromMeta extends DBIntegrationTestBase
 
 	}
 	
+	@Test
+	public void unchangedMetadataIsNotReprocessed() throws Exception
+	{
+		File metaFile = new File("target/DFN-AAI-metadata-copy.xml");
+		FileUtils.copyFile(new File("src/test/resources/DFN-AAI-metadata-part.xml"), metaFile);
+		Properties p = new Properties();
+		p.setProperty(P+CREDENTIAL, "MAIN");
+		p.setProperty(P+PUBLISH_METADATA, "false");
+		p.setProperty(P+ISSUER_URI, "me");
+		p.setProperty(P+GROUP, "group");
+		p.setProperty(P+DEFAULT_GROUP,"group");
+		p.setProperty(P+SPMETA_PREFIX+"1." + METADATA_URL, metaFile.toURI().toString());
+		p.setProperty(P+SPMETA_PREFIX+"1." + METADATA_SIGNATURE, "ignore");
+		SamlIdpProperties configuration = new SamlIdpProperties(p, pkiManagement);
+		AtomicInteger conversions = new AtomicInteger();
+		MetaToIDPConfigConverter converter = new MetaToIDPConfigConverter(pkiManagement, msg)
+		{
+			@Override
+			protected void convertToProperties(EntitiesDescriptorDocument metaDoc,
+					Properties properties, SamlProperties realConfig, String configKey)
+			{
+				conversions.incrementAndGet();
+				super.convertToProperties(metaDoc, properties, realConfig, configKey);
+			}
+		};
+		RemoteMetaManager manager = new RemoteMetaManager(configuration, 
+				mainConfig, executorsService, pkiManagement, converter, 
+				downloadManager, SamlIdpProperties.SPMETA_PREFIX);
+		
+		manager.reloadAll();
+		SamlIdpProperties first = (SamlIdpProperties) manager.getVirtualConfiguration();
+		getPrefixOf("http://shibboleth.metapress.com/shibboleth-sp", first);
+		manager.reloadAll();
+		
+		assertEquals(1, conversions.get());
+		assertSame(first, manager.getVirtualConfiguration());
+		
+		FileUtils.write(metaFile, "<!-- modified -->", "UTF-8", true);
+		manager.reloadAll();
+		
+		assertEquals(2, conversions.get());
+		SamlIdpProperties second = (SamlIdpProperties) manager.getVirtualConfiguration();
+		assertNotSame(first, second);
+		getPrefixOf("http://shibboleth.metapress.com/shibboleth-sp", second);
+	}
+	
+	@Test
+	public void onlyChangedMetadataSourceIsReprocessed() throws Exception
+	{
+		File metaFile1 = new File("target/DFN-AAI-metadata-copy1.xml");
+		File metaFile2 = new File("target/DFN-AAI-metadata-copy2.xml");
+		FileUtils.copyFile(new File("src/test/resources/DFN-AAI-metadata-part.xml"), metaFile1);
+		FileUtils.copyFile(new File("src/test/resources/DFN-AAI-metadata-part.xml"), metaFile2);
+		Properties p = new Properties();
+		p.setProperty(P+CREDENTIAL, "MAIN");
+		p.setProperty(P+PUBLISH_METADATA, "false");
+		p.setProperty(P+ISSUER_URI, "me");
+		p.setProperty(P+GROUP, "group");
+		p.setProperty(P+DEFAULT_GROUP,"group");
+		p.setProperty(P+SPMETA_PREFIX+"1." + METADATA_URL, metaFile1.toURI().toString());
+		p.setProperty(P+SPMETA_PREFIX+"1." + METADATA_SIGNATURE, "ignore");
+		p.setProperty(P+SPMETA_PREFIX+"2." + METADATA_URL, metaFile2.toURI().toString());
+		p.setProperty(P+SPMETA_PREFIX+"2." + METADATA_SIGNATURE, "ignore");
+		SamlIdpProperties configuration = new SamlIdpProperties(p, pkiManagement);
+		AtomicInteger conversions = new AtomicInteger();
+		MetaToIDPConfigConverter converter = new MetaToIDPConfigConverter(pkiManagement, msg)
+		{
+			@Override
+			protected void convertToProperties(EntitiesDescriptorDocument metaDoc,
+					Properties properties, SamlProperties realConfig, String configKey)
+			{
+				conversions.incrementAndGet();
+				super.convertToProperties(metaDoc, properties, realConfig, configKey);
+			}
+		};
+		RemoteMetaManager manager = new RemoteMetaManager(configuration, 
+				mainConfig, executorsService, pkiManagement, converter, 
+				downloadManager, SamlIdpProperties.SPMETA_PREFIX);
+		
+		manager.reloadAll();
+		SamlIdpProperties first = (SamlIdpProperties) manager.getVirtualConfiguration();
+		int entries = first.getStructuredListKeys(ALLOWED_SP_PREFIX).size();
+		assertEquals(2, conversions.get());
+		
+		FileUtils.write(metaFile2, "<!-- modified -->", "UTF-8", true);
+		manager.reloadAll();
+		
+		assertEquals(3, conversions.get());
+		SamlIdpProperties second = (SamlIdpProperties) manager.getVirtualConfiguration();
+		assertNotSame(first, second);
+		assertEquals(entries, second.getStructuredListKeys(ALLOWED_SP_PREFIX).size());
+		getPrefixOf("http://shibboleth.metapress.com/shibboleth-sp", second);
+	}
+	
 	private String getPrefixOf(String entity, SamlIdpProperties cfg)
 	{
 		Set<String> keys = cfg.getStructuredListKeys(ALLOWED_SP_PREFIX);
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.stdext.credential;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import pl.edu.icm.unity.exceptions.InternalException;
+import pl.edu.icm.unity.server.utils.Log;
+import pl.edu.icm.unity.server.utils.UnityServerConfiguration;
+import pl.edu.icm.unity.stdext.utils.CryptoUtils;
+
+/**
+ * Computes password hashes during authentication in a dedicated, size limited thread pool, shared
+ * by all password verificators. Hashing is CPU bound and intentionally slow, so it must not be performed
+ * by an unlimited number of HTTP server threads. If the pool's queue is full the request is rejected
+ * immediately.
+ * @author K. Benedyczak
+ */
+@Component
+public class PasswordHashingPool implements DisposableBean
+{
+	private static final Logger log = Log.getLogger(Log.U_SERVER, PasswordHashingPool.class);
+	private ThreadPoolExecutor executor;
+	private AtomicInteger threadsCounter = new AtomicInteger();
+
+	@Autowired
+	public PasswordHashingPool(UnityServerConfiguration cfg)
+	{
+		this(cfg.getIntValue(UnityServerConfiguration.PASSWORD_HASHING_THREADS),
+				cfg.getIntValue(UnityServerConfiguration.PASSWORD_HASHING_QUEUE));
+	}
+
+	public PasswordHashingPool(int threads, int queueSize)
+	{
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueSize), this::newThread,
+				new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * Same as {@link CryptoUtils#hash(String, String, int)} but computed in the pool. The calling
+	 * thread waits for the result.
+	 * @return the hash
+	 * @throws RejectedExecutionException if the pool is overloaded
+	 */
+	public byte[] hash(String password, String salt, int rehashNumber) throws RejectedExecutionException
+	{
+		Future<byte[]> result = submit(() -> CryptoUtils.hash(password, salt, rehashNumber));
+		try
+		{
+			return result.get();
+		} catch (InterruptedException e)
+		{
+			result.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InternalException("Interrupted while waiting for password hash", e);
+		} catch (ExecutionException e)
+		{
+			throw new InternalException("Password hashing failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Stops the hashing threads.
+	 */
+	@Override
+	public void destroy()
+	{
+		executor.shutdownNow();
+	}
+
+	<T> Future<T> submit(Callable<T> task) throws RejectedExecutionException
+	{
+		try
+		{
+			return executor.submit(task);
+		} catch (RejectedExecutionException e)
+		{
+			log.warn("Password verification rejected, as the hashing queue is full ("
+					+ executor.getQueue().size() + " waiting)");
+			throw e;
+		}
+	}
+
+	private Thread newThread(Runnable task)
+	{
+		Thread thread = new Thread(task, "password-hashing-" + threadsCounter.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+}
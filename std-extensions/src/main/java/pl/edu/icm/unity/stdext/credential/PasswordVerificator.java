@@ -10,6 +10,7 @@ import java.util.Date;
 import java.util.Deque;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 import org.apache.log4j.Logger;
@@ -79,16 +80,19 @@ public class PasswordVerificator extends AbstractLocalVerificator implements Pas
 
 	private NotificationProducer notificationProducer;
 	private CredentialHelper credentialHelper;
+	private PasswordHashingPool hashingPool;
 	private Random random = new SecureRandom();
 	
 	private PasswordCredential credential = new PasswordCredential();
 
 	public PasswordVerificator(String name, String description,
-			NotificationProducer notificationProducer, CredentialHelper credentialHelper)
+			NotificationProducer notificationProducer, CredentialHelper credentialHelper,
+			PasswordHashingPool hashingPool)
 	{
 		super(name, description, PasswordExchange.ID, true);
 		this.notificationProducer = notificationProducer;
 		this.credentialHelper = credentialHelper;
+		this.hashingPool = hashingPool;
 	}
 
 	@Override
@@ -223,7 +227,8 @@ public class PasswordVerificator extends AbstractLocalVerificator implements Pas
 				return new AuthenticationResult(Status.deny, null);
 			}
 			PasswordInfo current = credentials.getFirst();
-			if (!checkPasswordInternal(password, current))
+			byte[] testedHash = hashingPool.hash(password, current.getSalt(), current.getRehashNumber());
+			if (!Arrays.areEqual(testedHash, current.getHash()))
 			{
 				log.debug("Password provided by " + username + " is invalid");
 				return new AuthenticationResult(Status.deny, null);
@@ -231,6 +236,10 @@ public class PasswordVerificator extends AbstractLocalVerificator implements Pas
 			boolean isOutdated = isCurrentPasswordOutdated(password, credState, resolved);
 			AuthenticatedEntity ae = new AuthenticatedEntity(resolved.getEntityId(), username, isOutdated);
 			return new AuthenticationResult(Status.success, ae);
+		} catch (RejectedExecutionException e)
+		{
+			log.info("Password of " + username + " was not verified as the server is overloaded");
+			return new AuthenticationResult(Status.tryLater, null);
 		} catch (Exception e)
 		{
 			log.debug("Error during password verification for " + username, e);
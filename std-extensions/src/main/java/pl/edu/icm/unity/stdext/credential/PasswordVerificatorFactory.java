@@ -23,14 +23,16 @@ public class PasswordVerificatorFactory implements LocalCredentialVerificatorFac
 	
 	private NotificationProducer notificationProducer;
 	private CredentialHelper credentialHelper;
+	private PasswordHashingPool hashingPool;
 	
 	
 	@Autowired
 	public PasswordVerificatorFactory(NotificationProducer notificationProducer,
-			CredentialHelper credentialHelper)
+			CredentialHelper credentialHelper, PasswordHashingPool hashingPool)
 	{
 		this.notificationProducer = notificationProducer;
 		this.credentialHelper = credentialHelper;
+		this.hashingPool = hashingPool;
 	}
 
 	@Override
@@ -49,7 +51,7 @@ public class PasswordVerificatorFactory implements LocalCredentialVerificatorFac
 	public LocalCredentialVerificator newInstance()
 	{
 		return new PasswordVerificator(getName(), getDescription(), notificationProducer,
-				credentialHelper);
+				credentialHelper, hashingPool);
 	}
 
 	@Override
@@ -55,6 +55,15 @@ public abstract class AbstractIdentityTypeProvider implements IdentityTypeDefini
 		return true;
 	}
 	
+	/**
+	 * Most of the implementations are not bound to a login session
+	 */
+	@Override
+	public boolean isSessionBound()
+	{
+		return false;
+	}
+	
 	@Override
 	public IdentityParam convertFromString(String stringRepresentation, String remoteIdp, 
 			String translationProfile) throws IllegalIdentityValueException
@@ -71,6 +71,12 @@ public class TransientIdentity extends AbstractIdentityTypeProvider
 		return false;
 	}
 	
+	@Override
+	public boolean isSessionBound()
+	{
+		return true;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
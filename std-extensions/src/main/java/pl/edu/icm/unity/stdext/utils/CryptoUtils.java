@@ -21,21 +21,20 @@ public class CryptoUtils
 	 */
 	public static byte[] hash(String password, String salt, int rehashNumber)
 	{
-		byte[] interim = (salt+password).getBytes(StandardCharsets.UTF_8);
+		byte[] salted = (salt+password).getBytes(StandardCharsets.UTF_8);
+		if (rehashNumber <= 0)
+			return salted;
 		SHA256Digest digest = new SHA256Digest();
-		int size = digest.getDigestSize();
-		
-		for (int i=0; i<rehashNumber; i++)
-			interim = hash(interim, size, digest);
+		byte[] interim = new byte[digest.getDigestSize()];
+		digest.update(salted, 0, salted.length);
+		digest.doFinal(interim, 0);
 		
+		//the digest consumes the input before writing the output, so a single buffer is enough
+		for (int i=1; i<rehashNumber; i++)
+		{
+			digest.update(interim, 0, interim.length);
+			digest.doFinal(interim, 0);
+		}
 		return interim;
 	}
-
-	private static byte[] hash(byte[] current, int size, SHA256Digest digest)
-	{
-		digest.update(current, 0, current.length);
-		byte[] hashed = new byte[size];
-		digest.doFinal(hashed, 0);
-		return hashed;
-	}
 }
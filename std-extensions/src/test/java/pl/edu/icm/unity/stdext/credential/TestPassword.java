@@ -5,10 +5,18 @@
 package pl.edu.icm.unity.stdext.credential;
 
 import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
 import org.junit.Test;
 
 import pl.edu.icm.unity.exceptions.IllegalCredentialException;
 import pl.edu.icm.unity.server.authn.LocalCredentialVerificator;
+import pl.edu.icm.unity.stdext.utils.CryptoUtils;
 import pl.edu.icm.unity.types.authn.LocalCredentialState;
 
 public class TestPassword
@@ -25,7 +33,7 @@ public class TestPassword
 	public void test() throws Exception
 	{
 		//we can pass nulls as we don't test the credential reset here.
-		PasswordVerificatorFactory f = new PasswordVerificatorFactory(null, null);
+		PasswordVerificatorFactory f = new PasswordVerificatorFactory(null, null, null);
 		LocalCredentialVerificator verificator = f.newInstance();
 		verificator.setSerializedConfiguration("{" +
 				"\"minLength\": 5," +
@@ -84,11 +92,60 @@ public class TestPassword
 		assertEquals(LocalCredentialState.correct, verificator.checkCredentialState(c8).getState());
 	}
 	
+	@Test
+	public void iterativeHashIsEqualToRepeatedDigest() throws Exception
+	{
+		for (int rehash: new int[] {0, 1, 2, 1000})
+		{
+			byte[] expected = "salt1qaZ".getBytes(StandardCharsets.UTF_8);
+			for (int i=0; i<rehash; i++)
+			{
+				SHA256Digest digest = new SHA256Digest();
+				digest.update(expected, 0, expected.length);
+				expected = new byte[digest.getDigestSize()];
+				digest.doFinal(expected, 0);
+			}
+			assertArrayEquals(expected, CryptoUtils.hash("1qaZ", "salt", rehash));
+		}
+	}
+	
+	@Test
+	public void overloadedHashingPoolRejectsImmediately() throws Exception
+	{
+		PasswordHashingPool pool = new PasswordHashingPool(1, 1);
+		CountDownLatch release = new CountDownLatch(1);
+		Callable<byte[]> blocked = () -> {
+			release.await();
+			return null;
+		};
+		try
+		{
+			//the first task occupies the only thread, the second fills the queue
+			pool.submit(blocked);
+			pool.submit(blocked);
+			try
+			{
+				pool.hash("1qaZ", "salt", 1);
+				fail("Hashing was accepted in overloaded pool");
+			} catch (RejectedExecutionException e)
+			{
+				//ok
+			}
+			
+			release.countDown();
+			assertArrayEquals(CryptoUtils.hash("1qaZ", "salt", 1), pool.hash("1qaZ", "salt", 1));
+		} finally
+		{
+			release.countDown();
+			pool.destroy();
+		}
+	}
+	
 	@Test
 	public void testCurrentPasswordVerification() throws Exception
 	{
 		//we can pass nulls as we don't test the credential reset here.
-		PasswordVerificatorFactory f = new PasswordVerificatorFactory(null, null);
+		PasswordVerificatorFactory f = new PasswordVerificatorFactory(null, null, null);
 		LocalCredentialVerificator verificator = f.newInstance();
 		verificator.setSerializedConfiguration("{" +
 				"\"minLength\": 5," +
@@ -41,6 +41,12 @@ public interface IdentityTypeDefinition
 	 */
 	public boolean isRemovable();
 	
+	/**
+	 * @return if true then identities of this type are valid only for a lifetime of a single login session.
+	 * Such identities need not be stored persistently. Only dynamic identity types can be session bound.
+	 */
+	public boolean isSessionBound();
+	
 	/**
 	 * @return if true then identities of this type are targeted, i.e. can have a different value 
 	 * for each and every receiver (target). This implies that the authentication realm and target are mandatory
@@ -8,7 +8,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,11 +18,8 @@ import org.springframework.stereotype.Component;
 import pl.edu.icm.unity.exceptions.AuthorizationException;
 import pl.edu.icm.unity.exceptions.EngineException;
 import pl.edu.icm.unity.server.api.AttributesManagement;
-import pl.edu.icm.unity.server.api.GroupsManagement;
 import pl.edu.icm.unity.server.utils.Log;
 import pl.edu.icm.unity.server.utils.UnityMessageSource;
-import pl.edu.icm.unity.types.basic.GroupContents;
-import pl.edu.icm.unity.types.basic.GroupMembership;
 import pl.edu.icm.unity.webadmin.attribute.AttributeChangedEvent;
 import pl.edu.icm.unity.webadmin.credentials.CredentialDefinitionChangedEvent;
 import pl.edu.icm.unity.webadmin.credreq.CredentialRequirementChangedEvent;
@@ -74,17 +70,16 @@ public class IdentitiesComponent extends SafePanel
 	private static final List<Long> EMPTY_LIST = new ArrayList<Long>(0);
 	private UnityMessageSource msg;
 	private VerticalLayout main;
-	private GroupsManagement groupsManagement;
 	private IdentitiesTable identitiesTable;
 	private HorizontalLayout filtersBar;
 	private Or fastSearchFilter;
+	private TextField searchText;
 	
 	@Autowired
-	public IdentitiesComponent(final UnityMessageSource msg, GroupsManagement groupsManagement,
-			final AttributesManagement attrsMan, final IdentitiesTable identitiesTable)
+	public IdentitiesComponent(final UnityMessageSource msg, final AttributesManagement attrsMan, 
+			final IdentitiesTable identitiesTable)
 	{
 		this.msg = msg;
-		this.groupsManagement = groupsManagement;
 		this.identitiesTable = identitiesTable;
 
 		main = new VerticalLayout();
@@ -205,7 +200,7 @@ public class IdentitiesComponent extends SafePanel
 		Label searchL = new Label(msg.getMessage("Identities.searchCaption"));
 		Label spacer = new Label();
 		spacer.setWidth(4, Unit.EM);
-		final TextField searchText = new TextField();
+		searchText = new TextField();
 		searchText.addStyleName(Styles.vSmall.toString());
 		searchText.setColumns(8);
 		searchWrapper.addComponents(spacer, searchL, searchText);
@@ -353,6 +348,7 @@ public class IdentitiesComponent extends SafePanel
 			try
 			{
 				identitiesTable.setInput(null, EMPTY_LIST);
+				updateSearchHint();
 			} catch (EngineException e)
 			{
 				//ignored, shouldn't happen anyway
@@ -362,11 +358,8 @@ public class IdentitiesComponent extends SafePanel
 		}
 		try
 		{
-			GroupContents contents = groupsManagement.getContents(group, GroupContents.MEMBERS);
-			List<Long> entities = contents.getMembers().stream().
-					map(GroupMembership::getEntityId).
-					collect(Collectors.toList());
-			identitiesTable.setInput(group, entities);
+			identitiesTable.setInput(group);
+			updateSearchHint();
 			identitiesTable.setVisible(true);
 			setCaption(msg.getMessage("Identities.caption", group));
 			setContent(main);
@@ -379,6 +372,23 @@ public class IdentitiesComponent extends SafePanel
 		}
 	}
 	
+	/**
+	 * In large groups the search is performed by the database, so it finds only exact identity values.
+	 */
+	private void updateSearchHint()
+	{
+		if (identitiesTable.isLazyMode())
+		{
+			searchText.setInputPrompt(msg.getMessage("Identities.exactSearchPrompt"));
+			searchText.setDescription(msg.getMessage("Identities.onlyIdentityFilterInLargeGroup", 
+					IdentitiesTable.LAZY_LOADING_THRESHOLD));
+		} else
+		{
+			searchText.setInputPrompt(null);
+			searchText.setDescription(null);
+		}
+	}
+	
 	private void setIdProblem(String group, Exception e)
 	{
 		log.error("Problem retrieving group contents of " + group, e);
@@ -11,13 +11,13 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.stream.Collectors;
 
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,7 +25,6 @@ import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
-import pl.edu.icm.unity.exceptions.AuthorizationException;
 import pl.edu.icm.unity.exceptions.EngineException;
 import pl.edu.icm.unity.home.iddetails.EntityDetailsDialog;
 import pl.edu.icm.unity.home.iddetails.EntityDetailsPanel;
@@ -43,15 +42,19 @@ import pl.edu.icm.unity.server.utils.UnityMessageSource;
 import pl.edu.icm.unity.stdext.utils.EntityNameMetadataProvider;
 import pl.edu.icm.unity.types.EntityInformation;
 import pl.edu.icm.unity.types.EntityState;
+import pl.edu.icm.unity.types.authn.CredentialInfo;
 import pl.edu.icm.unity.types.basic.Attribute;
 import pl.edu.icm.unity.types.basic.AttributeExt;
 import pl.edu.icm.unity.types.basic.AttributeType;
 import pl.edu.icm.unity.types.basic.Entity;
 import pl.edu.icm.unity.types.basic.EntityParam;
+import pl.edu.icm.unity.types.basic.GroupContents;
 import pl.edu.icm.unity.types.basic.GroupMembership;
 import pl.edu.icm.unity.types.basic.Identity;
+import pl.edu.icm.unity.types.basic.IdentityType;
 import pl.edu.icm.unity.webadmin.groupbrowser.GroupChangedEvent;
 import pl.edu.icm.unity.webadmin.identities.CredentialRequirementDialog.Callback;
+import pl.edu.icm.unity.webadmin.identities.LazyMembersContainer.Row;
 import pl.edu.icm.unity.webadmin.utils.MessageUtils;
 import pl.edu.icm.unity.webui.WebSession;
 import pl.edu.icm.unity.webui.bus.EventsBus;
@@ -72,6 +75,10 @@ import com.vaadin.data.Container.Filter;
 import com.vaadin.data.Container.Filterable;
 import com.vaadin.data.Item;
 import com.vaadin.data.Property.ValueChangeNotifier;
+import com.vaadin.data.util.HierarchicalContainer;
+import com.vaadin.data.util.ObjectProperty;
+import com.vaadin.data.util.PropertysetItem;
+import com.vaadin.data.util.filter.UnsupportedFilterException;
 import com.vaadin.event.Action;
 import com.vaadin.ui.CustomComponent;
 import com.vaadin.ui.GridLayout;
@@ -84,6 +91,9 @@ import com.vaadin.ui.UI;
  * Displays a tree table with identities. Can present contents in two modes: 
  *  - flat, where each identity is a fully separate table row
  *  - grouped by entity, where each entity has all its entities as children
+ * <p>
+ * Members of large groups are not loaded into memory, instead {@link LazyMembersContainer} is used, 
+ * which always groups identities by entity.
  * @author K. Benedyczak
  */
 @Component
@@ -93,6 +103,7 @@ public class IdentitiesTable extends CustomComponent
 	private static final Logger log = Log.getLogger(Log.U_SERVER_WEB, IdentitiesTable.class);
 	
 	private static final int LOAD_IN_SYNC = 40;
+	static final int LAZY_LOADING_THRESHOLD = 2000;
 	
 	enum BaseColumnId {
 		entity("Identities.entity", false, false, 200), 
@@ -159,6 +170,8 @@ public class IdentitiesTable extends CustomComponent
 	private ExecutorsService executor;
 	
 	private TreeTable table;
+	private HierarchicalContainer inMemoryContainer;
+	private LazyMembersContainer lazyContainer;
 	private ProgressBar loadingProgress;
 	private String group;
 	private Map<Long, IdentitiesAndAttributes> data = new HashMap<>();
@@ -228,6 +241,7 @@ public class IdentitiesTable extends CustomComponent
 	private void initiTable()
 	{
 		table = new TreeTable();
+		inMemoryContainer = (HierarchicalContainer) table.getContainerDataSource();
 		table.setSelectable(true);
 		table.setMultiSelect(true);	
 		table.setColumnReorderingAllowed(true);
@@ -430,13 +444,18 @@ public class IdentitiesTable extends CustomComponent
 	public void setMode(boolean groupByEntity)
 	{
 		this.groupByEntity = groupByEntity;
-		if (entitiesLoader.isDone())
+		if (lazyContainer == null && entitiesLoader.isDone())
 			reloadTableContentsFromData();
 	}
 	
 	public void setShowTargeted(boolean showTargeted) throws EngineException
 	{
 		this.showTargeted = showTargeted;
+		if (lazyContainer != null)
+		{
+			setLazyInput(group);
+			return;
+		}
 		ArrayList<Long> entities = new ArrayList<>();
 		entities.addAll(data.keySet());
 		setInput(group, entities);
@@ -452,15 +471,34 @@ public class IdentitiesTable extends CustomComponent
 		return group;
 	}
 
+	/**
+	 * Shows members of the given group. If the group is large its members are loaded lazily.
+	 */
+	public void setInput(String group) throws EngineException
+	{
+		if (groupsMan.getMembersCount(group) > LAZY_LOADING_THRESHOLD)
+		{
+			setLazyInput(group);
+			return;
+		}
+		GroupContents contents = groupsMan.getContents(group, GroupContents.MEMBERS);
+		List<Long> entities = contents.getMembers().stream().
+				map(GroupMembership::getEntityId).
+				collect(Collectors.toList());
+		setInput(group, entities);
+	}
+	
 	public void setInput(String group, List<Long> entities) throws EngineException
 	{
-		this.group = group;
-		AttributeType nameAt = attrProcessor.getAttributeTypeWithSingeltonMetadata(
-				EntityNameMetadataProvider.NAME);
-		this.entityNameAttribute = nameAt == null ? null : nameAt.getName();
-		updateAttributeColumnHeaders();
-
 		Object selected = getSingleSelectedItem();
+		prepareInput(group);
+		if (lazyContainer != null)
+		{
+			lazyContainer = null;
+			setContainer(inMemoryContainer);
+			removeAllFiltersFromTable();
+			addAllFilters();
+		}
 		
 		data.clear();
 		table.removeAllItems();
@@ -469,6 +507,47 @@ public class IdentitiesTable extends CustomComponent
 			restartEntitiesLoading(entities, selected);
 	}
 
+	private void setLazyInput(String group) throws EngineException
+	{
+		prepareInput(group);
+		UI.getCurrent().setPollInterval(-1);
+		data.clear();
+		inMemoryContainer.removeAllItems();
+		
+		List<String> identityTypes = new ArrayList<>();
+		for (IdentityType type: identitiesMan.getIdentityTypes())
+			identityTypes.add(type.getIdentityTypeProvider().getId());
+		lazyContainer = new LazyMembersContainer(groupsMan, group, identityTypes, 
+				inMemoryContainer.getContainerPropertyIds(), this::createRows);
+		setContainer(lazyContainer);
+		for (Filter filter: containerFilters)
+			addFilterToContainer(filter);
+	}
+	
+	private void prepareInput(String group) throws EngineException
+	{
+		cancelEntitiesLoading();
+		this.group = group;
+		AttributeType nameAt = attrProcessor.getAttributeTypeWithSingeltonMetadata(
+				EntityNameMetadataProvider.NAME);
+		this.entityNameAttribute = nameAt == null ? null : nameAt.getName();
+		updateAttributeColumnHeaders();
+	}
+	
+	private void setContainer(Container container)
+	{
+		Object[] visibleColumns = table.getVisibleColumns();
+		Set<Object> collapsed = new HashSet<>();
+		for (Object column: visibleColumns)
+			if (table.isColumnCollapsed(column))
+				collapsed.add(column);
+		table.setContainerDataSource(container);
+		table.setVisibleColumns(visibleColumns);
+		for (Object column: collapsed)
+			table.setColumnCollapsed(column, true);
+		loadingProgress.addStyleName(Styles.hidden.toString());
+	}
+
 	private Object getSingleSelectedItem()
 	{
 		Collection<?> selectedColl = (Collection<?>) table.getValue();
@@ -540,25 +619,7 @@ public class IdentitiesTable extends CustomComponent
 				int first, int amount) throws EngineException
 		{
 			int limit = first + amount > entities.size() ? entities.size() : amount + first;
-			List<IdentitiesAndAttributes> toAdd = new LinkedList<>();
-			for (int i=first; i<limit; i++)
-			{
-				long entity = entities.get(i);
-				if (controller.isCancelled())
-					break;
-				try
-				{
-					IdentitiesAndAttributes resolvedEntity = resolveEntity(entity);
-					toAdd.add(resolvedEntity);
-					if (controller.isCancelled())
-						break;
-				} catch (AuthorizationException e)
-				{
-					log.debug("Entity " + entity + " information can not be loaded, "
-							+ "won't be in the identities table", e);
-				}
-			}
-			return toAdd;
+			return IdentitiesTable.this.resolveEntities(entities.subList(first, limit));
 		}
 		
 		private void updateTable(List<IdentitiesAndAttributes> toAdd, float progress)
@@ -566,6 +627,7 @@ public class IdentitiesTable extends CustomComponent
 			ui.accessSynchronously(() -> {
 				for (IdentitiesAndAttributes resolvedEntity: toAdd)
 				{
+					data.put(resolvedEntity.getEntity().getId(), resolvedEntity);
 					if (groupByEntityLocal)
 						addGroupedEntryToTable(resolvedEntity, selected);
 					else
@@ -576,7 +638,7 @@ public class IdentitiesTable extends CustomComponent
 		}
 	}
 	
-	private void restartEntitiesLoading(List<Long> entities, Object selected) throws EngineException
+	private void cancelEntitiesLoading()
 	{
 		if (!entitiesLoader.isDone())
 		{
@@ -592,7 +654,10 @@ public class IdentitiesTable extends CustomComponent
 				log.warn("Background identities loader threw an exception", e);
 			}
 		}
-		
+	}
+	
+	private void restartEntitiesLoading(List<Long> entities, Object selected) throws EngineException
+	{
 		int toSyncLoad = entities.size() > LOAD_IN_SYNC ? LOAD_IN_SYNC : entities.size();
 		resolveEntitiesAndUpdateTableSync(entities, toSyncLoad, selected);
 		
@@ -613,21 +678,13 @@ public class IdentitiesTable extends CustomComponent
 			throws EngineException
 	{
 		removeAllFiltersFromTable();
-		for (int i=0; i<amount; i++)
+		for (IdentitiesAndAttributes resolvedEntity: resolveEntities(entities.subList(0, amount)))
 		{
-			long entity = entities.get(i);
-			try
-			{
-				IdentitiesAndAttributes resolvedEntity = resolveEntity(entity);
-				if (groupByEntity)
-					addGroupedEntryToTable(resolvedEntity, selected);
-				else
-					addFlatEntryToTable(resolvedEntity, selected);
-			} catch (AuthorizationException e)
-			{
-				log.debug("Entity " + entity + " information can not be loaded, "
-						+ "won't be in the identities table", e);
-			}
+			data.put(resolvedEntity.getEntity().getId(), resolvedEntity);
+			if (groupByEntity)
+				addGroupedEntryToTable(resolvedEntity, selected);
+			else
+				addFlatEntryToTable(resolvedEntity, selected);
 		}
 		addAllFilters();
 	}
@@ -678,18 +735,30 @@ public class IdentitiesTable extends CustomComponent
 			}
 	}
 	
-	@SuppressWarnings("unchecked")
 	private Object addRow(Identity id, Entity ent, Map<String, Attribute<?>> rootAttributes,
 			Map<String, Attribute<?>> curAttributes)
 	{
-		String label = null;
-		if (entityNameAttribute != null && rootAttributes.containsKey(entityNameAttribute))
-			label = rootAttributes.get(entityNameAttribute).getValues().get(0).toString() + " ";
-		EntityWithLabel entWithLabel = new EntityWithLabel(ent, label);
+		EntityWithLabel entWithLabel = getEntityWithLabel(ent, rootAttributes);
 		Object itemId = id == null ? entWithLabel
 				: new IdentityWithEntity(id, entWithLabel);
 		Item newItem = table.addItem(itemId);
-		
+		fillRow(newItem, id, entWithLabel, rootAttributes, curAttributes);
+		return itemId;
+	}
+	
+	private EntityWithLabel getEntityWithLabel(Entity ent, Map<String, Attribute<?>> rootAttributes)
+	{
+		String label = null;
+		if (entityNameAttribute != null && rootAttributes.containsKey(entityNameAttribute))
+			label = rootAttributes.get(entityNameAttribute).getValues().get(0).toString() + " ";
+		return new EntityWithLabel(ent, label);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void fillRow(Item newItem, Identity id, EntityWithLabel entWithLabel, 
+			Map<String, Attribute<?>> rootAttributes, Map<String, Attribute<?>> curAttributes)
+	{
+		Entity ent = entWithLabel.getEntity();
 		newItem.getItemProperty(BaseColumnId.entity.toString()).setValue(
 				entWithLabel.toString());
 		newItem.getItemProperty(BaseColumnId.credReq.toString()).setValue(
@@ -749,7 +818,59 @@ public class IdentitiesTable extends CustomComponent
 				
 			newItem.getItemProperty(propId).setValue(val);
 		}
-		return itemId;
+	}
+
+	/**
+	 * Creates rows of the lazy container, entities which can not be resolved get a placeholder row.
+	 */
+	private List<Row> createRows(List<Long> entities) throws EngineException
+	{
+		Map<Long, IdentitiesAndAttributes> resolved = new HashMap<>();
+		for (IdentitiesAndAttributes entry: resolveEntities(entities))
+			resolved.put(entry.getEntity().getId(), entry);
+		List<Row> ret = new ArrayList<>(entities.size());
+		for (Long entity: entities)
+		{
+			IdentitiesAndAttributes entry = resolved.get(entity);
+			ret.add(entry == null ? createUnavailableRow(entity) : createRow(entry));
+		}
+		return ret;
+	}
+	
+	private Row createRow(IdentitiesAndAttributes entry)
+	{
+		Map<String, Attribute<?>> rootAttributes = entry.getRootAttributes();
+		Map<String, Attribute<?>> curAttributes = entry.getCurrentAttributes();
+		EntityWithLabel entWithLabel = getEntityWithLabel(entry.getEntity(), rootAttributes);
+		List<Row> children = new ArrayList<>(entry.getIdentities().size());
+		for (Identity id: entry.getIdentities())
+			children.add(new Row(new IdentityWithEntity(id, entWithLabel), 
+					createItem(id, entWithLabel, rootAttributes, curAttributes), 
+					Collections.emptyList()));
+		return new Row(entWithLabel, createItem(null, entWithLabel, rootAttributes, curAttributes), 
+				children);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Row createUnavailableRow(long entity)
+	{
+		Entity unavailable = new Entity(entity, new Identity[0], EntityState.disabled, 
+				new CredentialInfo("", Collections.emptyMap()));
+		EntityWithLabel entWithLabel = new EntityWithLabel(unavailable, null);
+		Item item = createItem(null, entWithLabel, Collections.emptyMap(), Collections.emptyMap());
+		item.getItemProperty(BaseColumnId.status.toString()).setValue(
+				msg.getMessage("Identities.entityNotAvailable"));
+		return new Row(entWithLabel, item, Collections.emptyList());
+	}
+	
+	private Item createItem(Identity id, EntityWithLabel entWithLabel, Map<String, Attribute<?>> rootAttributes,
+			Map<String, Attribute<?>> curAttributes)
+	{
+		PropertysetItem item = new PropertysetItem();
+		for (Object propertyId: table.getContainerPropertyIds())
+			item.addItemProperty(propertyId, new ObjectProperty<String>("", String.class));
+		fillRow(item, id, entWithLabel, rootAttributes, curAttributes);
+		return item;
 	}
 
 	
@@ -764,6 +885,8 @@ public class IdentitiesTable extends CustomComponent
 	public void addAttributeColumn(String attribute, String group)
 	{
 		String key = (group == null) ? ATTR_CURRENT_COL_PREFIX+attribute : ATTR_ROOT_COL_PREFIX+attribute;
+		if (lazyContainer != null)
+			inMemoryContainer.addContainerProperty(key, String.class, "");
 		table.addContainerProperty(key, String.class, "");
 		table.setColumnHeader(key, attribute + (group == null ? "@" + this.group : "@/"));
 		refresh();
@@ -775,14 +898,21 @@ public class IdentitiesTable extends CustomComponent
 		for (String attribute: attributes)
 		{
 			if (group.equals("/"))
-				table.removeContainerProperty(ATTR_ROOT_COL_PREFIX + attribute);
+				removeContainerProperty(ATTR_ROOT_COL_PREFIX + attribute);
 			if (group.equals(this.group))
-				table.removeContainerProperty(ATTR_CURRENT_COL_PREFIX + attribute);
+				removeContainerProperty(ATTR_CURRENT_COL_PREFIX + attribute);
 		}
 		refresh();
 		// savePreferences();
 	}
 
+	private void removeContainerProperty(String key)
+	{
+		if (lazyContainer != null)
+			inMemoryContainer.removeContainerProperty(key);
+		table.removeContainerProperty(key);
+	}
+
 	public Set<String> getAttributeColumns(boolean root)
 	{
 		Collection<?> props = table.getContainerPropertyIds();
@@ -823,11 +953,24 @@ public class IdentitiesTable extends CustomComponent
 
 	public void addFilter(Filter filter)
 	{
-		Container.Filterable filterable = (Filterable) table.getContainerDataSource();
-		filterable.addContainerFilter(filter);
+		addFilterToContainer(filter);
 		containerFilters.add(filter);
 	}
 
+	private void addFilterToContainer(Filter filter)
+	{
+		Container.Filterable filterable = (Filterable) table.getContainerDataSource();
+		try
+		{
+			filterable.addContainerFilter(filter);
+		} catch (UnsupportedFilterException e)
+		{
+			NotificationPopup.showNotice(msg, msg.getMessage("Identities.filterNotApplied"), 
+					msg.getMessage("Identities.onlyIdentityFilterInLargeGroup", 
+							LAZY_LOADING_THRESHOLD));
+		}
+	}
+
 	public void removeFilter(Filter filter)
 	{
 		Container.Filterable filterable = (Filterable) table.getContainerDataSource();
@@ -862,33 +1005,50 @@ public class IdentitiesTable extends CustomComponent
 		}
 	}
 
-	private IdentitiesAndAttributes resolveEntity(long entity) throws EngineException
-	{		
-		Entity resolvedEntity = showTargeted ? identitiesMan
-				.getEntityNoContext(new EntityParam(entity), this.group) : identitiesMan
-				.getEntity(new EntityParam(entity), null, false, this.group);
-		Collection<AttributeExt<?>> rawCurAttrs = attrMan.getAllAttributes(new EntityParam(entity), 
+	/**
+	 * Resolves the given entities with bulk engine operations. Entities which can not be read are skipped.
+	 */
+	private List<IdentitiesAndAttributes> resolveEntities(List<Long> entities) throws EngineException
+	{
+		Map<Long, Entity> resolvedEntities = identitiesMan.getEntities(entities, this.group, showTargeted);
+		Map<Long, Collection<AttributeExt<?>>> curAttributes = attrMan.getAllAttributes(entities, 
 				true, this.group, null, true);
-		Collection<AttributeExt<?>> rawRootAttrs = new ArrayList<AttributeExt<?>>();
-		try
-		{
-			rawRootAttrs = attrMan.getAllAttributes(new EntityParam(entity), 
+		Map<Long, Collection<AttributeExt<?>>> rootAttributes = attrMan.getAllAttributes(entities, 
 				true, "/", null, true);
-		} catch (AuthorizationException e)
+		List<IdentitiesAndAttributes> ret = new ArrayList<>(resolvedEntities.size());
+		for (Long entity: entities)
 		{
-			log.debug("can not resolve attributes in '/' for entity, " + entity + 
-					" only group's attributes will be available: " + e.toString());
+			Entity resolvedEntity = resolvedEntities.get(entity);
+			Collection<AttributeExt<?>> rawCurAttrs = curAttributes.get(entity);
+			if (resolvedEntity == null || rawCurAttrs == null)
+			{
+				log.debug("Entity " + entity + " information can not be loaded, "
+						+ "won't be in the identities table");
+				continue;
+			}
+			Collection<AttributeExt<?>> rawRootAttrs = rootAttributes.get(entity);
+			if (rawRootAttrs == null)
+			{
+				log.debug("can not resolve attributes in '/' for entity, " + entity + 
+						" only group's attributes will be available");
+				rawRootAttrs = Collections.emptyList();
+			}
+			ret.add(resolveEntity(resolvedEntity, rawCurAttrs, rawRootAttrs));
 		}
+		return ret;
+	}
+	
+	private IdentitiesAndAttributes resolveEntity(Entity resolvedEntity, Collection<AttributeExt<?>> rawCurAttrs,
+			Collection<AttributeExt<?>> rawRootAttrs)
+	{
 		Map<String, Attribute<?>> rootAttrs = new HashMap<String, Attribute<?>>(rawRootAttrs.size());
 		Map<String, Attribute<?>> curAttrs = new HashMap<String, Attribute<?>>(rawRootAttrs.size());
 		for (Attribute<?> a: rawRootAttrs)
 			rootAttrs.put(a.getName(), a);
 		for (Attribute<?> a: rawCurAttrs)
 			curAttrs.put(a.getName(), a);
-		IdentitiesAndAttributes resolved = new IdentitiesAndAttributes(resolvedEntity, 
-				resolvedEntity.getIdentities(),	rootAttrs, curAttrs);
-		data.put(resolvedEntity.getId(), resolved);
-		return resolved;
+		return new IdentitiesAndAttributes(resolvedEntity, resolvedEntity.getIdentities(), 
+				rootAttrs, curAttrs);
 	}
 
 	private void removeEntity(EntityWithLabel removed)
@@ -914,6 +1074,11 @@ public class IdentitiesTable extends CustomComponent
 	
 	private void removeNode(EntityWithLabel removed)
 	{
+		if (lazyContainer != null)
+		{
+			refresh();
+			return;
+		}
 		data.remove(removed.getEntity().getId());
 
 		Collection<?> children = table.getChildren(removed);
@@ -955,6 +1120,11 @@ public class IdentitiesTable extends CustomComponent
 
 	private void removeNode(IdentityWithEntity removed)
 	{
+		if (lazyContainer != null)
+		{
+			refresh();
+			return;
+		}
 		table.removeItem(removed);
 		data.get(removed.entity.getEntity().getId()).removeIdentity(
 				removed.getIdentity());
@@ -1246,8 +1416,7 @@ public class IdentitiesTable extends CustomComponent
 		public void handleAction(Object sender, Object target)
 		{
 			final EntityWithLabel entity = getSingleSelect(target);
-			IdentitiesAndAttributes info = data.get(entity.getEntity().getId());
-			String currentCredId = info.getEntity().getCredentialInfo()
+			String currentCredId = entity.getEntity().getCredentialInfo()
 					.getCredentialRequirementId();
 			new CredentialRequirementDialog(msg, entity, currentCredId, identitiesMan,
 					authnMan, new Callback()
@@ -1531,6 +1700,15 @@ public class IdentitiesTable extends CustomComponent
 
 	}
 
+	/**
+	 * @return true if members of a large group are shown, which are loaded lazily. Then only exact
+	 * identity values can be searched.
+	 */
+	public boolean isLazyMode()
+	{
+		return lazyContainer != null;
+	}
+
 	public boolean isColumnCollapsed(String colId)
 	{
 		return table.isColumnCollapsed(colId);
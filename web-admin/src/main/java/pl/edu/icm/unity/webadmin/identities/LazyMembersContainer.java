@@ -0,0 +1,669 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.webadmin.identities;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.log4j.Logger;
+
+import pl.edu.icm.unity.exceptions.EngineException;
+import pl.edu.icm.unity.exceptions.InternalException;
+import pl.edu.icm.unity.server.api.GroupsManagement;
+import pl.edu.icm.unity.server.utils.Log;
+import pl.edu.icm.unity.types.basic.GroupMembership;
+import pl.edu.icm.unity.types.basic.IdentityTaV;
+import pl.edu.icm.unity.webadmin.identities.IdentitiesTable.BaseColumnId;
+import pl.edu.icm.unity.webadmin.identities.IdentitiesTable.IdentityWithEntity;
+import pl.edu.icm.unity.webui.common.EntityWithLabel;
+
+import com.vaadin.data.Container;
+import com.vaadin.data.Item;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.AbstractContainer;
+import com.vaadin.data.util.filter.Compare;
+import com.vaadin.data.util.filter.Or;
+import com.vaadin.data.util.filter.SimpleStringFilter;
+import com.vaadin.data.util.filter.UnsupportedFilterException;
+
+/**
+ * Container with members of a large group, used by {@link IdentitiesTable}. Only the rows which are displayed
+ * are loaded, in pages of entities, and only few recently used pages are kept in memory. Entities are
+ * the root items, entity's identities are its children.
+ * <p>
+ * Members are read from the database ordered by entity id, the ordering of the entity column is
+ * the only supported sorting. Filtering is also performed by the database, therefore only filters
+ * which match an exact identity value are supported.
+ * @author K. Benedyczak
+ */
+public class LazyMembersContainer extends AbstractContainer implements Container.Collapsible,
+	Container.Indexed, Container.Sortable, Container.Filterable, Container.ItemSetChangeNotifier
+{
+	private static final Logger log = Log.getLogger(Log.U_SERVER_WEB, LazyMembersContainer.class);
+	static final int PAGE_SIZE = 100;
+	private static final int MAX_CACHED_PAGES = 5;
+
+	private GroupsManagement groupsMan;
+	private String group;
+	private Collection<String> identityTypes;
+	private RowsFactory rowsFactory;
+	private Set<Object> propertyIds;
+
+	private boolean descending;
+	private List<Filter> filters = new ArrayList<>();
+	private List<Long> filteredMembers;
+	private int membersCount;
+	private Map<Integer, List<Row>> pages;
+	private TreeMap<Integer, Row> expanded = new TreeMap<>();
+
+	public LazyMembersContainer(GroupsManagement groupsMan, String group, Collection<String> identityTypes,
+			Collection<?> propertyIds, RowsFactory rowsFactory) throws EngineException
+	{
+		this.groupsMan = groupsMan;
+		this.group = group;
+		this.identityTypes = identityTypes;
+		this.rowsFactory = rowsFactory;
+		this.propertyIds = new LinkedHashSet<>(propertyIds);
+		this.pages = new LinkedHashMap<Integer, List<Row>>(MAX_CACHED_PAGES, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, List<Row>> eldest)
+			{
+				return size() > MAX_CACHED_PAGES;
+			}
+		};
+		this.membersCount = groupsMan.getMembersCount(group);
+	}
+
+	/**
+	 * Drops all loaded rows, so they are loaded again when needed.
+	 */
+	public void refresh()
+	{
+		try
+		{
+			reset();
+		} catch (EngineException e)
+		{
+			throw new InternalException("Can not read members of the group " + group, e);
+		}
+		fireItemSetChange();
+	}
+
+	private void reset() throws EngineException
+	{
+		pages.clear();
+		expanded.clear();
+		filteredMembers = filters.isEmpty() ? null : findFilteredMembers();
+		membersCount = filteredMembers == null ? groupsMan.getMembersCount(group) : filteredMembers.size();
+	}
+
+	private List<Row> getPage(int page)
+	{
+		List<Row> rows = pages.get(page);
+		if (rows == null)
+		{
+			int first = page * PAGE_SIZE;
+			int amount = Math.min(PAGE_SIZE, membersCount - first);
+			try
+			{
+				rows = rowsFactory.createRows(getMembers(first, amount));
+			} catch (EngineException e)
+			{
+				throw new InternalException("Can not read members of the group " + group, e);
+			}
+			pages.put(page, rows);
+		}
+		return rows;
+	}
+
+	/**
+	 * @return ids of the members at the given positions, the database is always queried in the ascending
+	 * order, descending positions are mapped to the ascending ones.
+	 */
+	private List<Long> getMembers(int first, int amount) throws EngineException
+	{
+		int start = descending ? membersCount - first - amount : first;
+		List<Long> ret = new ArrayList<>(amount);
+		if (filteredMembers != null)
+		{
+			ret.addAll(filteredMembers.subList(start, start + amount));
+		} else
+		{
+			for (GroupMembership membership: groupsMan.getMembers(group, start, amount, false, null))
+				ret.add(membership.getEntityId());
+		}
+		if (descending)
+			Collections.reverse(ret);
+		return ret;
+	}
+
+	private List<Long> findFilteredMembers() throws EngineException
+	{
+		Set<Long> ret = null;
+		for (Filter filter: filters)
+		{
+			Set<Long> matching = new HashSet<>();
+			for (String identityValue: getIdentityValues(filter))
+				matching.addAll(findMembers(identityValue));
+			if (ret == null)
+				ret = matching;
+			else
+				ret.retainAll(matching);
+		}
+		return new ArrayList<>(new TreeSet<>(ret));
+	}
+
+	private Set<Long> findMembers(String identityValue)
+	{
+		Set<Long> ret = new HashSet<>();
+		for (String type: identityTypes)
+		{
+			try
+			{
+				for (GroupMembership membership: groupsMan.getMembers(group, 0, PAGE_SIZE, false,
+						new IdentityTaV(type, identityValue)))
+					ret.add(membership.getEntityId());
+			} catch (EngineException e)
+			{
+				log.debug("Can not search for '" + identityValue + "' as identity of type " + type, e);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return identity values to be searched for the filter, the filter matches members with
+	 * any of them.
+	 */
+	private Set<String> getIdentityValues(Filter filter) throws UnsupportedFilterException
+	{
+		Set<String> ret = new HashSet<>();
+		String identityColumn = BaseColumnId.identity.toString();
+		if (filter instanceof SimpleStringFilter &&
+				identityColumn.equals(((SimpleStringFilter) filter).getPropertyId()))
+		{
+			ret.add(((SimpleStringFilter) filter).getFilterString());
+		} else if (filter instanceof Compare.Equal &&
+				identityColumn.equals(((Compare.Equal) filter).getPropertyId()))
+		{
+			ret.add(String.valueOf(((Compare.Equal) filter).getValue()));
+		} else if (filter instanceof Or)
+		{
+			for (Filter child: ((Or) filter).getFilters())
+			{
+				try
+				{
+					ret.addAll(getIdentityValues(child));
+				} catch (UnsupportedFilterException e)
+				{
+					//other columns are not searched in large groups
+				}
+			}
+		}
+		if (ret.isEmpty())
+			throw new UnsupportedFilterException("Only identity values can be searched in large groups");
+		return ret;
+	}
+
+	private Row getEntityRow(int position)
+	{
+		if (expanded.containsKey(position))
+			return expanded.get(position);
+		return getPage(position / PAGE_SIZE).get(position % PAGE_SIZE);
+	}
+
+	private Row getRow(Object itemId)
+	{
+		if (itemId instanceof IdentityWithEntity)
+		{
+			Row parent = getRow(((IdentityWithEntity) itemId).getEntityWithLabel());
+			if (parent == null)
+				return null;
+			for (Row child: parent.children)
+				if (child.itemId.equals(itemId))
+					return child;
+			return null;
+		}
+		int position = getPosition(itemId);
+		return position < 0 ? null : getEntityRow(position);
+	}
+
+	/**
+	 * @return position of the entity among the loaded ones or -1 if it is not loaded
+	 */
+	private int getPosition(Object entityItemId)
+	{
+		for (Map.Entry<Integer, Row> entry: expanded.entrySet())
+			if (entry.getValue().itemId.equals(entityItemId))
+				return entry.getKey();
+		for (Map.Entry<Integer, List<Row>> page: pages.entrySet())
+		{
+			List<Row> rows = page.getValue();
+			for (int i=0; i<rows.size(); i++)
+				if (rows.get(i).itemId.equals(entityItemId))
+					return page.getKey() * PAGE_SIZE + i;
+		}
+		return -1;
+	}
+
+	@Override
+	public int size()
+	{
+		int ret = membersCount;
+		for (Row row: expanded.values())
+			ret += row.children.size();
+		return ret;
+	}
+
+	@Override
+	public Object getIdByIndex(int index)
+	{
+		int shift = 0;
+		for (Map.Entry<Integer, Row> entry: expanded.entrySet())
+		{
+			int entityIndex = entry.getKey() + shift;
+			if (index <= entityIndex)
+				break;
+			List<Row> children = entry.getValue().children;
+			if (index <= entityIndex + children.size())
+				return children.get(index - entityIndex - 1).itemId;
+			shift += children.size();
+		}
+		return getEntityRow(index - shift).itemId;
+	}
+
+	@Override
+	public int indexOfId(Object itemId)
+	{
+		Object entityItemId = itemId instanceof IdentityWithEntity ?
+				((IdentityWithEntity) itemId).getEntityWithLabel() : itemId;
+		int position = getPosition(entityItemId);
+		if (position < 0)
+			return -1;
+		int index = position;
+		for (Row row: expanded.headMap(position).values())
+			index += row.children.size();
+		if (itemId == entityItemId)
+			return index;
+		Row parent = expanded.get(position);
+		if (parent == null)
+			return -1;
+		for (int i=0; i<parent.children.size(); i++)
+			if (parent.children.get(i).itemId.equals(itemId))
+				return index + i + 1;
+		return -1;
+	}
+
+	@Override
+	public List<?> getItemIds(int startIndex, int numberOfItems)
+	{
+		int end = Math.min(startIndex + numberOfItems, size());
+		List<Object> ret = new ArrayList<>(Math.max(end - startIndex, 0));
+		for (int i=startIndex; i<end; i++)
+			ret.add(getIdByIndex(i));
+		return ret;
+	}
+
+	/**
+	 * The returned list is a view, which loads the items when they are retrieved.
+	 */
+	@Override
+	public Collection<?> getItemIds()
+	{
+		return new AbstractList<Object>()
+		{
+			@Override
+			public Object get(int index)
+			{
+				return getIdByIndex(index);
+			}
+
+			@Override
+			public int size()
+			{
+				return LazyMembersContainer.this.size();
+			}
+		};
+	}
+
+	@Override
+	public Item getItem(Object itemId)
+	{
+		Row row = getRow(itemId);
+		return row == null ? null : row.item;
+	}
+
+	@Override
+	public Property<?> getContainerProperty(Object itemId, Object propertyId)
+	{
+		Item item = getItem(itemId);
+		return item == null ? null : item.getItemProperty(propertyId);
+	}
+
+	@Override
+	public Collection<?> getContainerPropertyIds()
+	{
+		return Collections.unmodifiableCollection(propertyIds);
+	}
+
+	@Override
+	public Class<?> getType(Object propertyId)
+	{
+		return propertyIds.contains(propertyId) ? String.class : null;
+	}
+
+	@Override
+	public boolean containsId(Object itemId)
+	{
+		return getRow(itemId) != null;
+	}
+
+	@Override
+	public boolean addContainerProperty(Object propertyId, Class<?> type, Object defaultValue)
+	{
+		if (!propertyIds.add(propertyId))
+			return false;
+		pages.clear();
+		expanded.clear();
+		fireContainerPropertySetChange();
+		return true;
+	}
+
+	@Override
+	public boolean removeContainerProperty(Object propertyId)
+	{
+		if (!propertyIds.remove(propertyId))
+			return false;
+		fireContainerPropertySetChange();
+		return true;
+	}
+
+	@Override
+	public Object nextItemId(Object itemId)
+	{
+		int index = indexOfId(itemId);
+		return index < 0 || index + 1 >= size() ? null : getIdByIndex(index + 1);
+	}
+
+	@Override
+	public Object prevItemId(Object itemId)
+	{
+		int index = indexOfId(itemId);
+		return index <= 0 ? null : getIdByIndex(index - 1);
+	}
+
+	@Override
+	public Object firstItemId()
+	{
+		return size() == 0 ? null : getIdByIndex(0);
+	}
+
+	@Override
+	public Object lastItemId()
+	{
+		return size() == 0 ? null : getIdByIndex(size() - 1);
+	}
+
+	@Override
+	public boolean isFirstId(Object itemId)
+	{
+		return itemId != null && indexOfId(itemId) == 0;
+	}
+
+	@Override
+	public boolean isLastId(Object itemId)
+	{
+		return itemId != null && indexOfId(itemId) == size() - 1;
+	}
+
+	@Override
+	public Collection<?> getChildren(Object itemId)
+	{
+		Row row = getRow(itemId);
+		if (row == null || row.children.isEmpty())
+			return null;
+		List<Object> ret = new ArrayList<>(row.children.size());
+		for (Row child: row.children)
+			ret.add(child.itemId);
+		return ret;
+	}
+
+	@Override
+	public Object getParent(Object itemId)
+	{
+		return itemId instanceof IdentityWithEntity ? ((IdentityWithEntity) itemId).getEntityWithLabel() : null;
+	}
+
+	@Override
+	public Collection<?> rootItemIds()
+	{
+		return new AbstractList<Object>()
+		{
+			@Override
+			public Object get(int index)
+			{
+				return getEntityRow(index).itemId;
+			}
+
+			@Override
+			public int size()
+			{
+				return membersCount;
+			}
+		};
+	}
+
+	@Override
+	public boolean areChildrenAllowed(Object itemId)
+	{
+		return itemId instanceof EntityWithLabel;
+	}
+
+	@Override
+	public boolean isRoot(Object itemId)
+	{
+		return itemId instanceof EntityWithLabel;
+	}
+
+	@Override
+	public boolean hasChildren(Object itemId)
+	{
+		Row row = itemId instanceof EntityWithLabel ? getRow(itemId) : null;
+		return row != null && !row.children.isEmpty();
+	}
+
+	@Override
+	public void setCollapsed(Object itemId, boolean collapsed)
+	{
+		int position = getPosition(itemId);
+		if (position < 0)
+			return;
+		if (collapsed)
+			expanded.remove(position);
+		else
+			expanded.put(position, getEntityRow(position));
+	}
+
+	@Override
+	public boolean isCollapsed(Object itemId)
+	{
+		int position = getPosition(itemId);
+		return position < 0 || !expanded.containsKey(position);
+	}
+
+	@Override
+	public void sort(Object[] propertyId, boolean[] ascending)
+	{
+		boolean newDescending = propertyId.length > 0 &&
+				BaseColumnId.entity.toString().equals(propertyId[0]) && !ascending[0];
+		if (newDescending == descending)
+			return;
+		descending = newDescending;
+		pages.clear();
+		expanded.clear();
+	}
+
+	@Override
+	public Collection<?> getSortableContainerPropertyIds()
+	{
+		return Collections.singleton(BaseColumnId.entity.toString());
+	}
+
+	@Override
+	public void addContainerFilter(Filter filter) throws UnsupportedFilterException
+	{
+		getIdentityValues(filter);
+		filters.add(filter);
+		refresh();
+	}
+
+	@Override
+	public void removeContainerFilter(Filter filter)
+	{
+		if (filters.remove(filter))
+			refresh();
+	}
+
+	@Override
+	public void removeAllContainerFilters()
+	{
+		if (filters.isEmpty())
+			return;
+		filters.clear();
+		refresh();
+	}
+
+	@Override
+	public Collection<Filter> getContainerFilters()
+	{
+		return Collections.unmodifiableList(filters);
+	}
+
+	@Override
+	public void addItemSetChangeListener(ItemSetChangeListener listener)
+	{
+		super.addItemSetChangeListener(listener);
+	}
+
+	@Override
+	@Deprecated
+	public void addListener(ItemSetChangeListener listener)
+	{
+		super.addListener(listener);
+	}
+
+	@Override
+	public void removeItemSetChangeListener(ItemSetChangeListener listener)
+	{
+		super.removeItemSetChangeListener(listener);
+	}
+
+	@Override
+	@Deprecated
+	public void removeListener(ItemSetChangeListener listener)
+	{
+		super.removeListener(listener);
+	}
+
+	@Override
+	public Item addItem(Object itemId) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Object addItem() throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean removeItem(Object itemId) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean removeAllItems() throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Object addItemAfter(Object previousItemId) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Item addItemAfter(Object previousItemId, Object newItemId) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Object addItemAt(int index) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Item addItemAt(int index, Object newItemId) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean setParent(Object itemId, Object newParentId) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean setChildrenAllowed(Object itemId, boolean areChildrenAllowed)
+			throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Creates rows of the given entities.
+	 */
+	public interface RowsFactory
+	{
+		/**
+		 * @return rows of all the given entities, in the same order.
+		 */
+		List<Row> createRows(List<Long> entities) throws EngineException;
+	}
+
+	/**
+	 * Item with its id and children.
+	 */
+	public static class Row
+	{
+		private Object itemId;
+		private Item item;
+		private List<Row> children;
+
+		public Row(Object itemId, Item item, List<Row> children)
+		{
+			this.itemId = itemId;
+			this.item = item;
+			this.children = children;
+		}
+	}
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2016 ICM Uniwersytet Warszawski All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.webadmin.identities;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import pl.edu.icm.unity.exceptions.EngineException;
+import pl.edu.icm.unity.server.api.GroupsManagement;
+import pl.edu.icm.unity.stdext.identity.UsernameIdentity;
+import pl.edu.icm.unity.types.EntityState;
+import pl.edu.icm.unity.types.basic.Attribute;
+import pl.edu.icm.unity.types.basic.Entity;
+import pl.edu.icm.unity.types.basic.EntityParam;
+import pl.edu.icm.unity.types.basic.Group;
+import pl.edu.icm.unity.types.basic.GroupContents;
+import pl.edu.icm.unity.types.basic.GroupMembership;
+import pl.edu.icm.unity.types.basic.Identity;
+import pl.edu.icm.unity.types.basic.IdentityTaV;
+import pl.edu.icm.unity.types.basic.IdentityType;
+import pl.edu.icm.unity.webadmin.identities.IdentitiesTable.BaseColumnId;
+import pl.edu.icm.unity.webadmin.identities.IdentitiesTable.IdentityWithEntity;
+import pl.edu.icm.unity.webadmin.identities.LazyMembersContainer.Row;
+import pl.edu.icm.unity.webui.common.EntityWithLabel;
+
+public class TestLazyMembersContainer
+{
+	private static final int MEMBERS = 250;
+	private static final IdentityType USERNAME = new IdentityType(new UsernameIdentity());
+
+	private StubGroupsManagement groupsMan = new StubGroupsManagement(MEMBERS);
+
+	@Test
+	public void entitiesAreIndexedInOrderOfIds() throws Exception
+	{
+		LazyMembersContainer container = createContainer();
+
+		assertThat(container.size(), is(MEMBERS));
+		assertEquals(entity(1), container.getIdByIndex(0));
+		assertEquals(entity(LazyMembersContainer.PAGE_SIZE + 1),
+				container.getIdByIndex(LazyMembersContainer.PAGE_SIZE));
+		assertEquals(entity(MEMBERS), container.getIdByIndex(MEMBERS - 1));
+	}
+
+	@Test
+	public void childrenOfExpandedEntitiesAreIndexedAfterTheirParents() throws Exception
+	{
+		LazyMembersContainer container = createContainer();
+		container.getIdByIndex(0);
+		container.setCollapsed(entity(1), false);
+		container.setCollapsed(entity(6), false);
+
+		assertThat(container.size(), is(MEMBERS + 4));
+		assertEquals(entity(1), container.getIdByIndex(0));
+		assertEquals(identity(1, "a"), container.getIdByIndex(1));
+		assertEquals(identity(1, "b"), container.getIdByIndex(2));
+		assertEquals(entity(2), container.getIdByIndex(3));
+		assertEquals(entity(6), container.getIdByIndex(7));
+		assertEquals(identity(6, "a"), container.getIdByIndex(8));
+		assertEquals(identity(6, "b"), container.getIdByIndex(9));
+		assertEquals(entity(7), container.getIdByIndex(10));
+		assertEquals(entity(MEMBERS), container.getIdByIndex(MEMBERS + 3));
+	}
+
+	@Test
+	public void indexOfIdIsInverseOfGetIdByIndexWithExpandedEntities() throws Exception
+	{
+		LazyMembersContainer container = createContainer();
+		container.getIdByIndex(0);
+		container.setCollapsed(entity(1), false);
+		container.setCollapsed(entity(6), false);
+		container.setCollapsed(entity(LazyMembersContainer.PAGE_SIZE), false);
+
+		for (int i=0; i<LazyMembersContainer.PAGE_SIZE + 10; i++)
+			assertThat(container.indexOfId(container.getIdByIndex(i)), is(i));
+	}
+
+	@Test
+	public void collapsedEntityChildrenAreNotIndexed() throws Exception
+	{
+		LazyMembersContainer container = createContainer();
+		container.getIdByIndex(0);
+		container.setCollapsed(entity(1), false);
+		container.setCollapsed(entity(1), true);
+
+		assertThat(container.size(), is(MEMBERS));
+		assertEquals(entity(2), container.getIdByIndex(1));
+		assertThat(container.indexOfId(identity(1, "a")), is(-1));
+	}
+
+	@Test
+	public void descendingPagesAreReadFromTheEnd() throws Exception
+	{
+		LazyMembersContainer container = createContainer();
+		sortByEntity(container, false);
+
+		assertEquals(entity(MEMBERS), container.getIdByIndex(0));
+		assertThat(groupsMan.lastQuery, is(Arrays.asList(MEMBERS - LazyMembersContainer.PAGE_SIZE,
+				LazyMembersContainer.PAGE_SIZE)));
+		assertEquals(entity(MEMBERS - LazyMembersContainer.PAGE_SIZE + 1),
+				container.getIdByIndex(LazyMembersContainer.PAGE_SIZE - 1));
+		assertEquals(entity(MEMBERS - LazyMembersContainer.PAGE_SIZE),
+				container.getIdByIndex(LazyMembersContainer.PAGE_SIZE));
+	}
+
+	@Test
+	public void lastDescendingPageIsPartial() throws Exception
+	{
+		LazyMembersContainer container = createContainer();
+		sortByEntity(container, false);
+
+		assertEquals(entity(1), container.getIdByIndex(MEMBERS - 1));
+		assertThat(groupsMan.lastQuery, is(Arrays.asList(0, MEMBERS % LazyMembersContainer.PAGE_SIZE)));
+		assertThat(container.indexOfId(entity(1)), is(MEMBERS - 1));
+	}
+
+	@Test
+	public void sortingBackToAscendingRestoresOrder() throws Exception
+	{
+		LazyMembersContainer container = createContainer();
+		sortByEntity(container, false);
+		container.getIdByIndex(0);
+		sortByEntity(container, true);
+
+		assertEquals(entity(1), container.getIdByIndex(0));
+		assertThat(container.indexOfId(entity(MEMBERS)), is(-1));
+	}
+
+	private LazyMembersContainer createContainer() throws EngineException
+	{
+		return new LazyMembersContainer(groupsMan, "/", Collections.singleton(UsernameIdentity.ID),
+				Collections.singleton(BaseColumnId.entity.toString()), this::createRows);
+	}
+
+	private void sortByEntity(LazyMembersContainer container, boolean ascending)
+	{
+		container.sort(new Object[] {BaseColumnId.entity.toString()}, new boolean[] {ascending});
+	}
+
+	private List<Row> createRows(List<Long> entities) throws EngineException
+	{
+		List<Row> ret = new ArrayList<>();
+		for (Long entityId: entities)
+		{
+			List<Row> children = new ArrayList<>();
+			children.add(new Row(identity(entityId, "a"), null, Collections.emptyList()));
+			children.add(new Row(identity(entityId, "b"), null, Collections.emptyList()));
+			ret.add(new Row(entity(entityId), null, children));
+		}
+		return ret;
+	}
+
+	private static EntityWithLabel entity(long entityId)
+	{
+		return new EntityWithLabel(new Entity(entityId, new Identity[0], EntityState.valid, null), null);
+	}
+
+	private static IdentityWithEntity identity(long entityId, String suffix) throws EngineException
+	{
+		Identity identity = new Identity(USERNAME, "user" + entityId + suffix, entityId,
+				null, null, null, null, null, null, null);
+		return new IdentityWithEntity(identity, entity(entityId));
+	}
+
+	/**
+	 * Group with members having consecutive ids starting from 1. Only the paging members query is supported.
+	 */
+	private static class StubGroupsManagement implements GroupsManagement
+	{
+		private int members;
+		private List<Integer> lastQuery;
+
+		public StubGroupsManagement(int members)
+		{
+			this.members = members;
+		}
+
+		@Override
+		public List<GroupMembership> getMembers(String path, int offset, int limit,
+				boolean orderByCreation, IdentityTaV identity) throws EngineException
+		{
+			lastQuery = Arrays.asList(offset, limit);
+			List<GroupMembership> ret = new ArrayList<>();
+			for (int i=offset; i<Math.min(offset + limit, members); i++)
+				ret.add(new GroupMembership(path, i + 1, new Date()));
+			return ret;
+		}
+
+		@Override
+		public int getMembersCount(String path) throws EngineException
+		{
+			return members;
+		}
+
+		@Override
+		public void addGroup(Group toAdd) throws EngineException
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void linkGroup(String targetPath, String sourcePath) throws EngineException
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void unlinkGroup(String targetPath, String sourcePath) throws EngineException
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void removeGroup(String path, boolean recursive) throws EngineException
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void addSelfManagedGroup(Group toAdd) throws EngineException
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void addMemberFromParent(String path, EntityParam entity, List<Attribute<?>> attributes,
+				String idp, String translationProfile) throws EngineException
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void addMemberFromParent(String path, EntityParam entity, List<Attribute<?>> attributes)
+				throws EngineException
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void addMemberFromParent(String path, EntityParam entity) throws EngineException
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void removeMember(String path, EntityParam entity) throws EngineException
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public GroupContents getContents(String path, int filter) throws EngineException
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Set<String> getChildGroups(String root) throws EngineException
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void updateGroup(String path, Group group) throws EngineException
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -32,6 +32,7 @@ import pl.edu.icm.unity.server.authn.AuthenticationOption;
 import pl.edu.icm.unity.server.authn.AuthenticationProcessor;
 import pl.edu.icm.unity.server.authn.AuthenticationProcessor.PartialAuthnState;
 import pl.edu.icm.unity.server.authn.AuthenticationResult;
+import pl.edu.icm.unity.server.authn.AuthenticationTryLaterException;
 import pl.edu.icm.unity.server.authn.InvocationContext;
 import pl.edu.icm.unity.server.authn.LoginToHttpSessionBinder;
 import pl.edu.icm.unity.server.authn.UnsuccessfulAuthenticationCounter;
@@ -124,7 +125,8 @@ public class WebAuthenticationProcessor
 			authnState = authnProcessor.processPrimaryAuthnResult(result, authenticationOption);
 		} catch (AuthenticationException e)
 		{
-			if (!(e instanceof UnknownRemoteUserException))
+			if (!(e instanceof UnknownRemoteUserException) && 
+					!(e instanceof AuthenticationTryLaterException))
 				counter.unsuccessfulAttempt(clientIp);
 			throw e;
 		}
@@ -151,7 +153,8 @@ public class WebAuthenticationProcessor
 			logInfo = authnProcessor.finalizeAfterSecondaryAuthentication(state, result2);
 		} catch (AuthenticationException e)
 		{
-			if (!(e instanceof UnknownRemoteUserException))
+			if (!(e instanceof UnknownRemoteUserException) && 
+					!(e instanceof AuthenticationTryLaterException))
 				counter.unsuccessfulAttempt(clientIp);
 			throw e;
 		}
@@ -5,6 +5,7 @@
 package pl.edu.icm.unity.ws.authn.ext;
 
 import pl.edu.icm.unity.rest.authn.ext.HttpBasicRetrievalBase;
+import pl.edu.icm.unity.rest.authn.ext.HttpBasicVerificationCache;
 import pl.edu.icm.unity.server.authn.CredentialRetrieval;
 import pl.edu.icm.unity.ws.authn.WebServiceAuthentication;
 
@@ -15,8 +16,8 @@ import pl.edu.icm.unity.ws.authn.WebServiceAuthentication;
  */
 public class HttpBasicRetrieval extends HttpBasicRetrievalBase implements CredentialRetrieval, WebServiceAuthentication
 {
-	public HttpBasicRetrieval()
+	public HttpBasicRetrieval(HttpBasicVerificationCache verificationCache)
 	{
-		super(WebServiceAuthentication.NAME);
+		super(WebServiceAuthentication.NAME, verificationCache);
 	}
 }
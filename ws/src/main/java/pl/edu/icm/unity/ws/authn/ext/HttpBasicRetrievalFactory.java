@@ -4,8 +4,10 @@
  */
 package pl.edu.icm.unity.ws.authn.ext;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import pl.edu.icm.unity.rest.authn.ext.HttpBasicVerificationCache;
 import pl.edu.icm.unity.server.authn.CredentialExchange;
 import pl.edu.icm.unity.server.authn.CredentialRetrieval;
 import pl.edu.icm.unity.server.authn.CredentialRetrievalFactory;
@@ -21,6 +23,14 @@ public class HttpBasicRetrievalFactory implements CredentialRetrievalFactory
 {
 	public static final String NAME = "cxf-httpbasic";
 	
+	private HttpBasicVerificationCache verificationCache;
+	
+	@Autowired
+	public HttpBasicRetrievalFactory(HttpBasicVerificationCache verificationCache)
+	{
+		this.verificationCache = verificationCache;
+	}
+	
 	@Override
 	public String getName()
 	{
@@ -36,7 +46,7 @@ public class HttpBasicRetrievalFactory implements CredentialRetrievalFactory
 	@Override
 	public CredentialRetrieval newInstance()
 	{
-		return new HttpBasicRetrieval();
+		return new HttpBasicRetrieval(verificationCache);
 	}
 
 	@Override